@@ -9,14 +9,15 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
 
 import com.example.rehabilitationapp.data.AppDatabase;
-import com.example.rehabilitationapp.data.FirebaseUploader;
+import com.example.rehabilitationapp.data.SyncDispatcher;
 import com.example.rehabilitationapp.data.dao.UserDao;
+import com.example.rehabilitationapp.ui.analysis.AnalysisWarmup;
+import com.example.rehabilitationapp.ui.facecheck.YoloBackendCalibrator;
 import com.example.rehabilitationapp.ui.home.HomeFragment;
 import com.example.rehabilitationapp.ui.login.LoginFragment;
 import com.example.rehabilitationapp.ui.notifications.NotificationsFragment;
 import com.example.rehabilitationapp.ui.plan.PlanFragment;
 import com.example.rehabilitationapp.ui.setting.SettingFragment;
-import com.example.rehabilitationapp.data.SupabaseUploader;
 import android.util.Log;
 import com.example.rehabilitationapp.data.AppLogger;
 public class MainActivity extends AppCompatActivity {
@@ -48,6 +49,11 @@ public class MainActivity extends AppCompatActivity {
 
         userDao = AppDatabase.getInstance(this).userDao();
 
+        // ★ 背景預熱分析後端（訓練結束時不用等載入）
+        AnalysisWarmup.warmUp(this, null);
+        // ★ 這台裝置第一次啟動：背景量測舌頭 YOLO 各後端速度，之後訓練直接用最快的（訓練中不量、量到一半開始訓練就中止）
+        YoloBackendCalibrator.calibrateIfNeeded(this);
+
         new Thread(() -> {
             boolean loggedIn = userDao.countLoggedIn() > 0;
             runOnUiThread(() -> {
@@ -79,15 +85,11 @@ public class MainActivity extends AppCompatActivity {
             switchFragment(new SettingFragment());
             selectTab(R.id.tab_setting);
         });
-        // App 啟動時補傳 Csv訓練Landmark
-        SupabaseUploader.retryUnsyncedCsv(this, (success, fail) -> {
-            Log.d("CSV重傳", "成功: " + success + " 筆，失敗: " + fail + " 筆");
-        });
-
-        // App 啟動時補傳 Firebase 訓練歷史紀錄
-        FirebaseUploader.uploadTodayUnsynced(this, (success, fail) -> {
-            Log.d("Firebase重傳", "成功: " + success + " 筆，失敗: " + fail + " 筆");
-        });
+        // App 啟動時補傳：還沒傳完的 Firebase 紀錄 / CSV 補進 outbox（影片不自動傳），交給 SyncDispatchWorker
+        new Thread(() -> {
+            int open = SyncDispatcher.backfill(this);
+            Log.d("上傳補傳", "outbox 未完成: " + open + " 筆");
+        }, "SyncBackfill").start();
 
 
     }
@@ -12,16 +12,20 @@ import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.example.rehabilitationapp.data.dao.SyncOutboxDao;
 import com.example.rehabilitationapp.data.dao.TrainingItemDao;
 import com.example.rehabilitationapp.data.dao.TrainingPlanDao;
 import com.example.rehabilitationapp.data.dao.UserDao;
 import com.example.rehabilitationapp.data.dao.TrainingHistoryDao;
+import com.example.rehabilitationapp.data.dao.VideoUploadProgressDao;
 import com.example.rehabilitationapp.data.model.PlanItemCrossRef;
 import com.example.rehabilitationapp.data.model.Preload;
+import com.example.rehabilitationapp.data.model.SyncOp;
 import com.example.rehabilitationapp.data.model.TrainingItem;
 import com.example.rehabilitationapp.data.model.TrainingPlan;
 import com.example.rehabilitationapp.data.model.User;
 import com.example.rehabilitationapp.data.model.TrainingHistory;
+import com.example.rehabilitationapp.data.model.VideoUploadProgress;
 
 @Database(
         entities = {
@@ -29,10 +33,12 @@ import com.example.rehabilitationapp.data.model.TrainingHistory;
                 TrainingPlan.class,
                 PlanItemCrossRef.class,
                 User.class,
-                TrainingHistory.class
+                TrainingHistory.class,
+                SyncOp.class,
+                VideoUploadProgress.class
         },
         //!!!!!!!!!!!!!!!!!!!!!!!每次更新資料庫這邊要改，比如5->6，這裡要寫6!!!!!!但不然會直接依打開就閃退掉!!!!可以不用清掉資料!!!!!!!!!!!!!!!!3=
-        version = 11,              // ★ 版本 +1（原本是 2）
+        version = 15,              // ★ 版本 +1（原本是 2）
         exportSchema = true
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -43,6 +49,8 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract TrainingPlanDao trainingPlanDao();
     public abstract UserDao userDao();
     public abstract TrainingHistoryDao trainingHistoryDao();
+    public abstract SyncOutboxDao syncOutboxDao();
+    public abstract VideoUploadProgressDao videoUploadProgressDao();
 
     // ★ Migration: 2 -> 3（新增 6 欄位）
     public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
@@ -162,6 +170,88 @@ public abstract class AppDatabase extends RoomDatabase {
     };
 
 
+    // ★ 新增 Migration: 11 -> 12（trainingHistory 加索引，不動資料）
+    // 索引名稱要跟 TrainingHistory @Entity(indices) 產生的一致（index_<表>_<欄位>），不然 Room 驗證會失敗
+    // 「未上傳」清單用 (旗標, createAt) 複合索引代替部分索引（WHERE synced = 0）：
+    // Room 的 @Index 寫不出 WHERE，沒宣告的索引又會讓開庫時的 schema 驗證不過
+    public static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_trainingHistory_createAt` " +
+                    "ON `trainingHistory` (`createAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_trainingHistory_synced_createAt` " +
+                    "ON `trainingHistory` (`synced`, `createAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_trainingHistory_csvUploaded_createAt` " +
+                    "ON `trainingHistory` (`csvUploaded`, `createAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_trainingHistory_videoUploaded_createAt` " +
+                    "ON `trainingHistory` (`videoUploaded`, `createAt`)");
+        }
+    };
+
+    // ★ 新增 Migration: 12 -> 13（上傳 outbox：syncOutbox 表）
+    // 升級前旗標還是 0 的紀錄直接補進 outbox，升級後由 SyncDispatchWorker 接手
+    public static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `syncOutbox` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`opKey` TEXT NOT NULL, " +
+                    "`destination` TEXT NOT NULL, " +
+                    "`trainingID` TEXT NOT NULL, " +
+                    "`fileName` TEXT NOT NULL DEFAULT '', " +
+                    "`dependsOn` TEXT, " +
+                    "`state` INTEGER NOT NULL DEFAULT 0, " +
+                    "`attempts` INTEGER NOT NULL DEFAULT 0, " +
+                    "`nextAttemptAt` INTEGER NOT NULL DEFAULT 0, " +
+                    "`leaseUntil` INTEGER NOT NULL DEFAULT 0, " +
+                    "`lastError` TEXT, " +
+                    "`createdAt` INTEGER NOT NULL, " +
+                    "`updatedAt` INTEGER NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_syncOutbox_opKey` ON `syncOutbox` (`opKey`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_syncOutbox_state_nextAttemptAt` " +
+                    "ON `syncOutbox` (`state`, `nextAttemptAt`)");
+            // 把升級前還沒傳完的 Firestore / CSV 接進來（影片要使用者同意才傳，不補）
+            // SQL 凍結在這裡：之後 SyncDispatcher 的 backfill 怎麼改，都不能改變這個 migration 的結果
+            long now = System.currentTimeMillis();
+            Object[] t = {now, now, now};
+            db.execSQL("INSERT OR IGNORE INTO syncOutbox (opKey, destination, trainingID, fileName, dependsOn, " +
+                    "state, attempts, nextAttemptAt, leaseUntil, lastError, createdAt, updatedAt) " +
+                    "SELECT 'FIRESTORE:' || trainingID, 'FIRESTORE', trainingID, '', NULL, " +
+                    "0, 0, ?, 0, NULL, ?, ? FROM trainingHistory WHERE synced = 0", t);
+            db.execSQL("INSERT OR IGNORE INTO syncOutbox (opKey, destination, trainingID, fileName, dependsOn, " +
+                    "state, attempts, nextAttemptAt, leaseUntil, lastError, createdAt, updatedAt) " +
+                    "SELECT 'CSV:' || trainingID, 'CSV', trainingID, csvFileName, NULL, " +
+                    "0, 0, ?, 0, NULL, ?, ? FROM trainingHistory WHERE csvUploaded = 0 AND csvFileName != ''", t);
+        }
+    };
+
+    // ★ 新增 Migration: 13 -> 14（影片分段上傳進度：videoUploadProgress 表）
+    public static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `videoUploadProgress` (" +
+                    "`trainingID` TEXT NOT NULL, " +
+                    "`fileName` TEXT NOT NULL, " +
+                    "`fileSize` INTEGER NOT NULL, " +
+                    "`fileModifiedAt` INTEGER NOT NULL, " +
+                    "`confirmedOffset` INTEGER NOT NULL DEFAULT 0, " +
+                    "`chunkSize` INTEGER NOT NULL, " +
+                    "`sha256` TEXT, " +
+                    "`updatedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`trainingID`))");
+        }
+    };
+
+
+    // ★ 新增 Migration: 14 -> 15（影片分段上傳：每段 SHA-256、已傳完標記）
+    public static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `videoUploadProgress` ADD COLUMN `chunkHashes` TEXT");
+            db.execSQL("ALTER TABLE `videoUploadProgress` ADD COLUMN `completedAt` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
     //20251123 多DB
     public static AppDatabase buildDatabase(Context context, String dbName) {
 
@@ -179,7 +269,11 @@ public abstract class AppDatabase extends RoomDatabase {
                         MIGRATION_7_8,
                         MIGRATION_8_9,
                         MIGRATION_9_10,
-                        MIGRATION_10_11
+                        MIGRATION_10_11,
+                        MIGRATION_11_12,
+                        MIGRATION_12_13,
+                        MIGRATION_13_14,
+                        MIGRATION_14_15
                 )
                 .build();
 
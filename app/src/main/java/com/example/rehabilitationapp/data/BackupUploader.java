@@ -6,31 +6,19 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.Session;
-
 import java.io.File;
-import java.io.FileInputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 import android.os.Environment;
 public class BackupUploader {
 
     private static final String TAG = "BackupUploader";
 
-    private static final String SFTP_HOST = "163.25.101.37";
-    private static final int SFTP_PORT = 22222;
-    private static final String SFTP_USER = "hao_lab01";
-    private static final String SFTP_PASSWORD = "123456";
-    private static final String REMOTE_BASE_DIR = "/Rh_Videos";
-
-    private static final int CONNECT_TIMEOUT = 30000;
-    private static final int SESSION_TIMEOUT = 120000;
+    private static final int PARALLEL_UPLOADS = 3;
 
     public interface BackupCallback {
         void onProgress(String message);
@@ -51,33 +39,14 @@ public class BackupUploader {
             int successCount = 0;
             int failCount = 0;
 
-            Session session = null;
-            ChannelSftp channelSftp = null;
-
             try {
-                // 連線
+                // 連線（跟影片上傳共用 SftpUploader 的連線池）
                 mainHandler.post(() -> callback.onProgress("連線中..."));
-
-                JSch jsch = new JSch();
-                session = jsch.getSession(SFTP_USER, SFTP_HOST, SFTP_PORT);
-                session.setPassword(SFTP_PASSWORD);
-
-                Properties config = new Properties();
-                config.put("StrictHostKeyChecking", "no");
-                session.setConfig(config);
-                session.setServerAliveInterval(5000);
-                session.connect(CONNECT_TIMEOUT);
-
-                channelSftp = (ChannelSftp) session.openChannel("sftp");
-                channelSftp.connect(SESSION_TIMEOUT);
+                SftpPool pool = SftpUploader.pool();
+                if (!pool.testConnection()) throw new IllegalStateException("SFTP 連線失敗");
                 Log.d(TAG, "✅ SFTP 連線成功");
 
-                // 建立備份資料夾
-                String backupDir = REMOTE_BASE_DIR + "/" + userId + "/backup";
-                ensureDirectoryExists(channelSftp, REMOTE_BASE_DIR);
-                ensureDirectoryExists(channelSftp, REMOTE_BASE_DIR + "/" + userId);
-                ensureDirectoryExists(channelSftp, backupDir);
-                channelSftp.cd(backupDir);
+                String backupDir = SftpUploader.userDir(context) + "/backup";
 
 // ===== 1. 上傳 Room DB =====
                 mainHandler.post(() -> callback.onProgress("上傳資料庫..."));
@@ -85,64 +54,54 @@ public class BackupUploader {
                 if (dbFile.exists()) {
                     totalFiles++;
                     String remoteDbName = userId + "_backup_" + timestamp + ".db";
-                    try {
-                        FileInputStream fis = new FileInputStream(dbFile);
-                        channelSftp.put(fis, remoteDbName);
-                        fis.close();
+                    SftpPool.Result result = pool.upload(new SftpPool.Job(dbFile, backupDir, remoteDbName), null);
+                    if (result.ok()) {
                         successCount++;
                         Log.d(TAG, "✅ DB 上傳成功: " + remoteDbName);
-                    } catch (Exception e) {
+                    } else {
                         failCount++;
-                        Log.e(TAG, "❌ DB 上傳失敗: " + e.getMessage());
+                        Log.e(TAG, "❌ DB 上傳失敗: " + result.error);
                     }
                 }
 
-// ===== 2. 上傳 CSV 檔案 =====
-                mainHandler.post(() -> callback.onProgress("上傳 CSV..."));
+// ===== 2. CSV + MP4：平行上傳，遠端已完整的跳過、斷掉的續傳 =====
+                List<SftpPool.Job> jobs = new ArrayList<>();
                 File csvDir = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
                 if (csvDir != null && csvDir.exists()) {
                     File[] csvFiles = csvDir.listFiles((dir, name) -> name.endsWith(".csv"));
                     if (csvFiles != null) {
-                        for (File csv : csvFiles) {
-                            totalFiles++;
-                            try {
-                                FileInputStream fis = new FileInputStream(csv);
-                                channelSftp.put(fis, csv.getName());
-                                fis.close();
-                                successCount++;
-                                Log.d(TAG, "✅ CSV 上傳成功: " + csv.getName());
-                            } catch (Exception e) {
-                                failCount++;
-                                Log.e(TAG, "❌ CSV 上傳失敗: " + csv.getName());
-                            }
-                        }
+                        for (File csv : csvFiles) jobs.add(new SftpPool.Job(csv, backupDir));
                     }
                 }
-                // ===== 3. 上傳 MP4 影片 =====
-                mainHandler.post(() -> callback.onProgress("上傳影片..."));
                 File videoDir = context.getExternalFilesDir(null);
                 if (videoDir != null && videoDir.exists()) {
                     File[] mp4Files = videoDir.listFiles((dir, name) -> name.endsWith(".mp4"));
                     if (mp4Files != null) {
-                        int videoIndex = 0;
-                        for (File mp4 : mp4Files) {
-                            videoIndex++;
-                            int finalIndex = videoIndex;
-                            int finalTotal = mp4Files.length;
-                            mainHandler.post(() -> callback.onProgress("上傳影片 " + finalIndex + "/" + finalTotal));
-
-                            totalFiles++;
-                            try {
-                                FileInputStream fis = new FileInputStream(mp4);
-                                channelSftp.put(fis, mp4.getName());
-                                fis.close();
-                                successCount++;
-                                Log.d(TAG, "✅ MP4 上傳成功: " + mp4.getName());
-                            } catch (Exception e) {
-                                failCount++;
-                                Log.e(TAG, "❌ MP4 上傳失敗: " + mp4.getName());
-                            }
-                        }
+                        for (File mp4 : mp4Files) jobs.add(new SftpPool.Job(mp4, backupDir));
+                    }
+                }
+
+                int jobTotal = jobs.size();
+                AtomicInteger finished = new AtomicInteger();
+                mainHandler.post(() -> callback.onProgress("上傳檔案 0/" + jobTotal));
+                List<SftpPool.Result> results = pool.uploadAll(jobs, PARALLEL_UPLOADS, new SftpPool.Listener() {
+                    @Override
+                    public void onProgress(SftpPool.Job job, int percent) {}
+
+                    @Override
+                    public void onDone(SftpPool.Result result) {
+                        int n = finished.incrementAndGet();
+                        mainHandler.post(() -> callback.onProgress("上傳檔案 " + n + "/" + jobTotal));
+                    }
+                });
+                totalFiles += jobTotal;
+                for (SftpPool.Result result : results) {
+                    if (result.ok()) {
+                        successCount++;
+                        Log.d(TAG, "✅ 上傳成功: " + result.job.remoteName + (result.skipped ? "（已存在）" : ""));
+                    } else {
+                        failCount++;
+                        Log.e(TAG, "❌ 上傳失敗: " + result.job.remoteName + " " + result.error);
                     }
                 }
 
@@ -151,9 +110,6 @@ public class BackupUploader {
             } catch (Exception e) {
                 Log.e(TAG, "❌ 備份失敗: " + e.getMessage(), e);
                 failCount = -1; // 表示連線失敗
-            } finally {
-                if (channelSftp != null && channelSftp.isConnected()) channelSftp.disconnect();
-                if (session != null && session.isConnected()) session.disconnect();
             }
 
             int finalTotal = totalFiles;
@@ -172,17 +128,4 @@ public class BackupUploader {
         }
         return userId;
     }
-
-    private static void ensureDirectoryExists(ChannelSftp channelSftp, String path) {
-        try {
-            channelSftp.stat(path);
-        } catch (Exception e) {
-            try {
-                channelSftp.mkdir(path);
-                Log.d(TAG, "📁 已建立資料夾: " + path);
-            } catch (Exception e2) {
-                Log.w(TAG, "⚠️ 建立資料夾失敗: " + path);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,277 @@
+package com.example.rehabilitationapp.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.rehabilitationapp.data.dao.VideoUploadProgressDao;
+import com.example.rehabilitationapp.data.model.VideoUploadProgress;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 🎬 影片分段續傳（SFTP）
+ * - 寫到遠端「檔名.part」，每段 CHUNK_SIZE；一段 close 之後遠端大小確認到了，才把 offset 寫進 Room（videoUploadProgress）
+ * - 本地整檔和每一段的 SHA-256 第一次讀檔時一起算好存進 Room，之後比對都拿存的值
+ * - 斷線 / Worker 重試：從最後確認的那段接著傳；接之前先把最後一段讀回來比 SHA-256，對不上就往前退一段
+ * - 全部傳完驗證：伺服器有 sha256sum 就比整檔；沒有 exec 就靠「每段都確認過」這條鏈，再讀回最後一段比一次
+ *   （SSH 每個封包有 MAC，確認過大小的段不用整檔讀回來），通過才改名成正式檔名、回 true
+ *   → 呼叫端這時才 markVideoUploaded
+ * - 改名後進度記成已完成；之後再呼叫（例：markVideoUploaded 前被殺掉）只比最後一段，不用重新下載
+ * - 同一個 trainingID 同時只會有一個上傳在寫 .part（畫面上的「上傳」和 outbox 可能撞在一起）
+ */
+public final class ChunkedVideoUploader {
+
+    private static final String TAG = "ChunkedVideoUploader";
+
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    static final String PART_SUFFIX = ".part";
+
+    private static final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /** 進度：整個檔案的百分比（含之前已確認的部分） */
+    public interface Listener {
+        void onProgress(int percent);
+    }
+
+    private ChunkedVideoUploader() {}
+
+    /** 上傳到 /Rh_Videos/userId/（不在主執行緒呼叫） */
+    public static boolean upload(Context context, String trainingID, File videoFile, Listener listener) throws Exception {
+        VideoUploadProgressDao dao = AppDatabase.getInstance(context).videoUploadProgressDao();
+        return upload(SftpUploader.pool(), dao, trainingID, videoFile, SftpUploader.userDir(context), CHUNK_SIZE, listener);
+    }
+
+    static boolean upload(SftpPool pool, VideoUploadProgressDao dao, String trainingID, File file,
+                          String remoteDir, int chunkSize, Listener listener) throws Exception {
+        if (file == null || !file.exists()) throw new FileNotFoundException("檔案不存在: " + (file == null ? null : file.getName()));
+        if (file.length() == 0) throw new FileNotFoundException("檔案是空的: " + file.getName());
+        if (!inFlight.add(trainingID)) throw new IOException("同一部影片正在上傳: " + trainingID);
+        try {
+            VideoUploadProgress progress = loadProgress(dao, trainingID, file, chunkSize);
+            return pool.withChannel(channel -> uploadOn(pool, channel, dao, progress, file, remoteDir, listener));
+        } finally {
+            inFlight.remove(trainingID);
+        }
+    }
+
+    private static VideoUploadProgress loadProgress(VideoUploadProgressDao dao, String trainingID, File file,
+                                                    int chunkSize) throws IOException {
+        VideoUploadProgress p = dao.get(trainingID);
+        if (p == null || !p.matches(file.getName(), file.length(), file.lastModified(), chunkSize)) {
+            if (p != null) Log.w(TAG, "⚠️ 本地檔案變了，進度重來: " + file.getName());
+            p = new VideoUploadProgress();
+            p.trainingID = trainingID;
+            p.fileName = file.getName();
+            p.fileSize = file.length();
+            p.fileModifiedAt = file.lastModified();
+            p.chunkSize = chunkSize;
+        }
+        if (p.sha256 == null || p.chunkHashes == null) {
+            String[] hashes = hashes(file, chunkSize);
+            p.sha256 = hashes[0];
+            p.chunkHashes = hashes[1];
+        }
+        p.updatedAt = System.currentTimeMillis();
+        dao.upsert(p);
+        return p;
+    }
+
+    private static boolean uploadOn(SftpPool pool, ChannelSftp channel, VideoUploadProgressDao dao,
+                                    VideoUploadProgress p, File file, String remoteDir, Listener listener)
+            throws Exception {
+        String finalPath = remoteDir + "/" + p.fileName;
+        String partPath = finalPath + PART_SUFFIX;
+        long size = p.fileSize;
+        int chunk = p.chunkSize;
+        pool.ensureDirs(channel, remoteDir);
+
+        // 1. 正式檔已經在：之前這裡驗過、改名過的只比最後一段；來路不明的（舊的整檔上傳）整檔驗一次
+        if (SftpPool.remoteSize(channel, finalPath) == size) {
+            boolean ok = p.completedAt > 0
+                    ? chunkMatches(channel, finalPath, p, p.chunkCount() - 1)
+                    : wholeFileMatches(pool, channel, finalPath, p);
+            if (ok) {
+                Log.d(TAG, "⏭️ 遠端已完整: " + finalPath);
+                dao.markCompleted(p.trainingID, System.currentTimeMillis());
+                if (listener != null) listener.onProgress(100);
+                return true;
+            }
+        }
+
+        // 2. 對齊遠端 .part 和 Room 裡的 offset
+        long remote = SftpPool.remoteSize(channel, partPath);
+        long offset = p.confirmedOffset;
+        if (remote > size) {
+            channel.rm(partPath);                                  // 不是這一份的殘骸
+            remote = -1;
+        }
+        if (remote < 0) {
+            offset = 0;
+        } else if (remote < offset) {
+            offset = remote - remote % chunk;                      // 遠端比紀錄少：退回最後一個完整段
+        }
+
+        // 3. 接著傳之前，驗最後一段
+        while (offset > 0) {
+            int index = (int) ((offset - 1) / chunk);
+            if (chunkMatches(channel, partPath, p, index)) break;
+            Log.w(TAG, "⚠️ 第 " + index + " 段 SHA-256 不符，退回重傳");
+            offset = (long) index * chunk;
+        }
+        if (offset != p.confirmedOffset) dao.updateOffset(p.trainingID, offset, System.currentTimeMillis());
+        if (offset > 0) Log.d(TAG, "↪️ 續傳 " + partPath + " 從 " + offset + "/" + size);
+
+        // 4. 一段一段寫；每段 close 後確認遠端大小才推進 offset
+        byte[] buf = new byte[64 * 1024];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            while (offset < size) {
+                int len = (int) Math.min(chunk, size - offset);
+                // JSch RESUME 從遠端目前大小開始寫，再加上這個位移 → 實際從 offset 寫
+                long shift = offset - Math.max(0, remote);
+                raf.seek(offset);
+                try (OutputStream out = channel.put(partPath, null, ChannelSftp.RESUME, shift)) {
+                    int left = len;
+                    while (left > 0) {
+                        int n = raf.read(buf, 0, Math.min(buf.length, left));
+                        if (n < 0) throw new IOException("本地檔案變短了: " + p.fileName);
+                        out.write(buf, 0, n);
+                        left -= n;
+                    }
+                }
+                remote = SftpPool.remoteSize(channel, partPath);
+                if (remote < offset + len) {
+                    throw new IOException("第 " + (offset / chunk) + " 段寫入不完整: " + remote + " < " + (offset + len));
+                }
+                offset += len;
+                dao.updateOffset(p.trainingID, offset, System.currentTimeMillis());
+                if (listener != null) listener.onProgress((int) (offset * 100 / size));
+            }
+        }
+
+        // 5. 驗證，通過才改名
+        if (!verified(pool, channel, partPath, p)) {
+            channel.rm(partPath);
+            dao.updateOffset(p.trainingID, 0, System.currentTimeMillis());
+            throw new IOException("整檔 SHA-256 不符，下次從頭傳: " + p.fileName);
+        }
+        try {
+            channel.rm(finalPath);                                 // SFTP rename 不能蓋掉已存在的檔
+        } catch (SftpException ignored) {
+        }
+        channel.rename(partPath, finalPath);
+        dao.markCompleted(p.trainingID, System.currentTimeMillis());
+        Log.d(TAG, "✅ 上傳並驗證完成: " + finalPath);
+        return true;
+    }
+
+    /**
+     * 剛傳完的 .part 是否正確（每一段都已確認寫入）
+     * 伺服器跑得了 sha256sum 就以整檔結果為準；沒有 exec / 路徑對不上（chroot）時只讀回最後一段比對
+     */
+    private static boolean verified(SftpPool pool, ChannelSftp channel, String remotePath, VideoUploadProgress p)
+            throws Exception {
+        String remote = remoteSha256(pool, remotePath);
+        if (remote != null) return p.sha256.equalsIgnoreCase(remote);
+        return chunkMatches(channel, remotePath, p, p.chunkCount() - 1);
+    }
+
+    /** 不是這裡傳的遠端檔：sha256sum，不行的話逐段讀回來跟存的每段 SHA-256 比（第一段不符就停） */
+    private static boolean wholeFileMatches(SftpPool pool, ChannelSftp channel, String remotePath, VideoUploadProgress p)
+            throws Exception {
+        String remote = remoteSha256(pool, remotePath);
+        if (remote != null) return p.sha256.equalsIgnoreCase(remote);
+        Log.d(TAG, "🔁 讀回遠端檔案逐段比對: " + remotePath);
+        try (InputStream in = channel.get(remotePath)) {
+            for (int i = 0; i < p.chunkCount(); i++) {
+                int len = (int) Math.min(p.chunkSize, p.fileSize - (long) i * p.chunkSize);
+                if (!p.chunkHash(i).equals(hex(digest(in, len)))) return false;
+            }
+        }
+        return true;
+    }
+
+    /** 伺服器上 sha256sum 的結果；不給 exec / 找不到檔案回 null */
+    private static String remoteSha256(SftpPool pool, String remotePath) {
+        String out = pool.exec("sha256sum -- '" + remotePath.replace("'", "'\\''") + "'");
+        return out != null && out.length() >= 64 ? out.substring(0, 64) : null;
+    }
+
+    /** 遠端第 index 段跟存的 SHA-256 是否相同 */
+    private static boolean chunkMatches(ChannelSftp channel, String remotePath, VideoUploadProgress p, int index)
+            throws Exception {
+        long start = (long) index * p.chunkSize;
+        int len = (int) Math.min(p.chunkSize, p.fileSize - start);
+        try (InputStream in = channel.get(remotePath, null, start)) {
+            return p.chunkHash(index).equals(hex(digest(in, len)));
+        }
+    }
+
+    static String sha256(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return hex(digest(in, Long.MAX_VALUE));
+        }
+    }
+
+    /** 一次讀檔算出 {整檔 SHA-256, 每段 SHA-256 接起來} */
+    static String[] hashes(File file, int chunkSize) throws IOException {
+        MessageDigest whole = newDigest();
+        StringBuilder chunks = new StringBuilder();
+        byte[] buf = new byte[64 * 1024];
+        try (FileInputStream in = new FileInputStream(file)) {
+            while (true) {
+                MessageDigest md = newDigest();
+                long left = chunkSize;
+                while (left > 0) {
+                    int n = in.read(buf, 0, (int) Math.min(buf.length, left));
+                    if (n < 0) break;
+                    whole.update(buf, 0, n);
+                    md.update(buf, 0, n);
+                    left -= n;
+                }
+                if (left == chunkSize) break;                      // 剛好讀完，沒有下一段
+                chunks.append(hex(md.digest()));
+                if (left > 0) break;                               // 最後一段不滿
+            }
+        }
+        return new String[]{hex(whole.digest()), chunks.toString()};
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digest(InputStream in, long limit) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[64 * 1024];
+        long left = limit;
+        while (left > 0) {
+            int n = in.read(buf, 0, (int) Math.min(buf.length, left));
+            if (n < 0) break;
+            md.update(buf, 0, n);
+            left -= n;
+        }
+        return md.digest();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.rehabilitationapp.data;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * DayRange
+ * - 本地時區「某一天」的半開區間 [start, end)（毫秒），給 trainingHistory 的 createAt 區間查詢用
+ * - 取代 SQL 裡的 date(createAt/1000,'unixepoch','localtime')：函式包住欄位用不到索引，每列都要算一次
+ * - end 用 Calendar 加一天算，夏令時間切換那天（23 / 25 小時）也正確
+ */
+public final class DayRange {
+
+    public final long startMs;   // 含
+    public final long endMs;     // 不含
+
+    private DayRange(long startMs, long endMs) {
+        this.startMs = startMs;
+        this.endMs = endMs;
+    }
+
+    /** 今天（裝置時區） */
+    public static DayRange today() {
+        return of(System.currentTimeMillis());
+    }
+
+    /** timeMs 所在的那一天（裝置時區） */
+    public static DayRange of(long timeMs) {
+        return of(timeMs, TimeZone.getDefault());
+    }
+
+    public static DayRange of(long timeMs, TimeZone tz) {
+        Calendar cal = Calendar.getInstance(tz);
+        cal.setTimeInMillis(timeMs);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        long start = cal.getTimeInMillis();
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        return new DayRange(start, cal.getTimeInMillis());
+    }
+
+    public boolean contains(long timeMs) {
+        return timeMs >= startMs && timeMs < endMs;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + startMs + ", " + endMs + ")";
+    }
+}
@@ -4,14 +4,21 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import com.example.rehabilitationapp.data.model.SyncOp;
 import com.example.rehabilitationapp.data.model.TrainingHistory;
+import com.example.rehabilitationapp.data.dao.TrainingHistoryDao;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FirebaseUploader {
 
@@ -21,87 +28,97 @@ public class FirebaseUploader {
         default void onProgress(int current, int total) {
             // 預設空實作，不強制要覆寫，不然facecircle用Lamda呼叫會錯，Lamda寫法只能配合只有一個覆寫方法的介面。
         }
-        void onComplete(int successCount, int failCount);
+        void onComplete(int successCount, int failCount, int pendingCount);
     }
 
+    /**
+     * 未同步的紀錄全部交給 outbox（SyncDispatcher），由 SyncDispatchWorker 每 500 筆合成一個 WriteBatch 上傳
+     * - 以 keyset 分頁讀完整個 backlog（不再只取前 100 筆），每頁一次排入
+     * - 排完等這些待辦真的 DONE / FAILED（最多 SyncDispatcher.SETTLE_TIMEOUT_MS）才回報：
+     *   successCount = 已上傳，failCount = 重試用完放棄，pendingCount = 還沒傳完（之後 Worker 會自動重試）
+     * - 使用者按的：還在退避的那幾筆提前到現在
+     */
     public static void uploadTodayUnsynced(Context context, UploadCallback callback) {
         new Thread(() -> {
-            AppDatabase db = AppDatabase.getInstance(context);
-            List<TrainingHistory> list = db.trainingHistoryDao().getUnsyncedWithLimit();
-
-            if (list.isEmpty()) {
-                Log.d(TAG, "沒有未同步的紀錄");
-                if (callback != null) callback.onComplete(0, 0);
-                return;
-            }
-
-            Log.d(TAG, "找到 " + list.size() + " 筆未同步紀錄");
-
-            SharedPreferences prefs = context.getSharedPreferences("user_prefs", Context.MODE_PRIVATE);
-            String userId = prefs.getString("current_user_id", null);
-
-            if (userId == null) {
-                Log.e(TAG, "找不到 userId");
-                if (callback != null) callback.onComplete(0, list.size());
-                return;
+            AtomicInteger queued = new AtomicInteger();
+            List<String> keys = new ArrayList<>();
+            try {
+                TrainingHistoryDao dao = AppDatabase.getInstance(context).trainingHistoryDao();
+                long afterCreateAt = Long.MIN_VALUE;
+                String afterId = "";
+                while (true) {
+                    List<TrainingHistory> page = dao.getUnsyncedPage(afterCreateAt, afterId,
+                            OutboxPolicy.FIRESTORE_BATCH_LIMIT);
+                    if (page.isEmpty()) break;
+
+                    long now = System.currentTimeMillis();
+                    List<SyncOp> ops = new ArrayList<>(page.size());
+                    for (TrainingHistory item : page) {
+                        ops.add(SyncOp.create(SyncOp.DEST_FIRESTORE, item.trainingID, null, null, now));
+                        keys.add(SyncOp.key(SyncOp.DEST_FIRESTORE, item.trainingID));
+                    }
+                    int n = SyncDispatcher.enqueueNow(context, ops, true);
+                    if (n > 0) queued.addAndGet(n);
+
+                    TrainingHistory last = page.get(page.size() - 1);
+                    afterCreateAt = last.createAt;
+                    afterId = last.trainingID;
+                    if (page.size() < OutboxPolicy.FIRESTORE_BATCH_LIMIT) break;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "排入未同步紀錄失敗", e);
             }
 
-            FirebaseFirestore firestore = FirebaseFirestore.getInstance();
-            final int[] successCount = {0};
-            final int[] failCount = {0};
-            final int[] doneCount = {0};
-            final int total = list.size();
-
-            // ★ 先回報總數
-            if (callback != null) callback.onProgress(0, total);
-
-            for (TrainingHistory item : list) {
-                Map<String, Object> data = new HashMap<>();
-                data.put("trainingLabel", item.trainingLabel);
-                data.put("createAt", item.createAt);
-                data.put("finishAt", item.finishAt);
-                data.put("targetTimes", item.targetTimes);
-                data.put("achievedTimes", item.achievedTimes);
-                data.put("durationTime", item.durationTime);
-                data.put("curveJson", item.curveJson);
-
-                firestore.collection("Users")
-                        .document(userId)
-                        .collection("trainingHistory")
-                        .document(item.trainingID)
-                        .set(data)
-                        .addOnSuccessListener(aVoid -> {
-                            new Thread(() -> {
-                                AppDatabase.getInstance(context.getApplicationContext())
-                                        .trainingHistoryDao().markSynced(item.trainingID);
-                            }).start();
-
-                            successCount[0]++;
-                            doneCount[0]++;
-                            Log.d(TAG, "上傳成功: " + item.trainingID);
-                            AppLogger.logFirebaseUpload(item.trainingID, true, null);
-
-                            if (callback != null) callback.onProgress(doneCount[0], total);
+            Log.d(TAG, "未同步 " + keys.size() + " 筆，排入 outbox " + queued.get() + " 筆，等待上傳結果");
+            int[] result = SyncDispatcher.awaitSettled(context, keys, SyncDispatcher.SETTLE_TIMEOUT_MS,
+                    callback == null ? null : callback::onProgress);
+            if (callback != null) callback.onComplete(result[0], result[1], result[2]);
+        }).start();
+    }
 
-                            if (doneCount[0] == total) {
-                                if (callback != null) callback.onComplete(successCount[0], failCount[0]);
-                            }
-                        })
-                        .addOnFailureListener(e -> {
-                            failCount[0]++;
-                            doneCount[0]++;
-                            Log.e(TAG, "上傳失敗: " + item.trainingID, e);
-                            AppLogger.logFirebaseUpload(item.trainingID, false, e.getMessage()+"，後續交給排成");
-                            scheduleFirebaseUpload(context, item.trainingID);
+    /** 歷史紀錄在 Firestore 的欄位 */
+    static Map<String, Object> toFirestore(TrainingHistory item) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("trainingLabel", item.trainingLabel);
+        data.put("createAt", item.createAt);
+        data.put("finishAt", item.finishAt);
+        data.put("targetTimes", item.targetTimes);
+        data.put("achievedTimes", item.achievedTimes);
+        data.put("durationTime", item.durationTime);
+        data.put("curveJson", item.curveJson);
+        return data;
+    }
 
-                            if (callback != null) callback.onProgress(doneCount[0], total);
+    /** 目前登入的使用者；沒登入回 null（Firestore 的路徑是 Users/{userId}/trainingHistory） */
+    static String currentUserId(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences("user_prefs", Context.MODE_PRIVATE);
+        return prefs.getString("current_user_id", null);
+    }
 
-                            if (doneCount[0] == total) {
-                                if (callback != null) callback.onComplete(successCount[0], failCount[0]);
-                            }
-                        });
-            }
-        }).start();
+    /**
+     * 一批歷史紀錄用一個 WriteBatch 寫入（最多 FIRESTORE_BATCH_LIMIT 筆，不在主執行緒呼叫）
+     * - 整批原子成功或失敗：一次 round trip，不會半批已寫半批沒寫
+     * - 文件 id = trainingID，重送是覆蓋同一份，重試是冪等的
+     * @return true = 成功；false = 沒有 userId（SyncDispatchWorker 沒登入時不會搶 Firestore 的待辦，正常不會走到）
+     */
+    public static boolean uploadBatchBlocking(Context context, List<TrainingHistory> items) throws Exception {
+        if (items.size() > OutboxPolicy.FIRESTORE_BATCH_LIMIT) {
+            throw new IllegalArgumentException("WriteBatch 超過上限: " + items.size());
+        }
+        String userId = currentUserId(context);
+        if (userId == null) {
+            Log.e(TAG, "找不到 userId");
+            return false;
+        }
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+        CollectionReference history = firestore.collection("Users").document(userId).collection("trainingHistory");
+        WriteBatch batch = firestore.batch();
+        for (TrainingHistory item : items) {
+            batch.set(history.document(item.trainingID), toFirestore(item));
+        }
+        Tasks.await(batch.commit(), 60, TimeUnit.SECONDS);
+        Log.d(TAG, "批次上傳成功: " + items.size() + " 筆");
+        return true;
     }
 
     //結果頁面上傳按鈕呼叫
@@ -188,26 +205,9 @@ public class FirebaseUploader {
 //        }).start();
 //    }
 
-    // ★★★ 排程 WorkManager 背景上傳 Firebase ★★★
+    // ★★★ 排程背景上傳 Firebase：改交給 outbox（SyncDispatcher） ★★★
     public static void scheduleFirebaseUpload(Context context, String trainingID) {
-        androidx.work.Constraints constraints = new androidx.work.Constraints.Builder()
-                .setRequiredNetworkType(androidx.work.NetworkType.CONNECTED)
-                .build();
-
-        androidx.work.Data inputData = new androidx.work.Data.Builder()
-                .putString("trainingID", trainingID)
-                .build();
-
-        androidx.work.OneTimeWorkRequest request = new androidx.work.OneTimeWorkRequest.Builder(FirebaseUploadWorker.class)
-                .setConstraints(constraints)
-                .setInputData(inputData)
-                .setBackoffCriteria(androidx.work.BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
-                .addTag("firebase_upload_" + trainingID)
-                .build();
-
-        androidx.work.WorkManager.getInstance(context)
-                .enqueueUniqueWork("firebase_" + trainingID, androidx.work.ExistingWorkPolicy.KEEP, request);
-
-        Log.d(TAG, "📅 已排程 Firebase WorkManager: " + trainingID);
+        SyncDispatcher.enqueue(context, SyncOp.DEST_FIRESTORE, trainingID, null);
+        Log.d(TAG, "📅 已排入 outbox: " + trainingID);
     }
 }
@@ -0,0 +1,50 @@
+package com.example.rehabilitationapp.data;
+
+import com.example.rehabilitationapp.data.model.SyncOp;
+
+/**
+ * OutboxPolicy
+ * - outbox 的重試 / 併發規則（純 Java，JVM 上可單元測試）
+ * - 退避：30s × 2^(attempts-1)，上限 6 小時，再加最多 20% 的抖動（以 opKey 決定，同一筆每次算出來一樣）
+ * - 每個目的地的同時上傳數：Firestore 1（一條 lane 一次送一整批）、CSV 2、影片 1（SFTP 頻寬有限，一次一部）
+ * - Firestore 一次搶最多 500 筆，合成一個 WriteBatch（Firestore 單批上限）
+ */
+public final class OutboxPolicy {
+
+    public static final long BASE_BACKOFF_MS = 30_000L;
+    public static final long MAX_BACKOFF_MS = 6 * 60 * 60 * 1000L;
+    public static final int MAX_ATTEMPTS = 12;            // 第 12 次失敗放棄（FAILED）：前 11 次退避合計約 14.5 小時（抖動最大約 17 小時）
+    public static final long LEASE_MS = 15 * 60 * 1000L;  // RUNNING 租約：比最長的影片上傳還長
+    public static final int FIRESTORE_BATCH_LIMIT = 500;  // Firestore WriteBatch 單批上限
+
+    private OutboxPolicy() {}
+
+    public static int concurrency(String destination) {
+        switch (destination) {
+            case SyncOp.DEST_FIRESTORE: return 1;
+            case SyncOp.DEST_CSV:       return 2;
+            case SyncOp.DEST_VIDEO:     return 1;
+            default:                    return 1;
+        }
+    }
+
+    /** 一條 lane 一次搶幾筆；> 1 的目的地走批次上傳 */
+    public static int batchSize(String destination) {
+        return SyncOp.DEST_FIRESTORE.equals(destination) ? FIRESTORE_BATCH_LIMIT : 1;
+    }
+
+    /** 第 attempts 次失敗後，距離下次嘗試的延遲（ms） */
+    public static long backoffMs(int attempts, String opKey) {
+        int n = Math.max(1, attempts);
+        long delay = n >= 20 ? MAX_BACKOFF_MS : Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (n - 1));
+        // 抖動：避免一批同時失敗的待辦又同時重試
+        int h = (opKey == null ? 0 : opKey.hashCode()) * 31 + n;
+        double jitter = ((h & 0x7fffffff) % 1000) / 1000.0 * 0.2;
+        return delay + (long) (delay * jitter);
+    }
+
+    /** 失敗 attempts 次之後還要不要再試 */
+    public static boolean shouldRetry(int attempts) {
+        return attempts < MAX_ATTEMPTS;
+    }
+}
@@ -0,0 +1,486 @@
+package com.example.rehabilitationapp.data;
+
+import android.util.Log;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 🔐 共用的 SFTP 連線池
+ * - 一條已認證的 SSH Session，上面開多個 ChannelSftp（SSH 多工），同時借出的通道數有上限
+ * - 通道用完放回池子，下一個上傳 / 下一個 Worker 直接拿來用；閒置 IDLE_CLOSE_MS 後才斷線
+ * - 已確認存在的遠端資料夾記起來，不用每次都 stat / mkdir 一路走下去
+ * - 上傳用 RESUME：先看遠端大小，再把遠端最後 TAIL_CHECK_BYTES 讀回來跟本地同一段比對；
+ *   一樣大且對得上就跳過、比較小且對得上就從斷點續傳，其餘（比較大、內容不是同一份）整個覆蓋
+ * - 連線（session.connect 30 s、channel.connect 120 s）不在 this 的鎖裡做，只在鎖裡發布結果；
+ *   慢的連線不會卡住 release() / exec() / 其他已有通道的人
+ */
+public class SftpPool {
+
+    private static final String TAG = "SftpPool";
+
+    private static final int CONNECT_TIMEOUT = 30000;
+    private static final int CHANNEL_TIMEOUT = 120000;
+    private static final long IDLE_CLOSE_MS = 60_000L;
+    static final int TAIL_CHECK_BYTES = 64 * 1024;      // 跳過 / 續傳前比對遠端結尾這麼多 bytes
+
+    /** 每個檔案的進度；平行上傳時會從不同執行緒呼叫 */
+    public interface Listener {
+        default void onStart(Job job) {}
+
+        /** 整個檔案的百分比，續傳時包含遠端已有的部分 */
+        void onProgress(Job job, int percent);
+
+        default void onDone(Result result) {}
+    }
+
+    /** 一個要上傳的檔案；remoteDir 是絕對路徑 */
+    public static class Job {
+        public final File file;
+        public final String remoteDir;
+        public final String remoteName;
+
+        public Job(File file, String remoteDir) {
+            this(file, remoteDir, file.getName());
+        }
+
+        public Job(File file, String remoteDir, String remoteName) {
+            this.file = file;
+            this.remoteDir = remoteDir;
+            this.remoteName = remoteName;
+        }
+
+        String remotePath() {
+            return remoteDir + "/" + remoteName;
+        }
+    }
+
+    /** 一個檔案的結果：error == null 表示成功；skipped = 遠端已經是完整的 */
+    public static class Result {
+        public final Job job;
+        public final String error;
+        public final boolean skipped;
+        public final long sentBytes;
+
+        Result(Job job, String error, boolean skipped, long sentBytes) {
+            this.job = job;
+            this.error = error;
+            this.skipped = skipped;
+            this.sentBytes = sentBytes;
+        }
+
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final int maxChannels;
+
+    private final Semaphore permits;
+    private final Deque<ChannelSftp> idle = new ArrayDeque<>();
+    private final Set<String> knownDirs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SftpPoolReaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 同時只建一條 Session；等這個鎖的人不佔 this 的鎖
+    private final Object connectLock = new Object();
+
+    private Session session;
+    private int borrowed = 0;
+    private int sessionsOpened = 0;
+    private ScheduledFuture<?> pendingClose;
+
+    public SftpPool(String host, int port, String user, String password, int maxChannels) {
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.maxChannels = Math.max(1, maxChannels);
+        this.permits = new Semaphore(this.maxChannels, true);
+    }
+
+    public int maxChannels() {
+        return maxChannels;
+    }
+
+    /** 總共認證過幾次 Session（測試 / log 用：重用正常的話應該很少增加） */
+    public synchronized int sessionsOpened() {
+        return sessionsOpened;
+    }
+
+    // ============================================
+    // 【上傳】
+    // ============================================
+
+    /** 上傳一個檔案（呼叫端的執行緒，不在主執行緒呼叫） */
+    public Result upload(Job job, Listener listener) {
+        if (listener != null) listener.onStart(job);
+        Result result = doUpload(job, listener);
+        if (listener != null) listener.onDone(result);
+        return result;
+    }
+
+    private Result doUpload(Job job, Listener listener) {
+        if (job.file == null || !job.file.exists()) {
+            return new Result(job, "檔案不存在", false, 0);
+        }
+        ChannelSftp channel = null;
+        boolean broken = false;
+        try {
+            channel = borrow();
+            ensureDirs(channel, job.remoteDir);
+            return put(channel, job, listener);
+        } catch (Exception e) {
+            broken = !(e instanceof SftpException);   // SSH 層斷了，通道不放回去
+            if (e instanceof SftpException && ((SftpException) e).id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                knownDirs.clear();                    // 資料夾被別人刪了：下次重新確認
+            }
+            Log.e(TAG, "❌ 上傳失敗 " + job.remotePath() + ": " + e.getMessage());
+            return new Result(job, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage(), false, 0);
+        } finally {
+            if (channel != null) release(channel, broken);
+        }
+    }
+
+    /**
+     * 多個檔案平行上傳，同時最多 min(parallel, maxChannels) 個通道
+     * @return 跟 jobs 同順序的結果
+     */
+    public List<Result> uploadAll(List<Job> jobs, int parallel, Listener listener) {
+        List<Result> results = new ArrayList<>(jobs.size());
+        if (jobs.isEmpty()) return results;
+        int threads = Math.max(1, Math.min(Math.min(parallel, maxChannels), jobs.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, "SftpUpload"));
+        try {
+            List<Future<Result>> futures = new ArrayList<>(jobs.size());
+            for (Job job : jobs) futures.add(pool.submit(() -> upload(job, listener)));
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (Exception e) {
+                    results.add(new Result(jobs.get(i), e.getMessage(), false, 0));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /** 借一個通道做自訂的事（例：ChunkedVideoUploader 分段寫），做完自動還回池子 */
+    public interface ChannelCall<T> {
+        T call(ChannelSftp channel) throws Exception;
+    }
+
+    public <T> T withChannel(ChannelCall<T> call) throws Exception {
+        ChannelSftp channel = borrow();
+        boolean broken = false;
+        try {
+            return call.call(channel);
+        } catch (JSchException e) {
+            broken = true;
+            throw e;
+        } finally {
+            release(channel, broken);
+        }
+    }
+
+    /**
+     * 在同一條 Session 上執行遠端指令（例：sha256sum），不用再認證一次；伺服器沒開 exec 就回 null
+     * @return exit status 0 時的 stdout；伺服器不給 exec 或指令失敗回 null
+     */
+    public String exec(String command) {
+        // 不佔 permits：呼叫端常常手上已經借著一個通道（maxChannels = 1 時會自己卡死）
+        ChannelExec channel = null;
+        reserve();
+        try {
+            channel = (ChannelExec) session().openChannel("exec");
+            channel.setCommand(command);
+            channel.setInputStream(null);
+            InputStream in = channel.getInputStream();
+            channel.connect(CONNECT_TIMEOUT);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int n;
+            while ((n = in.read(buf)) >= 0) out.write(buf, 0, n);
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            while (!channel.isClosed() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            if (channel.getExitStatus() != 0) return null;
+            return out.toString("UTF-8");
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ 遠端指令失敗: " + e.getMessage());
+            return null;
+        } finally {
+            if (channel != null) channel.disconnect();
+            unreserve();
+        }
+    }
+
+    /** 能不能連上（借一個通道再還回去） */
+    public boolean testConnection() {
+        try {
+            ChannelSftp channel = borrow();
+            release(channel, false);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 連線失敗: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private Result put(ChannelSftp channel, Job job, Listener listener) throws SftpException, IOException {
+        long localSize = job.file.length();
+        long remoteSize = remoteSize(channel, job.remotePath());
+        // 大小對得上不代表是同一份（同名的另一次錄影）：結尾那段也要一樣才算
+        boolean samePrefix = remoteSize > 0 && remoteSize <= localSize
+                && tailMatches(channel, job.remotePath(), job.file, remoteSize);
+        if (remoteSize == localSize && samePrefix) {
+            Log.d(TAG, "⏭️ 遠端已完整，跳過: " + job.remotePath());
+            if (listener != null) listener.onProgress(job, 100);
+            return new Result(job, null, true, 0);
+        }
+        if (remoteSize > 0 && !samePrefix) {
+            Log.w(TAG, "⚠️ 遠端不是同一份，整個覆蓋: " + job.remotePath());
+        }
+
+        int mode = samePrefix && remoteSize < localSize ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE;
+        long offset = mode == ChannelSftp.RESUME ? remoteSize : 0;
+        if (mode == ChannelSftp.RESUME) {
+            Log.d(TAG, "↪️ 續傳 " + job.remotePath() + " 從 " + offset + "/" + localSize);
+        }
+
+        ProgressMonitor monitor = new ProgressMonitor(job, localSize, listener);
+        channel.put(job.file.getAbsolutePath(), job.remotePath(), monitor, mode);
+        long sent = Math.max(0, monitor.transferred - offset);
+        Log.d(TAG, "✅ 上傳成功: " + job.remotePath() + "（送出 " + sent + " bytes）");
+        return new Result(job, null, false, sent);
+    }
+
+    /** 遠端 [end - TAIL_CHECK_BYTES, end) 跟本地同一段是否相同 */
+    static boolean tailMatches(ChannelSftp channel, String path, File file, long end)
+            throws SftpException, IOException {
+        long start = Math.max(0, end - TAIL_CHECK_BYTES);
+        int len = (int) (end - start);
+        byte[] local = new byte[len];
+        byte[] remote = new byte[len];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(start);
+            raf.readFully(local);
+        }
+        try (InputStream in = channel.get(path, null, start)) {
+            int off = 0;
+            while (off < len) {
+                int n = in.read(remote, off, len - off);
+                if (n < 0) return false;
+                off += n;
+            }
+        }
+        return Arrays.equals(local, remote);
+    }
+
+    /** 遠端檔案大小；不存在回 -1 */
+    static long remoteSize(ChannelSftp channel, String path) throws SftpException {
+        try {
+            SftpATTRS attrs = channel.stat(path);
+            return attrs.getSize();
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) return -1;
+            throw e;
+        }
+    }
+
+    /** 逐層建立 remoteDir；已確認過的前綴直接跳過 */
+    void ensureDirs(ChannelSftp channel, String remoteDir) throws SftpException {
+        if (knownDirs.contains(remoteDir)) return;
+        StringBuilder path = new StringBuilder();
+        for (String part : remoteDir.split("/")) {
+            if (part.isEmpty()) continue;
+            path.append('/').append(part);
+            String dir = path.toString();
+            if (knownDirs.contains(dir)) continue;
+            try {
+                channel.stat(dir);
+            } catch (SftpException e) {
+                try {
+                    channel.mkdir(dir);
+                    Log.d(TAG, "📁 已建立資料夾: " + dir);
+                } catch (SftpException e2) {
+                    channel.stat(dir);   // 另一條通道剛好先建好；真的不存在才丟出去
+                }
+            }
+            knownDirs.add(dir);
+        }
+    }
+
+    // ============================================
+    // 【借還通道】
+    // ============================================
+
+    private ChannelSftp borrow() throws JSchException, InterruptedException {
+        permits.acquire();
+        synchronized (this) {
+            if (pendingClose != null) {
+                pendingClose.cancel(false);
+                pendingClose = null;
+            }
+            borrowed++;
+            while (!idle.isEmpty()) {
+                ChannelSftp channel = idle.pop();
+                if (channel.isConnected() && !channel.isClosed()) return channel;
+            }
+        }
+        // 池子裡沒有：在鎖外開新通道（borrowed 已經算進去，閒置計時器不會趁這時關掉 Session）
+        try {
+            ChannelSftp channel = (ChannelSftp) session().openChannel("sftp");
+            channel.connect(CHANNEL_TIMEOUT);
+            return channel;
+        } catch (JSchException | RuntimeException e) {
+            unreserve();
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(ChannelSftp channel, boolean broken) {
+        synchronized (this) {
+            if (broken || !channel.isConnected()) {
+                channel.disconnect();
+            } else {
+                idle.push(channel);
+            }
+        }
+        unreserve();
+        permits.release();
+    }
+
+    // 借出計數：> 0 時閒置計時器不會關 Session
+    private synchronized void reserve() {
+        if (pendingClose != null) {
+            pendingClose.cancel(false);
+            pendingClose = null;
+        }
+        borrowed++;
+    }
+
+    private synchronized void unreserve() {
+        borrowed--;
+        if (borrowed == 0) {
+            pendingClose = reaper.schedule(this::closeIfIdle, IDLE_CLOSE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 呼叫端不可持有 this 的鎖：connect 在鎖外做，建好才在鎖裡換上去
+    private Session session() throws JSchException {
+        synchronized (this) {
+            if (session != null && session.isConnected()) return session;
+        }
+        synchronized (connectLock) {
+            synchronized (this) {
+                if (session != null && session.isConnected()) return session;   // 排隊時別人已經連好
+            }
+            JSch jsch = new JSch();
+            Session s = jsch.getSession(user, host, port);
+            s.setPassword(password);
+            Properties config = new Properties();
+            config.put("StrictHostKeyChecking", "no");
+            s.setConfig(config);
+            s.setServerAliveInterval(5000);
+            s.connect(CONNECT_TIMEOUT);
+            int n;
+            synchronized (this) {
+                closeChannels();                                                   // 舊 Session 上的通道
+                if (session != null) session.disconnect();
+                session = s;
+                n = ++sessionsOpened;
+                knownDirs.clear();
+            }
+            Log.d(TAG, "✅ SSH 連線成功（第 " + n + " 次）");
+            return s;
+        }
+    }
+
+    private synchronized void closeIfIdle() {
+        if (borrowed == 0) close();
+    }
+
+    /** 斷開所有通道和 Session（借出中的通道由借用者自己收） */
+    public synchronized void close() {
+        closeChannels();
+        if (session != null) {
+            session.disconnect();
+            session = null;
+            Log.d(TAG, "🔌 連線已關閉");
+        }
+    }
+
+    private void closeChannels() {
+        for (ChannelSftp channel : idle) channel.disconnect();
+        idle.clear();
+    }
+
+    private static class ProgressMonitor implements SftpProgressMonitor {
+        private final Job job;
+        private final long size;
+        private final Listener listener;
+        long transferred = 0;
+        private int lastPercent = -1;
+
+        ProgressMonitor(Job job, long size, Listener listener) {
+            this.job = job;
+            this.size = size;
+            this.listener = listener;
+        }
+
+        @Override
+        public void init(int op, String src, String dest, long max) {}
+
+        // RESUME 時 JSch 會先把遠端已有的大小算進來，所以百分比是整個檔案的
+        @Override
+        public boolean count(long count) {
+            transferred += count;
+            int percent = size <= 0 ? 100 : (int) Math.min(100, transferred * 100 / size);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                if (listener != null) listener.onProgress(job, percent);
+            }
+            return true;
+        }
+
+        @Override
+        public void end() {}
+    }
+}
@@ -4,21 +4,19 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
-import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.Session;
-import com.jcraft.jsch.SftpException;
-import com.jcraft.jsch.SftpProgressMonitor;
+import com.example.rehabilitationapp.data.model.SyncOp;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 🔐 SFTP 影片上傳工具
  * 自動依 userId 建立子資料夾
+ * 連線走 SftpPool：Session 重用、資料夾快取、RESUME 續傳
  */
 public class SftpUploader {
 
@@ -34,9 +32,9 @@ public class SftpUploader {
     private static final String SFTP_PASSWORD = "123456";  // ← 改這裡
     private static final String REMOTE_BASE_DIR = "/Rh_Videos";  // 基礎資料夾
 
-    private static final int CONNECT_TIMEOUT = 30000;
-    private static final int SESSION_TIMEOUT = 120000;
-    private static final int MAX_BATCH_SIZE = 5;
+
+    private static final int MAX_CHANNELS = 3;       // 同一條 Session 上最多同時開幾個 SFTP 通道
+    private static final int PARALLEL_UPLOADS = 3;   // 批次上傳同時傳幾部
 
     // ============================================
     // 【回呼介面】
@@ -56,6 +54,30 @@ public class SftpUploader {
         void onAllComplete(int successCount, int failCount, List<String> failedFiles);
     }
 
+    // ============================================
+    // 【連線池】上傳、備份、Worker 共用同一條已認證的 Session
+    // ============================================
+
+    private static volatile SftpPool pool;
+
+    static SftpPool pool() {
+        SftpPool p = pool;
+        if (p == null) {
+            synchronized (SftpUploader.class) {
+                if (pool == null) {
+                    pool = new SftpPool(SFTP_HOST, SFTP_PORT, SFTP_USER, SFTP_PASSWORD, MAX_CHANNELS);
+                }
+                p = pool;
+            }
+        }
+        return p;
+    }
+
+    /** /Rh_Videos/userId */
+    static String userDir(Context context) {
+        return REMOTE_BASE_DIR + "/" + getUserId(context);
+    }
+
     // ============================================
     // 【單檔上傳】自動依 userId 分資料夾
     // ============================================
@@ -64,6 +86,28 @@ public class SftpUploader {
         new Thread(() -> uploadVideo(context, videoFile, callback)).start();
     }
 
+    /**
+     * 有 trainingID 的單檔上傳走分段續傳（ChunkedVideoUploader）：進度記在 Room，斷線重按從上次那段接著傳
+     */
+    public static void uploadVideoAsync(Context context, String trainingID, File videoFile, UploadCallback callback) {
+        new Thread(() -> {
+            String remotePath = userDir(context) + "/" + videoFile.getName();
+            try {
+                if (ChunkedVideoUploader.upload(context, trainingID, videoFile,
+                        percent -> { if (callback != null) callback.onProgress(percent); })) {
+                    AppLogger.logVideoUpload(trainingID, videoFile.getName(), true, null);
+                    if (callback != null) callback.onSuccess(remotePath);
+                    return;
+                }
+                if (callback != null) callback.onFailure("上傳失敗");
+            } catch (Exception e) {
+                Log.e(TAG, "❌ 分段上傳失敗: " + e.getMessage(), e);
+                AppLogger.logVideoUpload(trainingID, videoFile.getName(), false, e.getMessage());
+                if (callback != null) callback.onFailure("上傳失敗: " + e.getMessage());
+            }
+        }).start();
+    }
+
     public static boolean uploadVideo(Context context, File videoFile, UploadCallback callback) {
         if (videoFile == null || !videoFile.exists()) {
             String error = "檔案不存在";
@@ -72,225 +116,108 @@ public class SftpUploader {
             return false;
         }
 
-        // 🔑 取得 userId
-        String userId = getUserId(context);
-
-        Session session = null;
-        ChannelSftp channelSftp = null;
+        // 🔑 /Rh_Videos/userId/
+        String userDir = userDir(context);
+        Log.d(TAG, "📤 開始上傳: " + videoFile.getName() + " → " + userDir);
 
-        try {
-            Log.d(TAG, "📤 開始上傳: " + videoFile.getName());
-            Log.d(TAG, "👤 UserId: " + userId);
-
-            JSch jsch = new JSch();
-            session = jsch.getSession(SFTP_USER, SFTP_HOST, SFTP_PORT);
-            session.setPassword(SFTP_PASSWORD);
-
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-
-            session.setServerAliveInterval(5000);
-            session.connect(CONNECT_TIMEOUT);
-            Log.d(TAG, "✅ SSH 連線成功");
-
-            channelSftp = (ChannelSftp) session.openChannel("sftp");
-            channelSftp.connect(SESSION_TIMEOUT);
-            Log.d(TAG, "✅ SFTP 通道開啟");
-
-            // 🔑 建立資料夾結構：/Rh_Videos/userId/
-            String userDir = REMOTE_BASE_DIR + "/" + userId;
-            ensureDirectoryExists(channelSftp, REMOTE_BASE_DIR);
-            ensureDirectoryExists(channelSftp, userDir);
-            channelSftp.cd(userDir);
-            Log.d(TAG, "📁 目標資料夾: " + userDir);
-
-            // 上傳
-            FileInputStream fis = new FileInputStream(videoFile);
-            final long fileSize = videoFile.length();
-
-            SftpProgressMonitor monitor = new SftpProgressMonitor() {
-                private long transferred = 0;
-                private int lastPercent = -1;
-
-                @Override
-                public void init(int op, String src, String dest, long max) {
-                    Log.d(TAG, "開始傳輸...");
-                }
-
-                @Override
-                public boolean count(long count) {
-                    transferred += count;
-                    int percent = (int) ((transferred * 100) / fileSize);
-                    if (percent != lastPercent) {
-                        lastPercent = percent;
-                        if (callback != null) callback.onProgress(percent);
-                    }
-                    return true;
-                }
-
-                @Override
-                public void end() {
-                    Log.d(TAG, "傳輸完成");
-                }
-            };
-
-            channelSftp.put(fis, videoFile.getName(), monitor, ChannelSftp.OVERWRITE);
-            fis.close();
+        SftpPool.Result result = pool().upload(new SftpPool.Job(videoFile, userDir), (job, percent) -> {
+            if (callback != null) callback.onProgress(percent);
+        });
 
+        if (result.ok()) {
             String remotePath = userDir + "/" + videoFile.getName();
             Log.d(TAG, "✅ 上傳成功: " + remotePath);
             AppLogger.logVideoUpload(null, videoFile.getName(), true, null);
             if (callback != null) callback.onSuccess(remotePath);
             return true;
-
-        } catch (Exception e) {
-            String error = "上傳失敗: " + e.getMessage();
-            Log.e(TAG, error, e);
-            AppLogger.logVideoUpload(null, videoFile.getName(), false, e.getMessage());
-            if (callback != null) callback.onFailure(error);
-            return false;
-
-        } finally {
-            if (channelSftp != null && channelSftp.isConnected()) channelSftp.disconnect();
-            if (session != null && session.isConnected()) session.disconnect();
         }
+
+        String error = "上傳失敗: " + result.error;
+        Log.e(TAG, error);
+        AppLogger.logVideoUpload(null, videoFile.getName(), false, result.error);
+        if (callback != null) callback.onFailure(error);
+        return false;
     }
 
     // ============================================
-    // 【批次上傳】自動依 userId 分資料夾
+    // 【批次上傳】自動依 userId 分資料夾，同時最多 PARALLEL_UPLOADS 部
+    // 每部都走分段續傳（ChunkedVideoUploader）：和單檔、Worker 共用進度與 SHA-256 驗證，同一部不會兩邊同時寫
     // ============================================
 
-    public static void uploadMultipleAsync(Context context, List<File> videoFiles, BatchUploadCallback callback) {
-        new Thread(() -> uploadMultiple(context, videoFiles, callback)).start();
+    /** trainingIDs 和 videoFiles 一一對應 */
+    public static void uploadMultipleAsync(Context context, List<String> trainingIDs, List<File> videoFiles,
+                                           BatchUploadCallback callback) {
+        new Thread(() -> uploadMultiple(context, trainingIDs, videoFiles, callback)).start();
     }
 
-    public static void uploadMultiple(Context context, List<File> videoFiles, BatchUploadCallback callback) {
+    public static void uploadMultiple(Context context, List<String> trainingIDs, List<File> videoFiles,
+                                      BatchUploadCallback callback) {
         if (videoFiles == null || videoFiles.isEmpty()) {
             Log.w(TAG, "沒有檔案要上傳");
             if (callback != null) callback.onAllComplete(0, 0, new ArrayList<>());
             return;
         }
-
-        // 限制最多 5 部
-        List<File> filesToUpload;
-        if (videoFiles.size() > MAX_BATCH_SIZE) {
-            Log.w(TAG, "⚠️ 超過上限，只上傳前 " + MAX_BATCH_SIZE + " 部");
-            filesToUpload = videoFiles.subList(0, MAX_BATCH_SIZE);
-        } else {
-            filesToUpload = videoFiles;
+        if (trainingIDs == null || trainingIDs.size() != videoFiles.size()) {
+            throw new IllegalArgumentException("trainingIDs 和 videoFiles 數量不一致");
         }
 
-        // 🔑 取得 userId
-        String userId = getUserId(context);
-
-        int total = filesToUpload.size();
-        int successCount = 0;
-        int failCount = 0;
-        List<String> failedFiles = new ArrayList<>();
-
-        Log.d(TAG, "📦 批次上傳開始，共 " + total + " 個檔案");
-        Log.d(TAG, "👤 UserId: " + userId);
-
-        Session session = null;
-        ChannelSftp channelSftp = null;
+        int total = videoFiles.size();
+        Log.d(TAG, "📦 批次上傳開始，共 " + total + " 個檔案，平行 " + PARALLEL_UPLOADS + " → " + userDir(context));
 
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(PARALLEL_UPLOADS, total),
+                r -> new Thread(r, "SftpUpload"));
+        List<Future<String>> futures = new ArrayList<>(total);
         try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(SFTP_USER, SFTP_HOST, SFTP_PORT);
-            session.setPassword(SFTP_PASSWORD);
-
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-
-            session.setServerAliveInterval(5000);
-            session.connect(CONNECT_TIMEOUT);
-            Log.d(TAG, "✅ SSH 連線成功");
-
-            channelSftp = (ChannelSftp) session.openChannel("sftp");
-            channelSftp.connect(SESSION_TIMEOUT);
-            Log.d(TAG, "✅ SFTP 通道開啟");
-
-            // 🔑 建立資料夾結構
-            String userDir = REMOTE_BASE_DIR + "/" + userId;
-            ensureDirectoryExists(channelSftp, REMOTE_BASE_DIR);
-            ensureDirectoryExists(channelSftp, userDir);
-            channelSftp.cd(userDir);
-            Log.d(TAG, "📁 目標資料夾: " + userDir);
-
-            // 逐一上傳
             for (int i = 0; i < total; i++) {
-                File videoFile = filesToUpload.get(i);
-                final int index = i;
-                String fileName = videoFile.getName();
-
-                Log.d(TAG, "📤 [" + (i + 1) + "/" + total + "] " + fileName);
-
-                if (callback != null) callback.onFileStart(i, total, fileName);
-
-                if (!videoFile.exists()) {
-                    Log.e(TAG, "❌ 檔案不存在: " + fileName);
-                    failCount++;
-                    failedFiles.add(fileName);
-                    if (callback != null) callback.onFileFailure(i, total, fileName, "檔案不存在");
-                    continue;
-                }
+                int index = i;
+                String trainingID = trainingIDs.get(i);
+                File videoFile = videoFiles.get(i);
+                futures.add(executor.submit(() -> uploadOne(context, index, total, trainingID, videoFile, callback)));
+            }
 
+            int successCount = 0;
+            List<String> failedFiles = new ArrayList<>();
+            for (int i = 0; i < total; i++) {
+                String error;
                 try {
-                    FileInputStream fis = new FileInputStream(videoFile);
-                    final long fileSize = videoFile.length();
-
-                    SftpProgressMonitor monitor = new SftpProgressMonitor() {
-                        private long transferred = 0;
-                        private int lastPercent = -1;
-
-                        @Override
-                        public void init(int op, String src, String dest, long max) {}
-
-                        @Override
-                        public boolean count(long count) {
-                            transferred += count;
-                            int percent = (int) ((transferred * 100) / fileSize);
-                            if (percent != lastPercent && percent % 10 == 0) {
-                                lastPercent = percent;
-                                if (callback != null) callback.onFileProgress(index, total, percent);
-                            }
-                            return true;
-                        }
-
-                        @Override
-                        public void end() {}
-                    };
-
-                    channelSftp.put(fis, fileName, monitor, ChannelSftp.OVERWRITE);
-                    fis.close();
-
-                    Log.d(TAG, "✅ [" + (i + 1) + "/" + total + "] 成功");
-                    successCount++;
-                    if (callback != null) callback.onFileSuccess(i, total, fileName);
-
+                    error = futures.get(i).get();
                 } catch (Exception e) {
-                    Log.e(TAG, "❌ [" + (i + 1) + "/" + total + "] 失敗: " + e.getMessage());
-                    failCount++;
-                    failedFiles.add(fileName);
-                    if (callback != null) callback.onFileFailure(i, total, fileName, e.getMessage());
+                    error = e.getMessage();
                 }
+                if (error == null) successCount++;
+                else failedFiles.add(videoFiles.get(i).getName());
             }
+            int failCount = failedFiles.size();
 
-        } catch (Exception e) {
-            Log.e(TAG, "❌ 連線失敗: " + e.getMessage(), e);
-            failCount = total;
-            for (File f : filesToUpload) failedFiles.add(f.getName());
-
+            Log.d(TAG, "📦 完成: 成功 " + successCount + " / 失敗 " + failCount);
+            if (callback != null) callback.onAllComplete(successCount, failCount, failedFiles);
         } finally {
-            if (channelSftp != null && channelSftp.isConnected()) channelSftp.disconnect();
-            if (session != null && session.isConnected()) session.disconnect();
-            Log.d(TAG, "🔌 連線已關閉");
+            executor.shutdown();
         }
+    }
 
-        Log.d(TAG, "📦 完成: 成功 " + successCount + " / 失敗 " + failCount);
-        if (callback != null) callback.onAllComplete(successCount, failCount, failedFiles);
+    /** @return null = 成功，否則是錯誤訊息 */
+    private static String uploadOne(Context context, int index, int total, String trainingID, File videoFile,
+                                    BatchUploadCallback callback) {
+        String name = videoFile.getName();
+        if (callback != null) callback.onFileStart(index, total, name);
+        String error;
+        try {
+            if (ChunkedVideoUploader.upload(context, trainingID, videoFile,
+                    percent -> { if (callback != null) callback.onFileProgress(index, total, percent); })) {
+                Log.d(TAG, "✅ [" + (index + 1) + "/" + total + "] 成功");
+                AppLogger.logVideoUpload(trainingID, name, true, null);
+                if (callback != null) callback.onFileSuccess(index, total, name);
+                return null;
+            }
+            error = "上傳失敗";
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+        Log.e(TAG, "❌ [" + (index + 1) + "/" + total + "] 失敗: " + error);
+        AppLogger.logVideoUpload(trainingID, name, false, error);
+        if (callback != null) callback.onFileFailure(index, total, name, error);
+        return error;
     }
 
     // ============================================
@@ -311,103 +238,49 @@ public class SftpUploader {
         return userId;
     }
 
-    /**
-     * 確保資料夾存在，不存在就建立
-     */
-    private static void ensureDirectoryExists(ChannelSftp channelSftp, String path) {
-        try {
-            channelSftp.stat(path);  // 檢查是否存在
-            Log.d(TAG, "📁 資料夾已存在: " + path);
-        } catch (SftpException e) {
-            // 不存在，建立它
-            try {
-                channelSftp.mkdir(path);
-                Log.d(TAG, "📁 已建立資料夾: " + path);
-            } catch (SftpException e2) {
-                Log.w(TAG, "⚠️ 建立資料夾失敗（可能已存在）: " + path);
-            }
-        }
-    }
-
 
     // ============================================
     // 【Worker 排程】
     // ============================================
 
     /**
-     * 排程影片上傳 Worker
-     * @param delayMinutes 延遲幾分鐘後執行（0 = 立即）
+     * 排程影片上傳：交給 outbox（SyncDispatcher），同一部影片不會同時被兩個 Worker 上傳
+     * @param delayMinutes 延遲幾分鐘後才可開始（0 = 立即）
      */
     public static void scheduleVideoUpload(Context context, String trainingID, String videoFileName, int delayMinutes) {
-        androidx.work.Constraints constraints = new androidx.work.Constraints.Builder()
-                .setRequiredNetworkType(androidx.work.NetworkType.CONNECTED)
-                .build();
-
-        androidx.work.Data inputData = new androidx.work.Data.Builder()
-                .putString("trainingID", trainingID)
-                .putString("videoFileName", videoFileName)
-                .build();
-
-        androidx.work.OneTimeWorkRequest.Builder builder = new androidx.work.OneTimeWorkRequest.Builder(VideoUploadWorker.class)
-                .setConstraints(constraints)
-                .setInputData(inputData)
-                .setBackoffCriteria(androidx.work.BackoffPolicy.EXPONENTIAL, 30, java.util.concurrent.TimeUnit.SECONDS)
-                .addTag("video_upload_" + trainingID);
-
-        if (delayMinutes > 0) {
-            builder.setInitialDelay(delayMinutes, java.util.concurrent.TimeUnit.MINUTES);
-        }
-
-        androidx.work.WorkManager.getInstance(context)
-                .enqueueUniqueWork("video_" + trainingID, androidx.work.ExistingWorkPolicy.KEEP, builder.build());
+        long now = System.currentTimeMillis();
+        SyncOp op = SyncOp.create(SyncOp.DEST_VIDEO, trainingID, videoFileName, null, now);
+        op.nextAttemptAt = now + delayMinutes * 60_000L;
+        new Thread(() -> SyncDispatcher.enqueueNow(context, java.util.Collections.singletonList(op), true),
+                "SyncEnqueue").start();
 
-        Log.d(TAG, "📅 已排程 Video Worker: " + trainingID + " (延遲 " + delayMinutes + " 分鐘)");
+        Log.d(TAG, "📅 已排入 outbox: " + trainingID + " (延遲 " + delayMinutes + " 分鐘)");
     }
 
     /**
-     * 取消影片上傳 Worker
+     * 取消影片上傳（還沒開始的才取消得掉）
      */
     public static void cancelVideoUpload(Context context, String trainingID) {
+        // 舊版排過的 WorkManager 工作一併取消
         androidx.work.WorkManager.getInstance(context)
                 .cancelUniqueWork("video_" + trainingID);
+        new Thread(() -> {
+            try {
+                AppDatabase.getInstance(context).syncOutboxDao()
+                        .deletePending(SyncOp.key(SyncOp.DEST_VIDEO, trainingID));
+            } catch (Exception e) {
+                Log.e(TAG, "❌ 取消 outbox 失敗: " + e.getMessage());
+            }
+        }, "SyncEnqueue").start();
 
-        Log.d(TAG, "🚫 已取消 Video Worker: " + trainingID);
+        Log.d(TAG, "🚫 已取消影片上傳: " + trainingID);
     }
 
     /**
      * 測試連線
      */
     public static boolean testConnection() {
-        Session session = null;
-        ChannelSftp channelSftp = null;
-
-        try {
-            Log.d(TAG, "🧪 測試連線: " + SFTP_HOST + ":" + SFTP_PORT);
-
-            JSch jsch = new JSch();
-            session = jsch.getSession(SFTP_USER, SFTP_HOST, SFTP_PORT);
-            session.setPassword(SFTP_PASSWORD);
-
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-
-            session.connect(CONNECT_TIMEOUT);
-            Log.d(TAG, "✅ SSH 連線成功");
-
-            channelSftp = (ChannelSftp) session.openChannel("sftp");
-            channelSftp.connect(SESSION_TIMEOUT);
-            Log.d(TAG, "✅ SFTP OK");
-
-            return true;
-
-        } catch (Exception e) {
-            Log.e(TAG, "❌ 連線失敗: " + e.getMessage(), e);
-            return false;
-
-        } finally {
-            if (channelSftp != null && channelSftp.isConnected()) channelSftp.disconnect();
-            if (session != null && session.isConnected()) session.disconnect();
-        }
+        Log.d(TAG, "🧪 測試連線: " + SFTP_HOST + ":" + SFTP_PORT);
+        return pool().testConnection();
     }
-}
\ No newline at end of file
+}
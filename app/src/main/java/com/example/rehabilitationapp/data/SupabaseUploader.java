@@ -5,8 +5,6 @@ import android.content.SharedPreferences;
 import android.os.Environment;
 import android.util.Log;
 
-import androidx.work.Constraints;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +14,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import com.example.rehabilitationapp.data.model.SyncOp;
 import com.example.rehabilitationapp.data.model.TrainingHistory;
 import java.util.List;
 
@@ -119,6 +118,7 @@ public class SupabaseUploader {
 
     /**
      * ★★★ 新增：上傳 CSV 並在成功後標記資料庫 ★★★
+     * 訓練結束的自動上傳已改走 outbox（SyncDispatcher.enqueueSession），這裡只留給需要立即回呼的手動上傳
      */
     public static void uploadCsvWithMark(Context context, String fileName, String trainingID, UploadCallbackWithId callback) {
         new Thread(() -> {
@@ -198,30 +198,79 @@ public class SupabaseUploader {
     }
 
 
-    // ★★★ 排程 WorkManager 背景上傳 ★★★
-    public static void scheduleCsvUpload(Context context, String trainingID, String csvFileName) {
-        Constraints constraints = new Constraints.Builder()
-                .setRequiredNetworkType(androidx.work.NetworkType.CONNECTED)
-                .build();
+    // outbox 派送共用的 client：連線池 / TLS session 重用，不用每筆重新握手
+    private static volatile OkHttpClient sharedClient;
+
+    private static OkHttpClient client() {
+        OkHttpClient c = sharedClient;
+        if (c == null) {
+            synchronized (SupabaseUploader.class) {
+                c = sharedClient;
+                if (c == null) {
+                    c = new OkHttpClient.Builder()
+                            .connectTimeout(30, TimeUnit.SECONDS)
+                            .writeTimeout(60, TimeUnit.SECONDS)
+                            .readTimeout(30, TimeUnit.SECONDS)
+                            .build();
+                    sharedClient = c;
+                }
+            }
+        }
+        return c;
+    }
 
-        androidx.work.Data inputData = new androidx.work.Data.Builder()
-                .putString("trainingID", trainingID)
-                .putString("csvFileName", csvFileName)
+    /**
+     * 同步上傳一個 CSV（不開執行緒、不標記 DB），給 SyncDispatchWorker 用
+     * - 檔案不存在丟 FileNotFoundException（重試也沒用）
+     * - 200 或「已存在」都算成功：同一個路徑重傳是冪等的
+     * @return true = 成功；false = HTTP 失敗（可重試）
+     */
+    public static boolean uploadCsvBlocking(Context context, String fileName) throws IOException {
+        SharedPreferences prefs = context.getSharedPreferences("user_prefs", Context.MODE_PRIVATE);
+        String userId = prefs.getString("current_user_id", "guest");
+
+        File dir = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        File csvFile = new File(dir, fileName);
+        if (!csvFile.exists()) throw new java.io.FileNotFoundException("檔案不存在: " + fileName);
+
+        byte[] fileBytes = java.nio.file.Files.readAllBytes(csvFile.toPath());
+        String storagePath = userId + "/" + extractTrainingType(fileName) + "/" + fileName;
+        String uploadUrl = SUPABASE_URL + "/storage/v1/object/" + BUCKET_NAME + "/" + storagePath;
+
+        Request request = new Request.Builder()
+                .url(uploadUrl)
+                .addHeader("Authorization", "Bearer " + SUPABASE_KEY)
+                .addHeader("apikey", SUPABASE_KEY)
+                .addHeader("Content-Type", "text/csv")
+                .post(RequestBody.create(fileBytes, MediaType.parse("text/csv")))
                 .build();
 
-        androidx.work.OneTimeWorkRequest request = new androidx.work.OneTimeWorkRequest.Builder(CsvUploadWorker.class)
-                .setConstraints(constraints)
-                .setInputData(inputData)
-                .setBackoffCriteria(androidx.work.BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
-                .addTag("csv_upload_" + trainingID)
-                .build();
+        try (Response response = client().newCall(request).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            if (response.isSuccessful() ||
+                    responseBody.contains("Duplicate") ||
+                    responseBody.contains("already exists")) {
+                Log.d(TAG, "✅ 上傳成功: " + storagePath);
+                return true;
+            }
+            Log.e(TAG, "❌ 上傳失敗: " + response.code() + " - " + responseBody);
+            return false;
+        }
+    }
 
-        androidx.work.WorkManager.getInstance(context)
-                .enqueueUniqueWork("csv_" + trainingID, androidx.work.ExistingWorkPolicy.KEEP, request);
 
-        Log.d(TAG, "📅 已排程 WorkManager: " + trainingID);
+    // ★★★ 排程背景上傳：改交給 outbox（SyncDispatcher），同一筆不會重複排 ★★★
+    public static void scheduleCsvUpload(Context context, String trainingID, String csvFileName) {
+        SyncDispatcher.enqueue(context, SyncOp.DEST_CSV, trainingID, csvFileName);
+        Log.d(TAG, "📅 已排入 outbox: " + trainingID);
     }
 
+    /**
+     * 未上傳的 CSV 全部交給 outbox（SyncDispatcher），不再每筆開一條執行緒
+     * 排完等這些待辦真的 DONE / FAILED（最多 SyncDispatcher.SETTLE_TIMEOUT_MS）才回報：
+     * successCount = 已上傳，failCount = 重試用完放棄，pendingCount = 還沒傳完（之後 Worker 會自動重試）
+     * 使用者按的：還在退避的那幾筆提前到現在
+     */
     public static void retryUnsyncedCsv(Context context, RetryCallback callback) {
         new Thread(() -> {
             List<TrainingHistory> unsyncedList = AppDatabase.getInstance(context)
@@ -230,55 +279,26 @@ public class SupabaseUploader {
 
             if (unsyncedList == null || unsyncedList.isEmpty()) {
                 Log.d(TAG, "沒有需要重傳的 CSV");
-                if (callback != null) callback.onComplete(0, 0);
+                if (callback != null) callback.onComplete(0, 0, 0);
                 return;
             }
 
-            Log.d(TAG, "找到 " + unsyncedList.size() + " 筆未上傳的 CSV");
-
-            final int[] successCount = {0};
-            final int[] failCount = {0};
-            final int[] doneCount = {0};
-            final int total = unsyncedList.size();
-
-            // ★ 先回報總數
+            Log.d(TAG, "找到 " + unsyncedList.size() + " 筆未上傳的 CSV，排入 outbox");
+            int total = unsyncedList.size();
             if (callback != null) callback.onProgress(0, total);
 
+            long now = System.currentTimeMillis();
+            List<SyncOp> ops = new java.util.ArrayList<>(total);
+            List<String> keys = new java.util.ArrayList<>(total);
             for (TrainingHistory item : unsyncedList) {
-                if (item.csvFileName == null || item.csvFileName.isEmpty()) {
-                    failCount[0]++;
-                    doneCount[0]++;
-                    if (callback != null) callback.onProgress(doneCount[0], total);
-                    if (doneCount[0] >= total && callback != null) {
-                        callback.onComplete(successCount[0], failCount[0]);
-                    }
-                    continue;
-                }
-
-                uploadCsvWithMark(context, item.csvFileName, item.trainingID, new UploadCallbackWithId() {
-                    @Override
-                    public void onSuccess(String publicUrl, String trainingID) {
-                        successCount[0]++;
-                        doneCount[0]++;
-                        Log.d(TAG, "✅ 重傳成功: " + trainingID);
-                        if (callback != null) callback.onProgress(doneCount[0], total);
-                        if (doneCount[0] >= total && callback != null) {
-                            callback.onComplete(successCount[0], failCount[0]);
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(String error, String trainingID) {
-                        failCount[0]++;
-                        doneCount[0]++;
-                        Log.e(TAG, "❌ 重傳失敗: " + trainingID);
-                        if (callback != null) callback.onProgress(doneCount[0], total);
-                        if (doneCount[0] >= total && callback != null) {
-                            callback.onComplete(successCount[0], failCount[0]);
-                        }
-                    }
-                });
+                ops.add(SyncOp.create(SyncOp.DEST_CSV, item.trainingID, item.csvFileName, null, now));
+                keys.add(SyncOp.key(SyncOp.DEST_CSV, item.trainingID));
             }
+            SyncDispatcher.enqueueNow(context, ops, true);
+
+            int[] result = SyncDispatcher.awaitSettled(context, keys, SyncDispatcher.SETTLE_TIMEOUT_MS,
+                    callback == null ? null : callback::onProgress);
+            if (callback != null) callback.onComplete(result[0], result[1], result[2]);
         }).start();
     }
 
@@ -340,7 +360,7 @@ public class SupabaseUploader {
         default void onProgress(int current, int total) {
             // 預設空實作，不強制要覆寫，不然facecircle用Lamda呼叫會錯，Lamda寫法只能配合只有一個覆寫方法的介面。
         }
-        void onComplete(int successCount, int failCount);
+        void onComplete(int successCount, int failCount, int pendingCount);
     }
 
     /**
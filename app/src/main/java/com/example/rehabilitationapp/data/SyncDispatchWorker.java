@@ -0,0 +1,128 @@
+package com.example.rehabilitationapp.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.rehabilitationapp.data.dao.SyncOutboxDao;
+import com.example.rehabilitationapp.data.model.SyncOp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 唯一的 outbox 派送 Worker（SyncDispatcher.kick() 排進來）
+ * - 每個目的地開 OutboxPolicy.concurrency() 條 lane，各自「搶一筆 → 上傳 → 再搶」直到沒有可做的
+ * - Firestore 一次搶 OutboxPolicy.batchSize() 筆，合成一個 WriteBatch 上傳；還沒登入就不搶
+ *   （搶了只會每輪白記一次失敗、把重試次數用完），登入後回到 MainActivity 的 backfill 會再 kick
+ * - 目的地之間互不等待：大影片傳很久也不會擋住 Firestore / CSV
+ * - 重試時間由 outbox 的 nextAttemptAt 決定，不用 WorkManager 的退避；做完排一個計時器在最早到期時再叫醒
+ */
+public class SyncDispatchWorker extends Worker {
+
+    private static final String TAG = "SyncDispatchWorker";
+    private static final long KEEP_DONE_MS = 7L * 24 * 60 * 60 * 1000;   // DONE 留 7 天
+
+    public SyncDispatchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+
+        // 計時器：只負責把派送接回唯一的那條 chain
+        if (getInputData().getBoolean(SyncDispatcher.KEY_TIMER, false)) {
+            SyncDispatcher.kick(context);
+            return Result.success();
+        }
+
+        AppDatabase db;
+        SyncOutboxDao dao;
+        try {
+            db = AppDatabase.getInstance(context);
+            dao = db.syncOutboxDao();
+            int released = dao.releaseExpired(System.currentTimeMillis());
+            if (released > 0) Log.w(TAG, "⚠️ 還原 " + released + " 筆過期的 RUNNING");
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 開 DB 失敗", e);
+            return Result.retry();
+        }
+
+        int lanes = 0;
+        for (String dest : SyncDispatcher.DESTINATIONS) lanes += OutboxPolicy.concurrency(dest);
+        ExecutorService pool = Executors.newFixedThreadPool(lanes, r -> new Thread(r, "SyncLane"));
+        AtomicInteger done = new AtomicInteger();
+        try {
+            // 有進度就再跑一輪：先決那筆（例：CSV）在本輪做完，等它的影片下一輪才撈得到
+            int before;
+            do {
+                before = done.get();
+                List<Future<?>> futures = new ArrayList<>(lanes);
+                for (String dest : SyncDispatcher.DESTINATIONS) {
+                    for (int i = 0; i < OutboxPolicy.concurrency(dest); i++) {
+                        futures.add(pool.submit(() -> drain(context, db, dest, done)));
+                    }
+                }
+                for (Future<?> f : futures) {
+                    try {
+                        f.get();
+                    } catch (Exception e) {
+                        Log.e(TAG, "❌ lane 例外", e);
+                    }
+                }
+            } while (!isStopped() && done.get() > before);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            dao.purgeDone(now - KEEP_DONE_MS);
+            Log.d(TAG, "✅ 本輪處理 " + done.get() + " 筆，未完成 " + dao.countOpen() + "，放棄 " + dao.countFailed());
+            SyncDispatcher.scheduleWakeUp(context, dao.nextDueAt(now));
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 收尾失敗", e);
+        }
+        return Result.success();
+    }
+
+    // 一條 lane：同一目的地可能有好幾條在搶，claim() 保證同一筆只會有一條拿到
+    private void drain(Context context, AppDatabase db, String destination, AtomicInteger done) {
+        if (SyncOp.DEST_FIRESTORE.equals(destination) && FirebaseUploader.currentUserId(context) == null) {
+            Log.d(TAG, "⏸️ 還沒登入，Firestore 待辦先不傳");
+            return;
+        }
+        SyncOutboxDao dao = db.syncOutboxDao();
+        int batch = OutboxPolicy.batchSize(destination);
+        int limit = batch > 1 ? batch : OutboxPolicy.concurrency(destination) * 2;
+        while (!isStopped()) {
+            List<SyncOp> claimed = new ArrayList<>(batch);
+            long now = System.currentTimeMillis();
+            // 一批 500 筆的 claim 包在同一個 transaction：只寫一次 journal
+            db.runInTransaction(() -> {
+                for (SyncOp candidate : dao.getReady(destination, now, limit)) {
+                    if (dao.claim(candidate.id, now + OutboxPolicy.LEASE_MS, now) == 1) {
+                        claimed.add(candidate);
+                        if (claimed.size() >= batch) break;
+                    }
+                }
+            });
+            if (claimed.isEmpty()) return;
+            if (batch > 1) {
+                SyncDispatcher.executeBatch(context, db, claimed);
+            } else {
+                SyncDispatcher.execute(context, db, claimed.get(0));
+            }
+            done.addAndGet(claimed.size());
+        }
+    }
+}
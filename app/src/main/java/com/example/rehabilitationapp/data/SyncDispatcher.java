@@ -0,0 +1,381 @@
+package com.example.rehabilitationapp.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.rehabilitationapp.data.dao.SyncOutboxDao;
+import com.example.rehabilitationapp.data.model.SyncOp;
+import com.example.rehabilitationapp.data.model.TrainingHistory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 🔄 上傳 outbox 的入口
+ * - enqueueSession()：一次訓練寫進 DB 後呼叫，排入 FIRESTORE / CSV 待辦
+ * - 影片只從 SftpUploader.scheduleVideoUpload() 進來（結果頁使用者按上傳之後），排入時有同一次的 CSV 就等它傳完
+ * - kick()：叫醒唯一的 SyncDispatchWorker（WorkManager unique work，有網路才跑）
+ * - execute()：Worker 搶到一筆之後實際上傳；成功同時更新 trainingHistory 舊旗標（synced / csvUploaded / videoUploaded）
+ * - executeBatch()：Firestore 一次搶一整批（最多 500 筆）合成一個 WriteBatch
+ * - 三種上傳都是冪等的：Firestore 用 trainingID 當 doc id、Supabase 同路徑重傳算成功、SFTP 用 OVERWRITE
+ */
+public final class SyncDispatcher {
+
+    private static final String TAG = "SyncDispatcher";
+
+    static final String WORK_DISPATCH = "sync_dispatch";
+    static final String WORK_TIMER = "sync_dispatch_timer";
+    static final String KEY_TIMER = "timer";
+
+    /** 結果頁手動同步：最多等多久看結果、多久看一次 */
+    public static final long SETTLE_TIMEOUT_MS = 90_000L;
+    private static final long SETTLE_POLL_MS = 1_000L;
+    private static final int SETTLE_QUERY_LIMIT = 500;     // SQLite 參數上限 999
+
+    /** 派送順序：小的先（Firestore 文件 → CSV → 影片） */
+    static final String[] DESTINATIONS = {SyncOp.DEST_FIRESTORE, SyncOp.DEST_CSV, SyncOp.DEST_VIDEO};
+
+    private SyncDispatcher() {}
+
+    // ============================================
+    // 【排入】
+    // ============================================
+
+    /**
+     * 一次訓練的自動上傳：Firestore 紀錄 + CSV（已存在的 opKey 會被忽略；不在主執行緒呼叫）
+     * 影片不在這裡排：只有結果頁使用者按上傳（Wi-Fi 檢查 / 同意用行動網路）後才由 scheduleVideoUpload 排入
+     */
+    public static void enqueueSession(Context context, TrainingHistory h) {
+        long now = System.currentTimeMillis();
+        List<SyncOp> ops = new ArrayList<>(2);
+        ops.add(SyncOp.create(SyncOp.DEST_FIRESTORE, h.trainingID, null, null, now));
+        if (h.csvFileName != null && !h.csvFileName.isEmpty()) {
+            ops.add(SyncOp.create(SyncOp.DEST_CSV, h.trainingID, h.csvFileName, null, now));
+        }
+        enqueueNow(context, ops);
+    }
+
+    /** 單筆排入（舊的 scheduleXxxUpload 轉過來，可在主執行緒呼叫） */
+    public static void enqueue(Context context, String destination, String trainingID, String fileName) {
+        SyncOp op = SyncOp.create(destination, trainingID, fileName, null, System.currentTimeMillis());
+        new Thread(() -> enqueueNow(context, Collections.singletonList(op)), "SyncEnqueue").start();
+    }
+
+    /** 自動排入（訓練結束、舊版 Worker 轉過來）：已在退避的那筆照原本時間 */
+    public static int enqueueNow(Context context, List<SyncOp> ops) {
+        return enqueueNow(context, ops, false);
+    }
+
+    /**
+     * 同步排入後叫醒派送（不在主執行緒呼叫）
+     * - 已存在的 opKey 不重複新增；之前放棄（FAILED）的那筆重新排回 PENDING
+     * - manual = 使用者按的（結果頁同步 / 上傳）：還在退避的 PENDING 提前到 op.nextAttemptAt
+     * - 紀錄不存在、或舊旗標已經是 1（舊版上傳過）的直接略過
+     * - 影片沒指定先決時，有同一次訓練的 CSV 就等它
+     * @return 新增、重新排回或提前的筆數；寫 DB 失敗回 -1（呼叫端自己決定要不要重試）
+     */
+    public static int enqueueNow(Context context, List<SyncOp> ops, boolean manual) {
+        int queued = 0;
+        try {
+            AppDatabase db = AppDatabase.getInstance(context);
+            SyncOutboxDao dao = db.syncOutboxDao();
+            long now = System.currentTimeMillis();
+            int[] count = new int[1];
+            db.runInTransaction(() -> {
+                for (SyncOp op : ops) {
+                    if (alreadyUploaded(db.trainingHistoryDao().getById(op.trainingID), op.destination)) continue;
+                    if (SyncOp.DEST_VIDEO.equals(op.destination) && op.dependsOn == null) {
+                        String csvKey = SyncOp.key(SyncOp.DEST_CSV, op.trainingID);
+                        if (dao.getByKey(csvKey) != null) op.dependsOn = csvKey;
+                    }
+                    if (dao.insert(op) != -1 || dao.requeueFailed(op.opKey, now) > 0
+                            || (manual && dao.bumpPending(op.opKey, op.nextAttemptAt, now) > 0)) count[0]++;
+                }
+            });
+            queued = count[0];
+            Log.d(TAG, "📥 已排入 " + queued + " / " + ops.size() + " 筆");
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 排入 outbox 失敗", e);
+            return -1;
+        }
+        kick(context);
+        return queued;
+    }
+
+    /** awaitSettled 的進度：settled = 已 DONE / FAILED 的筆數 */
+    public interface SettleListener {
+        void onProgress(int settled, int total);
+    }
+
+    /**
+     * 等這些待辦真的傳完（DONE）或放棄（FAILED），最多等 timeoutMs（不在主執行緒呼叫）
+     * - 逾時還在 PENDING / RUNNING 的（例：沒網路、還在退避）算「未完成」，之後 Worker 照樣會傳
+     * - FAILED 是重試次數用完放棄的，不會再自動傳（要使用者再按一次同步才排回）
+     * @return {成功筆數, 放棄（FAILED）筆數, 未完成筆數}
+     */
+    public static int[] awaitSettled(Context context, List<String> opKeys, long timeoutMs, SettleListener listener) {
+        int total = opKeys.size();
+        int done = 0;
+        int failed = 0;
+        if (total == 0) return new int[]{0, 0, 0};
+        SyncOutboxDao dao = AppDatabase.getInstance(context).syncOutboxDao();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        int lastSettled = -1;
+        while (true) {
+            done = 0;
+            failed = 0;
+            for (int i = 0; i < total; i += SETTLE_QUERY_LIMIT) {
+                List<String> keys = opKeys.subList(i, Math.min(total, i + SETTLE_QUERY_LIMIT));
+                done += dao.countByKeys(keys, SyncOp.STATE_DONE);
+                failed += dao.countByKeys(keys, SyncOp.STATE_FAILED);
+            }
+            int settled = done + failed;
+            if (listener != null && settled != lastSettled) listener.onProgress(settled, total);
+            lastSettled = settled;
+            if (settled >= total || System.currentTimeMillis() >= deadline) break;
+            try {
+                Thread.sleep(SETTLE_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Log.d(TAG, "📊 同步結果: 成功 " + done + "，失敗 " + failed + "，未完成 " + (total - done - failed));
+        return new int[]{done, failed, total - done - failed};
+    }
+
+    private static boolean alreadyUploaded(TrainingHistory h, String destination) {
+        if (h == null) return true;
+        switch (destination) {
+            case SyncOp.DEST_FIRESTORE: return h.synced == 1;
+            case SyncOp.DEST_CSV:       return h.csvUploaded == 1;
+            case SyncOp.DEST_VIDEO:     return h.videoUploaded == 1;
+            default:                    return false;
+        }
+    }
+
+    /** App 啟動時：把舊旗標還是 0 的 Firestore / CSV 補進 outbox（不在主執行緒呼叫），回傳目前未完成筆數 */
+    public static int backfill(Context context) {
+        int open = 0;
+        try {
+            AppDatabase db = AppDatabase.getInstance(context);
+            backfillFromHistory(db.getOpenHelper().getWritableDatabase(), System.currentTimeMillis());
+            open = db.syncOutboxDao().countOpen();
+            Log.d(TAG, "📋 outbox 未完成: " + open + " 筆");
+        } catch (Exception e) {
+            Log.e(TAG, "❌ backfill 失敗", e);
+        }
+        kick(context);
+        return open;
+    }
+
+    /**
+     * trainingHistory 旗標 → outbox（INSERT OR IGNORE，重複呼叫無害）
+     * 只補 Firestore / CSV；影片一定要使用者在結果頁同意才上傳，不自動補
+     * （MIGRATION_12_13 有自己一份凍結的 SQL，這裡改了不影響 migration）
+     */
+    static void backfillFromHistory(SupportSQLiteDatabase db, long now) {
+        String cols = "INSERT OR IGNORE INTO syncOutbox (opKey, destination, trainingID, fileName, dependsOn, " +
+                "state, attempts, nextAttemptAt, leaseUntil, lastError, createdAt, updatedAt) ";
+        Object[] t = {now, now, now};
+        db.execSQL(cols + "SELECT 'FIRESTORE:' || trainingID, 'FIRESTORE', trainingID, '', NULL, " +
+                "0, 0, ?, 0, NULL, ?, ? FROM trainingHistory WHERE synced = 0", t);
+        db.execSQL(cols + "SELECT 'CSV:' || trainingID, 'CSV', trainingID, csvFileName, NULL, " +
+                "0, 0, ?, 0, NULL, ?, ? FROM trainingHistory WHERE csvUploaded = 0 AND csvFileName != ''", t);
+    }
+
+    // ============================================
+    // 【排程】
+    // ============================================
+
+    /** 叫醒派送（正在跑的話接在它後面再跑一輪，不會兩個同時跑） */
+    public static void kick(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncDispatchWorker.class)
+                .setConstraints(networkConstraints())
+                .addTag(WORK_DISPATCH)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_DISPATCH, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /** 最早一筆退避到期時再叫醒；計時器本身不派送，只呼叫 kick() */
+    static void scheduleWakeUp(Context context, Long dueAt) {
+        if (dueAt == null) return;
+        long delay = Math.max(0, dueAt - System.currentTimeMillis());
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncDispatchWorker.class)
+                .setInputData(new Data.Builder().putBoolean(KEY_TIMER, true).build())
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .addTag(WORK_TIMER)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_TIMER, ExistingWorkPolicy.REPLACE, request);
+        Log.d(TAG, "⏰ " + (delay / 1000) + " 秒後再派送");
+    }
+
+    private static Constraints networkConstraints() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+    }
+
+    // ============================================
+    // 【執行】Worker 搶到 op 之後呼叫（op.attempts 是搶之前的值）
+    // ============================================
+
+    /** 單筆：CSV / 影片（Firestore 的 batchSize > 1，一律走 executeBatch） */
+    static void execute(Context context, AppDatabase db, SyncOp op) {
+        SyncOutboxDao dao = db.syncOutboxDao();
+        int attempts = op.attempts + 1;
+        try {
+            boolean ok;
+            switch (op.destination) {
+                case SyncOp.DEST_CSV:       ok = SupabaseUploader.uploadCsvBlocking(context, op.fileName); break;
+                case SyncOp.DEST_VIDEO:     ok = uploadVideo(context, op); break;
+                default: throw new FileNotFoundException("未知的目的地: " + op.destination);
+            }
+            if (ok) {
+                markHistory(db, op);
+                dao.markDone(op.id, System.currentTimeMillis());
+                log(op, true, null);
+                return;
+            }
+            retryOrFail(dao, op, attempts, "上傳失敗");
+        } catch (FileNotFoundException e) {
+            // 檔案 / 紀錄不見了：重試也沒用
+            dao.markFailed(op.id, e.getMessage(), System.currentTimeMillis());
+            log(op, false, e.getMessage());
+            Log.e(TAG, "🛑 放棄 " + op + ": " + e.getMessage());
+        } catch (Exception e) {
+            retryOrFail(dao, op, attempts, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /** 一批紀錄的上傳（正式是 FirebaseUploader.uploadBatchBlocking；測試換成假的） */
+    interface BatchUpload {
+        boolean upload(Context context, List<TrainingHistory> records) throws Exception;
+    }
+
+    /**
+     * 一整批同目的地的待辦一起上傳（目前只有 Firestore：一個 WriteBatch，一次 round trip）
+     * - 紀錄已刪掉的那幾筆直接 FAILED，其餘照送
+     * - 成功：synced 旗標和 outbox DONE 在同一個 Room transaction 裡一起改，不會只改一半
+     * - 失敗：WriteBatch 是整批原子的，整批一起退避
+     */
+    static void executeBatch(Context context, AppDatabase db, List<SyncOp> ops) {
+        executeBatch(context, db, ops, FirebaseUploader::uploadBatchBlocking);
+    }
+
+    static void executeBatch(Context context, AppDatabase db, List<SyncOp> ops, BatchUpload upload) {
+        SyncOutboxDao dao = db.syncOutboxDao();
+        List<String> ids = new ArrayList<>(ops.size());
+        for (SyncOp op : ops) ids.add(op.trainingID);
+
+        List<TrainingHistory> records;
+        List<SyncOp> found = new ArrayList<>(ops.size());
+        try {
+            records = db.trainingHistoryDao().getByIds(ids);
+            Set<String> present = new HashSet<>();
+            for (TrainingHistory record : records) present.add(record.trainingID);
+            long now = System.currentTimeMillis();
+            for (SyncOp op : ops) {
+                if (present.contains(op.trainingID)) {
+                    found.add(op);
+                } else {
+                    dao.markFailed(op.id, "紀錄不存在: " + op.trainingID, now);
+                    log(op, false, "紀錄不存在");
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 讀取批次紀錄失敗", e);
+            for (SyncOp op : ops) retryOrFail(dao, op, op.attempts + 1, e.getClass().getSimpleName() + ": " + e.getMessage());
+            return;
+        }
+        if (found.isEmpty()) return;
+
+        String error;
+        try {
+            if (upload.upload(context, records)) {
+                List<String> doneIds = new ArrayList<>(found.size());
+                List<Long> opIds = new ArrayList<>(found.size());
+                for (SyncOp op : found) {
+                    doneIds.add(op.trainingID);
+                    opIds.add(op.id);
+                }
+                long now = System.currentTimeMillis();
+                db.runInTransaction(() -> {
+                    db.trainingHistoryDao().markSyncedAll(doneIds);
+                    dao.markDoneAll(opIds, now);
+                });
+                Log.d(TAG, "✅ Firestore 批次完成 " + found.size() + " 筆");
+                int missing = ops.size() - found.size();
+                analytics(() -> AppLogger.logSyncComplete(SyncOp.DEST_FIRESTORE, found.size(), missing));
+                return;
+            }
+            error = "上傳失敗";
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        for (SyncOp op : found) retryOrFail(dao, op, op.attempts + 1, error);
+    }
+
+    private static void retryOrFail(SyncOutboxDao dao, SyncOp op, int attempts, String error) {
+        long now = System.currentTimeMillis();
+        if (OutboxPolicy.shouldRetry(attempts)) {
+            long delay = OutboxPolicy.backoffMs(attempts, op.opKey);
+            dao.markRetry(op.id, now + delay, error, now);
+            Log.w(TAG, "⚠️ " + op.opKey + " 第 " + attempts + " 次失敗，" + (delay / 1000) + " 秒後重試: " + error);
+        } else {
+            dao.markFailed(op.id, error, now);
+            Log.e(TAG, "🛑 " + op.opKey + " 失敗 " + attempts + " 次，放棄: " + error);
+        }
+        log(op, false, error);
+    }
+
+    private static boolean uploadVideo(Context context, SyncOp op) throws Exception {
+        File videoFile = new File(context.getExternalFilesDir(null), op.fileName);
+        if (!videoFile.exists()) throw new FileNotFoundException("檔案不存在: " + op.fileName);
+        // 分段續傳：重試從上次確認的那段接著傳，整檔 SHA-256 驗過才回 true（才會 markVideoUploaded）
+        return ChunkedVideoUploader.upload(context, op.trainingID, videoFile, null);
+    }
+
+    // 舊旗標照樣維護：歷史頁 / 其他查詢還在看它們
+    private static void markHistory(AppDatabase db, SyncOp op) {
+        switch (op.destination) {
+            case SyncOp.DEST_CSV:       db.trainingHistoryDao().markCsvUploaded(op.trainingID); break;
+            case SyncOp.DEST_VIDEO:     db.trainingHistoryDao().markVideoUploaded(op.trainingID); break;
+        }
+    }
+
+    private static void log(SyncOp op, boolean success, String error) {
+        analytics(() -> {
+            switch (op.destination) {
+                case SyncOp.DEST_FIRESTORE: AppLogger.logFirebaseUpload(op.trainingID, success, error); break;
+                case SyncOp.DEST_CSV:       AppLogger.logCsvUpload(op.trainingID, success, error); break;
+                case SyncOp.DEST_VIDEO:     AppLogger.logVideoUpload(op.trainingID, op.fileName, success, error); break;
+            }
+        });
+    }
+
+    // 記 log 失敗（例：Crashlytics 還沒初始化）不能影響 outbox 狀態：批次已 DONE 後丟出來會被當成上傳失敗再排一次
+    private static void analytics(Runnable event) {
+        try {
+            event.run();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "⚠️ 記錄上傳事件失敗: " + e.getMessage());
+        }
+    }
+}
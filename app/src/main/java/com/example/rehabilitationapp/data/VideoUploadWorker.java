@@ -7,10 +7,15 @@ import androidx.annotation.NonNull;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import com.example.rehabilitationapp.data.model.TrainingHistory;
+import com.example.rehabilitationapp.data.model.SyncOp;
 
-import java.io.File;
+import java.util.Collections;
 
+/**
+ * 舊版排進 WorkManager 的影片上傳（"video_<trainingID>"）
+ * 升級後還留在 WorkManager 裡的工作轉進 outbox，由 SyncDispatchWorker 統一上傳
+ * 寫 outbox 失敗就 retry，交給 WorkManager 退避後再轉一次（不能回 success 把這筆丟掉）
+ */
 public class VideoUploadWorker extends Worker {
 
     private static final String TAG = "VideoUploadWorker";
@@ -25,48 +30,17 @@ public class VideoUploadWorker extends Worker {
         String trainingID = getInputData().getString("trainingID");
         String videoFileName = getInputData().getString("videoFileName");
 
-        Log.d(TAG, "🔄 Worker 開始: " + trainingID);
-
         if (trainingID == null || videoFileName == null || videoFileName.isEmpty()) {
             Log.e(TAG, "❌ 參數錯誤，跳過");
             return Result.failure();
         }
 
-        Context context = getApplicationContext();
-
-        // 1. 檢查是否已上傳（防止重複傳）
-        TrainingHistory record = AppDatabase.getInstance(context)
-                .trainingHistoryDao().getById(trainingID);
-
-        if (record == null) {
-            Log.d(TAG, "⚠️ 紀錄不存在，跳過: " + trainingID);
-            return Result.failure();
-        }
-
-        if (record.videoUploaded == 1) {
-            Log.d(TAG, "✅ 已上傳過，跳過: " + trainingID);
-            return Result.success();
-        }
-
-        // 2. 找到檔案
-        File videoFile = new File(context.getExternalFilesDir(null), videoFileName);
-        if (!videoFile.exists()) {
-            Log.e(TAG, "❌ 檔案不存在: " + videoFileName);
-            return Result.failure();
-        }
-
-        // 3. 同步上傳
-        boolean success = SftpUploader.uploadVideo(context, videoFile, null);
-
-        if (success) {
-            AppDatabase.getInstance(context).trainingHistoryDao().markVideoUploaded(trainingID);
-            Log.d(TAG, "✅ Worker 上傳成功: " + trainingID);
-            AppLogger.logVideoUpload(trainingID, videoFileName, true, null);
-            return Result.success();
-        } else {
-            Log.d(TAG, "⚠️ 上傳失敗，稍後重試: " + trainingID);
-            AppLogger.logVideoUpload(trainingID, videoFileName, false, "上傳失敗");
+        SyncOp op = SyncOp.create(SyncOp.DEST_VIDEO, trainingID, videoFileName, null, System.currentTimeMillis());
+        if (SyncDispatcher.enqueueNow(getApplicationContext(), Collections.singletonList(op)) < 0) {
+            Log.w(TAG, "⚠️ 轉進 outbox 失敗，稍後重試: " + trainingID);
             return Result.retry();
         }
+        Log.d(TAG, "➡️ 轉進 outbox: " + trainingID);
+        return Result.success();
     }
-}
\ No newline at end of file
+}
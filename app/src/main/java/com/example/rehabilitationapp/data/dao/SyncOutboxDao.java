@@ -0,0 +1,96 @@
+package com.example.rehabilitationapp.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.rehabilitationapp.data.model.SyncOp;
+
+import java.util.List;
+
+@Dao
+public interface SyncOutboxDao {
+
+    /** opKey 已存在就忽略（回 -1）：同一次訓練重複 enqueue 不會多一筆 */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(SyncOp op);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertAll(List<SyncOp> ops);
+
+    @Query("SELECT * FROM syncOutbox WHERE opKey = :opKey LIMIT 1")
+    SyncOp getByKey(String opKey);
+
+    /**
+     * 可以執行的待辦：PENDING、時間到了、先決那筆已經不在 PENDING / RUNNING
+     * （先決 FAILED 也放行，不然一個壞掉的 CSV 會讓影片永遠卡住）
+     */
+    @Query("SELECT * FROM syncOutbox o WHERE o.state = 0 AND o.destination = :destination AND o.nextAttemptAt <= :now " +
+            "AND (o.dependsOn IS NULL OR NOT EXISTS (" +
+            "SELECT 1 FROM syncOutbox d WHERE d.opKey = o.dependsOn AND d.state IN (0, 1))) " +
+            "ORDER BY o.nextAttemptAt ASC, o.id ASC LIMIT :limit")
+    List<SyncOp> getReady(String destination, long now, int limit);
+
+    /** PENDING → RUNNING；回 1 才算搶到，0 表示別人先拿走或狀態已變 */
+    @Query("UPDATE syncOutbox SET state = 1, attempts = attempts + 1, leaseUntil = :leaseUntil, updatedAt = :now " +
+            "WHERE id = :id AND state = 0")
+    int claim(long id, long leaseUntil, long now);
+
+    @Query("UPDATE syncOutbox SET state = 2, leaseUntil = 0, lastError = NULL, updatedAt = :now WHERE id = :id")
+    void markDone(long id, long now);
+
+    @Query("UPDATE syncOutbox SET state = 2, leaseUntil = 0, lastError = NULL, updatedAt = :now WHERE id IN (:ids)")
+    void markDoneAll(List<Long> ids, long now);
+
+    @Query("UPDATE syncOutbox SET state = 0, leaseUntil = 0, nextAttemptAt = :nextAttemptAt, lastError = :error, " +
+            "updatedAt = :now WHERE id = :id")
+    void markRetry(long id, long nextAttemptAt, String error, long now);
+
+    @Query("UPDATE syncOutbox SET state = 3, leaseUntil = 0, lastError = :error, updatedAt = :now WHERE id = :id")
+    void markFailed(long id, String error, long now);
+
+    /** 使用者手動重傳：FAILED 的那筆重新排回 PENDING（次數歸零） */
+    @Query("UPDATE syncOutbox SET state = 0, attempts = 0, nextAttemptAt = :now, lastError = NULL, updatedAt = :now " +
+            "WHERE opKey = :opKey AND state = 3")
+    int requeueFailed(String opKey, long now);
+
+    /**
+     * 使用者手動同步：還在退避的 PENDING 提前到 nextAttemptAt（只往前提，不往後延；次數照舊）
+     * 不然按了同步也要等上次排的退避時間到才會傳
+     */
+    @Query("UPDATE syncOutbox SET nextAttemptAt = :nextAttemptAt, updatedAt = :now " +
+            "WHERE opKey = :opKey AND state = 0 AND nextAttemptAt > :nextAttemptAt")
+    int bumpPending(String opKey, long nextAttemptAt, long now);
+
+    /** 取消還沒開始的那筆（RUNNING 的照樣做完） */
+    @Query("DELETE FROM syncOutbox WHERE opKey = :opKey AND state = 0")
+    int deletePending(String opKey);
+
+    /** 程序被殺掉時留下的 RUNNING：租約過期就還原成 PENDING */
+    @Query("UPDATE syncOutbox SET state = 0, leaseUntil = 0 WHERE state = 1 AND leaseUntil < :now")
+    int releaseExpired(long now);
+
+    /**
+     * 下一次該叫醒派送的時間：還在退避的 PENDING，或卡住的 RUNNING 租約到期；都沒有回 null
+     * 只看未來的時間：已到期卻還是 PENDING 的，是在等先決那筆，叫醒也做不了
+     */
+    @Query("SELECT MIN(t) FROM (" +
+            "SELECT nextAttemptAt AS t FROM syncOutbox WHERE state = 0 AND nextAttemptAt > :now " +
+            "UNION ALL SELECT leaseUntil AS t FROM syncOutbox WHERE state = 1)")
+    Long nextDueAt(long now);
+
+    @Query("SELECT COUNT(*) FROM syncOutbox WHERE state IN (0, 1)")
+    int countOpen();
+
+    /** 指定 opKey 裡狀態為 state 的筆數（結果頁同步對話框等結果用；keys 呼叫端一次最多 500 個） */
+    @Query("SELECT COUNT(*) FROM syncOutbox WHERE opKey IN (:keys) AND state = :state")
+    int countByKeys(List<String> keys, int state);
+
+    @Query("SELECT COUNT(*) FROM syncOutbox WHERE state = 3")
+    int countFailed();
+
+    /** DONE 的紀錄留一陣子方便查，之後清掉 */
+    @Query("DELETE FROM syncOutbox WHERE state = 2 AND updatedAt < :before")
+    int purgeDone(long before);
+}
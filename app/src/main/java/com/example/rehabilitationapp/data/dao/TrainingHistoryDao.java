@@ -4,6 +4,7 @@ import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
 
+import com.example.rehabilitationapp.data.DayRange;
 import com.example.rehabilitationapp.data.model.TrainingHistory;
 import com.example.rehabilitationapp.data.model.TrainingHistoryWithTitle;
 import com.example.rehabilitationapp.data.model.TrainingItem;
@@ -25,8 +26,16 @@ public interface TrainingHistoryDao {
     List<TrainingHistory> getTodayHistory();
 
     // 在 TrainingHistoryDao.java 中添加
-    @Query("SELECT * FROM TrainingHistory WHERE date(createAt/1000,'unixepoch','localtime') = date('now','localtime') ORDER BY createAt DESC")
-    List<TrainingHistory> getTodayRecords();
+    // 原本用 date(createAt/1000,'unixepoch','localtime') = date('now','localtime')：每列算函式、整表掃
+    // 改成 Java 算好本地日的 [start, end)，走 createAt 索引
+    default List<TrainingHistory> getTodayRecords() {
+        DayRange day = DayRange.today();
+        return getRecordsBetween(day.startMs, day.endMs);
+    }
+
+    /** createAt 落在 [startMs, endMs) 的紀錄，新到舊 */
+    @Query("SELECT * FROM TrainingHistory WHERE createAt >= :startMs AND createAt < :endMs ORDER BY createAt DESC")
+    List<TrainingHistory> getRecordsBetween(long startMs, long endMs);
 
 
     //NAV_BAR，歷史紀錄下的圖卡使用
@@ -45,6 +54,18 @@ public interface TrainingHistoryDao {
     @Query("UPDATE TrainingHistory SET synced = 1 WHERE trainingID = :id")
     void markSynced(String id);
 
+    /** 一整批 WriteBatch 成功後一次標記（呼叫端包在同一個 transaction） */
+    @Query("UPDATE TrainingHistory SET synced = 1 WHERE trainingID IN (:ids)")
+    void markSyncedAll(List<String> ids);
+
+    /** 未同步紀錄分頁（keyset：接在上一頁最後一筆 createAt / trainingID 後面，不用 OFFSET） */
+    @Query("SELECT * FROM TrainingHistory WHERE synced = 0 AND (createAt > :afterCreateAt " +
+            "OR (createAt = :afterCreateAt AND trainingID > :afterId)) ORDER BY createAt ASC, trainingID ASC LIMIT :limit")
+    List<TrainingHistory> getUnsyncedPage(long afterCreateAt, String afterId, int limit);
+
+    @Query("SELECT * FROM TrainingHistory WHERE trainingID IN (:ids)")
+    List<TrainingHistory> getByIds(List<String> ids);
+
 
 
 
@@ -52,8 +73,11 @@ public interface TrainingHistoryDao {
     void updateSelfReport(String id, int count);
 
 
-    @Query("SELECT * FROM trainingHistory WHERE date(createAt/1000,'unixepoch','localtime') = date(:dateMs/1000,'unixepoch','localtime') ORDER BY createAt DESC")
-    List<TrainingHistory> getRecordsByDate(long dateMs);
+    /** dateMs 所在那一天（本地時區）的紀錄 */
+    default List<TrainingHistory> getRecordsByDate(long dateMs) {
+        DayRange day = DayRange.of(dateMs);
+        return getRecordsBetween(day.startMs, day.endMs);
+    }
 
     // 2060105 CSV 上傳bucket紀錄相關方法
     /** 標記 CSV 已上傳成功 */
@@ -96,6 +120,10 @@ public interface TrainingHistoryDao {
     // 未使用
     @Query("UPDATE TrainingHistory SET saved = 1 WHERE trainingID = :id")
     void markSaved(String id);
-    @Query("SELECT * FROM TrainingHistory WHERE saved = 1 AND date(createAt/1000,'unixepoch','localtime') = date('now','localtime') ORDER BY createAt DESC")
-    List<TrainingHistory> getTodaySavedRecords();
+    default List<TrainingHistory> getTodaySavedRecords() {
+        DayRange day = DayRange.today();
+        return getSavedRecordsBetween(day.startMs, day.endMs);
+    }
+    @Query("SELECT * FROM TrainingHistory WHERE saved = 1 AND createAt >= :startMs AND createAt < :endMs ORDER BY createAt DESC")
+    List<TrainingHistory> getSavedRecordsBetween(long startMs, long endMs);
 }
\ No newline at end of file
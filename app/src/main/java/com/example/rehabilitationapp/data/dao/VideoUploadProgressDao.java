@@ -0,0 +1,31 @@
+package com.example.rehabilitationapp.data.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.rehabilitationapp.data.model.VideoUploadProgress;
+
+@Dao
+public interface VideoUploadProgressDao {
+
+    @Query("SELECT * FROM videoUploadProgress WHERE trainingID = :trainingID LIMIT 1")
+    VideoUploadProgress get(String trainingID);
+
+    /** 新開始或檔案換過：整筆覆蓋 */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(VideoUploadProgress progress);
+
+    /** 每確認一段就推進一次 */
+    @Query("UPDATE videoUploadProgress SET confirmedOffset = :offset, updatedAt = :now WHERE trainingID = :trainingID")
+    void updateOffset(String trainingID, long offset, long now);
+
+    /** 遠端正式檔驗證通過 */
+    @Query("UPDATE videoUploadProgress SET confirmedOffset = fileSize, completedAt = :now, updatedAt = :now " +
+            "WHERE trainingID = :trainingID")
+    void markCompleted(String trainingID, long now);
+
+    @Query("DELETE FROM videoUploadProgress WHERE trainingID = :trainingID")
+    void delete(String trainingID);
+}
@@ -0,0 +1,96 @@
+package com.example.rehabilitationapp.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * 上傳 outbox 的一筆待辦（v13）
+ * - 一次訓練自動產生 FIRESTORE（歷史紀錄）、CSV（Supabase bucket）；VIDEO（SFTP）要使用者在結果頁按上傳才會有
+ * - opKey = "<destination>:<trainingID>" 唯一：重複 enqueue 直接忽略，重試只會覆寫同一個遠端物件
+ * - dependsOn = 另一筆 opKey，那筆 DONE 之後才會輪到這筆（例：影片等 CSV 傳完）
+ * - SyncDispatchWorker 用 SyncOutboxDao.claim() 把 PENDING 原子地改成 RUNNING，同一筆不會被兩條執行緒同時上傳
+ */
+@Entity(tableName = "syncOutbox",
+        indices = {
+                @Index(value = {"opKey"}, unique = true),
+                @Index({"state", "nextAttemptAt"})
+        })
+public class SyncOp {
+
+    // destination
+    public static final String DEST_FIRESTORE = "FIRESTORE";
+    public static final String DEST_CSV = "CSV";
+    public static final String DEST_VIDEO = "VIDEO";
+
+    // state
+    public static final int STATE_PENDING = 0;
+    public static final int STATE_RUNNING = 1;
+    public static final int STATE_DONE = 2;
+    public static final int STATE_FAILED = 3;   // 不會再重試（檔案不見、超過次數）
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @NonNull
+    public String opKey = "";
+
+    @NonNull
+    public String destination = "";
+
+    @NonNull
+    public String trainingID = "";
+
+    /** CSV / 影片檔名；FIRESTORE 為空字串 */
+    @NonNull
+    @ColumnInfo(defaultValue = "")
+    public String fileName = "";
+
+    /** 先決的 opKey；null = 沒有 */
+    public String dependsOn;
+
+    @ColumnInfo(defaultValue = "0")
+    public int state = STATE_PENDING;
+
+    @ColumnInfo(defaultValue = "0")
+    public int attempts = 0;
+
+    /** 下次可以嘗試的時間（ms）；PENDING 且 <= now 才會被撈 */
+    @ColumnInfo(defaultValue = "0")
+    public long nextAttemptAt = 0;
+
+    /** RUNNING 的租約到期時間；程序被殺掉時靠它把卡住的 RUNNING 還原成 PENDING */
+    @ColumnInfo(defaultValue = "0")
+    public long leaseUntil = 0;
+
+    public String lastError;
+
+    public long createdAt;
+    public long updatedAt;
+
+    public SyncOp() {}
+
+    public static String key(String destination, String trainingID) {
+        return destination + ":" + trainingID;
+    }
+
+    public static SyncOp create(String destination, String trainingID, String fileName, String dependsOn, long now) {
+        SyncOp op = new SyncOp();
+        op.destination = destination;
+        op.trainingID = trainingID;
+        op.opKey = key(destination, trainingID);
+        op.fileName = fileName != null ? fileName : "";
+        op.dependsOn = dependsOn;
+        op.nextAttemptAt = now;
+        op.createdAt = now;
+        op.updatedAt = now;
+        return op;
+    }
+
+    @Override
+    public String toString() {
+        return opKey + "#" + id + "(state=" + state + ", attempts=" + attempts + ")";
+    }
+}
@@ -3,9 +3,18 @@ package com.example.rehabilitationapp.data.model;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "trainingHistory")  // 注意你的拼字是 "Histroy"
+// 索引（v12）：createAt 給日期區間查詢；(旗標, createAt) 給「未同步 / 未上傳」清單，
+// 先用旗標定位再照 createAt 順序讀，不用整表掃 + 排序
+@Entity(tableName = "trainingHistory",  // 注意你的拼字是 "Histroy"
+        indices = {
+                @Index("createAt"),
+                @Index({"synced", "createAt"}),
+                @Index({"csvUploaded", "createAt"}),
+                @Index({"videoUploaded", "createAt"})
+        })
 public class TrainingHistory {
     @PrimaryKey
     @NonNull
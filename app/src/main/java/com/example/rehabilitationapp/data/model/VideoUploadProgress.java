@@ -0,0 +1,60 @@
+package com.example.rehabilitationapp.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 影片分段上傳的進度（v14；v15 加 chunkHashes / completedAt），一次訓練一筆
+ * - confirmedOffset：遠端 .part 檔已確認寫入的位元組數（一定是 chunkSize 的整數倍，或等於 fileSize）
+ * - chunkHashes：本地每一段的 SHA-256，續傳 / 驗證時拿遠端那一段來比，不用再讀本地檔
+ * - fileSize / fileModifiedAt 跟本地檔對不上 = 檔案換過了，進度作廢從 0 開始
+ * - 驗證通過、改名成正式檔名後記 completedAt（這筆留著當「已傳完」的標記，再呼叫只比最後一段）
+ */
+@Entity(tableName = "videoUploadProgress")
+public class VideoUploadProgress {
+
+    @PrimaryKey
+    @NonNull
+    public String trainingID = "";
+
+    @NonNull
+    public String fileName = "";
+
+    public long fileSize;
+    public long fileModifiedAt;
+
+    @ColumnInfo(defaultValue = "0")
+    public long confirmedOffset = 0;
+
+    public int chunkSize;
+
+    /** 本地整檔 SHA-256（hex）；第一次算完存起來，續傳不用再讀一遍大檔 */
+    public String sha256;
+
+    /** 本地每一段的 SHA-256（hex，每段 64 字元依序接起來），跟 sha256 同一次讀檔算出來 */
+    public String chunkHashes;
+
+    /** 遠端正式檔驗證通過的時間；0 = 還沒傳完 */
+    @ColumnInfo(defaultValue = "0")
+    public long completedAt = 0;
+
+    public long updatedAt;
+
+    public VideoUploadProgress() {}
+
+    public boolean matches(String fileName, long fileSize, long fileModifiedAt, int chunkSize) {
+        return this.fileName.equals(fileName) && this.fileSize == fileSize
+                && this.fileModifiedAt == fileModifiedAt && this.chunkSize == chunkSize;
+    }
+
+    public int chunkCount() {
+        return (int) ((fileSize + chunkSize - 1) / chunkSize);
+    }
+
+    /** 第 index 段的 SHA-256（hex） */
+    public String chunkHash(int index) {
+        return chunkHashes.substring(index * 64, index * 64 + 64);
+    }
+}
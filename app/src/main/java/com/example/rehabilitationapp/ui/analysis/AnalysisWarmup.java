@@ -0,0 +1,139 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.chaquo.python.Python;
+import com.chaquo.python.android.AndroidPlatform;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * AnalysisWarmup
+ * - 開 APP / 首頁選動作時，在低優先權背景執行緒先把訓練結束要用的分析後端載好，結束時不用再付冷啟動
+ * - Chaquopy 後端：Python.getInstance() + import 該動作的 count_*（連帶 numpy / scipy / pandas）
+ * - 純 Java 後端（預設）：載入分析器類別、先跑一次濾波
+ * - 每個目標（"native" 或模組名）記狀態與耗時，供 log / debug 頁查看
+ */
+public final class AnalysisWarmup {
+
+    private static final String TAG = "AnalysisWarmup";
+    private static final String NATIVE = "native";
+
+    public enum State { IDLE, WARMING, READY, FAILED }
+
+    private static final Map<String, State> states = new ConcurrentHashMap<>();
+    private static final Map<String, Long> costMs = new ConcurrentHashMap<>();
+    private static volatile long interpreterMs = -1;
+
+    // 單一背景執行緒：排隊依序做，不跟 UI / 相機搶 CPU
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "AnalysisWarmup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private AnalysisWarmup() {}
+
+    /**
+     * 預熱 trainingLabel（例 "POUT_LIPS"）會用到的分析後端；label 為 null 時只預熱後端本身（Python 直譯器）
+     * 已經 READY / WARMING 的目標不重做
+     */
+    public static void warmUp(Context context, String trainingLabel) {
+        final Context app = context.getApplicationContext();
+        final String target = targetFor(trainingLabel);
+        if (target == null) return;
+        if (states.putIfAbsent(target, State.WARMING) != null) {
+            State now = states.get(target);
+            if (now != State.FAILED) return;
+            states.put(target, State.WARMING);  // 上次失敗就再試一次
+        }
+        executor.execute(() -> run(app, target));
+    }
+
+    public static State getState(String trainingLabel) {
+        String target = targetFor(trainingLabel);
+        if (target == null) return State.IDLE;
+        State s = states.get(target);
+        return s == null ? State.IDLE : s;
+    }
+
+    public static boolean isReady(String trainingLabel) {
+        return getState(trainingLabel) == State.READY;
+    }
+
+    /** 該目標預熱花的毫秒數；還沒做完回 -1 */
+    public static long getWarmupMs(String trainingLabel) {
+        String target = targetFor(trainingLabel);
+        Long ms = target == null ? null : costMs.get(target);
+        return ms == null ? -1 : ms;
+    }
+
+    /** Python.getInstance() 花的毫秒數；沒走 Python 後端回 -1 */
+    public static long getInterpreterMs() {
+        return interpreterMs;
+    }
+
+    // 目前後端 + 動作 → 要預熱的目標
+    private static String targetFor(String trainingLabel) {
+        if (CSVMotioner.useNativeAnalyzer) return NATIVE;
+        if (trainingLabel == null) return "python";
+        return CSVMotioner.pythonModuleFor(trainingLabel);
+    }
+
+    private static void run(Context app, String target) {
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            if (NATIVE.equals(target)) {
+                warmNative();
+            } else {
+                Python py = startPython(app);
+                if (!"python".equals(target)) {
+                    py.getModule(target);  // 第一次 import 最慢（numpy / scipy / pandas）
+                }
+            }
+            long ms = SystemClock.elapsedRealtime() - t0;
+            costMs.put(target, ms);
+            states.put(target, State.READY);
+            Log.d(TAG, "🔥 預熱完成: " + target + "，耗時 " + ms + " ms");
+        } catch (Throwable e) {
+            states.put(target, State.FAILED);
+            Log.e(TAG, "❌ 預熱失敗: " + target, e);
+        }
+    }
+
+    private static Python startPython(Context app) {
+        long t0 = SystemClock.elapsedRealtime();
+        if (!Python.isStarted()) {
+            Python.start(new AndroidPlatform(app));
+        }
+        Python py = Python.getInstance();
+        if (interpreterMs < 0) {
+            interpreterMs = SystemClock.elapsedRealtime() - t0;
+            Log.d(TAG, "🐍 Python 直譯器就緒，耗時 " + interpreterMs + " ms");
+        }
+        return py;
+    }
+
+    // 載入各分析器類別，並用一小段訊號跑過濾波 / 找峰值
+    private static void warmNative() throws ClassNotFoundException {
+        ClassLoader cl = AnalysisWarmup.class.getClassLoader();
+        for (Class<?> c : new Class<?>[]{LipMotionAnalyzer.class, CheekMotionAnalyzer.class, TongueMotionAnalyzer.class}) {
+            Class.forName(c.getName(), true, cl);
+        }
+        double[] x = new double[128];
+        for (int i = 0; i < x.length; i++) x[i] = Math.sin(i * 0.3);
+        double[][] ba = SignalKit.butterLowpass(4, 0.2);
+        double[] y = SignalKit.filtfilt(ba[0], ba[1], x);
+        SignalKit.findPeaks(SignalKit.autocorrelation(y, 64), 5, 64, 0.05);
+        SignalKit.uniformFilter1d(y, 5);
+    }
+}
@@ -44,12 +44,41 @@ public class CSVMotioner {
         }
     }
 
+    // 分析後端：預設純 Java 版；設成 false 改走 Chaquopy 版（比對用，AnalysisWarmup 也會跟著預熱 Python）
+    public static volatile boolean useNativeAnalyzer = true;
+
     // ===== 主流程 =====
+    // 預設走純 Java 版（NativeMotionAnalyzer），不用等 Chaquopy 啟動、也不經 PyObject 轉型
     public static PyAnalysisResult analyzePeaksFromFile(Context context, String fileName) {
+        if (!useNativeAnalyzer) return analyzePeaksWithPython(context, fileName);
+        File dir = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        File csvFile = new File(dir, fileName);
+        return NativeMotionAnalyzer.analyzeFile(csvFile, fileName);
+    }
+
+    // 檔名 / 動作代碼 → analyzePeaksWithPython 會 import 的模組（沒有對應回 null）
+    static String pythonModuleFor(String name) {
+        if (name == null) return null;
+        if (name.contains("POUT_LIPS")) return "count_pout_lips";
+        if (name.contains("SIP_LIPS")) return "count_sip_lips";
+        if (name.contains("PUFF_CHEEK")) return "count_puff_cheek";
+        if (name.contains("REDUCE_CHEEK")) return "count_reduce_cheek";
+        if (name.contains("TONGUE_LEFT")) return "count_tongue_left";
+        if (name.contains("TONGUE_RIGHT")) return "count_tongue_right";
+        if (name.contains("TONGUE_FOWARD") || name.contains("TONGUE_UP") || name.contains("TONGUE_DOWN")) {
+            return "count_tongue_vertical";
+        }
+        return null;
+    }
+
+    // ===== Python 版（保留做比對用） =====
+    public static PyAnalysisResult analyzePeaksWithPython(Context context, String fileName) {
 
         // 1. 找到檔案路徑
         File dir = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
         File csvFile = new File(dir, fileName);
+        Log.d("CSVMOTIONTEST", "🐍 預熱狀態: " + AnalysisWarmup.getState(fileName)
+                + "（" + AnalysisWarmup.getWarmupMs(fileName) + " ms）");
         Python py = Python.getInstance();
         PyAnalysisResult result = new PyAnalysisResult();
         result.fileName = fileName;
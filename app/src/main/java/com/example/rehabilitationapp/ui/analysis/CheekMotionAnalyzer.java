@@ -0,0 +1,383 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import android.util.Log;
+
+import com.example.rehabilitationapp.ui.analysis.NativeMotionAnalyzer.Span;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CheekMotionAnalyzer
+ * - count_puff_cheek.py / count_reduce_cheek.py 的 analyze_csv（兩支計數邏輯與參數相同）
+ * - 每列左右臉頰各 18 點擬合二次曲面 → 曲率和當訊號 → MAINTAINING 段低通去趨勢 → 零交叉切段
+ *   → DEMO 前後 2 秒窗的能量密度 × R_DEMO 當門檻 → 合併相鄰同向波
+ */
+final class CheekMotionAnalyzer {
+
+    private static final String TAG = "CheekMotionAnalyzer";
+
+    static final int[] LEFT_CHEEK_IDXS = {117, 118, 101, 36, 203, 212, 214, 192, 147, 123, 98, 97, 164, 0, 37, 39, 40, 186};
+    static final int[] RIGHT_CHEEK_IDXS = {164, 0, 267, 269, 270, 410, 423, 327, 326, 432, 434, 416, 376, 352, 346, 347, 330, 266};
+
+    private static final double FS_DEFAULT = 10.0;
+    private static final double CUTOFF_DEFAULT = 2.0;   // 自動 cutoff 失敗時的備援值
+    private static final double CUTOFF_FIXED = 1.0;     // 估得到週期時 .py 目前固定用 1.0
+    private static final int ORDER = 4;
+    private static final double MIN_ACTION_DURATION = 0.3;
+    private static final double MAX_ACTION_DURATION = 6.0;
+    private static final double DEMO_SIDE_SEC = 2.0;
+    private static final double R_DEMO = 0.4;
+    private static final double BRIDGE_MAX_SEC = 0.2;
+
+    private CheekMotionAnalyzer() {}
+
+    static CSVMotioner.PyAnalysisResult analyze(CsvColumns csv) {
+        if (csv.size() < 10) return NativeMotionAnalyzer.error("資料太少 (< 10 rows)");
+
+        double[] tRaw = require(csv, "time_seconds");
+        double[] curvRaw = curvatureSeries(csv);
+        String[] states = csv.strings("state");
+
+        // === 全段 raw（方向判斷 / DEMO 能量） ===
+        boolean[] mAll = NativeMotionAnalyzer.finiteBoth(tRaw, curvRaw);
+        double[] tAll = NativeMotionAnalyzer.select(tRaw, mAll);
+        double[] rAll = NativeMotionAnalyzer.select(curvRaw, mAll);
+        boolean[] maskDemo = (states != null)
+                ? NativeMotionAnalyzer.select(NativeMotionAnalyzer.stateContains(states, "DEMO"), mAll)
+                : null;
+
+        String dir = inferDirFromDemo(tAll, rAll, maskDemo);
+        if (dir == null) dir = "N";
+        boolean positiveDir = "P".equals(dir);
+
+        // === 僅對 MAINTAINING 處理 ===
+        boolean[] mainRows = (states != null)
+                ? NativeMotionAnalyzer.stateContains(states, "MAINTAINING")
+                : all(tRaw.length);
+        double[] t = NativeMotionAnalyzer.select(tRaw, mainRows);
+        double[] r = NativeMotionAnalyzer.select(curvRaw, mainRows);
+        boolean[] m = NativeMotionAnalyzer.finiteBoth(t, r);
+        t = NativeMotionAnalyzer.select(t, m);
+        r = NativeMotionAnalyzer.select(r, m);
+
+        if (t.length < 2) {
+            return NativeMotionAnalyzer.ok();
+        }
+
+        double fs = calculateFs(csv);
+        double cutoff = autoCutoff(r, fs);
+
+        // === 濾波 / 基線 / 去趨勢 ===
+        double[] rFilt = lowpass(r, fs, cutoff);
+        double[] baseline = movingAverage(rFilt, (int) (7.0 * fs));
+        double[] rDetrend = new double[rFilt.length];
+        for (int i = 0; i < rDetrend.length; i++) rDetrend[i] = rFilt[i] - baseline[i];
+
+        // === 零交叉 ===
+        double std = rDetrend.length > 0 ? SignalKit.std(rDetrend) : 0.0;
+        double deadband = std > 0 ? 0.000 * std : 0.0;
+        int minInterval = (int) (0.5 * fs);
+        List<Integer> zcUp = new ArrayList<>(), zcDown = new ArrayList<>();
+        List<Integer> zcAll = zeroCrossings(rDetrend, minInterval, deadband, zcUp, zcDown);
+
+        // === DEMO 能量 ===
+        double[] demo = demoFeatures(tAll, rAll, maskDemo, fs, cutoff, positiveDir);
+        double energyThreshold = demo[1];
+        Log.d(TAG, "[ENERGY] DEMO=" + demo[0] + ", Threshold=" + energyThreshold);
+
+        // === 建段 + 逐段判定 ===
+        List<Span> spans = new ArrayList<>();
+        for (int i = 0; i < zcAll.size() - 1; i++) {
+            int s = zcAll.get(i), e = zcAll.get(i + 1);
+            if (e <= s) continue;
+            boolean isPos = SignalKit.mean(rDetrend, s, e) >= 0.0;
+            if (isPos != positiveDir) continue;
+
+            double duration = t[e - 1] - t[s];
+            if (duration < MIN_ACTION_DURATION || duration > MAX_ACTION_DURATION) continue;
+            double segEnergy = energyDensity(rDetrend, t, s, e, fs, t[s], t[e - 1], positiveDir);
+            if (segEnergy >= energyThreshold) {
+                spans.add(new Span(t[s], t[e - 1], duration, positiveDir));
+            }
+        }
+        spans = NativeMotionAnalyzer.mergeByTime(spans, BRIDGE_MAX_SEC);
+
+        // === 輸出（Python float 的 round） ===
+        CSVMotioner.PyAnalysisResult result = NativeMotionAnalyzer.ok();
+        double total = 0;
+        for (Span sp : spans) {
+            total += sp.duration;
+            NativeMotionAnalyzer.addSegment(result,
+                    SignalKit.roundPy(sp.start, 3), SignalKit.roundPy(sp.end, 3), SignalKit.roundPy(sp.duration, 3));
+        }
+        result.actionCount = spans.size();
+        result.totalActionTime = SignalKit.roundPy(total, 3);
+
+        CSVMotioner.PyAnalysisResult.DebugInfo dbg = result.debug;
+        dbg.fsHz = fs;
+        dbg.cutoff = SignalKit.roundPy(cutoff, 3);
+        dbg.order = ORDER;
+        dbg.zcAll = zcAll.size();
+        dbg.zcUp = zcUp.size();
+        dbg.zcDown = zcDown.size();
+        dbg.deadband = deadband;
+        dbg.minInterval = minInterval;
+        return result;
+    }
+
+    // ================= 曲率 =================
+
+    // 每列：左右臉頰各自擬合 z = a x² + b xy + c y² + d x + e y + f，曲率 proxy 相加
+    private static double[] curvatureSeries(CsvColumns csv) {
+        double[][] lx = new double[LEFT_CHEEK_IDXS.length][], ly = new double[LEFT_CHEEK_IDXS.length][], lz = new double[LEFT_CHEEK_IDXS.length][];
+        double[][] rx = new double[RIGHT_CHEEK_IDXS.length][], ry = new double[RIGHT_CHEEK_IDXS.length][], rz = new double[RIGHT_CHEEK_IDXS.length][];
+        for (int k = 0; k < LEFT_CHEEK_IDXS.length; k++) {
+            lx[k] = require(csv, "point" + LEFT_CHEEK_IDXS[k] + "_x");
+            ly[k] = require(csv, "point" + LEFT_CHEEK_IDXS[k] + "_y");
+            lz[k] = require(csv, "point" + LEFT_CHEEK_IDXS[k] + "_z");
+        }
+        for (int k = 0; k < RIGHT_CHEEK_IDXS.length; k++) {
+            rx[k] = require(csv, "point" + RIGHT_CHEEK_IDXS[k] + "_x");
+            ry[k] = require(csv, "point" + RIGHT_CHEEK_IDXS[k] + "_y");
+            rz[k] = require(csv, "point" + RIGHT_CHEEK_IDXS[k] + "_z");
+        }
+        int n = csv.size();
+        double[] out = new double[n];
+        double[][] aL = new double[LEFT_CHEEK_IDXS.length][6], aR = new double[RIGHT_CHEEK_IDXS.length][6];
+        double[] zL = new double[LEFT_CHEEK_IDXS.length], zR = new double[RIGHT_CHEEK_IDXS.length];
+        for (int row = 0; row < n; row++) {
+            out[row] = patchCurvature(lx, ly, lz, row, aL, zL) + patchCurvature(rx, ry, rz, row, aR, zR);
+        }
+        return out;
+    }
+
+    // cheek_patch_curvature：sqrt((2a)² + (2c)² + 2b²)
+    static double patchCurvature(double[][] xs, double[][] ys, double[][] zs, int row, double[][] a, double[] z) {
+        int k = xs.length;
+        if (k < 6) return 0.0;
+        for (int i = 0; i < k; i++) {
+            double x = xs[i][row], y = ys[i][row];
+            if (!NativeMotionAnalyzer.isFinite(x) || !NativeMotionAnalyzer.isFinite(y)
+                    || !NativeMotionAnalyzer.isFinite(zs[i][row])) {
+                return Double.NaN;  // 之後被 isfinite 濾掉
+            }
+            a[i][0] = x * x;
+            a[i][1] = x * y;
+            a[i][2] = y * y;
+            a[i][3] = x;
+            a[i][4] = y;
+            a[i][5] = 1.0;
+            z[i] = zs[i][row];
+        }
+        double[] coef = SignalKit.leastSquares(a, z);
+        double qa = coef[0], qb = coef[1], qc = coef[2];
+        return Math.sqrt((2 * qa) * (2 * qa) + (2 * qc) * (2 * qc) + 2 * (qb * qb));
+    }
+
+    // ================= 各步驟 =================
+
+    // infer_dir_from_demo_by_series：DEMO 相對前後平均連線的上下面積；判斷不了回 null
+    private static String inferDirFromDemo(double[] tAll, double[] rAll, boolean[] maskDemo) {
+        if (maskDemo == null || NativeMotionAnalyzer.count(maskDemo) < 6) {
+            Log.d(TAG, "[DIR] DEMO too short -> fallback 'N'");
+            return null;
+        }
+        double[] tDemo = NativeMotionAnalyzer.select(tAll, maskDemo);
+        double[] rDemo = NativeMotionAnalyzer.select(rAll, maskDemo);
+        double tMin = tDemo[0], tMax = tDemo[tDemo.length - 1];
+
+        boolean[] left = new boolean[tAll.length], right = new boolean[tAll.length];
+        for (int i = 0; i < tAll.length; i++) {
+            left[i] = tAll[i] >= tMin - DEMO_SIDE_SEC && tAll[i] < tMin;
+            right[i] = tAll[i] > tMax && tAll[i] <= tMax + DEMO_SIDE_SEC;
+        }
+        if (NativeMotionAnalyzer.count(left) == 0 || NativeMotionAnalyzer.count(right) == 0) {
+            Log.d(TAG, "[DIR] not enough side data -> fallback 'N'");
+            return null;
+        }
+        double leftAvg = SignalKit.mean(NativeMotionAnalyzer.select(rAll, left));
+        double rightAvg = SignalKit.mean(NativeMotionAnalyzer.select(rAll, right));
+
+        int n = tDemo.length;
+        double[] pos = new double[n], neg = new double[n];
+        for (int i = 0; i < n; i++) {
+            double base = leftAvg + (rightAvg - leftAvg) * (tDemo[i] - tDemo[0]) / (tDemo[n - 1] - tDemo[0]);
+            double diff = rDemo[i] - base;
+            pos[i] = clipLow(diff);
+            neg[i] = clipLow(-diff);
+        }
+        double posArea = SignalKit.trapz(pos, tDemo);
+        double negArea = SignalKit.trapz(neg, tDemo);
+        String d = posArea > negArea ? "P" : "N";
+        Log.d(TAG, "[DIR] Lavg=" + leftAvg + ", Ravg=" + rightAvg + ", pos=" + posArea + ", neg=" + negArea + " -> dir=" + d);
+        return d;
+    }
+
+    // compute_demo_features：DEMO 前後各 2 秒的窗自己濾波去趨勢，算 DEMO 段能量密度 → {E_demo, 門檻}
+    private static double[] demoFeatures(double[] tAll, double[] rAll, boolean[] maskDemo,
+                                         double fs, double cutoff, boolean positive) {
+        if (maskDemo == null || NativeMotionAnalyzer.count(maskDemo) < 3) return new double[]{0.0, 0.0};
+        int first = -1, last = -1;
+        for (int i = 0; i < maskDemo.length; i++) {
+            if (maskDemo[i]) {
+                if (first < 0) first = i;
+                last = i;
+            }
+        }
+        double tStart = tAll[first], tEnd = tAll[last];
+
+        boolean[] win = new boolean[tAll.length];
+        for (int i = 0; i < tAll.length; i++) {
+            win[i] = tAll[i] >= tStart - DEMO_SIDE_SEC && tAll[i] <= tEnd + DEMO_SIDE_SEC;
+        }
+        if (NativeMotionAnalyzer.count(win) == 0) return new double[]{0.0, 0.0};
+        double[] tWin = NativeMotionAnalyzer.select(tAll, win);
+        double[] rWin = NativeMotionAnalyzer.select(rAll, win);
+
+        double[] filt = lowpass(rWin, fs, cutoff);
+        double[] base = movingAverage(filt, (int) (7.0 * fs));
+        double[] det = new double[filt.length];
+        for (int i = 0; i < det.length; i++) det[i] = filt[i] - base[i];
+
+        double e = energyDensity(det, tWin, 0, det.length, fs, tStart, tEnd, positive);
+        return new double[]{e, R_DEMO * e};
+    }
+
+    // energy_density_interval_dir（cheek 版：(總和/fs) / 秒數）
+    private static double energyDensity(double[] x, double[] t, int from, int to, double fs,
+                                        double t0, double t1, boolean positive) {
+        double[] vals = new double[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (t[i] < t0 || t[i] > t1) continue;
+            if (positive && x[i] > 0) vals[n++] = x[i];
+            else if (!positive && x[i] < 0) vals[n++] = -x[i];
+        }
+        if (n == 0) return 0.0;
+        double total = SignalKit.sum(vals, 0, n) / fs;
+        double dur = n / fs;
+        return total / Math.max(dur, 1e-9);
+    }
+
+    // zero_crossings（cheek 版）：回傳全部，另外分上升 / 下降
+    private static List<Integer> zeroCrossings(double[] x, int minInterval, double deadband,
+                                               List<Integer> up, List<Integer> down) {
+        List<Integer> all = new ArrayList<>();
+        int last = -minInterval;
+        for (int i = 1; i < x.length; i++) {
+            double a = x[i - 1], b = x[i];
+            if (Double.isNaN(a) || Double.isNaN(b)) continue;
+            if (a <= 0 && b > 0 && Math.abs(b) > deadband) {
+                if (i - last >= minInterval) {
+                    all.add(i);
+                    up.add(i);
+                    last = i;
+                }
+            } else if (a >= 0 && b < 0 && Math.abs(b) > deadband) {
+                if (i - last >= minInterval) {
+                    all.add(i);
+                    down.add(i);
+                    last = i;
+                }
+            }
+        }
+        return all;
+    }
+
+    // auto_cutoff_from_signal（cheek 版）：自相關在 0.5~4 秒找得到峰就用固定 cutoff
+    private static double autoCutoff(double[] r, double fs) {
+        if (r.length < Math.max(16, (int) (1.5 * fs))) {
+            Log.d(TAG, "[AUTO-CUTOFF] data too short -> fallback cutoff");
+            return CUTOFF_DEFAULT;
+        }
+        double[] xf = lowpass(r, fs, Math.min(1.5, 0.49 * fs));
+        double[] base = movingAverage(xf, (int) Math.max(3, 2.0 * fs));
+        int n = xf.length;
+        double[] xd = new double[n];
+        for (int i = 0; i < n; i++) xd[i] = xf[i] - base[i];
+
+        double std = SignalKit.std(xd);
+        if (std < 1e-12) {
+            Log.d(TAG, "[AUTO-CUTOFF] flat signal -> fallback cutoff");
+            return CUTOFF_DEFAULT;
+        }
+        double mean = SignalKit.mean(xd);
+        double[] xn = new double[n];
+        for (int i = 0; i < n; i++) xn[i] = (xd[i] - mean) / std;
+
+        int minLag = Math.max((int) (0.5 * fs), 1);
+        int maxLag = Math.min((int) (4.0 * fs), n - 1);
+        if (maxLag <= minLag) {
+            Log.d(TAG, "[AUTO-CUTOFF] bad lag window -> fallback cutoff");
+            return CUTOFF_DEFAULT;
+        }
+        double[] ac = SignalKit.autocorrelation(xn, maxLag + 1);
+        if (SignalKit.findPeaks(ac, minLag, maxLag + 1, 0.05).length > 0) {
+            return CUTOFF_FIXED;
+        }
+        Log.d(TAG, "⚠️ [AUTO-CUTOFF] autocorr failed -> fallback cutoff=" + CUTOFF_DEFAULT + "Hz");
+        return CUTOFF_DEFAULT;
+    }
+
+    // calculate_fs_from_csv（cheek 版）：MAINTAINING 每秒幀數，依出現順序去頭尾取最小
+    static double calculateFs(CsvColumns csv) {
+        try {
+            double[] tRaw = csv.numbers("time_seconds");
+            String[] states = csv.strings("state");
+            if (tRaw == null) return FS_DEFAULT;
+            int rowsMain = 0;
+            Map<Integer, Integer> secCounts = new LinkedHashMap<>();
+            for (int i = 0; i < tRaw.length; i++) {
+                if (states != null && !"MAINTAINING".equals(states[i])) continue;
+                rowsMain++;
+                if (Double.isNaN(tRaw[i])) continue;  // dropna
+                secCounts.merge((int) tRaw[i], 1, Integer::sum);
+            }
+            int kept = 0;
+            for (int c : secCounts.values()) kept += c;
+            if (rowsMain < 2 || kept < 2 || secCounts.isEmpty()) return FS_DEFAULT;
+
+            List<Integer> vals = new ArrayList<>(secCounts.values());
+            List<Integer> stable = vals.size() > 2 ? vals.subList(1, vals.size() - 1) : vals;
+            int min = Integer.MAX_VALUE;
+            for (int c : stable) min = Math.min(min, c);
+            return min;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ FS calculation error, using default " + FS_DEFAULT, e);
+            return FS_DEFAULT;
+        }
+    }
+
+    // lowpass_filter（< 8 點不濾）
+    private static double[] lowpass(double[] x, double fs, double cutoff) {
+        if (x.length < 8) return x;
+        cutoff = Math.min(cutoff, 0.49 * fs);
+        double[][] ba = SignalKit.butterLowpass(ORDER, cutoff / (fs / 2));
+        return SignalKit.filtfilt(ba[0], ba[1], x);
+    }
+
+    // moving_average（cheek 版：視窗下限 1，太短時跟 Python 一樣失敗）
+    private static double[] movingAverage(double[] x, int win) {
+        return SignalKit.movingAverage(x, Math.max(1, Math.min(win, x.length / 2)));
+    }
+
+    private static double[] require(CsvColumns csv, String name) {
+        double[] col = csv.numbers(name);
+        if (col == null) throw new IllegalArgumentException("找不到欄位: " + name);
+        return col;
+    }
+
+    private static double clipLow(double v) {
+        return (v < 0) ? 0 : v;  // np.clip(v, 0, None)，NaN 照舊
+    }
+
+    private static boolean[] all(int n) {
+        boolean[] out = new boolean[n];
+        Arrays.fill(out, true);
+        return out;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CsvColumns
+ * - 訓練 CSV 讀成欄式：state 一欄字串，其餘欄位需要時才轉成 double[]（解析失敗 = NaN，同 pd.to_numeric(errors="coerce")）
+ * - 欄名重複時取第一個（同 pandas：後面的會被改名成 xxx.1）
+ * - 給 Native*Analyzer 用，取代 pandas.read_csv
+ * - 資料來源可以是 CSV 檔，也可以是錄製端記憶體裡的欄（Source），分析器不用等檔案落地再讀回來
+ *
+ * 純 Java，不依賴 Android。
+ */
+public class CsvColumns {
+
+    /** 欄資料來源；col = header 裡的位置 */
+    public interface Source {
+        int size();
+
+        /** 整欄數值，長度 = size()（讀不到的格給 NaN） */
+        double[] numbers(int col);
+
+        /** 整欄原始字串，長度 = size()（沒有這格給 null） */
+        String[] strings(int col);
+    }
+
+    private final String[] names;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final Source source;
+    private final Map<Integer, double[]> numeric = new HashMap<>();
+
+    private CsvColumns(String[] names, Source source) {
+        this.names = names;
+        this.source = source;
+        for (int i = 0; i < names.length; i++) {
+            index.putIfAbsent(names[i].trim(), i);
+        }
+    }
+
+    /** 直接包記憶體裡的欄（例 FaceDataRecorder 的 SessionTable） */
+    public static CsvColumns of(String[] names, Source source) {
+        return new CsvColumns(names, source);
+    }
+
+    public static CsvColumns read(File file) throws IOException {
+        try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return read(r);
+        }
+    }
+
+    public static CsvColumns read(Reader reader) throws IOException {
+        BufferedReader br = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+        String header = br.readLine();
+        if (header == null) throw new IOException("CSV 是空的");
+        if (header.startsWith("\uFEFF")) header = header.substring(1);
+        String[] names = header.split(",", -1);
+
+        List<String[]> rows = new ArrayList<>();
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.trim().isEmpty()) continue;  // pandas 預設略過空行
+            rows.add(line.split(",", -1));
+        }
+        return new CsvColumns(names, new TextRows(rows));
+    }
+
+    public int size() {
+        return source.size();
+    }
+
+    public boolean has(String name) {
+        return index.containsKey(name);
+    }
+
+    /** 不分大小寫找欄名（lips 版 cols = {c.lower(): c}） */
+    public String findIgnoreCase(String name) {
+        String hit = null;
+        for (String n : names) {
+            if (n.trim().equalsIgnoreCase(name)) hit = n.trim();  // 後面的覆蓋前面的，同 dict comprehension
+        }
+        return hit;
+    }
+
+    /** 整欄轉數值（快取）；沒有這欄回 null */
+    public double[] numbers(String name) {
+        Integer col = index.get(name);
+        if (col == null) return null;
+        double[] out = numeric.get(col);
+        if (out != null) return out;
+        out = source.numbers(col);
+        numeric.put(col, out);
+        return out;
+    }
+
+    /** 整欄字串；沒有這欄回 null（缺值給 "nan"，同 astype(str)） */
+    public String[] strings(String name) {
+        Integer col = index.get(name);
+        if (col == null) return null;
+        String[] out = source.strings(col);
+        for (int i = 0; i < out.length; i++) {
+            String v = (out[i] == null) ? "" : out[i].trim();
+            out[i] = v.isEmpty() ? "nan" : v;
+        }
+        return out;
+    }
+
+    // 從 CSV 文字讀進來的列
+    private static final class TextRows implements Source {
+        private final List<String[]> rows;
+
+        TextRows(List<String[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+
+        @Override
+        public double[] numbers(int col) {
+            double[] out = new double[rows.size()];
+            for (int i = 0; i < out.length; i++) {
+                String[] r = rows.get(i);
+                out[i] = (col < r.length) ? parse(r[col]) : Double.NaN;
+            }
+            return out;
+        }
+
+        @Override
+        public String[] strings(int col) {
+            String[] out = new String[rows.size()];
+            for (int i = 0; i < out.length; i++) {
+                String[] r = rows.get(i);
+                out[i] = (col < r.length) ? r[col] : null;
+            }
+            return out;
+        }
+    }
+
+    private static double parse(String s) {
+        String v = s.trim();
+        if (v.isEmpty()) return Double.NaN;
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import android.util.Log;
+
+import com.example.rehabilitationapp.ui.analysis.NativeMotionAnalyzer.Span;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LipMotionAnalyzer
+ * - count_pout_lips.py / count_sip_lips.py 的 analyze_csv（兩支只差常數，見 Profile）
+ * - 全段低通 → 7 秒移動平均去趨勢 → MAINTAINING 段零交叉切段 → 以 DEMO 能量密度當門檻挑動作
+ */
+final class LipMotionAnalyzer {
+
+    private static final String TAG = "LipMotionAnalyzer";
+
+    private static final double FS_DEFAULT = 10.0;
+    private static final int ORDER = 4;
+    private static final double DEMO_SIDE_SEC = 2.0;
+    private static final double MIN_ACTION_DURATION = 0.3;
+    private static final double MAX_ACTION_DURATION = 6.0;
+    private static final double MIN_DEMO_ENERGY = 1e-5;
+    private static final double BRIDGE_MAX_SEC = 0.01;
+
+    enum Profile {
+        //           CUTOFF_DEFAULT, 固定 cutoff, R_DEMO
+        POUT(1.0, 1.0, 0.6),
+        SIP(2.0, 2.0, 0.2);
+
+        final double cutoffDefault;
+        final double cutoffFixed;
+        final double rDemo;
+
+        Profile(double cutoffDefault, double cutoffFixed, double rDemo) {
+            this.cutoffDefault = cutoffDefault;
+            this.cutoffFixed = cutoffFixed;
+            this.rDemo = rDemo;
+        }
+    }
+
+    private LipMotionAnalyzer() {}
+
+    static CSVMotioner.PyAnalysisResult analyze(CsvColumns csv, Profile profile) {
+        String pointName;
+        if (csv.findIgnoreCase("outer_mouth_z_avg") != null) {
+            pointName = csv.findIgnoreCase("outer_mouth_z_avg");
+        } else if (csv.findIgnoreCase("total_lip_area") != null) {
+            pointName = csv.findIgnoreCase("total_lip_area");
+        } else {
+            return NativeMotionAnalyzer.error("找不到欄位");
+        }
+        String timeName = csv.findIgnoreCase("time_seconds");
+        if (timeName == null) return NativeMotionAnalyzer.error("缺少欄位");
+        String stateName = csv.findIgnoreCase("state");
+
+        double[] tRaw = csv.numbers(timeName);
+        double[] rRaw = csv.numbers(pointName);
+        String[] states = (stateName != null) ? csv.strings(stateName) : null;
+
+        String dirEff = inferDirFromDemo(tRaw, rRaw, states, "N");
+        boolean positive = "P".equals(dirEff);
+
+        // df_main：state == "MAINTAINING"（完全相等），只拿來檢查長度與估 cutoff
+        boolean[] exactMain = new boolean[tRaw.length];
+        for (int i = 0; i < exactMain.length; i++) {
+            exactMain[i] = states == null || "MAINTAINING".equals(states[i]);
+        }
+        double[] t = NativeMotionAnalyzer.select(tRaw, exactMain);
+        double[] r = NativeMotionAnalyzer.select(rRaw, exactMain);
+        boolean[] m = NativeMotionAnalyzer.finiteBoth(t, r);
+        t = NativeMotionAnalyzer.select(t, m);
+        r = NativeMotionAnalyzer.select(r, m);
+
+        double fs = calculateFs(csv);
+
+        boolean[] mFull = NativeMotionAnalyzer.finiteBoth(tRaw, rRaw);
+        double[] tAll = NativeMotionAnalyzer.select(tRaw, mFull);
+        double[] rAll = NativeMotionAnalyzer.select(rRaw, mFull);
+
+        if (t.length < 2) {
+            return NativeMotionAnalyzer.ok();
+        }
+
+        double cutoff = autoCutoff(r, fs, profile);
+
+        double[] rAllFilt = lowpass(rAll, fs, cutoff, ORDER);
+        int baselineWindow = Math.max(3, Math.min((int) (7.0 * fs), rAllFilt.length / 2));
+        double[] baselineAll = movingAverage(rAllFilt, baselineWindow);
+        double[] rAllDetrend = new double[rAllFilt.length];
+        for (int i = 0; i < rAllDetrend.length; i++) rAllDetrend[i] = rAllFilt[i] - baselineAll[i];
+
+        boolean[] maskMain = new boolean[tAll.length];
+        boolean[] maskDemo = null;
+        if (states != null) {
+            maskMain = NativeMotionAnalyzer.select(NativeMotionAnalyzer.stateContains(states, "MAINTAINING"), mFull);
+            maskDemo = NativeMotionAnalyzer.select(NativeMotionAnalyzer.stateContains(states, "DEMO"), mFull);
+        }
+        double[] tMain = NativeMotionAnalyzer.select(tAll, maskMain);
+        double[] rDetrend = NativeMotionAnalyzer.select(rAllDetrend, maskMain);
+
+        // 零交叉，補頭尾邊界
+        int minInterval = (int) (0.5 * fs);
+        List<Integer> zc = zeroCrossings(rDetrend, 0.0, minInterval);
+        int last = rDetrend.length - 1;
+        if (zc.isEmpty()) {
+            zc.add(0);
+            zc.add(last);
+        } else {
+            if (zc.get(0) > 0) zc.add(0, 0);
+            if (zc.get(zc.size() - 1) < last) zc.add(last);
+        }
+
+        double demoE = demoEnergyFromBaseline(tAll, maskDemo, rAllDetrend, fs, positive);
+        double energyThreshold;
+        if (demoE < MIN_DEMO_ENERGY) {
+            double stdMain = rDetrend.length > 0 ? SignalKit.std(rDetrend) : 1e-6;
+            energyThreshold = 0.15 * stdMain;
+            Log.d(TAG, "⚠️ DEMO 能量不足，使用備援門檻 = " + energyThreshold);
+        } else {
+            energyThreshold = profile.rDemo * demoE;
+        }
+
+        List<Span> spans = new ArrayList<>();
+        for (int i = 0; i < zc.size() - 1; i++) {
+            int s = zc.get(i), e = zc.get(i + 1);
+            if (e <= s || s < 0) continue;  // 空切片
+            double segMean = SignalKit.mean(rDetrend, s, e);
+            if ((positive && segMean > 0) || (!positive && segMean < 0)) {
+                Span span = halfWave(s, e, rDetrend, tMain, fs, energyThreshold, positive);
+                if (span != null) spans.add(span);
+            }
+        }
+        spans.sort((a, b) -> Double.compare(a.start, b.start));
+        spans = NativeMotionAnalyzer.mergeByTime(spans, BRIDGE_MAX_SEC);
+
+        CSVMotioner.PyAnalysisResult result = NativeMotionAnalyzer.ok();
+        double total = 0;
+        for (Span sp : spans) {
+            total += sp.duration;
+            NativeMotionAnalyzer.addSegment(result, sp.start, sp.end, sp.duration);
+        }
+        result.actionCount = spans.size();
+        result.totalActionTime = SignalKit.roundNp(total, 3);
+
+        CSVMotioner.PyAnalysisResult.DebugInfo dbg = result.debug;
+        dbg.fsHz = fs;
+        dbg.cutoff = cutoff;
+        dbg.order = ORDER;
+        dbg.zcAll = zc.size();
+        dbg.zcUp = 0;
+        dbg.zcDown = 0;
+        dbg.deadband = 0.0;
+        dbg.minInterval = minInterval;
+        return result;
+    }
+
+    // analyze_high_peaks / analyze_low_troughs：時間驗證 + 方向能量密度
+    private static Span halfWave(int s, int e, double[] rDetrend, double[] t, double fs,
+                                 double energyThreshold, boolean positive) {
+        double duration = t[e - 1] - t[s];
+        if (duration < MIN_ACTION_DURATION) return null;
+        if (duration > MAX_ACTION_DURATION) {
+            Log.d(TAG, "⚠️ 異常：動作持續 " + duration + " 秒（超過 " + MAX_ACTION_DURATION + " 秒限制）");
+            return null;
+        }
+        double segEnergy = energyDensity(rDetrend, t, s, e, fs, t[s], t[e - 1], positive);
+        if (!(segEnergy >= energyThreshold)) return null;
+
+        double st = t[s], ed = t[e];
+        return new Span(SignalKit.roundNp(st, 3), SignalKit.roundNp(ed, 3), SignalKit.roundNp(ed - st, 3), positive);
+    }
+
+    // energy_density_interval_dir（lips 版：總和 / 秒數）
+    private static double energyDensity(double[] x, double[] t, int from, int to, double fs,
+                                        double t0, double t1, boolean positive) {
+        double[] vals = new double[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (t[i] < t0 || t[i] > t1) continue;
+            if (positive && x[i] > 0) vals[n++] = x[i];
+            else if (!positive && x[i] < 0) vals[n++] = -x[i];
+        }
+        if (n == 0) return 0.0;
+        double total = SignalKit.sum(vals, 0, n);
+        double dur = n / fs;
+        return total / Math.max(dur, 1e-9);
+    }
+
+    // compute_demo_energy_from_baseline：用全段 detrend，扣 DEMO 前 2 秒平均當基準
+    private static double demoEnergyFromBaseline(double[] tAll, boolean[] maskDemo, double[] rAllDetrend,
+                                                 double fs, boolean positive) {
+        if (maskDemo == null || NativeMotionAnalyzer.count(maskDemo) < 3) return 0.0;
+        int first = -1, lastIdx = -1;
+        for (int i = 0; i < maskDemo.length; i++) {
+            if (maskDemo[i]) {
+                if (first < 0) first = i;
+                lastIdx = i;
+            }
+        }
+        double tStart = tAll[first], tEnd = tAll[lastIdx];
+
+        boolean[] maskRef = new boolean[tAll.length];
+        for (int i = 0; i < tAll.length; i++) {
+            maskRef[i] = tAll[i] >= tStart - DEMO_SIDE_SEC && tAll[i] < tStart;
+        }
+        if (NativeMotionAnalyzer.count(maskRef) < (int) (fs * 0.5)) {
+            Log.d(TAG, "⚠️ DEMO 前資料不足");
+            return 0.0;
+        }
+        double baselineRef = SignalKit.mean(NativeMotionAnalyzer.select(rAllDetrend, maskRef));
+
+        boolean[] maskDemoT = new boolean[tAll.length];
+        for (int i = 0; i < tAll.length; i++) {
+            maskDemoT[i] = tAll[i] >= tStart && tAll[i] <= tEnd;
+        }
+        double[] tDemo = NativeMotionAnalyzer.select(tAll, maskDemoT);
+        double[] rDemo = NativeMotionAnalyzer.select(rAllDetrend, maskDemoT);
+        for (int i = 0; i < rDemo.length; i++) rDemo[i] -= baselineRef;
+
+        double e = energyDensity(rDemo, tDemo, 0, rDemo.length, fs, tStart, tEnd, positive);
+        if (e < MIN_DEMO_ENERGY) {
+            Log.d(TAG, "❌ DEMO 品質極差（能量 = " + e + "）");
+        }
+        return e;
+    }
+
+    // infer_dir_from_demo：DEMO 段相對前後 2 秒平均連線的上下面積
+    private static String inferDirFromDemo(double[] tRaw, double[] rRaw, String[] states, String dirDefault) {
+        if (states == null) return dirDefault;
+        boolean[] demoRaw = NativeMotionAnalyzer.stateContains(states, "DEMO");
+        if (NativeMotionAnalyzer.count(demoRaw) == 0) {
+            Log.d(TAG, "⚠️ 找不到 DEMO，用預設 " + dirDefault);
+            return dirDefault;
+        }
+        boolean[] valid = NativeMotionAnalyzer.finiteBoth(tRaw, rRaw);
+        double[] tAll = NativeMotionAnalyzer.select(tRaw, valid);
+        double[] rAll = NativeMotionAnalyzer.select(rRaw, valid);
+        boolean[] maskDemo = NativeMotionAnalyzer.select(demoRaw, valid);
+        if (NativeMotionAnalyzer.count(maskDemo) < 5) return dirDefault;
+
+        double[] tDemo = NativeMotionAnalyzer.select(tAll, maskDemo);
+        double[] rDemo = NativeMotionAnalyzer.select(rAll, maskDemo);
+        double t0 = tDemo[0], t1 = tDemo[tDemo.length - 1];
+
+        boolean[] left = new boolean[tAll.length], right = new boolean[tAll.length];
+        for (int i = 0; i < tAll.length; i++) {
+            left[i] = tAll[i] >= t0 - DEMO_SIDE_SEC && tAll[i] < t0;
+            right[i] = tAll[i] > t1 && tAll[i] <= t1 + DEMO_SIDE_SEC;
+        }
+        if (NativeMotionAnalyzer.count(left) < 3 || NativeMotionAnalyzer.count(right) < 3) return dirDefault;
+
+        double leftAvg = SignalKit.mean(NativeMotionAnalyzer.select(rAll, left));
+        double rightAvg = SignalKit.mean(NativeMotionAnalyzer.select(rAll, right));
+
+        int n = tDemo.length;
+        double[] posT = new double[n], posV = new double[n], negT = new double[n], negV = new double[n];
+        int np = 0, nn = 0;
+        for (int i = 0; i < n; i++) {
+            double diff = rDemo[i] - interp2(tDemo[i], t0, t1, leftAvg, rightAvg);
+            if (diff > 0) {
+                posT[np] = tDemo[i];
+                posV[np++] = diff;
+            } else if (diff < 0) {
+                negT[nn] = tDemo[i];
+                negV[nn++] = -diff;
+            }
+        }
+        // 跟 Python 一樣只對挑出來的點做梯形積分（不連續的點也直接相連）
+        double areaPos = np > 0 ? SignalKit.trapz(Arrays.copyOf(posV, np), Arrays.copyOf(posT, np)) : 0;
+        double areaNeg = nn > 0 ? SignalKit.trapz(Arrays.copyOf(negV, nn), Arrays.copyOf(negT, nn)) : 0;
+        String dir = areaPos > areaNeg ? "P" : "N";
+        Log.d(TAG, "📈 方向: " + dir + " (pos=" + areaPos + ", neg=" + areaNeg + ")");
+        return dir;
+    }
+
+    // np.interp(x, [x0, x1], [y0, y1])
+    private static double interp2(double x, double x0, double x1, double y0, double y1) {
+        if (x >= x1) return y1;
+        if (x <= x0) return y0;
+        double slope = (y1 - y0) / (x1 - x0);
+        return slope * (x - x0) + y0;
+    }
+
+    // auto_cutoff_from_signal：估得到主週期就用固定 cutoff，否則 CUTOFF_DEFAULT（兩支 .py 目前兩者相同，仍照流程算以保留例外行為）
+    private static double autoCutoff(double[] r, double fs, Profile profile) {
+        if (r.length < (int) (2 * fs)) return profile.cutoffDefault;
+        double[][] ba = SignalKit.butterLowpass(4, Math.min(1.5, 0.49 * fs) / (fs / 2));
+        double[] xf = SignalKit.filtfilt(ba[0], ba[1], r);
+        double[] base = movingAverage(xf, (int) (3 * fs));
+        int n = xf.length;
+        double[] xd = new double[n];
+        for (int i = 0; i < n; i++) xd[i] = xf[i] - base[i];
+        double mean = SignalKit.mean(xd);
+        double std = SignalKit.std(xd);
+        double[] xn = new double[n];
+        for (int i = 0; i < n; i++) xn[i] = (xd[i] - mean) / (std + 1e-12);
+
+        int minLag = (int) (0.5 * fs), maxLag = (int) (5.0 * fs);
+        double[] ac = SignalKit.autocorrelation(xn, maxLag);
+        int[] peaks = SignalKit.findPeaks(ac, minLag, Math.min(maxLag, ac.length), 0.05);
+        if (peaks.length == 0) return profile.cutoffDefault;
+        return profile.cutoffFixed;
+    }
+
+    // calculate_fs_from_csv（lips 版）：MAINTAINING 每秒幀數，排除頭尾秒數後取最小
+    static double calculateFs(CsvColumns csv) {
+        try {
+            double[] tRaw = csv.numbers("time_seconds");
+            String[] states = csv.strings("state");
+            if (tRaw == null) return FS_DEFAULT;
+            int rowsMain = 0;
+            Map<Integer, Integer> secCounts = new TreeMap<>();
+            for (int i = 0; i < tRaw.length; i++) {
+                if (states != null && !"MAINTAINING".equals(states[i])) continue;
+                rowsMain++;
+                if (!NativeMotionAnalyzer.isFinite(tRaw[i])) continue;
+                secCounts.merge((int) tRaw[i], 1, Integer::sum);
+            }
+            int finite = 0;
+            for (int c : secCounts.values()) finite += c;
+            if (rowsMain < 2 || finite < 2) return FS_DEFAULT;
+
+            List<Integer> counts = new ArrayList<>(secCounts.values());
+            List<Integer> stable = counts.size() <= 2 ? counts : counts.subList(1, counts.size() - 1);
+            int min = Integer.MAX_VALUE;
+            for (int c : stable) min = Math.min(min, c);
+            return min;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ FS calculation error", e);
+            return FS_DEFAULT;
+        }
+    }
+
+    // zero_crossings（lips 版）：deadband 看兩次交叉之間的最大振幅
+    private static List<Integer> zeroCrossings(double[] x, double deadband, int minInterval) {
+        List<Integer> out = new ArrayList<>();
+        int lastKeep = -minInterval, prevIdx = 0;
+        for (int i = 1; i < x.length; i++) {
+            if (Double.isNaN(x[i - 1]) || Double.isNaN(x[i])) continue;
+            boolean cross = (x[i - 1] <= 0 && x[i] > 0) || (x[i - 1] >= 0 && x[i] < 0);
+            if (!cross) continue;
+            double amp = 0;
+            for (int k = prevIdx; k <= i; k++) {
+                double a = Math.abs(x[k]);
+                if (Double.isNaN(a) || a > amp) amp = a;
+                if (Double.isNaN(amp)) break;
+            }
+            if (amp >= deadband && (i - lastKeep) >= minInterval) {
+                out.add(i);
+                lastKeep = i;
+            }
+            prevIdx = i;
+        }
+        return out;
+    }
+
+    // lowpass_filter（< 8 點不濾）
+    private static double[] lowpass(double[] x, double fs, double cutoff, int order) {
+        if (x.length < 8) return x;
+        cutoff = Math.min(cutoff, 0.49 * fs);
+        double[][] ba = SignalKit.butterLowpass(order, cutoff / (fs / 2));
+        return SignalKit.filtfilt(ba[0], ba[1], x);
+    }
+
+    // moving_average（lips 版：視窗至少 3）
+    private static double[] movingAverage(double[] x, int win) {
+        return SignalKit.movingAverage(x, Math.max(3, Math.min(win, x.length / 2)));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NativeMotionAnalyzer
+ * - count_*.py 的純 Java 版入口：依檔名分派到 Lip / Cheek / Tongue 分析器，回傳跟 Python 版同一個 PyAnalysisResult
+ * - 不啟動 Chaquopy、不 import numpy/scipy/pandas，也不經 PyObject.asMap() 轉型
+ * - 各分析器只吃原生陣列（CsvColumns 讀出來的欄），演算法與參數照對應的 .py 檔
+ */
+public final class NativeMotionAnalyzer {
+
+    private static final String TAG = "CSVMOTIONTEST";
+
+    private NativeMotionAnalyzer() {}
+
+    /** 依檔名選分析器（對應 CSVMotioner 原本的 Python 分派） */
+    public static CSVMotioner.PyAnalysisResult analyzeFile(File csvFile, String fileName) {
+        CSVMotioner.PyAnalysisResult result;
+        try {
+            CsvColumns csv = CsvColumns.read(csvFile);
+            result = analyze(csv, fileName);
+        } catch (Exception e) {
+            Log.e(TAG, "🔥 解析錯誤", e);
+            result = failed();
+        }
+        result.fileName = fileName;
+        return result;
+    }
+
+    /** 已讀好的 CSV 欄位直接分析（測試、記憶體內資料用） */
+    public static CSVMotioner.PyAnalysisResult analyze(CsvColumns csv, String fileName) {
+        CSVMotioner.PyAnalysisResult result;
+        try {
+            if (fileName.contains("POUT_LIPS")) {
+                result = LipMotionAnalyzer.analyze(csv, LipMotionAnalyzer.Profile.POUT);
+            } else if (fileName.contains("SIP_LIPS")) {
+                result = LipMotionAnalyzer.analyze(csv, LipMotionAnalyzer.Profile.SIP);
+            } else if (fileName.contains("PUFF_CHEEK") || fileName.contains("REDUCE_CHEEK")) {
+                // 鼓臉頰 / 縮臉頰兩支 .py 的計數邏輯與參數相同
+                result = CheekMotionAnalyzer.analyze(csv);
+            } else if (fileName.contains("TONGUE_LEFT")) {
+                result = TongueMotionAnalyzer.analyze(csv, "left");
+            } else if (fileName.contains("TONGUE_RIGHT")) {
+                result = TongueMotionAnalyzer.analyze(csv, "right");
+            } else if (fileName.contains("TONGUE_FOWARD") || fileName.contains("TONGUE_DOWN")) {
+                result = TongueMotionAnalyzer.analyze(csv, "down"); // 往前暫時跟往下同一套
+            } else if (fileName.contains("TONGUE_UP")) {
+                result = TongueMotionAnalyzer.analyze(csv, "up");
+            } else {
+                Log.w(TAG, "⚠️ 沒有對應的分析器: " + fileName);
+                result = failed();
+            }
+        } catch (Exception e) {
+            // Python 版 except Exception → status ERROR
+            Log.e(TAG, "🔥 解析錯誤", e);
+            result = failed();
+        }
+        result.fileName = fileName;
+        if (result.success) {
+            Log.d(TAG, "✅ Native 分析: 動作數=" + result.actionCount + ", 總動作時間=" + result.totalActionTime);
+        }
+        return result;
+    }
+
+    // ================= 給各分析器共用 =================
+
+    /** 一段動作；start/end/duration 存的是該 .py 版本算出來的值（有沒有先 round 依版本而定） */
+    static final class Span {
+        final double start;
+        final double end;
+        final double duration;
+        final boolean positive;
+
+        Span(double start, double end, double duration, boolean positive) {
+            this.start = start;
+            this.end = end;
+            this.duration = duration;
+            this.positive = positive;
+        }
+    }
+
+    /** merge_segments_by_time：同方向且間隔 ≤ maxBridgeSec 就合併，重複掃到沒有變化為止 */
+    static List<Span> mergeByTime(List<Span> spans, double maxBridgeSec) {
+        if (spans.size() < 2) return spans;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            List<Span> merged = new ArrayList<>(spans.size());
+            int i = 0;
+            while (i < spans.size()) {
+                if (i + 1 < spans.size()) {
+                    Span s0 = spans.get(i), s1 = spans.get(i + 1);
+                    double gap = s1.start - s0.end;
+                    if (s0.positive == s1.positive && gap <= maxBridgeSec) {
+                        merged.add(new Span(s0.start, s1.end, s1.end - s0.start, s0.positive));
+                        i += 2;
+                        changed = true;
+                        continue;
+                    }
+                }
+                merged.add(spans.get(i));
+                i++;
+            }
+            spans = merged;
+        }
+        return spans;
+    }
+
+    static CSVMotioner.PyAnalysisResult ok() {
+        CSVMotioner.PyAnalysisResult r = new CSVMotioner.PyAnalysisResult();
+        r.success = true;
+        r.breakpoints = new ArrayList<>();
+        r.segments = new ArrayList<>();
+        r.debug = new CSVMotioner.PyAnalysisResult.DebugInfo();
+        return r;
+    }
+
+    static CSVMotioner.PyAnalysisResult failed() {
+        CSVMotioner.PyAnalysisResult r = new CSVMotioner.PyAnalysisResult();
+        r.success = false;
+        return r;
+    }
+
+    static CSVMotioner.PyAnalysisResult error(String message) {
+        Log.w(TAG, "⚠️ 分析失敗: " + message);
+        return failed();
+    }
+
+    static void addSegment(CSVMotioner.PyAnalysisResult r, double start, double end, double duration) {
+        CSVMotioner.PyAnalysisResult.Segment seg = new CSVMotioner.PyAnalysisResult.Segment();
+        seg.index = r.segments.size();
+        seg.startTime = start;
+        seg.endTime = end;
+        seg.duration = duration;
+        r.segments.add(seg);
+        r.breakpoints.add(end);
+    }
+
+    /** state.astype(str).str.contains(word, case=False) */
+    static boolean[] stateContains(String[] states, String word) {
+        boolean[] out = new boolean[states.length];
+        String w = word.toUpperCase();
+        for (int i = 0; i < states.length; i++) {
+            out[i] = states[i].toUpperCase().contains(w);
+        }
+        return out;
+    }
+
+    /** 保留 keep[i] 為 true 的元素 */
+    static double[] select(double[] a, boolean[] keep) {
+        int n = 0;
+        for (boolean k : keep) if (k) n++;
+        double[] out = new double[n];
+        int j = 0;
+        for (int i = 0; i < a.length; i++) if (keep[i]) out[j++] = a[i];
+        return out;
+    }
+
+    static boolean[] select(boolean[] a, boolean[] keep) {
+        int n = 0;
+        for (boolean k : keep) if (k) n++;
+        boolean[] out = new boolean[n];
+        int j = 0;
+        for (int i = 0; i < a.length; i++) if (keep[i]) out[j++] = a[i];
+        return out;
+    }
+
+    static boolean[] finiteBoth(double[] a, double[] b) {
+        boolean[] out = new boolean[a.length];
+        for (int i = 0; i < a.length; i++) {
+            out[i] = isFinite(a[i]) && isFinite(b[i]);
+        }
+        return out;
+    }
+
+    static int count(boolean[] mask) {
+        int n = 0;
+        for (boolean m : mask) if (m) n++;
+        return n;
+    }
+
+    static boolean isFinite(double v) {
+        return !Double.isNaN(v) && !Double.isInfinite(v);
+    }
+}
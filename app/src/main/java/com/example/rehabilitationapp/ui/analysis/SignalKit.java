@@ -0,0 +1,469 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * SignalKit
+ * - count_*.py 用到的 numpy / scipy 函式的純 Java 版本，全部吃原生 double[]
+ * - 演算法照 scipy 原始碼逐步搬（butter 雙線性轉換、lfilter_zi、filtfilt odd padding、
+ *   find_peaks 平台處理 + prominence、uniform_filter1d reflect 邊界），數值與 Python 版一致到捨入誤差
+ * - 加總照 numpy 的 pairwise summation，mean / std 才會跟 np.mean / np.std 對得上
+ *
+ * 純 Java，不依賴 Android。
+ */
+public final class SignalKit {
+
+    private SignalKit() {}
+
+    // ================= 濾波 =================
+
+    /**
+     * scipy.signal.butter(order, wn, btype='low')，wn = cutoff / (fs/2)
+     * @return {b, a}
+     */
+    public static double[][] butterLowpass(int order, double wn) {
+        if (!(wn > 0 && wn < 1)) {
+            throw new IllegalArgumentException("Digital filter critical frequencies must be 0 < Wn < 1: " + wn);
+        }
+        // 預翹曲（scipy 內部 fs=2）
+        double warped = 4.0 * Math.tan(Math.PI * wn / 2.0);
+
+        // buttap：p = -exp(1j*pi*m/(2N))，m = -N+1, -N+3, ..., N-1；lp2lp 後乘 warped
+        double[] pRe = new double[order], pIm = new double[order];
+        for (int k = 0; k < order; k++) {
+            int m = -order + 1 + 2 * k;
+            double th = Math.PI * m / (2.0 * order);
+            pRe[k] = -Math.cos(th) * warped;
+            pIm[k] = -Math.sin(th) * warped;
+        }
+        double gain = Math.pow(warped, order);
+
+        // bilinear_zpk（fs2 = 4）：p_d = (4+p)/(4-p)，k_d = k * real(1 / prod(4-p))，零點全在 -1
+        double prodRe = 1, prodIm = 0;
+        double[] zRe = new double[order], zIm = new double[order];
+        for (int k = 0; k < order; k++) {
+            double nRe = 4 + pRe[k], nIm = pIm[k];
+            double dRe = 4 - pRe[k], dIm = -pIm[k];
+            double den = dRe * dRe + dIm * dIm;
+            zRe[k] = (nRe * dRe + nIm * dIm) / den;
+            zIm[k] = (nIm * dRe - nRe * dIm) / den;
+            double r = prodRe * dRe - prodIm * dIm;
+            prodIm = prodRe * dIm + prodIm * dRe;
+            prodRe = r;
+        }
+        double kd = gain * (prodRe / (prodRe * prodRe + prodIm * prodIm));
+
+        // zpk2tf：b = k * poly(-1...)，a = real(poly(p_d))
+        double[] b = new double[order + 1];
+        double[] aRe = new double[order + 1], aIm = new double[order + 1];
+        b[0] = 1;
+        aRe[0] = 1;
+        for (int k = 0; k < order; k++) {
+            for (int j = k + 1; j >= 1; j--) {
+                b[j] += b[j - 1];
+                double re = aRe[j] - (aRe[j - 1] * zRe[k] - aIm[j - 1] * zIm[k]);
+                double im = aIm[j] - (aRe[j - 1] * zIm[k] + aIm[j - 1] * zRe[k]);
+                aRe[j] = re;
+                aIm[j] = im;
+            }
+        }
+        for (int j = 0; j <= order; j++) b[j] *= kd;
+        return new double[][]{b, aRe};
+    }
+
+    /** scipy.signal.lfilter_zi：step 響應穩態的初始狀態 */
+    public static double[] lfilterZi(double[] b, double[] a) {
+        int n = Math.max(a.length, b.length);
+        double[] bb = Arrays.copyOf(b, n), aa = Arrays.copyOf(a, n);
+        double a0 = aa[0];
+        for (int i = 0; i < n; i++) {
+            bb[i] /= a0;
+            aa[i] /= a0;
+        }
+        int m = n - 1;
+        if (m == 0) return new double[0];
+        // (I - companion(a).T) zi = b[1:] - a[1:] * b[0]
+        double[][] mat = new double[m][m + 1];
+        for (int i = 0; i < m; i++) {
+            mat[i][i] = 1;
+            mat[i][0] += aa[i + 1];
+            if (i + 1 < m) mat[i][i + 1] -= 1;
+            mat[i][m] = bb[i + 1] - aa[i + 1] * bb[0];
+        }
+        return solve(mat, m);
+    }
+
+    /** scipy.signal.lfilter（direct form II transposed），zi 可為 null */
+    public static double[] lfilter(double[] b, double[] a, double[] x, double[] zi) {
+        int n = Math.max(a.length, b.length);
+        double[] bb = Arrays.copyOf(b, n), aa = Arrays.copyOf(a, n);
+        double a0 = aa[0];
+        for (int i = 0; i < n; i++) {
+            bb[i] /= a0;
+            aa[i] /= a0;
+        }
+        double[] z = new double[n - 1];
+        if (zi != null) System.arraycopy(zi, 0, z, 0, n - 1);
+        double[] y = new double[x.length];
+        for (int k = 0; k < x.length; k++) {
+            double xn = x[k];
+            double yn = (n > 1 ? z[0] : 0) + bb[0] * xn;
+            for (int j = 0; j < n - 2; j++) {
+                z[j] = z[j + 1] + xn * bb[j + 1] - yn * aa[j + 1];
+            }
+            if (n > 1) z[n - 2] = xn * bb[n - 1] - yn * aa[n - 1];
+            y[k] = yn;
+        }
+        return y;
+    }
+
+    /**
+     * scipy.signal.filtfilt(b, a, x)（預設 padtype='odd', padlen=3*max(len(a),len(b))）
+     * 長度不夠 padlen 時跟 scipy 一樣丟例外
+     */
+    public static double[] filtfilt(double[] b, double[] a, double[] x) {
+        int edge = 3 * Math.max(a.length, b.length);
+        if (x.length <= edge) {
+            throw new IllegalArgumentException(
+                    "The length of the input vector x must be greater than padlen, which is " + edge + ".");
+        }
+        int n = x.length;
+        double[] ext = new double[n + 2 * edge];
+        for (int i = 0; i < edge; i++) {
+            ext[i] = 2 * x[0] - x[edge - i];
+            ext[edge + n + i] = 2 * x[n - 1] - x[n - 2 - i];
+        }
+        System.arraycopy(x, 0, ext, edge, n);
+
+        double[] zi = lfilterZi(b, a);
+        double[] z = new double[zi.length];
+        for (int i = 0; i < zi.length; i++) z[i] = zi[i] * ext[0];
+        double[] y = lfilter(b, a, ext, z);
+
+        reverse(y);
+        for (int i = 0; i < zi.length; i++) z[i] = zi[i] * y[0];
+        y = lfilter(b, a, y, z);
+        reverse(y);
+        return Arrays.copyOfRange(y, edge, edge + n);
+    }
+
+    /**
+     * count_*.py 的 moving_average 核心：edge padding + np.convolve(mode='same') 再切回原長度
+     * win 由呼叫端先夾好（lips / cheek 版夾法不同）；win//2 == 0 時 Python 會切出空陣列，這裡直接丟例外
+     */
+    public static double[] movingAverage(double[] x, int win) {
+        int n = x.length;
+        int pad = win / 2;
+        if (pad == 0 && n > 0) {
+            throw new IllegalArgumentException("moving_average window too small: " + win);
+        }
+        double k = 1.0 / win;
+        int shift = (win - 1) / 2;
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            // 輸出 i 對應 padded 陣列的 i+pad，卷積窗 = padded[i+pad+shift-j]，j = 0..win-1（超出兩端取邊值）
+            double s = 0;
+            for (int j = 0; j < win; j++) {
+                int q = i + shift - j;
+                s += x[q < 0 ? 0 : (q >= n ? n - 1 : q)] * k;
+            }
+            out[i] = s;
+        }
+        return out;
+    }
+
+    /** scipy.ndimage.uniform_filter1d(x, size)，mode='reflect'，與 C 版一樣用滑動和 */
+    public static double[] uniformFilter1d(double[] x, int size) {
+        int n = x.length;
+        double[] out = new double[n];
+        if (n == 0) return out;
+        int size1 = size / 2;
+        double[] ext = new double[n + size - 1];
+        for (int i = 0; i < ext.length; i++) ext[i] = x[reflectIndex(i - size1, n)];
+        double tmp = 0;
+        for (int i = 0; i < size; i++) tmp += ext[i];
+        tmp /= size;
+        out[0] = tmp;
+        for (int i = 1; i < n; i++) {
+            tmp += (ext[i + size - 1] - ext[i - 1]) / size;
+            out[i] = tmp;
+        }
+        return out;
+    }
+
+    // ================= 最小平方 =================
+
+    /**
+     * np.linalg.lstsq(A, y) 的解（A 為 rows×cols，rows ≥ cols）
+     * Householder QR + 欄主元；欄位線性相依時相依欄係數給 0（numpy 給最小範數解，只在退化資料才會不同）
+     */
+    public static double[] leastSquares(double[][] A, double[] y) {
+        int rows = A.length, cols = A[0].length;
+        double[][] q = new double[rows][];
+        for (int i = 0; i < rows; i++) q[i] = A[i].clone();
+        double[] rhs = y.clone();
+        int[] perm = new int[cols];
+        double[] norms = new double[cols];
+        for (int j = 0; j < cols; j++) {
+            perm[j] = j;
+            for (int i = 0; i < rows; i++) norms[j] += q[i][j] * q[i][j];
+        }
+        double[] diag = new double[cols];
+        int rank = 0;
+        double tol = -1;
+        for (int k = 0; k < cols; k++) {
+            // 剩下欄位裡範數最大的換到第 k 欄
+            int best = k;
+            for (int j = k + 1; j < cols; j++) if (norms[j] > norms[best]) best = j;
+            if (best != k) {
+                for (int i = 0; i < rows; i++) {
+                    double t = q[i][k];
+                    q[i][k] = q[i][best];
+                    q[i][best] = t;
+                }
+                double tn = norms[k]; norms[k] = norms[best]; norms[best] = tn;
+                int tp = perm[k]; perm[k] = perm[best]; perm[best] = tp;
+            }
+            double alpha = 0;
+            for (int i = k; i < rows; i++) alpha += q[i][k] * q[i][k];
+            alpha = Math.sqrt(alpha);
+            if (tol < 0) tol = alpha * Math.max(rows, cols) * Math.ulp(1.0);
+            if (alpha <= tol) break;
+            if (q[k][k] > 0) alpha = -alpha;
+            // v = x - alpha e1，存在 q[k..][k]
+            q[k][k] -= alpha;
+            double vnorm2 = 0;
+            for (int i = k; i < rows; i++) vnorm2 += q[i][k] * q[i][k];
+            for (int j = k + 1; j < cols; j++) {
+                double dot = 0;
+                for (int i = k; i < rows; i++) dot += q[i][k] * q[i][j];
+                double f = 2 * dot / vnorm2;
+                for (int i = k; i < rows; i++) q[i][j] -= f * q[i][k];
+            }
+            double dot = 0;
+            for (int i = k; i < rows; i++) dot += q[i][k] * rhs[i];
+            double f = 2 * dot / vnorm2;
+            for (int i = k; i < rows; i++) rhs[i] -= f * q[i][k];
+            diag[k] = alpha;
+            rank++;
+            for (int j = k + 1; j < cols; j++) {
+                norms[j] = 0;
+                for (int i = k + 1; i < rows; i++) norms[j] += q[i][j] * q[i][j];
+            }
+        }
+        // 回代 R z = Q^T y（只解前 rank 個）
+        double[] z = new double[cols];
+        for (int r = rank - 1; r >= 0; r--) {
+            double s = rhs[r];
+            for (int c = r + 1; c < rank; c++) s -= q[r][c] * z[c];
+            z[r] = s / diag[r];
+        }
+        double[] x = new double[cols];
+        for (int j = 0; j < cols; j++) x[perm[j]] = z[j];
+        return x;
+    }
+
+    // ================= 峰值 / 相關 =================
+
+    /** scipy.signal.correlate(x, x, 'full')[len(x)-1:] 的前 maxLag 個（lag 0..maxLag-1） */
+    public static double[] autocorrelation(double[] x, int maxLag) {
+        int n = x.length;
+        int lags = Math.min(maxLag, n);
+        double[] ac = new double[Math.max(lags, 0)];
+        for (int k = 0; k < lags; k++) {
+            double s = 0;
+            for (int i = 0; i + k < n; i++) s += x[i + k] * x[i];
+            ac[k] = s;
+        }
+        return ac;
+    }
+
+    /**
+     * scipy.signal.find_peaks(x[from:to], prominence=minProminence)
+     * @return 峰值在切片裡的索引（平台取中點，與 scipy 相同）
+     */
+    public static int[] findPeaks(double[] x, int from, int to, double minProminence) {
+        int n = to - from;
+        if (n < 3) return new int[0];
+        int[] peaks = new int[n / 2 + 1];
+        int count = 0;
+        int i = 1, iMax = n - 1;
+        while (i < iMax) {
+            if (x[from + i - 1] < x[from + i]) {
+                int ahead = i + 1;
+                while (ahead < iMax && x[from + ahead] == x[from + i]) ahead++;
+                if (x[from + ahead] < x[from + i]) {
+                    int mid = (i + ahead - 1) / 2;
+                    if (prominence(x, from, n, mid) >= minProminence) peaks[count++] = mid;
+                    i = ahead;
+                }
+            }
+            i++;
+        }
+        return Arrays.copyOf(peaks, count);
+    }
+
+    // scipy _peak_prominences（wlen=None）
+    private static double prominence(double[] x, int from, int n, int peak) {
+        double h = x[from + peak];
+        double leftMin = h;
+        for (int i = peak; i >= 0 && x[from + i] <= h; i--) {
+            if (x[from + i] < leftMin) leftMin = x[from + i];
+        }
+        double rightMin = h;
+        for (int i = peak; i < n && x[from + i] <= h; i++) {
+            if (x[from + i] < rightMin) rightMin = x[from + i];
+        }
+        return h - Math.max(leftMin, rightMin);
+    }
+
+    // ================= numpy 統計 =================
+
+    /** np.sum（pairwise summation） */
+    public static double sum(double[] a, int from, int to) {
+        int n = to - from;
+        if (n < 8) {
+            double res = 0.;
+            for (int i = from; i < to; i++) res += a[i];
+            return res;
+        } else if (n <= 128) {
+            double r0 = a[from], r1 = a[from + 1], r2 = a[from + 2], r3 = a[from + 3];
+            double r4 = a[from + 4], r5 = a[from + 5], r6 = a[from + 6], r7 = a[from + 7];
+            int i;
+            for (i = 8; i < n - (n % 8); i += 8) {
+                int p = from + i;
+                r0 += a[p];     r1 += a[p + 1]; r2 += a[p + 2]; r3 += a[p + 3];
+                r4 += a[p + 4]; r5 += a[p + 5]; r6 += a[p + 6]; r7 += a[p + 7];
+            }
+            double res = ((r0 + r1) + (r2 + r3)) + ((r4 + r5) + (r6 + r7));
+            for (; i < n; i++) res += a[from + i];
+            return res;
+        } else {
+            int n2 = n / 2;
+            n2 -= n2 % 8;
+            return sum(a, from, from + n2) + sum(a, from + n2, to);
+        }
+    }
+
+    public static double sum(double[] a) {
+        return sum(a, 0, a.length);
+    }
+
+    /** np.mean（空陣列回 NaN） */
+    public static double mean(double[] a, int from, int to) {
+        return sum(a, from, to) / (to - from);
+    }
+
+    public static double mean(double[] a) {
+        return mean(a, 0, a.length);
+    }
+
+    /** np.std（母體標準差，ddof=0） */
+    public static double std(double[] a) {
+        int n = a.length;
+        double m = mean(a);
+        double[] sq = new double[n];
+        for (int i = 0; i < n; i++) {
+            double d = a[i] - m;
+            sq[i] = d * d;
+        }
+        return Math.sqrt(sum(sq) / n);
+    }
+
+    /** np.nanstd */
+    public static double nanStd(double[] a) {
+        return std(dropNaN(a));
+    }
+
+    /** np.median（空陣列回 NaN） */
+    public static double median(double[] a) {
+        int n = a.length;
+        if (n == 0) return Double.NaN;
+        double[] s = a.clone();
+        Arrays.sort(s);
+        if (n % 2 == 1) return s[n / 2];
+        return (s[n / 2 - 1] + s[n / 2]) / 2.0;
+    }
+
+    /** np.nanmedian */
+    public static double nanMedian(double[] a) {
+        return median(dropNaN(a));
+    }
+
+    /** np.trapz(y, x) */
+    public static double trapz(double[] y, double[] x) {
+        int n = y.length;
+        if (n < 2) return 0.0;
+        double[] parts = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            parts[i] = (x[i + 1] - x[i]) * (y[i + 1] + y[i]) / 2.0;
+        }
+        return sum(parts);
+    }
+
+    /** numpy float64 的 round(x, d)：乘 10^d → rint → 除回去 */
+    public static double roundNp(double v, int decimals) {
+        double f = Math.pow(10, decimals);
+        return Math.rint(v * f) / f;
+    }
+
+    /** Python float 的 round(x, d)：對精確十進位值做銀行家捨入 */
+    public static double roundPy(double v, int decimals) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) return v;
+        return new BigDecimal(v).setScale(decimals, RoundingMode.HALF_EVEN).doubleValue();
+    }
+
+    // ================= 內部 =================
+
+    private static double[] dropNaN(double[] a) {
+        double[] out = new double[a.length];
+        int n = 0;
+        for (double v : a) {
+            if (!Double.isNaN(v)) out[n++] = v;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // scipy.ndimage 'reflect'：d c b a | a b c d | d c b a
+    private static int reflectIndex(int i, int n) {
+        if (n == 1) return 0;
+        int period = 2 * n;
+        int m = i % period;
+        if (m < 0) m += period;
+        return m < n ? m : period - 1 - m;
+    }
+
+    private static void reverse(double[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i++, j--) {
+            double t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    // 高斯消去（部分選主元），mat 為 m×(m+1) 增廣矩陣
+    private static double[] solve(double[][] mat, int m) {
+        for (int col = 0; col < m; col++) {
+            int piv = col;
+            for (int r = col + 1; r < m; r++) {
+                if (Math.abs(mat[r][col]) > Math.abs(mat[piv][col])) piv = r;
+            }
+            double[] t = mat[col];
+            mat[col] = mat[piv];
+            mat[piv] = t;
+            for (int r = col + 1; r < m; r++) {
+                double f = mat[r][col] / mat[col][col];
+                for (int c = col; c <= m; c++) mat[r][c] -= f * mat[col][c];
+            }
+        }
+        double[] x = new double[m];
+        for (int r = m - 1; r >= 0; r--) {
+            double s = mat[r][m];
+            for (int c = r + 1; c < m; c++) s -= mat[r][c] * x[c];
+            x[r] = s / mat[r][r];
+        }
+        return x;
+    }
+}
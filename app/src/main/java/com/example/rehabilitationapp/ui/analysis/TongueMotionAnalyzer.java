@@ -0,0 +1,225 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TongueMotionAnalyzer
+ * - count_tongue_left/right/vertical.py 的 analyze_tongue_csv（三支內容相同，只差呼叫時給的方向）
+ * - 有 yolo_measured 欄時只用 = 1 的列（排程略過推理、沿用框的列不當量測）
+ * - 舌頭 bbox 邊緣相對眼睛 / 鼻樑中線的距離 → 缺值限長線性插值 → 5 點平均 → 扣中位數
+ *   → 超過死區的連續區間就是一次動作，間隔 < 0.8 秒的合併
+ */
+final class TongueMotionAnalyzer {
+
+    private static final double MIN_INTERVAL_SEC = 0.5;
+    private static final int MAX_INTERP_FRAMES = 10;
+    private static final double DEADBAND_RATIO = 0.001;
+    private static final int FILTER_WINDOW = 5;
+    private static final double MERGE_GAP_SEC = 0.8;
+
+    private TongueMotionAnalyzer() {}
+
+    static CSVMotioner.PyAnalysisResult analyze(CsvColumns csv, String direction) {
+        // 只留 MAINTAINING（若有）；只留真的跑了 YOLO 的列（yolo_measured = 0 是沿用框，不算量測）
+        String[] states = csv.strings("state");
+        double[] measured = csv.has("yolo_measured") ? csv.numbers("yolo_measured") : null;
+        boolean[] keep = new boolean[csv.size()];
+        for (int i = 0; i < keep.length; i++) {
+            keep[i] = (states == null || "MAINTAINING".equals(states[i]))
+                    && (measured == null || measured[i] != 0);
+        }
+
+        String d = direction.trim().toLowerCase();
+        String edge;
+        boolean horizontal;
+        boolean wantNegative;
+        switch (d) {
+            case "下": case "down":  edge = "bbox_bottom"; horizontal = false; wantNegative = false; break;
+            case "上": case "up":    edge = "bbox_top";    horizontal = false; wantNegative = true;  break;
+            case "右": case "right": edge = "bbox_right";  horizontal = true;  wantNegative = false; break;
+            case "左": case "left":  edge = "bbox_left";   horizontal = true;  wantNegative = true;  break;
+            default:
+                return NativeMotionAnalyzer.error("unknown direction '" + direction + "'");
+        }
+
+        // ---- 欄位檢查 ----
+        List<String> need = new ArrayList<>(List.of("time_seconds", "eyeL_x", "eyeL_y", "eyeR_x", "eyeR_y", edge));
+        if (horizontal) {
+            need.add("browC_x");
+            need.add("nose_x");
+        }
+        List<String> miss = new ArrayList<>();
+        for (String c : need) if (!csv.has(c)) miss.add(c);
+        if (!miss.isEmpty()) return NativeMotionAnalyzer.error("missing columns: " + miss);
+
+        double[] t = NativeMotionAnalyzer.select(csv.numbers("time_seconds"), keep);
+        int n = t.length;
+        if (n < 2) {
+            return NativeMotionAnalyzer.ok();
+        }
+
+        // ---- 依方向取訊號 s（-1 視為缺值）----
+        double[] bbox = NativeMotionAnalyzer.select(csv.numbers(edge), keep);
+        double[] ref;
+        if (horizontal) {
+            double[] brow = NativeMotionAnalyzer.select(csv.numbers("browC_x"), keep);
+            double[] nose = NativeMotionAnalyzer.select(csv.numbers("nose_x"), keep);
+            ref = new double[n];
+            for (int i = 0; i < n; i++) ref[i] = (brow[i] + nose[i]) / 2.0;
+        } else {
+            double[] eyeL = NativeMotionAnalyzer.select(csv.numbers("eyeL_y"), keep);
+            double[] eyeR = NativeMotionAnalyzer.select(csv.numbers("eyeR_y"), keep);
+            ref = new double[n];
+            for (int i = 0; i < n; i++) ref[i] = (eyeL[i] + eyeR[i]) / 2.0;
+        }
+        double[] det = csv.has("tongue_detected") ? NativeMotionAnalyzer.select(csv.numbers("tongue_detected"), keep) : null;
+
+        double[] s = new double[n];
+        for (int i = 0; i < n; i++) {
+            double b = (bbox[i] == -1) ? Double.NaN : bbox[i];
+            s[i] = b - ref[i];
+            if (det != null && det[i] == 0) s[i] = Double.NaN;
+        }
+
+        // ---- 線性插值（最多連補 MAX_INTERP_FRAMES 幀，前後都可補）----
+        interpolateLimited(s, MAX_INTERP_FRAMES);
+
+        double baseline = SignalKit.nanMedian(s);
+        for (int i = 0; i < n; i++) if (Double.isNaN(s[i])) s[i] = baseline;
+        if (FILTER_WINDOW > 1) s = SignalKit.uniformFilter1d(s, FILTER_WINDOW);
+
+        double[] s0 = new double[n];
+        boolean anyFinite = false;
+        for (int i = 0; i < n; i++) {
+            s0[i] = s[i] - baseline;
+            if (NativeMotionAnalyzer.isFinite(s0[i])) anyFinite = true;
+        }
+
+        // 估取樣率（秒轉幀）
+        double[] dt = new double[n - 1];
+        int nd = 0;
+        for (int i = 1; i < n; i++) {
+            double v = t[i] - t[i - 1];
+            if (NativeMotionAnalyzer.isFinite(v) && v > 0) dt[nd++] = v;
+        }
+        double fs = nd > 0 ? 1.0 / SignalKit.median(java.util.Arrays.copyOf(dt, nd)) : 20.0;
+        int minIntFrames = (int) Math.rint(MIN_INTERVAL_SEC * fs);
+
+        double std = anyFinite ? SignalKit.nanStd(s0) : 0.0;
+        double db = std > 0 ? DEADBAND_RATIO * std : 0.0;
+
+        boolean[] valid = new boolean[n];
+        boolean[] target = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            valid[i] = NativeMotionAnalyzer.isFinite(s0[i]);
+            target[i] = valid[i] && (wantNegative ? s0[i] < -db : s0[i] > db);
+        }
+
+        // ---- 以連續 target 區切段；套最小間隔；尾端補齊 ----
+        List<double[]> segs = new ArrayList<>();  // {start, end, duration}
+        boolean inSeg = false;
+        int lastEnd = -1_000_000_000, start = 0;
+        for (int i = 0; i < n; i++) {
+            if (!inSeg) {
+                if (target[i] && (i - lastEnd) >= minIntFrames) {
+                    start = i;
+                    inSeg = true;
+                }
+            } else if (!target[i]) {
+                int end = i > 0 ? i - 1 : i;
+                segs.add(segment(t, start, end));
+                lastEnd = end;
+                inSeg = false;
+            }
+        }
+        if (inSeg) {
+            int end = n - 1;
+            for (int i = n - 1; i >= 0; i--) {
+                if (valid[i]) {
+                    end = i;
+                    break;
+                }
+            }
+            segs.add(segment(t, start, end));
+        }
+
+        // ---- 合併間隔過短的段落 ----
+        if (segs.size() > 1 && MERGE_GAP_SEC > 0) {
+            List<double[]> merged = new ArrayList<>();
+            merged.add(segs.get(0).clone());
+            for (int k = 1; k < segs.size(); k++) {
+                double[] seg = segs.get(k);
+                double[] prev = merged.get(merged.size() - 1);
+                if (seg[0] - prev[1] < MERGE_GAP_SEC) {
+                    prev[1] = seg[1];
+                    prev[2] = SignalKit.roundPy(prev[1] - prev[0], 3);
+                } else {
+                    merged.add(seg.clone());
+                }
+            }
+            segs = merged;
+        }
+
+        CSVMotioner.PyAnalysisResult result = NativeMotionAnalyzer.ok();
+        double total = 0;
+        for (double[] seg : segs) {
+            total += seg[2];
+            NativeMotionAnalyzer.addSegment(result, seg[0], seg[1], seg[2]);
+        }
+        result.actionCount = segs.size();
+        result.totalActionTime = SignalKit.roundPy(total, 3);
+
+        CSVMotioner.PyAnalysisResult.DebugInfo dbg = result.debug;
+        dbg.fsHz = SignalKit.roundPy(fs, 3);
+        dbg.deadband = SignalKit.roundPy(db, 6);
+        dbg.minInterval = minIntFrames;
+        return result;
+    }
+
+    private static double[] segment(double[] t, int si, int ei) {
+        return new double[]{
+                SignalKit.roundPy(t[si], 3),
+                SignalKit.roundPy(t[ei], 3),
+                SignalKit.roundPy(t[ei] - t[si], 3)
+        };
+    }
+
+    /**
+     * pd.Series.interpolate(method="linear", limit=limit, limit_direction="both")
+     * 缺值離前一個或後一個有效值 ≤ limit 才補；兩端外插用最近的有效值
+     */
+    static void interpolateLimited(double[] s, int limit) {
+        int n = s.length;
+        int[] prev = new int[n], next = new int[n];
+        int p = -1;
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(s[i])) p = i;
+            prev[i] = p;
+        }
+        int q = -1;
+        for (int i = n - 1; i >= 0; i--) {
+            if (!Double.isNaN(s[i])) q = i;
+            next[i] = q;
+        }
+        if (p < 0) return;  // 全部缺值
+
+        double[] out = s.clone();
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(s[i])) continue;
+            int a = prev[i], b = next[i];
+            boolean fwOk = a >= 0 && i - a <= limit;
+            boolean bwOk = b >= 0 && b - i <= limit;
+            if (!fwOk && !bwOk) continue;
+            if (a < 0) {
+                out[i] = s[b];
+            } else if (b < 0) {
+                out[i] = s[a];
+            } else {
+                double slope = (s[b] - s[a]) / (b - a);
+                out[i] = slope * (i - a) + s[a];
+            }
+        }
+        System.arraycopy(out, 0, s, 0, n);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.rehabilitationapp.ui.debug;
+
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.rehabilitationapp.ui.facecheck.CheekFlowBenchmark;
+import com.example.rehabilitationapp.ui.facecheck.YoloBackendCalibrator;
+import com.example.rehabilitationapp.ui.facecheck.YoloModelSpec;
+
+import java.io.File;
+
+/**
+ * 🔧 DEBUG: 效能測試（舌頭 YOLO 後端校正、臉頰光流比較）
+ * - 顯示每個 YOLO 模型在這台裝置量到的 p50 / p95 與目前採用的後端
+ * - 「重新測試 YOLO」會在背景重跑 YOLO 校正並覆寫結果（下次開訓練畫面生效）
+ * - 「臉頰光流比較」拿最新一段臉頰錄影比 Farneback / 稀疏 LK 的耗時與一致性（只顯示，不改設定）
+ * - 從設定頁長按「關於」卡片進入
+ */
+public class BenchmarkActivity extends AppCompatActivity {
+
+    private TextView infoText;
+    private Button rerunButton;
+    private Button cheekButton;
+    private String cheekReport;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        int pad = Math.round(16 * getResources().getDisplayMetrics().density);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setPadding(pad, pad, pad, pad);
+
+        rerunButton = new Button(this);
+        rerunButton.setText("重新測試 YOLO");
+        rerunButton.setOnClickListener(v -> rerunAll());
+        root.addView(rerunButton);
+
+        cheekButton = new Button(this);
+        cheekButton.setText("臉頰光流比較（最新錄影）");
+        cheekButton.setOnClickListener(v -> runCheekBenchmark());
+        root.addView(cheekButton);
+
+        Button closeButton = new Button(this);
+        closeButton.setText("關閉");
+        closeButton.setOnClickListener(v -> finish());
+        root.addView(closeButton);
+
+        infoText = new TextView(this);
+        infoText.setTypeface(Typeface.MONOSPACE);
+        infoText.setTextSize(12);
+        infoText.setTextIsSelectable(true);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(infoText);
+        root.addView(scroll, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.MATCH_PARENT));
+
+        setContentView(root);
+        showStored();
+    }
+
+    private void showStored() {
+        StringBuilder sb = new StringBuilder();
+        for (YoloModelSpec spec : YoloModelSpec.all()) {
+            YoloBackendCalibrator.Choice c = YoloBackendCalibrator.storedChoice(this, spec);
+            String summary = YoloBackendCalibrator.storedSummary(this, spec);
+            sb.append("【").append(spec.name).append("】 ").append(spec.modelFile).append('\n');
+            sb.append("採用: ").append(c == null ? "尚未校正（GPU → NNAPI → CPU）" : c.toString()).append('\n');
+            if (summary != null) sb.append(summary).append('\n');
+            sb.append('\n');
+        }
+        if (cheekReport != null) sb.append(cheekReport).append('\n');
+        infoText.setText(sb.toString());
+    }
+
+    private void rerunAll() {
+        rerunButton.setEnabled(false);
+        rerunButton.setText("測試中...");
+        final int[] left = {YoloModelSpec.all().size()};
+        for (YoloModelSpec spec : YoloModelSpec.all()) {
+            YoloBackendCalibrator.recalibrate(this, spec, report -> runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                showStored();
+                if (--left[0] == 0) {
+                    rerunButton.setEnabled(true);
+                    rerunButton.setText("重新測試 YOLO");
+                }
+            }));
+        }
+    }
+
+    private void runCheekBenchmark() {
+        File video = CheekFlowBenchmark.latestCheekVideo(this);
+        if (video == null) {
+            Toast.makeText(this, "找不到臉頰訓練錄影", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        cheekButton.setEnabled(false);
+        cheekButton.setText("比較中...");
+        CheekFlowBenchmark.run(this, video, report -> runOnUiThread(() -> {
+            if (isFinishing() || isDestroyed()) return;
+            cheekReport = report == null ? "❌ 臉頰光流比較失敗：" + video.getName() : report.summary();
+            showStored();
+            cheekButton.setEnabled(true);
+            cheekButton.setText("臉頰光流比較（最新錄影）");
+        }));
+    }
+}
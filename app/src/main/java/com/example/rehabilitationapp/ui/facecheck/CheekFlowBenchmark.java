@@ -0,0 +1,225 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.media.MediaMetadataRetriever;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mediapipe.framework.image.BitmapImageBuilder;
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark;
+import com.google.mediapipe.tasks.core.BaseOptions;
+import com.google.mediapipe.tasks.vision.core.RunningMode;
+import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarker;
+import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarkerResult;
+
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Point;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * CheekFlowBenchmark
+ * - 拿一段已錄好的臉頰訓練影片，逐幀跑 FaceLandmarker，同一幀同時餵給 Farneback 與稀疏 LK 兩個 CheekFlowEngine
+ * - 量兩個後端每幀耗時（p50 / p95），以及左右臉頰補償後向量的一致性（平均差、u / v 相關係數）
+ * - 兩邊都關掉平滑、每幀都算（flowEvery=1），其餘參數同訓練畫面
+ * - debug 頁觸發，背景單執行緒跑；結果只印 log / 回傳摘要，不改任何設定
+ */
+public final class CheekFlowBenchmark {
+
+    private static final String TAG = "CHEEK-BENCH";
+    private static final String FACE_MODEL = "face_landmarker.task";
+    static final int MAX_FRAMES = 300;          // 約 10 秒 @30fps
+    private static final int ANALYSIS_WIDTH = 480;   // 同相機分析幀寬（直向 480×640）
+
+    /** 一次比較的結果 */
+    public static final class Report {
+        public final String video;
+        public int frames;          // 解出的幀數
+        public int faceFrames;      // 有偵測到臉的幀數
+        public LatencyStats farneback;
+        public LatencyStats sparseLk;
+        public final FlowAgreement left = new FlowAgreement("LI");
+        public final FlowAgreement right = new FlowAgreement("RI");
+
+        Report(String video) {
+            this.video = video;
+        }
+
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("📊 臉頰光流 ").append(video).append('\n');
+            sb.append("幀數 ").append(frames).append("，有臉 ").append(faceFrames).append('\n');
+            sb.append(farneback == null ? "Farneback 無樣本" : farneback.summary()).append('\n');
+            sb.append(sparseLk == null ? "SparseLK 無樣本" : sparseLk.summary()).append('\n');
+            sb.append(left.summary()).append('\n');
+            sb.append(right.summary());
+            return sb.toString();
+        }
+    }
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "CheekFlowBenchmark");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CheekFlowBenchmark() {}
+
+    /** 最新一段臉頰訓練錄影（檔名含 _PUFF_CHEEK_ / _REDUCE_CHEEK_ / 舊標籤 _鼓頰_）；沒有回 null */
+    public static File latestCheekVideo(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        File[] files = dir == null ? null : dir.listFiles((d, name) ->
+                name.endsWith(".mp4") && (name.contains("_PUFF_CHEEK_") || name.contains("_REDUCE_CHEEK_") || name.contains("_鼓頰_")));
+        if (files == null || files.length == 0) return null;
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        return files[0];
+    }
+
+    /** 背景跑一次比較；listener 在背景執行緒回呼（失敗給 null） */
+    public static void run(Context context, File video, Consumer<Report> listener) {
+        final Context app = context.getApplicationContext();
+        executor.execute(() -> {
+            Report r = null;
+            try {
+                r = compare(app, video);
+            } catch (Throwable e) {
+                Log.e(TAG, "❌ 比較失敗: " + video, e);
+            }
+            if (listener != null) listener.accept(r);
+        });
+    }
+
+    /** 同步跑完（會解碼整段影片並跑數百次推理，不要在主執行緒呼叫） */
+    public static Report compare(Context context, File video) throws Exception {
+        if (!OpenCVLoader.initDebug()) throw new IllegalStateException("OpenCV 載入失敗");
+        Report report = new Report(video.getName());
+
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        FaceLandmarker landmarker = null;
+        CheekFlowEngine farneback = new CheekFlowEngine(params(CheekFlowEngine.FlowBackend.FARNEBACK));
+        CheekFlowEngine sparse = new CheekFlowEngine(params(CheekFlowEngine.FlowBackend.SPARSE_LK));
+        try {
+            mmr.setDataSource(video.getAbsolutePath());
+            int total = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_FRAME_COUNT));
+            int rotation = parseInt(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+            int frames = Math.min(total, MAX_FRAMES);
+
+            landmarker = FaceLandmarker.createFromOptions(context,
+                    FaceLandmarker.FaceLandmarkerOptions.builder()
+                            .setBaseOptions(BaseOptions.builder().setModelAssetPath(FACE_MODEL).build())
+                            .setNumFaces(1)
+                            .setRunningMode(RunningMode.IMAGE)
+                            .build());
+
+            double[] fbMs = new double[frames];
+            double[] lkMs = new double[frames];
+            int measured = 0;
+            for (int i = 0; i < frames; i++) {
+                Bitmap raw = mmr.getFrameAtIndex(i);
+                if (raw == null) continue;
+                Bitmap frame = toAnalysisFrame(raw, rotation);
+                report.frames++;
+                try {
+                    FaceLandmarkerResult res = landmarker.detect(new BitmapImageBuilder(frame).build());
+                    if (res == null || res.faceLandmarks().isEmpty()) continue;
+                    report.faceFrames++;
+                    LandmarkFrame lm = toLandmarkFrame(res.faceLandmarks().get(0));
+                    long ts = i * 33L;
+
+                    long t0 = SystemClock.elapsedRealtimeNanos();
+                    CheekFlowEngine.FlowResult a = farneback.process(frame, lm, ts);
+                    long t1 = SystemClock.elapsedRealtimeNanos();
+                    CheekFlowEngine.FlowResult b = sparse.process(frame, lm, ts);
+                    long t2 = SystemClock.elapsedRealtimeNanos();
+
+                    // 第一幀只建前一幀，不算進耗時與一致性
+                    if (report.faceFrames == 1) continue;
+                    fbMs[measured] = (t1 - t0) / 1e6;
+                    lkMs[measured] = (t2 - t1) / 1e6;
+                    measured++;
+                    addPair(report.left, a, b, CheekFlowEngine.Region.LEFT_INNER);
+                    addPair(report.right, a, b, CheekFlowEngine.Region.RIGHT_INNER);
+                } finally {
+                    if (frame != raw) frame.recycle();
+                    raw.recycle();
+                }
+            }
+            if (measured > 0) {
+                report.farneback = LatencyStats.of("Farneback", Arrays.copyOf(fbMs, measured));
+                report.sparseLk = LatencyStats.of("SparseLK", Arrays.copyOf(lkMs, measured));
+            }
+        } finally {
+            farneback.release();
+            sparse.release();
+            if (landmarker != null) {
+                try {
+                    landmarker.close();
+                } catch (Throwable ignore) { }
+            }
+            try {
+                mmr.release();
+            } catch (Throwable ignore) { }
+        }
+        for (String line : report.summary().split("\n")) Log.i(TAG, line);
+        return report;
+    }
+
+    // 訓練畫面的設定，只關掉平滑與節流（比的是每幀原始一致性）
+    private static CheekFlowEngine.Params params(CheekFlowEngine.FlowBackend backend) {
+        CheekFlowEngine.Params pp = new CheekFlowEngine.Params();
+        pp.backend = backend;
+        pp.flowEvery = 1;
+        pp.smoothAlpha = 0f;
+        pp.landmarksAreNormalized01 = true;
+        pp.enableRigidCompensation = true;
+        return pp;
+    }
+
+    private static void addPair(FlowAgreement agg, CheekFlowEngine.FlowResult a, CheekFlowEngine.FlowResult b,
+                                CheekFlowEngine.Region r) {
+        Point va = a.vectors.get(r), vb = b.vectors.get(r);
+        if (va == null || vb == null) return;
+        agg.add(va.x, va.y, vb.x, vb.y);
+    }
+
+    // 依影片旋轉轉正，縮到分析寬（同相機分析幀的尺寸級距）
+    private static Bitmap toAnalysisFrame(Bitmap raw, int rotation) {
+        Matrix m = new Matrix();
+        if (rotation % 360 != 0) m.postRotate(rotation);
+        int w = (rotation % 180 == 0) ? raw.getWidth() : raw.getHeight();
+        float s = w > ANALYSIS_WIDTH ? ANALYSIS_WIDTH / (float) w : 1f;
+        if (s != 1f) m.postScale(s, s);
+        if (m.isIdentity()) return raw;
+        return Bitmap.createBitmap(raw, 0, 0, raw.getWidth(), raw.getHeight(), m, true);
+    }
+
+    private static LandmarkFrame toLandmarkFrame(List<NormalizedLandmark> face) {
+        float[][] pts = new float[face.size()][3];
+        for (int i = 0; i < face.size(); i++) {
+            NormalizedLandmark p = face.get(i);
+            pts[i][0] = p.x();
+            pts[i][1] = p.y();
+            pts[i][2] = p.z();
+        }
+        return LandmarkFrame.fromViewPoints(pts);   // 恆等視圖：x()/y() 即 0~1 原值
+    }
+
+    private static int parseInt(String s) {
+        try {
+            return s == null ? 0 : Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
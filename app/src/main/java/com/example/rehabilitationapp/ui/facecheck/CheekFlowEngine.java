@@ -1,21 +1,24 @@
 package com.example.rehabilitationapp.ui.facecheck;
 
 import android.graphics.Bitmap;
-import android.util.Pair;
 
 import org.opencv.android.Utils;
-import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
 import org.opencv.core.MatOfInt;
 import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.video.Video;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
@@ -26,6 +29,12 @@ import java.util.List;
  * - 可選不降採樣 (targetWidth<=0)
  * - 剛性補償：以眼眶+鼻樑的中位數流量當頭部運動，從臉頰扣掉
  * - 指數平滑：出參做 EMA
+ * - 只在「臉頰 + 剛性區」聯集外框（外擴 roiPadding）裡算 Farneback，mask 也只畫在這塊 ROI
+ * - Mat 全部預先配置、跨幀重用（灰階 / 前後幀 / 光流 / 三張 mask），尺寸變了才重配
+ * - 兩種光流後端（Params.backend）：FARNEBACK 稠密流；SPARSE_LK 每區只追 landmark 點 + 角點
+ *   （金字塔 LK，前後向誤差剔除），中位數 / 剛性補償 / 平滑流程相同。兩者比較見 CheekFlowBenchmark
+ *
+ * 非執行緒安全的 Mat 都只在 process 裡用；process / release 同步，release 後不可再 process。
  */
 public class CheekFlowEngine {
 
@@ -52,8 +61,25 @@ public class CheekFlowEngine {
 
         // 取樣上限（做中位數）
         public int     maxSamplesForMedian = 4096;
+
+        // 光流 ROI 外擴：聯集外框邊長的比例（另外再加 winSize 像素，讓視窗在邊緣也有鄰居）
+        public float   roiPadding = 0.15f;
+
+        // 光流後端
+        public FlowBackend backend = FlowBackend.FARNEBACK;
+
+        // SPARSE_LK 參數
+        public int    lkWinSize = 21;
+        public int    lkLevels = 3;
+        public int    lkMaxCornersPerRegion = 30;   // 每區 goodFeaturesToTrack 上限（另加該區 landmark 點）
+        public double lkCornerQuality = 0.01;
+        public double lkCornerMinDistance = 4;
+        public float  lkMaxFbError = 1.0f;          // 前向再後向追回的位置誤差上限（光流像素）
     }
 
+    /** 光流後端 */
+    public enum FlowBackend { FARNEBACK, SPARSE_LK }
+
     /** 只留 Inner */
     public enum Region { LEFT_INNER, RIGHT_INNER }
 
@@ -71,11 +97,65 @@ public class CheekFlowEngine {
             new int[]{1,2,98,197,195,5,4,6}
     );
 
+    private static final Scalar ZERO = new Scalar(0);
+    private static final Scalar FILL = new Scalar(255);
+    private static final int MIN_ROI = 8;   // ROI 任一邊小於此（臉出框 / 點亂掉）就不算流
+
     private final Params p;
-    private Mat  prevGray;
     private Size flowSize;
     private float scaleX = 1f, scaleY = 1f;
     private int frameGate = 0;
+    // 來源灰階尺寸（分析解析度一換，flowSize / 前一幀都要重建）
+    private int srcW = 0, srcH = 0;
+
+    // 畫質檔位（QualityGovernor）要求的新參數，下一次 process 開頭才套用（不在計算途中改 p）
+    private volatile int pendingTargetWidth = Integer.MIN_VALUE;
+    private volatile int pendingFlowEvery = 0;
+
+    // ===== 跨幀重用的 Mat（create 尺寸/型別相同時不重配）=====
+    private final Mat rgba = new Mat();        // Bitmap 路徑才用
+    private final Mat grayFull = new Mat();    // 來源解析度灰階
+    private Mat currSmall = new Mat();         // 光流解析度：本幀
+    private Mat prevSmall = new Mat();         // 光流解析度：上一幀（與 currSmall 互換，不 clone）
+    private boolean hasPrev = false;
+    private final Mat flowBuf = new Mat();     // CV_32FC2，光流解析度；只寫 ROI 那塊
+    private final Mat maskLI = new Mat();      // CV_8UC1，光流解析度；只畫 ROI 那塊
+    private final Mat maskRI = new Mat();
+    private final Mat maskRigid = new Mat();
+
+    // 多邊形 / 凸包點（重用 Point 物件與 MatOfPoint）
+    private final Point[] ptsLI = newPoints(LEFT_INNER.length);
+    private final Point[] ptsRI = newPoints(RIGHT_INNER.length);
+    private final Point[] ptsRigid = newPoints(RIGID_IDX.length);
+    private final MatOfPoint polyLI = new MatOfPoint();
+    private final MatOfPoint polyRI = new MatOfPoint();
+    private final MatOfPoint rigidPts = new MatOfPoint();
+    private final MatOfInt hullIdx = new MatOfInt();
+    private final MatOfPoint hull = new MatOfPoint();
+    private final Point roiOffset = new Point();
+
+    // SPARSE_LK：種子點（ROI 座標，x,y 交錯）與所屬區域，重用
+    private static final byte SEED_LI = 0, SEED_RI = 1, SEED_RIGID = 2;
+    private float[] seedXY = new float[0];
+    private byte[] seedRegion = new byte[0];
+    private int[] cornerXY = new int[0];
+    private float[] nextXY = new float[0], backXY = new float[0];
+    private byte[] fwdOk = new byte[0], bwdOk = new byte[0];
+    private final MatOfPoint corners = new MatOfPoint();
+    private final MatOfPoint2f lkPrev = new MatOfPoint2f();
+    private final MatOfPoint2f lkNext = new MatOfPoint2f();
+    private final MatOfPoint2f lkBack = new MatOfPoint2f();
+    private final MatOfByte lkStatus = new MatOfByte();
+    private final MatOfByte lkStatusBack = new MatOfByte();
+    private final MatOfFloat lkErr = new MatOfFloat();
+    private final TermCriteria lkCriteria = new TermCriteria(TermCriteria.COUNT + TermCriteria.EPS, 20, 0.03);
+
+    // 中位數取樣（整列讀出，避免逐像素 JNI）
+    private float[] flowRow = new float[0];
+    private byte[] liRow = new byte[0], riRow = new byte[0], rgRow = new byte[0];
+    private float[] liU = new float[0], liV = new float[0];
+    private float[] riU = new float[0], riV = new float[0];
+    private float[] rgU = new float[0], rgV = new float[0];
 
     // 上一次有效值（掉幀回傳）
     private final EnumMap<Region, Point> lastValid = new EnumMap<>(Region.class);
@@ -100,40 +180,95 @@ public class CheekFlowEngine {
 
     /** 主流程：傳入 Bitmap + landmarks(0~1 或像素)，回傳左右 Inner 平均 (u,v) */
     public FlowResult process(Bitmap bmp, float[][] landmarks, long tsMs) {
+        // 舊介面：包一層（恆等視圖，x()/y() 即原值）
+        return process(bmp, LandmarkFrame.fromViewPoints(landmarks), tsMs);
+    }
+
+    /** 主流程（LandmarkFrame 版）：讀 x()/y() 原值，是否為 0~1 仍由 p.landmarksAreNormalized01 決定 */
+    public synchronized FlowResult process(Bitmap bmp, LandmarkFrame landmarks, long tsMs) {
+        FlowResult out = beginFrame(tsMs);
+        if (!out.computedThisFrame) return out;
+
+        // A) Bitmap → 灰階（rgba / grayFull 重用）
+        Utils.bitmapToMat(bmp, rgba);
+        Imgproc.cvtColor(rgba, grayFull, Imgproc.COLOR_RGBA2GRAY);
+        return computeFrame(landmarks, out);
+    }
+
+    // 套用畫質參數 + 幀節流；非計算幀直接回上一筆平滑後值（computedThisFrame=false）
+    private FlowResult beginFrame(long tsMs) {
         FlowResult out = new FlowResult();
         out.timestampMs = tsMs;
+        applyPendingQuality();
 
-        // 幀節流：非計算幀 → 回上一筆平滑後值
         if ((frameGate++ % p.flowEvery) != 0) {
             out.computedThisFrame = false;
             for (Region r : Region.values()) out.vectors.put(r, lastSmooth.get(r));
             return out;
         }
+        out.computedThisFrame = true;
+        return out;
+    }
 
-        // A) 影像→灰階（可選降採樣）
-        Mat graySmall = toGrayDown(bmp);
-
-        // B) Farneback 光流（在降採樣座標系）
-        Pair<Mat, Mat> uv = computeFlow(graySmall);
-        Mat flowU = uv.first, flowV = uv.second;
+    // grayFull 已就緒
+    private FlowResult computeFrame(LandmarkFrame landmarks, FlowResult out) {
+        // A) 降採樣到光流解析度（寫進 currSmall）
+        downsample();
+
+        // B) ROI：臉頰 + 剛性區聯集外框（光流座標）
+        Rect roi = flowRoi(landmarks);
+
+        Point vLI, vRI, rigidMed = new Point(0, 0);
+        if (!hasPrev) {
+            // 第一幀（或尺寸剛換）：只存前一幀，回零流（同舊版初幀行為）
+            vLI = new Point(0, 0);
+            vRI = new Point(0, 0);
+        } else if (roi == null) {
+            vLI = new Point(Double.NaN, Double.NaN);
+            vRI = new Point(Double.NaN, Double.NaN);
+        } else if (p.backend == FlowBackend.SPARSE_LK) {
+            // C') 稀疏 LK：mask 只用來挑角點，流量只在種子點上算
+            rasterizeMasks(landmarks, roi);
+            Point[] med = sparseFlows(roi);
+            vLI = med[0];
+            vRI = med[1];
+            if (p.enableRigidCompensation) {
+                rigidMed = med[2];
+                if (Double.isNaN(rigidMed.x) || Double.isNaN(rigidMed.y)) rigidMed = new Point(0,0);
+            }
+        } else {
+            // C) Farneback 只算 ROI（前後幀同一塊），結果直接寫進 flowBuf 的同一塊
+            Mat prevRoi = prevSmall.submat(roi);
+            Mat currRoi = currSmall.submat(roi);
+            Mat flowRoi = flowBuf.submat(roi);
+            try {
+                Video.calcOpticalFlowFarneback(
+                        prevRoi, currRoi, flowRoi,
+                        p.pyrScale, p.levels, p.winSize, p.iterations, p.polyN, p.polySigma, p.flags);
+            } finally {
+                prevRoi.release();
+                currRoi.release();
+                flowRoi.release();
+            }
 
-        // C) 建 Inner ROI mask（原圖尺寸）
-        Size origSize = new Size(bmp.getWidth(), bmp.getHeight());
-        Mat maskLI = buildPolyMask(origSize, landmarks, LEFT_INNER);
-        Mat maskRI = buildPolyMask(origSize, landmarks, RIGHT_INNER);
+            // D) 三張 mask 只在 ROI 內畫（光流解析度，不必再 resize）
+            rasterizeMasks(landmarks, roi);
 
-        // D) 剛性補償：眼眶+鼻樑 凸包 → 中位數流
-        Point rigidMed = new Point(0,0);
-        if (p.enableRigidCompensation) {
-            Mat rigidMask = buildHullMask(origSize, landmarks, RIGID_IDX);
-            rigidMed = medianFlowInMask(flowU, flowV, rigidMask);
-            rigidMask.release();
-            if (Double.isNaN(rigidMed.x) || Double.isNaN(rigidMed.y)) rigidMed = new Point(0,0);
+            // E) 各區中位數流（同一趟讀完三區）
+            Point[] med = medianFlows(roi);
+            vLI = med[0];
+            vRI = med[1];
+            if (p.enableRigidCompensation) {
+                rigidMed = med[2];
+                if (Double.isNaN(rigidMed.x) || Double.isNaN(rigidMed.y)) rigidMed = new Point(0,0);
+            }
         }
 
-        // E) 各區流量（中位數，較抗 outlier）
-        Point vLI = medianFlowInMask(flowU, flowV, maskLI);
-        Point vRI = medianFlowInMask(flowU, flowV, maskRI);
+        // 本幀變成下一輪的前一幀（互換，不 clone）
+        Mat t = prevSmall;
+        prevSmall = currSmall;
+        currSmall = t;
+        hasPrev = true;
 
         // 存 rawVectors（補償前）
         out.rawVectors.put(Region.LEFT_INNER, vLI);
@@ -152,44 +287,32 @@ public class CheekFlowEngine {
 
         out.vectors.put(Region.LEFT_INNER,  vLI);
         out.vectors.put(Region.RIGHT_INNER, vRI);
-        out.computedThisFrame = true;
-
-        // 釋放
-        flowU.release(); flowV.release();
-        maskLI.release(); maskRI.release();
-        graySmall.release();
-
         return out;
     }
 
-    // ====== 影像 → 灰階降採樣（targetWidth<=0 則不縮） ======
-    private Mat toGrayDown(Bitmap bmp) {
-        Mat rgba = new Mat();
-        Utils.bitmapToMat(bmp, rgba);
-        Mat gray = new Mat();
-        Imgproc.cvtColor(rgba, gray, Imgproc.COLOR_RGBA2GRAY);
-        rgba.release();
-
-        if (p.targetWidth <= 0) {
-            if (flowSize == null) {
-                flowSize = new Size(gray.width(), gray.height());
-                scaleX = scaleY = 1f;
-            }
-            return gray;
+    // ====== 灰階降採樣（targetWidth<=0 則不縮）：grayFull → currSmall ======
+    private void downsample() {
+        // 分析幀尺寸變了（降檔 / 升檔）：重算光流尺寸，上一幀不同尺寸不能拿來比
+        if (grayFull.width() != srcW || grayFull.height() != srcH) {
+            if (srcW != 0) resetFlowState();
+            srcW = grayFull.width();
+            srcH = grayFull.height();
         }
-
         if (flowSize == null) {
-            flowSize = computeFlowSize(gray.width(), gray.height(), p.targetWidth);
-            scaleX = (float) (gray.width()  / flowSize.width);
-            scaleY = (float) (gray.height() / flowSize.height);
+            flowSize = computeFlowSize(srcW, srcH, p.targetWidth);
+            scaleX = (float) (srcW / flowSize.width);
+            scaleY = (float) (srcH / flowSize.height);
+            int fw = (int) flowSize.width, fh = (int) flowSize.height;
+            flowBuf.create(fh, fw, CvType.CV_32FC2);
+            maskLI.create(fh, fw, CvType.CV_8UC1);
+            maskRI.create(fh, fw, CvType.CV_8UC1);
+            maskRigid.create(fh, fw, CvType.CV_8UC1);
         }
-        if (gray.width() != flowSize.width || gray.height() != flowSize.height) {
-            Mat small = new Mat();
-            Imgproc.resize(gray, small, flowSize, 0, 0, Imgproc.INTER_AREA);
-            gray.release();
-            return small;
+        if (srcW != flowSize.width || srcH != flowSize.height) {
+            Imgproc.resize(grayFull, currSmall, flowSize, 0, 0, Imgproc.INTER_AREA);
+        } else {
+            grayFull.copyTo(currSmall);
         }
-        return gray;
     }
 
     private Size computeFlowSize(int w, int h, int tw) {
@@ -198,154 +321,255 @@ public class CheekFlowEngine {
         return new Size(tw, (int) Math.round(h * s));
     }
 
-    // ====== Farneback（安全版：欄位快照 + 初幀回單通道 0 流 + 安全更新）======
-    private Pair<Mat, Mat> computeFlow(Mat currGray) {
-        // 0) 入口防呆：避免空幀
-        if (currGray == null || currGray.empty()) {
-            Mat u0 = Mat.zeros(new Size(1,1), CvType.CV_32F);
-            Mat v0 = Mat.zeros(new Size(1,1), CvType.CV_32F);
-            return new Pair<>(u0, v0);
+    // ====== ROI：三組點的聯集外框 + 外擴，夾在畫面內；太小回 null ======
+    private Rect flowRoi(LandmarkFrame landmarks) {
+        fillPoints(landmarks, LEFT_INNER, ptsLI);
+        fillPoints(landmarks, RIGHT_INNER, ptsRI);
+        fillPoints(landmarks, RIGID_IDX, ptsRigid);
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Point[] group : new Point[][]{ptsLI, ptsRI, ptsRigid}) {
+            for (Point q : group) {
+                if (q.x < minX) minX = q.x;
+                if (q.x > maxX) maxX = q.x;
+                if (q.y < minY) minY = q.y;
+                if (q.y > maxY) maxY = q.y;
+            }
         }
+        if (!(maxX > minX) || !(maxY > minY)) return null;   // 含 NaN
+
+        double pad = Math.max(maxX - minX, maxY - minY) * p.roiPadding + p.winSize;
+        int fw = (int) flowSize.width, fh = (int) flowSize.height;
+        int x0 = Math.max(0, (int) Math.floor(minX - pad));
+        int y0 = Math.max(0, (int) Math.floor(minY - pad));
+        int x1 = Math.min(fw, (int) Math.ceil(maxX + pad));
+        int y1 = Math.min(fh, (int) Math.ceil(maxY + pad));
+        if (x1 - x0 < MIN_ROI || y1 - y0 < MIN_ROI) return null;
+        return new Rect(x0, y0, x1 - x0, y1 - y0);
+    }
 
-        // 1) 抓欄位快照（避免其他執行緒中途把 this.prevGray 改掉）
-        Mat prev = this.prevGray;  // 讀一次欄位
-        Mat curr = currGray;       // 傳入參數；本方法不釋放它
-
-        // 2) 第一幀：只初始化 prevGray，回兩張「單通道」零流（更直覺）
-        if (prev == null || prev.empty()) {
-            // 下一輪才開始算流
-            if (this.prevGray != null && !this.prevGray.empty()) {
-                this.prevGray.release();
+    // landmark → 光流座標（0~1 乘光流尺寸；像素座標除以降採樣倍率）
+    private void fillPoints(LandmarkFrame landmarks, int[] idx, Point[] out) {
+        for (int i = 0; i < idx.length; i++) {
+            float x = landmarks.x(idx[i]);
+            float y = landmarks.y(idx[i]);
+            if (p.landmarksAreNormalized01) {
+                out[i].x = x * flowSize.width;
+                out[i].y = y * flowSize.height;
+            } else {
+                out[i].x = x / scaleX;
+                out[i].y = y / scaleY;
             }
-            this.prevGray = curr.clone();
-
-            Mat u0 = Mat.zeros(curr.size(), CvType.CV_32F);
-            Mat v0 = Mat.zeros(curr.size(), CvType.CV_32F);
-            return new Pair<>(u0, v0);
         }
+    }
 
-        Mat flow = new Mat();
-        List<Mat> channels = new ArrayList<>(2);
-        try {
-            // 3) 算 2 通道光流（不直接用 this.prevGray / this.currGray，避免競態）
-            Video.calcOpticalFlowFarneback(
-                    prev, curr, flow,
-                    p.pyrScale, p.levels, p.winSize, p.iterations, p.polyN, p.polySigma, p.flags);
-
-            // 4) split 成 U/V（單通道）。注意：回傳給呼叫端，這兩個不要在這裡釋放
-            Core.split(flow, channels); // channels.get(0)=U, get(1)=V
+    // ====== 三張 mask：只清 / 畫 ROI 那塊（點座標用 offset 平移到 ROI 內） ======
+    private void rasterizeMasks(LandmarkFrame landmarks, Rect roi) {
+        roiOffset.x = -roi.x;
+        roiOffset.y = -roi.y;
 
-            // 5) 安全更新欄位 prevGray：先釋放舊的，再以「本幀 clone」覆蓋
-            if (this.prevGray != null && !this.prevGray.empty()) {
-                this.prevGray.release();
-            }
-            this.prevGray = curr.clone();
-
-            // 6) 回傳 U/V：由呼叫端負責 release
-            return new Pair<>(channels.get(0), channels.get(1));
+        fillPolygon(maskLI, roi, polyLI, ptsLI);
+        fillPolygon(maskRI, roi, polyRI, ptsRI);
+        if (p.enableRigidCompensation) fillHull(maskRigid, roi, ptsRigid);
+    }
 
+    private void fillPolygon(Mat mask, Rect roi, MatOfPoint poly, Point[] pts) {
+        Mat m = mask.submat(roi);
+        try {
+            m.setTo(ZERO);
+            poly.fromArray(pts);
+            List<MatOfPoint> one = Collections.singletonList(poly);
+            Imgproc.fillPoly(m, one, FILL, Imgproc.LINE_8, 0, roiOffset);
         } finally {
-            // 7) 釋放本方法建立的暫存物件（flow）；channels 交由呼叫端釋放
-            if (flow != null) flow.release();
+            m.release();
         }
     }
 
-    // ====== 建 polygon mask（原圖尺寸） ======
-    private Mat buildPolyMask(Size frameSize, float[][] landmarks, int[] idx) {
-        int W = (int) frameSize.width;
-        int H = (int) frameSize.height;
-        Mat mask = Mat.zeros(H, W, CvType.CV_8UC1);
-
-        Point[] pts = new Point[idx.length];
-        for (int i = 0; i < idx.length; i++) {
-            float x = landmarks[idx[i]][0];
-            float y = landmarks[idx[i]][1];
-            if (p.landmarksAreNormalized01) { x *= W; y *= H; }
-            pts[i] = new Point(x, y);
+    // ====== 凸包（剛性區） ======
+    private void fillHull(Mat mask, Rect roi, Point[] pts) {
+        Mat m = mask.submat(roi);
+        try {
+            m.setTo(ZERO);
+            if (pts.length < 3) return;
+            rigidPts.fromArray(pts);
+            Imgproc.convexHull(rigidPts, hullIdx);
+            int[] hIdx = hullIdx.toArray();
+            Point[] hPts = new Point[hIdx.length];
+            for (int i = 0; i < hIdx.length; i++) {
+                Point q = pts[hIdx[i]];
+                hPts[i] = new Point(q.x - roi.x, q.y - roi.y);   // fillConvexPoly 沒有 offset 參數
+            }
+            hull.fromArray(hPts);
+            Imgproc.fillConvexPoly(m, hull, FILL);
+        } finally {
+            m.release();
         }
-        MatOfPoint poly = new MatOfPoint(pts);
-        Imgproc.fillPoly(mask, Collections.singletonList(poly), new Scalar(255));
-        poly.release();
-        return mask;
     }
 
-    // ====== 建凸包（剛性區） ======
-    private Mat buildHullMask(Size frameSize, float[][] landmarks, int[] idx) {
-        int W = (int) frameSize.width;
-        int H = (int) frameSize.height;
-        Mat mask = Mat.zeros(H, W, CvType.CV_8UC1);
-
-        // 蒐集點
-        List<Point> ptsList = new ArrayList<>(idx.length);
-        for (int i : idx) {
-            float x = landmarks[i][0], y = landmarks[i][1];
-            if (p.landmarksAreNormalized01) { x *= W; y *= H; }
-            ptsList.add(new Point(x, y));
+    // ====== ROI 內取「中位數」流（光流尺度）：回 [LI, RI, 剛性]，沒樣本為 NaN ======
+    private Point[] medianFlows(Rect roi) {
+        int fw = (int) flowSize.width;
+        int area = roi.width * roi.height;
+        // 動態取樣間隔，每區最多約 p.maxSamplesForMedian 筆
+        int step = Math.max(1, (int) Math.sqrt((double) area / Math.max(1, p.maxSamplesForMedian)));
+        int cap = ((roi.width + step - 1) / step) * ((roi.height + step - 1) / step);
+
+        if (flowRow.length != fw * 2) flowRow = new float[fw * 2];
+        if (liRow.length != fw) {
+            liRow = new byte[fw];
+            riRow = new byte[fw];
+            rgRow = new byte[fw];
         }
-        if (ptsList.size() < 3) return mask;
-
-        MatOfPoint mop = new MatOfPoint();
-        mop.fromList(ptsList);
-
-        // convex hull
-        MatOfInt hullIdx = new MatOfInt();
-        Imgproc.convexHull(mop, hullIdx);
-
-        int[] hIdx = hullIdx.toArray();
-        Point[] all = mop.toArray();
-        Point[] hPts = new Point[hIdx.length];
-        for (int i = 0; i < hIdx.length; i++) hPts[i] = all[hIdx[i]];
+        if (liU.length < cap) {
+            liU = new float[cap]; liV = new float[cap];
+            riU = new float[cap]; riV = new float[cap];
+            rgU = new float[cap]; rgV = new float[cap];
+        }
+        boolean rigid = p.enableRigidCompensation;
+
+        int nLI = 0, nRI = 0, nRG = 0;
+        for (int y = roi.y; y < roi.y + roi.height; y += step) {
+            // 整列讀（連續 Mat 一次 JNI），只看 ROI 那段
+            flowBuf.get(y, 0, flowRow);
+            maskLI.get(y, 0, liRow);
+            maskRI.get(y, 0, riRow);
+            if (rigid) maskRigid.get(y, 0, rgRow);
+            for (int x = roi.x; x < roi.x + roi.width; x += step) {
+                float u = flowRow[2 * x];
+                float v = flowRow[2 * x + 1];
+                if (Float.isNaN(u) || Float.isNaN(v) || Float.isInfinite(u) || Float.isInfinite(v)) continue;
+                if (liRow[x] != 0) { liU[nLI] = u; liV[nLI++] = v; }
+                if (riRow[x] != 0) { riU[nRI] = u; riV[nRI++] = v; }
+                if (rigid && rgRow[x] != 0) { rgU[nRG] = u; rgV[nRG++] = v; }
+            }
+        }
+        return new Point[]{
+                median(liU, liV, nLI),
+                median(riU, riV, nRI),
+                rigid ? median(rgU, rgV, nRG) : new Point(0, 0)
+        };
+    }
 
-        MatOfPoint hull = new MatOfPoint(hPts);
-        Imgproc.fillConvexPoly(mask, hull, new Scalar(255));
+    // ====== 稀疏 LK：每區 landmark 點 + 上一幀角點，前後向追蹤，回 [LI, RI, 剛性] 中位數（光流尺度） ======
+    private Point[] sparseFlows(Rect roi) {
+        boolean rigid = p.enableRigidCompensation;
+        int maxSeeds = ptsLI.length + ptsRI.length + (rigid ? ptsRigid.length : 0) + 3 * p.lkMaxCornersPerRegion;
+        if (seedRegion.length < maxSeeds) {
+            seedXY = new float[maxSeeds * 2];
+            seedRegion = new byte[maxSeeds];
+            nextXY = new float[maxSeeds * 2];
+            backXY = new float[maxSeeds * 2];
+            fwdOk = new byte[maxSeeds];
+            bwdOk = new byte[maxSeeds];
+        }
+        if (cornerXY.length < p.lkMaxCornersPerRegion * 2) cornerXY = new int[p.lkMaxCornersPerRegion * 2];
 
-        // 釋放
-        hullIdx.release();
-        hull.release();
-        mop.release();
+        Mat prevRoi = prevSmall.submat(roi);
+        Mat currRoi = currSmall.submat(roi);
+        try {
+            // 1) 種子：landmark 點（在臉上一定有）+ 上一幀該區 mask 內的角點（紋理好追）
+            int n = 0;
+            n = addLandmarkSeeds(ptsLI, roi, SEED_LI, n);
+            n = addCornerSeeds(prevRoi, maskLI, roi, SEED_LI, n);
+            n = addLandmarkSeeds(ptsRI, roi, SEED_RI, n);
+            n = addCornerSeeds(prevRoi, maskRI, roi, SEED_RI, n);
+            if (rigid) {
+                n = addLandmarkSeeds(ptsRigid, roi, SEED_RIGID, n);
+                n = addCornerSeeds(prevRoi, maskRigid, roi, SEED_RIGID, n);
+            }
+            if (n == 0) {
+                Point nan = new Point(Double.NaN, Double.NaN);
+                return new Point[]{nan, nan, rigid ? nan : new Point(0, 0)};
+            }
 
-        return mask;
-    }
+            // 2) 前向 prev→curr，再從結果後向 curr→prev
+            lkPrev.create(n, 1, CvType.CV_32FC2);
+            lkPrev.put(0, 0, seedXY);
+            Size win = new Size(p.lkWinSize, p.lkWinSize);
+            Video.calcOpticalFlowPyrLK(prevRoi, currRoi, lkPrev, lkNext, lkStatus, lkErr,
+                    win, p.lkLevels, lkCriteria);
+            Video.calcOpticalFlowPyrLK(currRoi, prevRoi, lkNext, lkBack, lkStatusBack, lkErr,
+                    win, p.lkLevels, lkCriteria);
+            lkNext.get(0, 0, nextXY);
+            lkBack.get(0, 0, backXY);
+            lkStatus.get(0, 0, fwdOk);
+            lkStatusBack.get(0, 0, bwdOk);
+        } finally {
+            prevRoi.release();
+            currRoi.release();
+        }
 
-    // ====== 在 mask 內取「中位數」流（先在光流尺寸），最後會做尺度換回與補償 ======
-    private Point medianFlowInMask(Mat flowU, Mat flowV, Mat roiMaskOrig) {
-        // 轉到光流尺寸
-        Mat roiSmall = new Mat();
-        Imgproc.resize(roiMaskOrig, roiSmall, flowU.size(), 0, 0, Imgproc.INTER_NEAREST);
-
-        int rows = flowU.rows();
-        int cols = flowU.cols();
-        int total = rows * cols;
-
-        // 動態取樣間隔，最多取 p.maxSamplesForMedian 筆
-        int step = Math.max(1, (int)Math.sqrt((double)total / Math.max(1, p.maxSamplesForMedian)));
-
-        // 收集樣本
-        ArrayList<Float> us = new ArrayList<>();
-        ArrayList<Float> vs = new ArrayList<>();
-        for (int y = 0; y < rows; y += step) {
-            for (int x = 0; x < cols; x += step) {
-                double m = roiSmall.get(y, x)[0];
-                if (m > 0.5) {
-                    float u = (float)flowU.get(y, x)[0];
-                    float v = (float)flowV.get(y, x)[0];
-                    if (!Float.isNaN(u) && !Float.isNaN(v) && !Float.isInfinite(u) && !Float.isInfinite(v)) {
-                        us.add(u); vs.add(v);
-                    }
-                }
+        // 3) 兩向都追到、且追回原位（誤差 <= lkMaxFbError）的點才算
+        int n = (int) lkPrev.total();
+        int cap = n;
+        if (liU.length < cap) {
+            liU = new float[cap]; liV = new float[cap];
+            riU = new float[cap]; riV = new float[cap];
+            rgU = new float[cap]; rgV = new float[cap];
+        }
+        float maxErr2 = p.lkMaxFbError * p.lkMaxFbError;
+        int nLI = 0, nRI = 0, nRG = 0;
+        for (int i = 0; i < n; i++) {
+            if (fwdOk[i] == 0 || bwdOk[i] == 0) continue;
+            float x0 = seedXY[2 * i], y0 = seedXY[2 * i + 1];
+            float ex = backXY[2 * i] - x0, ey = backXY[2 * i + 1] - y0;
+            if (ex * ex + ey * ey > maxErr2) continue;
+            float u = nextXY[2 * i] - x0;
+            float v = nextXY[2 * i + 1] - y0;
+            if (Float.isNaN(u) || Float.isNaN(v)) continue;
+            switch (seedRegion[i]) {
+                case SEED_LI: liU[nLI] = u; liV[nLI++] = v; break;
+                case SEED_RI: riU[nRI] = u; riV[nRI++] = v; break;
+                default:      rgU[nRG] = u; rgV[nRG++] = v; break;
             }
         }
-        roiSmall.release();
+        return new Point[]{
+                median(liU, liV, nLI),
+                median(riU, riV, nRI),
+                rigid ? median(rgU, rgV, nRG) : new Point(0, 0)
+        };
+    }
 
-        if (us.isEmpty()) return new Point(Double.NaN, Double.NaN);
+    // landmark 點（光流座標）→ ROI 座標種子
+    private int addLandmarkSeeds(Point[] pts, Rect roi, byte region, int n) {
+        for (Point q : pts) {
+            float x = (float) (q.x - roi.x), y = (float) (q.y - roi.y);
+            if (x < 0 || y < 0 || x >= roi.width || y >= roi.height) continue;
+            seedXY[2 * n] = x;
+            seedXY[2 * n + 1] = y;
+            seedRegion[n++] = region;
+        }
+        return n;
+    }
 
-        Collections.sort(us);
-        Collections.sort(vs);
-        float mu = us.get(us.size()/2);
-        float mv = vs.get(vs.size()/2);
+    // 上一幀在該區 mask 內的角點（mask 已畫好 ROI 那塊）
+    private int addCornerSeeds(Mat prevRoi, Mat mask, Rect roi, byte region, int n) {
+        if (p.lkMaxCornersPerRegion <= 0) return n;
+        Mat m = mask.submat(roi);
+        try {
+            Imgproc.goodFeaturesToTrack(prevRoi, corners, p.lkMaxCornersPerRegion,
+                    p.lkCornerQuality, p.lkCornerMinDistance, m);
+        } finally {
+            m.release();
+        }
+        int found = Math.min((int) corners.total(), p.lkMaxCornersPerRegion);
+        if (found == 0) return n;
+        corners.get(0, 0, cornerXY);
+        for (int i = 0; i < found; i++) {
+            seedXY[2 * n] = cornerXY[2 * i];
+            seedXY[2 * n + 1] = cornerXY[2 * i + 1];
+            seedRegion[n++] = region;
+        }
+        return n;
+    }
 
-        // 先回傳光流尺度；之後統一做 scale & compensate
-        return new Point(mu, mv);
+    // 先回傳光流尺度；之後統一做 scale & compensate
+    private static Point median(float[] us, float[] vs, int n) {
+        if (n == 0) return new Point(Double.NaN, Double.NaN);
+        Arrays.sort(us, 0, n);
+        Arrays.sort(vs, 0, n);
+        return new Point(us[n / 2], vs[n / 2]);
     }
 
     // 將光流尺度 → 原圖尺度，並做剛性補償
@@ -382,8 +606,48 @@ public class CheekFlowEngine {
         return s;
     }
 
-    public void release() {
-        if (prevGray != null) { prevGray.release(); prevGray = null; }
+    /**
+     * 畫質檔位調整：光流寬 / 節流（任意執行緒呼叫，下一幀生效）
+     * targetWidth 有變時會重建光流尺寸，那一幀回零流
+     */
+    public void requestQuality(int targetWidth, int flowEvery) {
+        pendingFlowEvery = Math.max(1, flowEvery);
+        pendingTargetWidth = targetWidth;
+    }
+
+    // process 執行緒
+    private void applyPendingQuality() {
+        int tw = pendingTargetWidth;
+        if (tw == Integer.MIN_VALUE) return;
+        pendingTargetWidth = Integer.MIN_VALUE;
+        p.flowEvery = pendingFlowEvery;
+        if (tw != p.targetWidth) {
+            p.targetWidth = tw;
+            resetFlowState();
+        }
+    }
+
+    // 光流尺寸下一幀重算；Mat 保留（create 時尺寸不同才重配）
+    private void resetFlowState() {
+        flowSize = null;
+        scaleX = scaleY = 1f;
+        hasPrev = false;
+    }
+
+    public synchronized void release() {
+        hasPrev = false;
+        flowSize = null;
+        for (Mat m : new Mat[]{rgba, grayFull, currSmall, prevSmall, flowBuf, maskLI, maskRI, maskRigid,
+                polyLI, polyRI, rigidPts, hullIdx, hull,
+                corners, lkPrev, lkNext, lkBack, lkStatus, lkStatusBack, lkErr}) {
+            m.release();
+        }
+    }
+
+    private static Point[] newPoints(int n) {
+        Point[] pts = new Point[n];
+        for (int i = 0; i < n; i++) pts[i] = new Point();
+        return pts;
     }
 
     // 小工具：concat 多個 int 陣列
@@ -0,0 +1,115 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * DeviceConditionMonitor
+ * - 訂閱溫度狀態（addThermalStatusListener）、電量 / 充電（ACTION_BATTERY_CHANGED）、省電模式，餵給 QualityGovernor
+ * - 每 POLL_MS 查一次 getThermalHeadroom（預測 FORECAST_S 秒後的溫度餘裕），順便讓 governor 判斷能不能升檔
+ * - 回呼都在主執行緒；start / stop 也在主執行緒呼叫（onCreate / onDestroy）
+ */
+public final class DeviceConditionMonitor {
+
+    private static final String TAG = "DeviceConditionMonitor";
+    private static final long POLL_MS = 5_000;
+    private static final int FORECAST_S = 10;
+
+    private final Context context;
+    private final QualityGovernor governor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final PowerManager pm;
+    private boolean started = false;
+
+    private final PowerManager.OnThermalStatusChangedListener thermalListener = status -> {
+        Log.d(TAG, "🌡️ 溫度狀態: " + QualityGovernor.thermalName(status));
+        this.governor.onThermalStatus(status, SystemClock.elapsedRealtime());
+    };
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context c, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                onBatteryIntent(intent);
+            } else if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(intent.getAction()) && pm != null) {
+                governor.onPowerSave(pm.isPowerSaveMode(), SystemClock.elapsedRealtime());
+            }
+        }
+    };
+
+    private final Runnable poll = new Runnable() {
+        @Override
+        public void run() {
+            if (!started) return;
+            long now = SystemClock.elapsedRealtime();
+            try {
+                // 不支援時回 NaN；兩次呼叫間隔要 >= 1 秒
+                if (pm != null) governor.onHeadroom(pm.getThermalHeadroom(FORECAST_S), now);
+            } catch (Throwable e) {
+                Log.w(TAG, "⚠️ getThermalHeadroom 失敗: " + e.getMessage());
+            }
+            governor.tick(now);
+            handler.postDelayed(this, POLL_MS);
+        }
+    };
+
+    public DeviceConditionMonitor(Context context, QualityGovernor governor) {
+        this.context = context.getApplicationContext();
+        this.governor = governor;
+        this.pm = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    public void start() {
+        if (started) return;
+        started = true;
+        long now = SystemClock.elapsedRealtime();
+        try {
+            if (pm != null) {
+                // 註冊時會立刻回呼一次目前狀態
+                pm.addThermalStatusListener(ContextCompat.getMainExecutor(context), thermalListener);
+                governor.onPowerSave(pm.isPowerSaveMode(), now);
+            }
+        } catch (Throwable e) {
+            Log.w(TAG, "⚠️ 溫度監聽註冊失敗: " + e.getMessage());
+        }
+
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        // ACTION_BATTERY_CHANGED 是 sticky：回傳值就是目前電量
+        Intent sticky = ContextCompat.registerReceiver(context, receiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        if (sticky != null) onBatteryIntent(sticky);
+
+        handler.post(poll);
+        Log.d(TAG, "✅ 開始監看裝置狀況，檔位=" + governor.tier());
+    }
+
+    public void stop() {
+        if (!started) return;
+        started = false;
+        handler.removeCallbacks(poll);
+        try {
+            if (pm != null) pm.removeThermalStatusListener(thermalListener);
+        } catch (Throwable ignore) { }
+        try {
+            context.unregisterReceiver(receiver);
+        } catch (IllegalArgumentException ignore) { }
+    }
+
+    private void onBatteryIntent(Intent intent) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+        if (level < 0 || scale <= 0) return;
+        int plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+        governor.onBattery(Math.round(level * 100f / scale), plugged != 0, SystemClock.elapsedRealtime());
+    }
+}
@@ -5,13 +5,16 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.ImageFormat;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.LinearLayout;
@@ -47,7 +50,7 @@ import androidx.core.content.ContextCompat;
 import com.example.rehabilitationapp.R;
 import com.example.rehabilitationapp.data.AppDatabase;
 import com.example.rehabilitationapp.data.AppLogger;
-import com.example.rehabilitationapp.data.SupabaseUploader;
+import com.example.rehabilitationapp.data.SyncDispatcher;
 import com.example.rehabilitationapp.ui.analysis.CSVMotioner;
 import com.example.rehabilitationapp.ui.results.AnalysisResultActivity;
 import com.example.rehabilitationapp.ui.analysis.CSVPeakAnalyzer;
@@ -55,6 +58,7 @@ import com.example.rehabilitationapp.ui.results.TrainingResultActivity;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mediapipe.framework.image.BitmapImageBuilder;
 import com.google.mediapipe.framework.image.MPImage;
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark;
 import com.google.mediapipe.tasks.core.BaseOptions;
 import com.google.mediapipe.tasks.vision.core.RunningMode;
 import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarker;
@@ -65,8 +69,11 @@ import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.util.Locale;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -137,6 +144,54 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     // 拿去餵給接收器，設定imageAnalysis.setAnalyzer(執行緒, 分析方法)
     private Handler mainHandler;
     // 主執行續
+    private final YuvToRgbConverter yuvConverter = new YuvToRgbConverter();
+    // YUV→ARGB 直轉（取代 JPEG 來回），同一趟完成轉正 + 鏡像，只在 cameraExecutor 上存取
+    private static final int FRAME_POOL_SIZE = 8;
+    private final FrameBitmapPool framePool = new FrameBitmapPool(FRAME_POOL_SIZE);
+    // 分析幀池：convert 1、landmark 佇列+處理 2、metric 佇列+處理 2、UI 派送 2、YOLO 1；全被占用就丟幀
+    private final LandmarkFrame.Pool landmarkPool = new LandmarkFrame.Pool(LandmarkFrame.MAX_LANDMARKS, 4);
+    // 關鍵點池：metric 填一份，UI 派送最多 UI_PENDING_MAX 份 + 臉頰背景段 1 份；不夠就新建
+
+    // 畫質檔位：溫度 / 電量變差時降分析解析度、MediaPipe 輸入、YOLO 節奏、光流設定；變動寫進 metadata
+    private final QualityGovernor qualityGovernor = new QualityGovernor();
+    private DeviceConditionMonitor deviceMonitor;
+    private volatile QualityGovernor.Tier qualityTier = QualityGovernor.Tier.FULL;
+    // IMAGE 模式縮小 MediaPipe 輸入用的重用畫布（只在 landmark 執行緒用）
+    private Bitmap landmarkerInput;
+    private Canvas landmarkerCanvas;
+    private final Paint landmarkerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect landmarkerDst = new Rect();
+    private float[][] jawOverlayPoints = null;
+    // 下顎模式畫點用的 float[][]，只在主執行緒重用
+
+    // 多段管線：convert(相機執行緒) → landmark → metric → record/overlay(主執行緒)
+    private FramePipeline pipeline;
+    private FramePipeline.Stage<LandmarkJob> landmarkStage;
+    private FramePipeline.Stage<LandmarkJob> metricStage;
+    private static final int UI_PENDING_MAX = 2;
+    // 主執行緒上最多同時排幾個分流任務，超過就丟這一幀的 UI/紀錄（背壓）
+    private final java.util.concurrent.atomic.AtomicInteger uiPending = new java.util.concurrent.atomic.AtomicInteger();
+    private final java.util.concurrent.atomic.AtomicLong uiDropped = new java.util.concurrent.atomic.AtomicLong();
+
+    /** 在管線中流動的一幀（持有 frame 的一份引用，走完或被丟棄時 release） */
+    private static final class LandmarkJob {
+        final FrameBitmapPool.Frame frame;
+        final int frameId;
+        final long convertNs;
+        final long enqueuedNs;
+        FaceLandmarkerResult result;
+        long landmarkNs;
+        long submitNs;   // LIVE_STREAM：送進 graph 的時間
+
+        LandmarkJob(FrameBitmapPool.Frame frame, int frameId, long convertNs, long enqueuedNs) {
+            this.frame = frame;
+            this.frameId = frameId;
+            this.convertNs = convertNs;
+            this.enqueuedNs = enqueuedNs;
+        }
+    }
+    private static final boolean YUV_BENCHMARK = false;
+    // Debug：每 30 幀比較一次「直轉 vs 舊 JPEG 路徑」耗時（PERF_YUV）
     //===================>
 
 
@@ -170,7 +225,15 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     //<==========共用(包括舌頭)變數(9種動作)=======
     // 【訓練相關物件】=================
     private FaceDataRecorder dataRecorder;
-    private FaceLandmarker faceLandmarker;
+    private volatile FaceLandmarker faceLandmarker;   // 背景建好後才指派，之前的幀直接丟
+    private boolean LANDMARKER_LIVE_STREAM = false;
+    // true = LIVE_STREAM + detectAsync（由 MediaPipe graph 自己丟幀）；false = IMAGE + 同步 detect（原本模式）
+    // 由 app_settings 的 landmarker_live_stream 切換，方便同一台機器比較兩種模式
+    private long lastLiveTimestampMs = 0;
+    // detectAsync 的 timestamp 必須嚴格遞增，只在 landmark 段執行緒寫入
+    private final java.util.concurrent.ConcurrentSkipListMap<Long, LandmarkJob> liveJobs =
+            new java.util.concurrent.ConcurrentSkipListMap<>();
+    // 已送進 graph、等待結果的幀（key = timestamp）；被 graph 丟掉的幀在下一個結果回來時一起 release
 
     private String trainingLabel = "訓練";
     private int trainingType = -1;
@@ -188,13 +251,18 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     // 用來間隔時間打印 LOG
 
     // 周邊物件
-    private TongueYoloDetector tongueDetector;
-    private TongueYoloDetectorLR tongueDetectorLR;
+    private volatile YoloEngine yoloEngine;        // 上下前後 / 左右兩個舌頭模型共用，用到才載入；背景建好後才指派
+    private YoloModelSpec yoloSpec;                // 這次訓練動作要用的模型
+    private final MouthRoiTracker mouthRoiTracker = new MouthRoiTracker();
+    private final TongueInferenceScheduler tongueScheduler = new TongueInferenceScheduler();
+    private final int[] roiGrid = new int[TongueInferenceScheduler.GRID * TongueInferenceScheduler.GRID];  // 只在主執行緒用
     private volatile boolean isYoloProcessing = false;  // 🔥 新增：YOLO 忙碌旗標
+    private final ArrayDeque<TongueRow> tongueRows = new ArrayDeque<>();
+    // 舌頭每幀一列、依幀順序寫：推理中那一幀的結果回來前，後面沿用框的幀先排在後面（只在主執行緒用）
     // 若處理中isYoloProcessing會阻擋新資料進入，因此不會30FPS全部處理
     // 會看~15-20 fps 實際處理
 
-    private boolean isYoloEnabled = false;
+    private volatile boolean isYoloEnabled = false;
     // 確認YOLO初始化了沒有
     private ExecutorService yoloExecutor;
     //獨立執行緒，專門跑舌頭檢測
@@ -290,8 +358,11 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     private static final int HEAD_STABLE_POINTS_COUNT = HEAD_STABLE_INDICES.length;
     private static final int HEAD_MOTION_WINDOW = 5;
     private static final float HEAD_MOTION_THRESHOLD = 0.003f;
-    private float[][] prevStablePoints = null;
-    private final java.util.ArrayDeque<Float> headMotionHistory = new java.util.ArrayDeque<>();
+    // 上一幀穩定點重心 + 位移環形緩衝（每幀不配置）
+    private boolean hasPrevStable = false;
+    private float prevStableCx = 0f, prevStableCy = 0f;
+    private final float[] headMotionRing = new float[HEAD_MOTION_WINDOW];
+    private int headMotionHead = 0, headMotionCount = 0;
     private boolean lastHeadStable = true;
     private int headStableCooldown = 0;
 
@@ -326,12 +397,16 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         AppLogger.logTrainingStart(trainingLabel);
         super.onCreate(savedInstanceState);
+        // 訓練中不跑 YOLO 後端校正（會跟相機 / MediaPipe 搶 CPU、GPU，量到的數字也不準）
+        YoloBackendCalibrator.sessionStarted();
         setContentView(R.layout.activity_face_circle_checker);
 
         // 🆕 讀取錄影開關設定
         SharedPreferences appSettings = getSharedPreferences("app_settings", MODE_PRIVATE);
         ENABLE_VIDEO_RECORDING = appSettings.getBoolean("video_recording_enabled", true);
         Log.d(TAG, "錄影功能: " + (ENABLE_VIDEO_RECORDING ? "開啟" : "關閉"));
+        LANDMARKER_LIVE_STREAM = appSettings.getBoolean("landmarker_live_stream", false);
+        Log.d(TAG, "FaceLandmarker 模式: " + (LANDMARKER_LIVE_STREAM ? "LIVE_STREAM" : "IMAGE"));
 
         // OpenCV 初始化
         if (!OpenCVLoader.initDebug()) {
@@ -366,6 +441,7 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         // 初始化資料記錄器
         dataRecorder = new FaceDataRecorder(this, trainingLabel, trainingType);
         Log.d(TAG, "資料記錄器初始化完成");
+        setupQualityGovernor();
 
         // 綁定UI控件
         cameraView  = findViewById(R.id.camera_view);
@@ -393,6 +469,7 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         cameraExecutor = Executors.newSingleThreadExecutor();
         yoloExecutor   = Executors.newSingleThreadExecutor();
         mainHandler    = new Handler(Looper.getMainLooper());
+        setupFramePipeline();
 
         // /偵測/UI初始化
         testCameraPermission();
@@ -434,6 +511,11 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         super.onDestroy();
         // 1) 停入口：之後不要再提交任何新任務
         isStopping = true;
+        YoloBackendCalibrator.sessionEnded();
+        if (deviceMonitor != null) {
+            deviceMonitor.stop();
+            deviceMonitor = null;
+        }
 
         // 2) 先把 UI/Timer callback 停掉，避免又排新任務
         cancelTimers();
@@ -451,7 +533,17 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
 
         // 4) 停掉背景執行緒並「等它停乾淨」
         awaitShutdown(cameraExecutor);
+        if (pipeline != null) {
+            Log.d("PERF_TIMING", "pipeline 結束: " + pipeline.summary() + " | ui drop=" + uiDropped.get());
+            pipeline.stop(1000);
+            pipeline = null;
+        }
         awaitShutdown(yoloExecutor);
+        framePool.close();
+        if (landmarkerInput != null) {
+            landmarkerInput.recycle();
+            landmarkerInput = null;
+        }
 
         // 5) 執行緒都停了，現在才安全釋放各引擎/偵測器
         if (cheekEngine != null) {
@@ -461,19 +553,11 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
             cheekEngine = null;
         }
 
-        if (tongueDetector != null) {
-            try {
-                tongueDetector.release();
-            } catch (Throwable ignore) { }
-            tongueDetector = null;
-            Log.d(TAG, "✅ YOLO 檢測器資源已清理");
-        }
-
-        if (tongueDetectorLR != null) {
+        if (yoloEngine != null) {
             try {
-                tongueDetectorLR.release();
+                yoloEngine.release();
             } catch (Throwable ignore) { }
-            tongueDetectorLR = null;
+            yoloEngine = null;
             Log.d(TAG, "✅ YOLO 檢測器資源已清理");
         }
 
@@ -483,60 +567,71 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
             } catch (Throwable ignore) { }
             faceLandmarker = null;
         }
+        releaseLiveJobs();
 
         // 6) 千萬不要在 onDestroy 清 CSV，否則結果頁會拿到空資料
         // if (dataRecorder != null) { dataRecorder.clearData(); }  // ← 移除這行
+        // 只停背景 CSV 串流：已存檔不受影響，中途離開才刪掉部分檔
+        if (dataRecorder != null) { dataRecorder.close(); }
     }
     //===========01【生命週期】========================
 
 
 
-    // 初始化 FaceLandmarker
+    // 初始化 FaceLandmarker：在背景建（IMAGE 模式優先用首頁已預載、熱身過的），建好前 analyzeImage 直接丟幀
     private void setupFaceLandmarker() {
-        try {
-            Log.d(TAG, "try to FaceLandmarker 初始化");
-            FaceLandmarker.FaceLandmarkerOptions options = FaceLandmarker.FaceLandmarkerOptions.builder()
+        Log.d(TAG, "try to FaceLandmarker 初始化");
+        final long t0 = SystemClock.elapsedRealtime();
+        CompletableFuture<FaceLandmarker> future;
+        if (LANDMARKER_LIVE_STREAM) {
+            // 非同步：結果由 MediaPipe 執行緒回呼，graph 忙不過來時自己丟幀；回呼綁在本 Activity，無法預載
+            future = ModelPreloader.buildLandmarker(this, FaceLandmarker.FaceLandmarkerOptions.builder()
                     .setBaseOptions(BaseOptions.builder()
                             .setModelAssetPath("face_landmarker.task")
                             .build())
-                    .setRunningMode(RunningMode.IMAGE)
                     .setNumFaces(1)
-                    .build();
-            faceLandmarker = FaceLandmarker.createFromOptions(this, options);
-            Log.d(TAG, "FaceLandmarker 初始化成功");
-        } catch (Exception e) {
-            Log.e(TAG, "FaceLandmarker 初始化錯誤: " + e.getMessage());
+                    .setRunningMode(RunningMode.LIVE_STREAM)
+                    .setResultListener(this::onLiveStreamResult)
+                    .setErrorListener(e -> Log.e(TAG, "FaceLandmarker LIVE_STREAM 錯誤", e))
+                    .build());
+        } else {
+            future = ModelPreloader.takeLandmarker(this);
         }
+        future.thenAccept(lm -> runOnUiThread(() -> {
+            if (lm == null) {
+                Log.e(TAG, "FaceLandmarker 初始化錯誤");
+                return;
+            }
+            if (isStopping || isDestroyed()) {
+                try {
+                    lm.close();
+                } catch (Throwable ignore) { }
+                return;
+            }
+            faceLandmarker = lm;
+            Log.d(TAG, "FaceLandmarker 初始化成功 (" + (LANDMARKER_LIVE_STREAM ? "LIVE_STREAM" : "IMAGE") +
+                    ")，等待 " + (SystemClock.elapsedRealtime() - t0) + " ms");
+        }));
     }
-    // 初始化舌頭檢測器
+    // 初始化舌頭檢測器：只載入這個動作要用的模型（優先用預載好的）；另一個模型之後真的用到才建，且沿用已確定可用的 delegate
     private void initializeTongueDetector() {
-        try {
-            tongueDetector = new TongueYoloDetector(this);
-
-            isYoloEnabled = tongueDetector.isInitialized();
-            if (!isYoloEnabled) {
-                Log.e(TAG, "❌ 舌頭檢測器初始化失敗");
-                Toast.makeText(this, "舌頭檢測器初始化失敗，將使用一般模式", Toast.LENGTH_SHORT).show();
+        yoloSpec = YoloModelSpec.forTrainingLabel(trainingLabel);
+        if (yoloSpec == null) yoloSpec = YoloModelSpec.TONGUE;
+        final YoloModelSpec spec = yoloSpec;
+        ModelPreloader.takeYoloEngine(this, spec).thenAccept(engine -> runOnUiThread(() -> {
+            if (isStopping || isDestroyed()) {
+                engine.release();
+                return;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "❌ 舌頭檢測器初始化錯誤: " + e.getMessage());
-            isYoloEnabled = false;
-            Toast.makeText(this, "舌頭檢測器載入失敗：" + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
-
-        try {
-            tongueDetectorLR = new TongueYoloDetectorLR(this);
-
-            isYoloEnabled = tongueDetectorLR.isInitialized();
+            yoloEngine = engine;
+            isYoloEnabled = engine.isInitialized(spec);
             if (!isYoloEnabled) {
-                Log.e(TAG, "❌ LR舌頭檢測器初始化失敗");
-                Toast.makeText(this, "LR舌頭檢測器初始化失敗，將使用一般模式", Toast.LENGTH_SHORT).show();
+                Log.e(TAG, "❌ 舌頭檢測器初始化失敗: " + spec);
+                Toast.makeText(this, "舌頭檢測器初始化失敗，將使用一般模式", Toast.LENGTH_SHORT).show();
+            } else {
+                Log.d(TAG, "✅ 舌頭檢測器就緒: " + spec.name + ", backend=" + engine.backendOf(spec));
             }
-        } catch (Exception e) {
-            Log.e(TAG, "❌ LR舌頭檢測器初始化錯誤: " + e.getMessage());
-            isYoloEnabled = false;
-            Toast.makeText(this, "LR舌頭檢測器載入失敗：" + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        }));
     }
 
     private void initializeUI() {
@@ -650,60 +745,41 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         }
     }
 
-    // 圖像分析
+    // 建立管線：每段一條執行緒，段間佇列有上限，滿了丟最舊（永遠追最新幀）
+    private void setupFramePipeline() {
+        pipeline = new FramePipeline();
+        FramePipeline.Recycler<LandmarkJob> releaseJob = job -> job.frame.release();
+        landmarkStage = pipeline.addStage("landmark", 1, FramePipeline.DropPolicy.DROP_OLDEST,
+                this::runLandmarkStage, releaseJob);
+        metricStage = pipeline.addStage("metric", 1, FramePipeline.DropPolicy.DROP_OLDEST,
+                this::runMetricStage, releaseJob);
+        pipeline.start();
+    }
+
+    // 【convert 段】相機執行緒：只做 YUV→幀，送進 landmark 佇列後立刻 close ImageProxy，
+    // 讓 CameraX 可以在 landmark 推論第 N 幀時就送來第 N+1 幀
     private void analyzeImage(@NonNull ImageProxy imageProxy) {
-        if (faceLandmarker == null) {
+        if (faceLandmarker == null || !shouldAcceptNewFrames() || landmarkStage == null) {
             imageProxy.close();
             return;
         }
 
         try {
-            long t0, t1, t2, t3, t4, t5;
             int rotationDegrees = imageProxy.getImageInfo().getRotationDegrees();
 
-            t0 = System.nanoTime();
-            Bitmap rawBitmap = imageProxyToBitmap(imageProxy);
-            t1 = System.nanoTime();
-
-            if (rawBitmap != null) {
-                Bitmap rotatedBitmap = rotateBitmap(rawBitmap, rotationDegrees);
-                t2 = System.nanoTime();
-
-                Bitmap mirroredBitmap = mirrorBitmap(rotatedBitmap);
-                t3 = System.nanoTime();
-
-                MPImage mpImage = new BitmapImageBuilder(mirroredBitmap).build();
-                // 🔥 縮小圖片加速 MediaPipe 嘗試改小張240
-//                Bitmap smallBitmap = Bitmap.createScaledBitmap(mirroredBitmap, 240, 320, true);
-//                MPImage mpImage = new BitmapImageBuilder(smallBitmap).build();
+            long t0 = System.nanoTime();
+            FrameBitmapPool.Frame frame = imageProxyToFrame(imageProxy, rotationDegrees);
+            long t1 = System.nanoTime();
 
-                FaceLandmarkerResult result = faceLandmarker.detect(mpImage);
-                t4 = System.nanoTime();
+            if (frame != null) {
+                // frame 的引用交給 job；被丟棄時由 Recycler release
+                landmarkStage.offer(new LandmarkJob(frame, frameId, t1 - t0, t1));
 
-                if (result != null && !result.faceLandmarks().isEmpty()) {
-                    Log.d(TAG, "檢測到人臉，關鍵點數量: " + result.faceLandmarks().get(0).size());
+                if (YUV_BENCHMARK && frameId % 30 == 0) {
+                    benchmarkYuvPaths(imageProxy, rotationDegrees);
                 }
-                //checkFacePosition進入後會根據動作分流
-                checkFacePosition(result, mirroredBitmap.getWidth(), mirroredBitmap.getHeight(), mirroredBitmap);
-                t5 = System.nanoTime();
-
-                // ===== 印出各階段耗時 =====
-                Log.d("PERF_TIMING", String.format(
-                        "Frame#%d | toBitmap=%.1fms | rotate=%.1fms | mirror=%.1fms | MediaPipe=%.1fms | checkPos=%.1fms | TOTAL=%.1fms",
-                        frameId,
-                        (t1 - t0) / 1_000_000f,
-                        (t2 - t1) / 1_000_000f,
-                        (t3 - t2) / 1_000_000f,
-                        (t4 - t3) / 1_000_000f,
-                        (t5 - t4) / 1_000_000f,
-                        (t5 - t0) / 1_000_000f
-                ));
-
-                new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                    rawBitmap.recycle();
-                    if (rotatedBitmap != rawBitmap) rotatedBitmap.recycle();
-                    // mirroredBitmap 交由 GC
-                }, 100);
+            } else {
+                Log.d(TAG, "幀池已滿，丟棄 Frame#" + frameId);
             }
         } catch (Exception e) {
             Log.e(TAG, "圖像分析錯誤", e);
@@ -714,6 +790,129 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         }
     }
 
+    // 【landmark 段】MediaPipe 推論
+    private void runLandmarkStage(LandmarkJob job) {
+        FaceLandmarker landmarker = faceLandmarker;
+        if (landmarker == null || !shouldAcceptNewFrames()) {
+            job.frame.release();
+            return;
+        }
+        long t0 = System.nanoTime();
+        if (LANDMARKER_LIVE_STREAM) {
+            submitLiveStream(landmarker, job, t0);
+            return;
+        }
+        try {
+            // 🔥 縮小圖片加速 MediaPipe：依畫質檔位（關鍵點是 0~1，縮圖不影響座標換算）
+            MPImage mpImage = new BitmapImageBuilder(landmarkerInput(job.frame.getBitmap())).build();
+            job.result = landmarker.detect(mpImage);
+        } catch (Exception e) {
+            Log.e(TAG, "MediaPipe 推論錯誤", e);
+            job.frame.release();
+            return;
+        }
+        job.landmarkNs = System.nanoTime() - t0;
+
+        if (job.result != null && !job.result.faceLandmarks().isEmpty()) {
+            Log.d(TAG, "檢測到人臉，關鍵點數量: " + job.result.faceLandmarks().get(0).size());
+        }
+        metricStage.offer(job);
+    }
+
+    // LIVE_STREAM：送進 graph 就返回，幀的引用留在 liveJobs 直到結果回來
+    private void submitLiveStream(FaceLandmarker landmarker, LandmarkJob job, long submitNs) {
+        // 單調遞增的毫秒 timestamp（同一毫秒內兩幀時往後推 1ms）
+        long ts = Math.max(android.os.SystemClock.uptimeMillis(), lastLiveTimestampMs + 1);
+        lastLiveTimestampMs = ts;
+        job.submitNs = submitNs;
+        liveJobs.put(ts, job);
+        try {
+            // graph 非同步讀圖：縮圖不能重用畫布，每幀另建（只在降檔時才會縮）
+            Bitmap src = job.frame.getBitmap();
+            int w = qualityTier.landmarkerWidth;
+            Bitmap input = (w > 0 && w < src.getWidth())
+                    ? Bitmap.createScaledBitmap(src, w, Math.round(src.getHeight() * (w / (float) src.getWidth())), true)
+                    : src;
+            MPImage mpImage = new BitmapImageBuilder(input).build();
+            landmarker.detectAsync(mpImage, ts);
+        } catch (Exception e) {
+            Log.e(TAG, "MediaPipe detectAsync 錯誤", e);
+            LandmarkJob failed = liveJobs.remove(ts);
+            if (failed != null) failed.frame.release();
+        }
+    }
+
+    // LIVE_STREAM 結果回呼（MediaPipe 執行緒）
+    private void onLiveStreamResult(FaceLandmarkerResult result, MPImage input) {
+        long ts = result.timestampMs();
+        // 比這個結果早送出卻沒回來的，代表被 graph 丟掉 → 還給幀池
+        java.util.Map.Entry<Long, LandmarkJob> e;
+        while ((e = liveJobs.firstEntry()) != null && e.getKey() < ts) {
+            if (liveJobs.remove(e.getKey(), e.getValue())) e.getValue().frame.release();
+        }
+        LandmarkJob job = liveJobs.remove(ts);
+        if (job == null) return;
+        if (!shouldAcceptNewFrames() || metricStage == null) {
+            job.frame.release();
+            return;
+        }
+        job.result = result;
+        job.landmarkNs = System.nanoTime() - job.submitNs;
+        if (!result.faceLandmarks().isEmpty()) {
+            Log.d(TAG, "檢測到人臉，關鍵點數量: " + result.faceLandmarks().get(0).size());
+        }
+        metricStage.offer(job);
+    }
+
+    // IMAGE 模式的 MediaPipe 輸入：檔位要求縮圖就畫進重用的小畫布（landmark 執行緒，detect 同步用完）
+    private Bitmap landmarkerInput(Bitmap src) {
+        int w = qualityTier.landmarkerWidth;
+        if (w <= 0 || w >= src.getWidth()) return src;
+        int h = Math.round(src.getHeight() * (w / (float) src.getWidth()));
+        if (landmarkerInput == null || landmarkerInput.getWidth() != w || landmarkerInput.getHeight() != h) {
+            if (landmarkerInput != null) landmarkerInput.recycle();
+            landmarkerInput = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            landmarkerCanvas = new Canvas(landmarkerInput);
+            landmarkerDst.set(0, 0, w, h);
+        }
+        landmarkerCanvas.drawBitmap(src, null, landmarkerDst, landmarkerPaint);
+        return landmarkerInput;
+    }
+
+    // 還回所有還卡在 graph 裡的幀（onDestroy 關掉 landmarker 後呼叫）
+    private void releaseLiveJobs() {
+        java.util.Map.Entry<Long, LandmarkJob> e;
+        while ((e = liveJobs.pollFirstEntry()) != null) e.getValue().frame.release();
+    }
+
+    // 【metric 段】座標換算 + 動作分流；UI/紀錄再交給主執行緒
+    private void runMetricStage(LandmarkJob job) {
+        long t0 = System.nanoTime();
+        try {
+            //checkFacePosition進入後會根據動作分流
+            checkFacePosition(job.result, job.frame.getWidth(), job.frame.getHeight(), job.frame);
+        } finally {
+            job.frame.release();
+        }
+        long t1 = System.nanoTime();
+
+        // ===== 印出各階段耗時 =====
+        long waitNs = t1 - job.enqueuedNs - job.landmarkNs - (t1 - t0);
+        Log.d("PERF_TIMING", String.format(
+                "Frame#%d [%s] | toFrame(yuv+rotate+mirror)=%.1fms | queueWait=%.1fms | MediaPipe=%.1fms | checkPos=%.1fms | TOTAL=%.1fms",
+                job.frameId,
+                LANDMARKER_LIVE_STREAM ? "LIVE" : "IMAGE",
+                job.convertNs / 1_000_000f,
+                waitNs / 1_000_000f,
+                job.landmarkNs / 1_000_000f,
+                (t1 - t0) / 1_000_000f,
+                (t1 - job.enqueuedNs + job.convertNs) / 1_000_000f
+        ));
+        if (job.frameId % 30 == 0 && pipeline != null) {
+            Log.d("PERF_TIMING", "pipeline: " + pipeline.summary() + " | ui drop=" + uiDropped.get());
+        }
+    }
+
     private Bitmap rotateBitmap(Bitmap original, int degrees) {
         if (degrees == 0) return original;
         Matrix matrix = new Matrix();
@@ -727,7 +926,87 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         return Bitmap.createBitmap(original, 0, 0, original.getWidth(), original.getHeight(), matrix, false);
     }
 
-    private Bitmap imageProxyToBitmap(@NonNull ImageProxy imageProxy) {
+    // YUV_420_888 直接轉 ARGB，同一趟轉正 + 鏡像，寫進池中的幀（無 JPEG 編解碼、無中間 Bitmap）
+    // 回傳的 Frame refs=1，由呼叫端 release；池滿回 null
+    private FrameBitmapPool.Frame imageProxyToFrame(@NonNull ImageProxy imageProxy, int rotationDegrees) {
+        FrameBitmapPool.Frame frame = null;
+        try {
+            ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+            int width = imageProxy.getWidth();
+            int height = imageProxy.getHeight();
+            // 降檔時 2× 降採樣：後面各段（MediaPipe / YOLO / 光流）都吃小一半的幀
+            int step = qualityTier.analysisStep;
+            int outW = YuvToRgbConverter.outputWidth(width, height, rotationDegrees, step);
+            int outH = YuvToRgbConverter.outputHeight(width, height, rotationDegrees, step);
+
+            frame = framePool.acquire(outW, outH);
+            if (frame == null) return null;
+
+            int[] argb = yuvConverter.convert(
+                    planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(),
+                    planes[1].getRowStride(), planes[1].getPixelStride(),
+                    width, height, rotationDegrees, true, step);
+
+            frame.getBitmap().setPixels(argb, 0, outW, 0, 0, outW, outH);
+            return frame;
+
+        } catch (Exception e) {
+            Log.e(TAG, "ImageProxy轉換錯誤", e);
+            if (frame != null) frame.release();
+            return null;
+        }
+    }
+
+    // 把幀交給背景執行緒：先 retain，任務內負責 release；送不出去（executor 已關）就補還引用
+    private void executeWithFrame(ExecutorService executor, FrameBitmapPool.Frame frame, Runnable task) {
+        frame.retain();
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+    }
+
+    // 舌頭補正用的 4 個參考點：右眼 33、左眼 263、眉心 168、鼻尖 1（x,y 交錯）
+    private static final int[] TONGUE_REF_IDX = {33, 263, 168, 1};
+
+    // imagePixels=false → Overlay 像素；true → 依等比縮放+置中反推回 Bitmap 像素
+    private static float[] tongueRefPoints(LandmarkFrame lm, boolean imagePixels) {
+        float[] out = new float[TONGUE_REF_IDX.length * 2];
+        for (int i = 0; i < TONGUE_REF_IDX.length; i++) {
+            int idx = TONGUE_REF_IDX[i];
+            out[i * 2]     = imagePixels ? lm.viewToImageX(idx) : lm.viewX(idx);
+            out[i * 2 + 1] = imagePixels ? lm.viewToImageY(idx) : lm.viewY(idx);
+        }
+        return out;
+    }
+
+    // Debug：同一幀分別跑新舊兩條路徑（含轉正+鏡像），印出耗時
+    // 直轉不動 buffer position，必須先跑；舊路徑會把 buffer 讀光，放最後
+    private void benchmarkYuvPaths(@NonNull ImageProxy imageProxy, int rotationDegrees) {
+        long a0 = System.nanoTime();
+        FrameBitmapPool.Frame direct = imageProxyToFrame(imageProxy, rotationDegrees);
+        long a1 = System.nanoTime();
+        if (direct == null) return;
+        direct.release();
+
+        Bitmap jpeg = imageProxyToBitmapJpeg(imageProxy);
+        Bitmap rotated = (jpeg != null) ? rotateBitmap(jpeg, rotationDegrees) : null;
+        Bitmap mirrored = (rotated != null) ? mirrorBitmap(rotated) : null;
+        long a2 = System.nanoTime();
+        Log.d("PERF_YUV", String.format(Locale.US,
+                "Frame#%d | %dx%d | direct=%.1fms | jpeg+rotate+mirror=%.1fms",
+                frameId, imageProxy.getWidth(), imageProxy.getHeight(),
+                (a1 - a0) / 1_000_000f, (a2 - a1) / 1_000_000f));
+        if (mirrored != null) mirrored.recycle();
+        if (rotated != null && rotated != jpeg) rotated.recycle();
+        if (jpeg != null) jpeg.recycle();
+    }
+
+    // 舊路徑：NV21 → JPEG(100) → decode，只留給 benchmarkYuvPaths 對照用
+    private Bitmap imageProxyToBitmapJpeg(@NonNull ImageProxy imageProxy) {
         try {
             ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
             ByteBuffer yBuffer = planes[0].getBuffer();
@@ -768,83 +1047,47 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     }
 
 
-    /**
-     * 將 allPoints 轉成「Bitmap 像素座標」。
-     * - 若看起來是 normalized(0~1) → 乘上 imgW/imgH。
-     * - 否則視為 Overlay 座標 → 依等比縮放+置中模型反推回 Bitmap 像素。
-     */
-    private float[][] toBitmapPixels(float[][] ptsIn,
-                                     int imgW, int imgH,
-                                     int overlayW, int overlayH) {
-        float[][] out = new float[ptsIn.length][2];
-
-        // 粗檢：抽樣前20點，有 ≥70% 落在[0,1] 就當 normalized
-        int sample = Math.min(20, ptsIn.length), count01 = 0;
-        for (int i = 0; i < sample; i++) {
-            float x = ptsIn[i][0], y = ptsIn[i][1];
-            if (x >= 0f && x <= 1f && y >= 0f && y <= 1f) count01++;
-        }
-        boolean looksNormalized = (count01 >= sample * 0.7f);
-
-        if (looksNormalized) {
-            for (int i = 0; i < ptsIn.length; i++) {
-                out[i][0] = ptsIn[i][0] * imgW;
-                out[i][1] = ptsIn[i][1] * imgH;
-            }
-            return out;
-        }
-
-        // Overlay→Bitmap 反解（view = img*scale + offset）
-        float scale = Math.min((float) overlayW / imgW, (float) overlayH / imgH);
-        float offX = (overlayW - imgW * scale) / 2f;
-        float offY = (overlayH - imgH * scale) / 2f;
-
-        for (int i = 0; i < ptsIn.length; i++) {
-            float vx = ptsIn[i][0], vy = ptsIn[i][1];
-            out[i][0] = (vx - offX) / scale;
-            out[i][1] = (vy - offY) / scale;
-        }
-        return out;
-    }
-
     //===========【動作方法區域】=========
     // 加入 YOLO 整合
-    private void checkFacePosition(FaceLandmarkerResult result, int bitmapWidth, int bitmapHeight, Bitmap mirroredBitmap) {
+    private void checkFacePosition(FaceLandmarkerResult result, int bitmapWidth, int bitmapHeight, FrameBitmapPool.Frame frame) {
         // 臉部位置判斷
         boolean faceDetected = result != null && !result.faceLandmarks().isEmpty();
 
         if (faceDetected) {
+            // 【metric 段】在管線執行緒算好座標（不佔主執行緒），主執行緒只做分流/繪製/紀錄
+            int overlayWidth = overlayView.getWidth();
+            int overlayHeight = overlayView.getHeight();
+            // View 寬高在管線執行緒讀取：只是兩個 int，最差拿到上一次 layout 的值
+            if (overlayWidth <= 0 || overlayHeight <= 0) return;
+            //  前置鏡頭顯示影像不是真的，是處理過的，MEDIAPPIPE處理的陣列是未處理得"相機陣列"，所以這邊進行模仿處理再顯示
+            float inputAspect = 480f / 640f; // Bitmap 寬高比(?bitmap從哪來，前置鏡頭原始像?)
+            float viewAspect = overlayWidth / (float) overlayHeight; // Overlay 寬高比(給人看得處理後畫面?)
+            float scaleX = inputAspect / viewAspect;
+
+            // 主執行緒排太多就丟這一幀（背壓），避免 UI 與紀錄越積越慢
+            if (uiPending.incrementAndGet() > UI_PENDING_MAX) {
+                uiPending.decrementAndGet();
+                uiDropped.incrementAndGet();
+                return;
+            }
+
+            // 只存一份原始 0~1 到池中的扁平陣列；Overlay 像素 / Bitmap 像素由 LandmarkFrame 即時換算
+            // （取代每幀兩份 new float[478][3]：landmarks01 + allPoints）
+            List<NormalizedLandmark> face = result.faceLandmarks().get(0);
+            int landmarkCount = Math.min(face.size(), LandmarkFrame.MAX_LANDMARKS);
+            final LandmarkFrame lm = landmarkPool.acquire();
+            lm.begin(landmarkCount, frame.getWidth(), frame.getHeight(), overlayWidth, overlayHeight, scaleX);
+            for (int i = 0; i < landmarkCount; i++) {
+                NormalizedLandmark p = face.get(i);
+                lm.set(i, p.x(), p.y(), p.z());
+            }
+
+            // UI 執行緒跑完才放掉；分流到 YOLO / 光流時各自再 retain
+            frame.retain();
             try {
                 runOnUiThread(() -> {
-//                    Log.d(TAG_2, "進入主流程_checkFacePosition");
-                    int overlayWidth = overlayView.getWidth();
-                    int overlayHeight = overlayView.getHeight();
-                    //  前置鏡頭顯示影像不是真的，是處理過的，MEDIAPPIPE處理的陣列是未處理得"相機陣列"，所以這邊進行模仿處理再顯示
-                    if (overlayWidth > 0 && overlayHeight > 0) {
-                        float inputAspect = 480f / 640f; // Bitmap 寬高比(?bitmap從哪來，前置鏡頭原始像?)
-                        float viewAspect = overlayWidth / (float) overlayHeight; // Overlay 寬高比(給人看得處理後畫面?)
-                        float scaleX = inputAspect / viewAspect;
-
-                        int landmarkCount = result.faceLandmarks().get(0).size();
-                        float[][] landmarks01 = new float[landmarkCount][3]; // 0~1;//正規化原始圖像
-                        float[][] allPoints = new float[landmarkCount][3]; // 0~1;//變形比例，顯示用圖像
-
-                        for (int i = 0; i < landmarkCount; i++) {
-                            float x = result.faceLandmarks().get(0).get(i).x();
-                            float y = result.faceLandmarks().get(0).get(i).y();
-                            float z = result.faceLandmarks().get(0).get(i).z();
-
-                            // 存一份原始 0~1（給 CheekFlowEngine 用）
-                            landmarks01[i][0] = x;
-                            landmarks01[i][1] = y;
-                            landmarks01[i][2] = z;
-                            // 這份是給 overlay 畫面：做 X 比例補償後轉像素
-                            x = (x - 0.5f) * scaleX + 0.5f; //???
-                            allPoints[i][0] = x * overlayWidth;
-                            allPoints[i][1] = y * overlayHeight;
-                            allPoints[i][2] = z ;
-//                            Log.d(TAG_2, "進入主流程_checkFacePosition_寫完兩個allPoints");
-                        }
+                    try {
+                        Bitmap mirroredBitmap = frame.getBitmap();
 
 
 // === 頭動偵測（只在校正階段阻擋）===
@@ -862,7 +1105,7 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
                             // 更換機型可以調整看看
                             boolean needFaceMesh = (lastOverlayRoi == null) || (frameId % FACE_MESH_EVERY == 0);
                             if (needFaceMesh) {
-                                Rect overlayRoi = TongueYoloDetector.calculateMouthROI(allPoints, overlayWidth, overlayHeight);
+                                Rect overlayRoi = mouthRoiTracker.calculateMouthROI(lm, overlayWidth, overlayHeight);
                                 lastOverlayRoi = overlayRoi;
                                 //mirroredBitmap =>圖已轉正+左右顛倒後
                                 // b除以sx=o，求sx就是要算縮放倍率
@@ -880,7 +1123,7 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
 //                            handleTongueMode(allPoints, mirroredBitmap, bitmapWidth, bitmapHeight,
 //                                    lastOverlayRoi, lastBitmapRoi);
                             //20025 11 13 偷改看看新模型
-                            handleTongueMode(allPoints, mirroredBitmap, bitmapWidth, bitmapHeight,
+                            handleTongueMode(YoloModelSpec.TONGUE, lm, frame, bitmapWidth, bitmapHeight,
                                     lastOverlayRoi, lastBitmapRoi);
 
                         } else if("TONGUE_LEFT".equals(trainingLabel) || "TONGUE_RIGHT".equals(trainingLabel) ){
@@ -889,7 +1132,7 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
                             // 更換機型可以調整看看
                             boolean needFaceMesh = (lastOverlayRoi == null) || (frameId % FACE_MESH_EVERY == 0);
                             if (needFaceMesh) {
-                                Rect overlayRoi = TongueYoloDetectorLR.calculateMouthROI(allPoints, overlayWidth, overlayHeight);
+                                Rect overlayRoi = mouthRoiTracker.calculateMouthROI(lm, overlayWidth, overlayHeight);
                                 lastOverlayRoi = overlayRoi;
                                 //mirroredBitmap =>圖已轉正+左右顛倒後
                                 // b除以sx=o，求sx就是要算縮放倍率
@@ -904,30 +1147,26 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
                                 );
                             }
                             // 把快取 ROI 傳給 YOLO（不一定每幀更新 ROI）
-                            handleTongueModeLR(allPoints, mirroredBitmap, bitmapWidth, bitmapHeight,
+                            handleTongueMode(YoloModelSpec.TONGUE_LR, lm, frame, bitmapWidth, bitmapHeight,
                                     lastOverlayRoi, lastBitmapRoi);
 
                         } else if ("鼓頰".equals(trainingLabel) || "PUFF_CHEEK".equals(trainingLabel) || "REDUCE_CHEEK".equals(trainingLabel)) {
                             //Log.d(TAG_2, "動作分流_臉頰");
                             // ★★★ 臉頰模式
-                            handleCheeksMode(landmarks01, mirroredBitmap,bitmapWidth,bitmapHeight);
+                            handleCheeksMode(lm, frame);
                         } else if ("下顎".equals(trainingLabel) || "JAW_LEFT".equals(trainingLabel) || "JAW_RIGHT".equals(trainingLabel)) {
                             // ★★★ 下顎模式
                             //Log.d(TAG_2, "動作分流_下顎");
-                            handleJawMode(allPoints);
+                            handleJawMode(lm);
                         } else {
                             //Log.d(TAG_2, "動作分流_嘴唇");
                             // 嘴唇模式
-                            handleLipMode(allPoints);
+                            handleLipMode(lm);
                         }
                         // *************************前端邏輯
                         // 鼻尖 for 圓框狀態（顯示層用）
-                        float noseRelativeX = result.faceLandmarks().get(0).get(1).x();
-                        float noseRelativeY = result.faceLandmarks().get(0).get(1).y();
-                        float noseCorrectedX = (noseRelativeX - 0.5f) * scaleX + 0.5f;
-
-                        float noseScreenX = noseCorrectedX * overlayWidth;
-                        float noseScreenY = noseRelativeY * overlayHeight;
+                        float noseScreenX = lm.viewX(1);
+                        float noseScreenY = lm.viewY(1);
 
                         float centerX = overlayWidth / 2f;
                         float centerY = overlayHeight / 2f;
@@ -974,7 +1213,7 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
                         //
 
                         // === 頭動偵測（校正中 + 倒數完成 + 人在圓框內 才擋）===
-                        boolean headStable = isHeadStable(landmarks01);
+                        boolean headStable = isHeadStable(lm);
                         if (headStableCooldown > 0) {
                             headStableCooldown--;
                             headStable = false;
@@ -991,11 +1230,18 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
 
                         handleFacePosition(noseInside);
 
+                    } finally {
+                        lm.release();
+                        frame.release();
+                        uiPending.decrementAndGet();
                     }
                 });
 
             } catch (Exception e) {
                 Log.e(TAG, "檢查臉部位置時發生錯誤", e);
+                lm.release();
+                frame.release();
+                uiPending.decrementAndGet();
                 runOnUiThread(() -> handleFacePosition(false));
             }
         } else {
@@ -1009,338 +1255,296 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     }
 
     /**
-     * 舌頭模式：用快取好的 ROI + 節流 YOLO
+     * 舌頭模式：用快取好的 ROI + 動態排程 YOLO（上下前後 TONGUE、左右 TONGUE_LR 共用）
+     * - TongueInferenceScheduler 看嘴部點位移與 ROI 外觀：沒變化就不推理，框沿用上一次量測（隨嘴部平移）
+     * - 不論推理或沿用，每幀都寫一列（yolo_measured 標記是哪一種），依幀順序：沿用的列排在還沒回來的推理列後面，
+     *   而且等推理結果到了才算沿用框（沿用的是前一次真正量到的結果）
+     * - 分析端（TongueMotionAnalyzer / count_tongue_*.py）只用 yolo_measured = 1 的列
      * 模式處理只負責到紀錄，稍後由狀態幾呼叫完成進行後續邏輯
-     * 改TongueYoloDetector.DetectionResult result 的物件1或2
      */
-    private void handleTongueMode(float[][] allPoints, Bitmap mirroredBitmap, int bitmapWidth, int bitmapHeight,
+    private void handleTongueMode(YoloModelSpec spec, LandmarkFrame lm, FrameBitmapPool.Frame frame,
+                                  int bitmapWidth, int bitmapHeight,
                                   Rect overlayRoi,   // ← 使用快取 Overlay ROI
                                   Rect bitmapRoi) {  // ← 使用快取 Bitmap ROI
         try {
             if (!shouldAcceptNewFrames()) return;
-            // ★ 每 YOLO_EVERY 幀跑一次 YOLO
+            // ★ 每 YOLO_EVERY 幀處理一次
             if ((frameId % YOLO_EVERY) != 0) return;
             if (overlayRoi == null || bitmapRoi == null) return;
-
-            // 🔥 新增：如果 YOLO 還在忙，跳過這幀（取代原本的 YOLO_EVERY 檢查）
-            if (isYoloProcessing) return;
-            isYoloProcessing = true;
+            // 畫質檔位的 YOLO 節奏：不在節奏上的幀只沿用（照樣出一列）
+            boolean onCadence = (frameId % qualityTier.yoloEvery) == 0;
 
             int overlayWidth = overlayView.getWidth();
             int overlayHeight = overlayView.getHeight();
 
             final Rect mouthROIFinal = new Rect(overlayRoi);
-            final float[][] allPointsFinal = allPoints;
+            // 參考點先抄出來（View / Bitmap 像素各 4 點），LandmarkFrame 不跨到 YOLO 執行緒
+            final float[] refView = tongueRefPoints(lm, false);
+            final float[] refImg = tongueRefPoints(lm, true);
             final Rect bitmapROIFinal = new Rect(bitmapRoi);
+            final int frameW = frame.getWidth();
+            final int frameH = frame.getHeight();
+            final float toViewX = overlayWidth / (float) frameW;
+            final float toViewY = overlayHeight / (float) frameH;
+
+            // 排程：嘴部點（Bitmap 像素）+ ROI 取樣，以兩眼距為尺度
+            final float[] mouthPts = mouthPoints(lm);
+            sampleRoiGrid(frame.getBitmap(), bitmapROIFinal, roiGrid);
+            float dio = (float) Math.hypot(refImg[0] - refImg[2], refImg[1] - refImg[3]);
+            boolean wantInfer = tongueScheduler.decide(mouthPts, dio, roiGrid) == TongueInferenceScheduler.Decision.INFER
+                    && onCadence;
+
+            boolean recording = currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING;
+            TongueRow row = new TongueRow(mouthPts, mouthROIFinal, refView, refImg, frameW, frameH, toViewX, toViewY,
+                    wantInfer && !isYoloProcessing, recording, recording ? csvState() : null);
+            tongueRows.addLast(row);
+
+            // 沒變化（或 YOLO 還在忙 / 不在節奏上）：沿用上一次的框，照樣出一列（排在前面的推理列之後）
+            if (!row.measured) {
+                row.ready = true;
+                flushTongueRows();
+                return;
+            }
+
+            isYoloProcessing = true;
+            tongueScheduler.onInferenceStarted(mouthPts);
 
-            yoloExecutor.execute(() -> {
+            // YOLO 執行緒用完幀再 release（主執行緒後段只需要寬高）
+            executeWithFrame(yoloExecutor, frame, () -> {
                 long t0 = System.nanoTime();
-                TongueYoloDetector.DetectionResult result =
-                        tongueDetector.detectTongueWithRealPosition(
-                                mirroredBitmap, bitmapROIFinal, overlayWidth, overlayHeight);
+                YoloEngine.DetectionResult result;
+                YoloEngine engine = yoloEngine;   // 背景載入完成前為 null
+                try {
+                    result = engine == null
+                            ? new YoloEngine.DetectionResult(false)
+                            : engine.detect(spec, frame.getBitmap(), bitmapROIFinal);
+                } catch (Exception e) {
+                    Log.e(TAG, "YOLO 推理失敗", e);
+                    result = new YoloEngine.DetectionResult(false);   // 這一列照樣出，後面排隊的列才不會卡住
+                } finally {
+                    frame.release();
+                }
                 long t1 = System.nanoTime();
                 float inferMs = (t1 - t0) / 1_000_000f;
 
-                Rect viewTongueBox = null;
-                if (result.detected && result.boundingBox != null) {
-                    float sx = overlayWidth  / (float) mirroredBitmap.getWidth();
-                    float sy = overlayHeight / (float) mirroredBitmap.getHeight();
-                    Rect b = result.boundingBox;
-                    viewTongueBox = new Rect(
-                            Math.round(b.left   * sx),
-                            Math.round(b.top    * sy),
-                            Math.round(b.right  * sx),
-                            Math.round(b.bottom * sy)
-                    );
-                }
+                Rect b = (result.detected && result.boundingBox != null) ? result.boundingBox : null;
+                tongueScheduler.onMeasured(result.detected, result.confidence,
+                        b == null ? null : new int[]{b.left, b.top, b.right, b.bottom});
 
-                // 每 10 秒打一行 METRICS
-                // 好像跟電池有關
-                String thermalStr = "N/A";
-                try {
-                    android.os.PowerManager pm = (android.os.PowerManager) getSystemService(POWER_SERVICE);
-                    if (pm != null) {
-                        int ts = pm.getCurrentThermalStatus();
-                        switch (ts) {
-                            case android.os.PowerManager.THERMAL_STATUS_NONE:      thermalStr = "NONE"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_LIGHT:     thermalStr = "LIGHT"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_MODERATE:  thermalStr = "MODERATE"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_SEVERE:    thermalStr = "SEVERE"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_CRITICAL:  thermalStr = "CRITICAL"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_EMERGENCY: thermalStr = "EMERGENCY"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_SHUTDOWN:  thermalStr = "SHUTDOWN"; break;
-                            default: thermalStr = String.valueOf(ts);
-                        }
-                    }
-                } catch (Throwable ignore) {}
+                // 每 10 秒打一行 METRICS（溫度狀態由 DeviceConditionMonitor 訂閱，不再每幀查）
+                String thermalStr = QualityGovernor.thermalName(qualityGovernor.thermalStatus()) + "/" + qualityTier;
 
                 long now = System.currentTimeMillis();
                 if (firstMetricTime == 0) firstMetricTime = now;
                 long elapsed = (now - firstMetricTime) / 1000;
                 if (elapsed == 10 || elapsed == 20 || elapsed == 30 || elapsed == 40) {
-                    Log.d(TAG, String.format("METRICS@%ds infer=%.1fms bestProb=%.3f thermal=%s",
-                            elapsed, inferMs, result.confidence, thermalStr));
+                    Log.d(TAG, String.format("METRICS@%ds infer=%.1fms bestProb=%.3f thermal=%s yolo=%d skip=%d",
+                            elapsed, inferMs, result.confidence, thermalStr,
+                            tongueScheduler.inferCount(), tongueScheduler.interpolateCount()));
                 }
 
-                Rect finalViewTongueBox = viewTongueBox;
                 //準備帶入主執行緒
                 final boolean detected = result.detected;
                 final float conf = result.confidence;
-                final Rect bboxImgFinal = (result.detected && result.boundingBox != null)
-                        ? new Rect(result.boundingBox) : null;
+                final Rect bboxImgFinal = b != null ? new Rect(b) : null;
                 mainHandler.post(() -> {
-                    overlayView.setYoloDetectionResult(detected, conf, finalViewTongueBox, mouthROIFinal);
-
-                    // 設定參考線 (用 View 座標)，單純為了把座標丟給overlayView繪製
-                    float eyeRxView = allPointsFinal[33][0], eyeRyView = allPointsFinal[33][1];
-                    float eyeLxView = allPointsFinal[263][0], eyeLyView = allPointsFinal[263][1];
-                    float browCxView = allPointsFinal[168][0], browCyView = allPointsFinal[168][1];
-                    float noseXView = allPointsFinal[1][0], noseYView = allPointsFinal[1][1];
-                    overlayView.setReferenceLines(eyeLxView, eyeLyView, eyeRxView, eyeRyView, noseXView, noseYView, browCxView, browCyView);
-
-                    if (!isTrainingCompleted && (currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING)) {
-                        String stateString = csvState();
-                        // 1) 影像尺寸（Bitmap 像素）
-                        final int imgW = mirroredBitmap.getWidth();
-                        final int imgH = mirroredBitmap.getHeight();
-
-                        // 2) YOLO bbox（Bitmap 像素；無偵測→null）
-                        final android.graphics.Rect bboxImg = bboxImgFinal;
-
-                        // 3) 將 allPointsFinal 統一到「Bitmap 像素」
-                        float[][] ptsPx = toBitmapPixels(allPointsFinal, imgW, imgH, overlayView.getWidth(), overlayView.getHeight());
-
-                        // 4) 取需要的臉部點（MediaPipe FaceMesh index）
-                        final int EYE_R = 33, EYE_L = 263, BROW_C = 168, NOSE_T = 1;
-                        float eyeRx = ptsPx[EYE_R][0], eyeRy = ptsPx[EYE_R][1];
-                        float eyeLx = ptsPx[EYE_L][0], eyeLy = ptsPx[EYE_L][1];
-                        float browCx = ptsPx[BROW_C][0],  browCy = ptsPx[BROW_C][1];
-                        float noseX  = ptsPx[NOSE_T][0],  noseY  = ptsPx[NOSE_T][1];
-
-                        // 5) 補正參數：原點（你要的基準點），旋轉角（兩眼線）、縮放（兩眼距）
-                        float originX = noseX, originY = noseY;   // 你要用鼻尖當原點
-                        float vxEye = eyeRx - eyeLx, vyEye = eyeRy - eyeLy;
-                        float dio   = (float) Math.hypot(vxEye, vyEye);       // 兩眼距
-                        float theta = (float) Math.atan2(vyEye, vxEye);       // 兩眼線相對水平角（弧度）
-
-                        // 6) 舌頭中心（Bitmap 像素）與補正後座標
-                        float cxImg = Float.NaN, cyImg = Float.NaN, xNorm = Float.NaN, yNorm = Float.NaN;
-                        if (bboxImg != null) {
-                            cxImg = (bboxImg.left + bboxImg.right) * 0.5f;
-                            cyImg = (bboxImg.top  + bboxImg.bottom) * 0.5f;
-
-                            // 平移到原點
-                            float vx = cxImg - originX;
-                            float vy = cyImg - originY;
-
-                            // 旋轉 -theta（讓兩眼線水平）
-                            float cosT = (float) Math.cos(theta), sinT = (float) Math.sin(theta);
-                            float xr =  vx * cosT + vy * sinT;
-                            float yr = -vx * sinT + vy * cosT;
-
-                            // 縮放正規化（除以兩眼距）
-                            if (dio > 1e-3f) {
-                                xNorm = xr / dio;
-                                yNorm = yr / dio;
-                            }
-                        }
-
-                        // 7) 寫入：呼叫「舌頭專用多載」
-                        dataRecorder.recordLandmarkData(
-                                stateString,
-                                detected,
-                                bboxImg,
-                                eyeLx, eyeLy, eyeRx, eyeRy,
-                                browCx, browCy, noseX, noseY,
-                                imgW, imgH,
-                                System.currentTimeMillis(),
-                                originX, originY,
-                                theta,
-                                dio,
-                                cxImg, cyImg,
-                                xNorm, yNorm
-                        );
-                    }
-
+                    row.detected = detected;
+                    row.conf = conf;
+                    row.bboxImg = bboxImgFinal;
+                    row.ready = true;
                     isYoloProcessing = false;  // 🔥 新增：發生錯誤也要解除
+                    flushTongueRows();
                 });
             });
 
         } catch (Exception e) {
             Log.e(TAG, "處理舌頭模式時發生錯誤", e);
             isYoloProcessing = false;  // 🔥 新增：發生錯誤也要解除
+            // 推理沒送出去：排著的列當作沒偵測到放行，不讓後面的列卡住
+            for (TongueRow r : tongueRows) r.ready = true;
+            flushTongueRows();
         }
     }
 
+    // 【主執行緒】舌頭一幀一列的暫存：推理列等 YOLO 結果，沿用列在輪到它時才算框
+    private static final class TongueRow {
+        final float[] mouthPts;
+        final Rect mouthROI;
+        final float[] refView, refImg;
+        final int frameW, frameH;
+        final float toViewX, toViewY;
+        final boolean measured;
+        final long timestamp = System.currentTimeMillis();
+        final boolean recording;
+        final String state;
+        boolean ready;
+        boolean detected;
+        float conf;
+        Rect bboxImg;
+
+        TongueRow(float[] mouthPts, Rect mouthROI, float[] refView, float[] refImg, int frameW, int frameH,
+                  float toViewX, float toViewY, boolean measured, boolean recording, String state) {
+            this.mouthPts = mouthPts;
+            this.mouthROI = mouthROI;
+            this.refView = refView;
+            this.refImg = refImg;
+            this.frameW = frameW;
+            this.frameH = frameH;
+            this.toViewX = toViewX;
+            this.toViewY = toViewY;
+            this.measured = measured;
+            this.recording = recording;
+            this.state = state;
+        }
+    }
 
-    private void handleTongueModeLR(float[][] allPoints, Bitmap mirroredBitmap, int bitmapWidth, int bitmapHeight,
-                                    Rect overlayRoi,   // ← 使用快取 Overlay ROI
-                                    Rect bitmapRoi) {  // ← 使用快取 Bitmap ROI
-        try {
-            if (!shouldAcceptNewFrames()) return;
-            // ★ 每 YOLO_EVERY 幀跑一次 YOLO
-            if ((frameId % YOLO_EVERY) != 0) return;
-            if (overlayRoi == null || bitmapRoi == null) return;
-
-            // 🔥 新增：如果 YOLO 還在忙，跳過這幀
-            if (isYoloProcessing) return;
-            isYoloProcessing = true;
-
-            int overlayWidth = overlayView.getWidth();
-            int overlayHeight = overlayView.getHeight();
-
-            final Rect mouthROIFinal = new Rect(overlayRoi);
-            final float[][] allPointsFinal = allPoints;
-            final Rect bitmapROIFinal = new Rect(bitmapRoi);
-
-            yoloExecutor.execute(() -> {
-                long t0 = System.nanoTime();
-                TongueYoloDetectorLR.DetectionResult result =
-                        tongueDetectorLR.detectTongueWithRealPosition(
-                                mirroredBitmap, bitmapROIFinal, overlayWidth, overlayHeight);
-                Log.d("confirmLR", "into LR handle");
-                long t1 = System.nanoTime();
-                float inferMs = (t1 - t0) / 1_000_000f;
+    // 【主執行緒】依序寫出已就緒的列；遇到還在等 YOLO 的推理列就停
+    private void flushTongueRows() {
+        while (!tongueRows.isEmpty() && tongueRows.peekFirst().ready) {
+            TongueRow r = tongueRows.pollFirst();
+            if (!r.measured) {
+                int[] box = new int[4];
+                r.detected = tongueScheduler.interpolate(r.mouthPts, box);
+                r.conf = r.detected ? tongueScheduler.lastConfidence() : 0f;
+                r.bboxImg = r.detected ? new Rect(box[0], box[1], box[2], box[3]) : null;
+            }
+            onTongueFrame(r);
+        }
+    }
 
-                Rect viewTongueBox = null;
-                if (result.detected && result.boundingBox != null) {
-                    float sx = overlayWidth  / (float) mirroredBitmap.getWidth();
-                    float sy = overlayHeight / (float) mirroredBitmap.getHeight();
-                    Rect b = result.boundingBox;
-                    viewTongueBox = new Rect(
-                            Math.round(b.left   * sx),
-                            Math.round(b.top    * sy),
-                            Math.round(b.right  * sx),
-                            Math.round(b.bottom * sy)
-                    );
+    // 【主執行緒】舌頭一幀的結果：更新 Overlay + 寫一列（measured=false 表示框是沿用的）
+    // 狀態 / 時間用這一幀進來時的值（排隊寫出時可能已經換階段）
+    private void onTongueFrame(TongueRow row) {
+        boolean detected = row.detected;
+        boolean measured = row.measured;
+        Rect bboxImgFinal = row.bboxImg;
+        float[] refView = row.refView;
+        float[] refImg = row.refImg;
+        int frameW = row.frameW;
+        int frameH = row.frameH;
+        overlayView.setYoloDetectionResult(detected, row.conf, toViewRect(bboxImgFinal, row.toViewX, row.toViewY),
+                row.mouthROI);
+
+        // 設定參考線 (用 View 座標)，單純為了把座標丟給overlayView繪製
+        float eyeRxView = refView[0], eyeRyView = refView[1];
+        float eyeLxView = refView[2], eyeLyView = refView[3];
+        float browCxView = refView[4], browCyView = refView[5];
+        float noseXView = refView[6], noseYView = refView[7];
+        overlayView.setReferenceLines(eyeLxView, eyeLyView, eyeRxView, eyeRyView, noseXView, noseYView, browCxView, browCyView);
+
+        if (!isTrainingCompleted && row.recording) {
+            String stateString = row.state;
+            // 1) 影像尺寸（Bitmap 像素）
+            final int imgW = frameW;
+            final int imgH = frameH;
+
+            // 2) YOLO bbox（Bitmap 像素；無偵測→null）
+            final android.graphics.Rect bboxImg = bboxImgFinal;
+
+            // 3)+4) 需要的臉部點已在 refImg（Overlay → Bitmap 像素，同舊 toBitmapPixels 反解）
+            float eyeRx = refImg[0], eyeRy = refImg[1];
+            float eyeLx = refImg[2], eyeLy = refImg[3];
+            float browCx = refImg[4],  browCy = refImg[5];
+            float noseX  = refImg[6],  noseY  = refImg[7];
+
+            // 5) 補正參數：原點（你要的基準點），旋轉角（兩眼線）、縮放（兩眼距）
+            float originX = noseX, originY = noseY;   // 你要用鼻尖當原點
+            float vxEye = eyeRx - eyeLx, vyEye = eyeRy - eyeLy;
+            float dio   = (float) Math.hypot(vxEye, vyEye);       // 兩眼距
+            float theta = (float) Math.atan2(vyEye, vxEye);       // 兩眼線相對水平角（弧度）
+
+            // 6) 舌頭中心（Bitmap 像素）與補正後座標
+            float cxImg = Float.NaN, cyImg = Float.NaN, xNorm = Float.NaN, yNorm = Float.NaN;
+            if (bboxImg != null) {
+                cxImg = (bboxImg.left + bboxImg.right) * 0.5f;
+                cyImg = (bboxImg.top  + bboxImg.bottom) * 0.5f;
+
+                // 平移到原點
+                float vx = cxImg - originX;
+                float vy = cyImg - originY;
+
+                // 旋轉 -theta（讓兩眼線水平）
+                float cosT = (float) Math.cos(theta), sinT = (float) Math.sin(theta);
+                float xr =  vx * cosT + vy * sinT;
+                float yr = -vx * sinT + vy * cosT;
+
+                // 縮放正規化（除以兩眼距）
+                if (dio > 1e-3f) {
+                    xNorm = xr / dio;
+                    yNorm = yr / dio;
                 }
+            }
 
-                // 每 10 秒打一行 METRICS
-                // 好像跟電池有關
-                String thermalStr = "N/A";
-                try {
-                    android.os.PowerManager pm = (android.os.PowerManager) getSystemService(POWER_SERVICE);
-                    if (pm != null) {
-                        int ts = pm.getCurrentThermalStatus();
-                        switch (ts) {
-                            case android.os.PowerManager.THERMAL_STATUS_NONE:      thermalStr = "NONE"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_LIGHT:     thermalStr = "LIGHT"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_MODERATE:  thermalStr = "MODERATE"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_SEVERE:    thermalStr = "SEVERE"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_CRITICAL:  thermalStr = "CRITICAL"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_EMERGENCY: thermalStr = "EMERGENCY"; break;
-                            case android.os.PowerManager.THERMAL_STATUS_SHUTDOWN:  thermalStr = "SHUTDOWN"; break;
-                            default: thermalStr = String.valueOf(ts);
-                        }
-                    }
-                } catch (Throwable ignore) {}
-
-                long now = System.currentTimeMillis();
-                if (firstMetricTime == 0) firstMetricTime = now;
-                long elapsed = (now - firstMetricTime) / 1000;
-                if (elapsed == 10 || elapsed == 20 || elapsed == 30 || elapsed == 40) {
-                    Log.d(TAG, String.format("METRICS@%ds infer=%.1fms bestProb=%.3f thermal=%s",
-                            elapsed, inferMs, result.confidence, thermalStr));
-                }
+            // 7) 寫入：呼叫「舌頭專用多載」
+            dataRecorder.recordLandmarkData(
+                    stateString,
+                    detected,
+                    bboxImg,
+                    eyeLx, eyeLy, eyeRx, eyeRy,
+                    browCx, browCy, noseX, noseY,
+                    imgW, imgH,
+                    row.timestamp,
+                    originX, originY,
+                    theta,
+                    dio,
+                    cxImg, cyImg,
+                    xNorm, yNorm,
+                    measured
+            );
+        }
+    }
 
-                Rect finalViewTongueBox = viewTongueBox;
-                //準備帶入主執行緒
-                final boolean detected = result.detected;
-                final float conf = result.confidence;
-                final Rect bboxImgFinal = (result.detected && result.boundingBox != null)
-                        ? new Rect(result.boundingBox) : null;
-                mainHandler.post(() -> {
-                    overlayView.setYoloDetectionResult(detected, conf, finalViewTongueBox, mouthROIFinal);
-
-                    // 設定參考線 (用 View 座標)，單純為了把座標丟給overlayView繪製
-                    float eyeRxView = allPointsFinal[33][0], eyeRyView = allPointsFinal[33][1];
-                    float eyeLxView = allPointsFinal[263][0], eyeLyView = allPointsFinal[263][1];
-                    float browCxView = allPointsFinal[168][0], browCyView = allPointsFinal[168][1];
-                    float noseXView = allPointsFinal[1][0], noseYView = allPointsFinal[1][1];
-                    overlayView.setReferenceLines(eyeLxView, eyeLyView, eyeRxView, eyeRyView, noseXView, noseYView, browCxView, browCyView);
-
-                    if (!isTrainingCompleted && (currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING)) {
-                        String stateString = csvState();
-                        // 1) 影像尺寸（Bitmap 像素）
-                        final int imgW = mirroredBitmap.getWidth();
-                        final int imgH = mirroredBitmap.getHeight();
-
-                        // 2) YOLO bbox（Bitmap 像素；無偵測→null）
-                        final android.graphics.Rect bboxImg = bboxImgFinal;
-
-                        // 3) 將 allPointsFinal 統一到「Bitmap 像素」
-                        float[][] ptsPx = toBitmapPixels(allPointsFinal, imgW, imgH, overlayView.getWidth(), overlayView.getHeight());
-
-                        // 4) 取需要的臉部點（MediaPipe FaceMesh index）
-                        final int EYE_R = 33, EYE_L = 263, BROW_C = 168, NOSE_T = 1;
-                        float eyeRx = ptsPx[EYE_R][0], eyeRy = ptsPx[EYE_R][1];
-                        float eyeLx = ptsPx[EYE_L][0], eyeLy = ptsPx[EYE_L][1];
-                        float browCx = ptsPx[BROW_C][0],  browCy = ptsPx[BROW_C][1];
-                        float noseX  = ptsPx[NOSE_T][0],  noseY  = ptsPx[NOSE_T][1];
-
-                        // 5) 補正參數：原點（你要的基準點），旋轉角（兩眼線）、縮放（兩眼距）
-                        float originX = noseX, originY = noseY;   // 你要用鼻尖當原點
-                        float vxEye = eyeRx - eyeLx, vyEye = eyeRy - eyeLy;
-                        float dio   = (float) Math.hypot(vxEye, vyEye);       // 兩眼距
-                        float theta = (float) Math.atan2(vyEye, vxEye);       // 兩眼線相對水平角（弧度）
-
-                        // 6) 舌頭中心（Bitmap 像素）與補正後座標
-                        float cxImg = Float.NaN, cyImg = Float.NaN, xNorm = Float.NaN, yNorm = Float.NaN;
-                        if (bboxImg != null) {
-                            cxImg = (bboxImg.left + bboxImg.right) * 0.5f;
-                            cyImg = (bboxImg.top  + bboxImg.bottom) * 0.5f;
-
-                            // 平移到原點
-                            float vx = cxImg - originX;
-                            float vy = cyImg - originY;
-
-                            // 旋轉 -theta（讓兩眼線水平）
-                            float cosT = (float) Math.cos(theta), sinT = (float) Math.sin(theta);
-                            float xr =  vx * cosT + vy * sinT;
-                            float yr = -vx * sinT + vy * cosT;
-
-                            // 縮放正規化（除以兩眼距）
-                            if (dio > 1e-3f) {
-                                xNorm = xr / dio;
-                                yNorm = yr / dio;
-                            }
-                        }
+    // 排程用的嘴部點：嘴角 61/291、上下唇中 0/17、內唇上下 13/14（Bitmap 像素，x,y 交錯）
+    private static final int[] TONGUE_MOUTH_IDX = {61, 291, 0, 17, 13, 14};
 
-                        // 7) 寫入：呼叫「舌頭專用多載」
-                        dataRecorder.recordLandmarkData(
-                                stateString,
-                                detected,
-                                bboxImg,
-                                eyeLx, eyeLy, eyeRx, eyeRy,
-                                browCx, browCy, noseX, noseY,
-                                imgW, imgH,
-                                System.currentTimeMillis(),
-                                originX, originY,
-                                theta,
-                                dio,
-                                cxImg, cyImg,
-                                xNorm, yNorm
-                        );
-                    }
-                    isYoloProcessing = false;
-                });
-            });
+    private static float[] mouthPoints(LandmarkFrame lm) {
+        float[] out = new float[TONGUE_MOUTH_IDX.length * 2];
+        for (int i = 0; i < TONGUE_MOUTH_IDX.length; i++) {
+            out[i * 2]     = lm.viewToImageX(TONGUE_MOUTH_IDX[i]);
+            out[i * 2 + 1] = lm.viewToImageY(TONGUE_MOUTH_IDX[i]);
+        }
+        return out;
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "處理舌頭模式時發生錯誤", e);
-            isYoloProcessing = false;
+    // ROI 內均勻取 GRID×GRID 個像素（外觀變化用；只讀幾十個點，不複製整塊）
+    private static void sampleRoiGrid(Bitmap bmp, Rect roi, int[] out) {
+        int g = TongueInferenceScheduler.GRID;
+        int left = Math.max(0, roi.left), top = Math.max(0, roi.top);
+        int right = Math.min(bmp.getWidth(), roi.right), bottom = Math.min(bmp.getHeight(), roi.bottom);
+        if (right <= left || bottom <= top) {
+            java.util.Arrays.fill(out, 0);
+            return;
+        }
+        for (int gy = 0; gy < g; gy++) {
+            int y = top + (int) ((gy + 0.5f) * (bottom - top) / g);
+            for (int gx = 0; gx < g; gx++) {
+                int x = left + (int) ((gx + 0.5f) * (right - left) / g);
+                out[gy * g + gx] = bmp.getPixel(x, y);
+            }
         }
     }
 
+    // Bitmap 像素框 → Overlay 座標；null 進 null 出
+    private static Rect toViewRect(Rect b, float sx, float sy) {
+        if (b == null) return null;
+        return new Rect(
+                Math.round(b.left   * sx),
+                Math.round(b.top    * sy),
+                Math.round(b.right  * sx),
+                Math.round(b.bottom * sy)
+        );
+    }
+
+
     // 嘴唇模式：MediaPipe 關鍵點
-    private void handleLipMode(float[][] allPoints) {
+    private void handleLipMode(LandmarkFrame lm) {
         if (!shouldAcceptNewFrames()) return;
         //畫面顯示臉部點
 //        overlayView.setAllFaceLandmarks(allPoints);
         //校正中跟動作中狀態=>紀錄
         if (!isTrainingCompleted && (currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING)) {
             String stateString = csvState();
-            dataRecorder.recordLandmarkData(stateString, allPoints, null);
+            dataRecorder.recordLandmarkData(stateString, lm, null);
             //Log.d(TAG, "記錄嘴唇資料: " + stateString + ", 關鍵點數量: " + allPoints.length);
 
             //Log.d(TAG_2, "記錄嘴唇資料: " + stateString + ", 關鍵點數量: " + allPoints.length);
@@ -1348,49 +1552,66 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     }
 
     // 下顎模式：MediaPipe 關鍵點
-    private void handleJawMode(float[][] allPoints) {
+    private void handleJawMode(LandmarkFrame lm) {
         if (!shouldAcceptNewFrames()) return;
-        overlayView.setAllFaceLandmarks(allPoints);
+        // 繪圖 API 吃 float[][]：重用同一份陣列（只在主執行緒寫）
+        jawOverlayPoints = lm.copyViewPoints(jawOverlayPoints);
+        overlayView.setAllFaceLandmarks(jawOverlayPoints);
 
         if (!isTrainingCompleted && (currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING)) {
             String stateString = csvState();
-            dataRecorder.recordLandmarkData(stateString, allPoints, true);
-            Log.d(TAG, "記下顎資料: " + stateString + ", 關鍵點數量: " + allPoints.length);
+            dataRecorder.recordLandmarkData(stateString, lm, true);
+            Log.d(TAG, "記下顎資料: " + stateString + ", 關鍵點數量: " + lm.size());
         }
     }
 
     //臉頰模式
-    private void handleCheeksMode(float[][] landmarks01, Bitmap mirroredBitmap, int img_w,int img_h) {
+    private void handleCheeksMode(LandmarkFrame lm, FrameBitmapPool.Frame frame) {
         if (!shouldAcceptNewFrames()) return;
         try {
 //            ensureCheekEngine();
             long ts = System.currentTimeMillis();
 
-            cameraExecutor.execute(() -> {
-                //CheekFlowEngine.FlowResult r = cheekEngine.process(mirroredBitmap, landmarks01, ts);
+            // 光流若啟用會讀這幀，任務結束 release；landmark 同樣跨執行緒，一起 retain/release
+            lm.retain();
+            try {
+                executeWithFrame(cameraExecutor, frame, () -> recordCheeks(lm, frame, ts));
+            } catch (RuntimeException e) {
+                lm.release();
+                throw e;
+            }
 
-                if (!isTrainingCompleted &&
-                        (currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING)){
-//                        r.computedThisFrame) {
-                    //補償
-//                    org.opencv.core.Point li = r.vectors.get(CheekFlowEngine.Region.LEFT_INNER);
-//                    org.opencv.core.Point ri = r.vectors.get(CheekFlowEngine.Region.RIGHT_INNER);
-//                    //原始
-//                    org.opencv.core.Point liRaw = r.rawVectors.get(CheekFlowEngine.Region.LEFT_INNER);
-//                    org.opencv.core.Point riRaw = r.rawVectors.get(CheekFlowEngine.Region.RIGHT_INNER);
-//                    // 取得狀態字串（跟你嘴唇/舌頭一致）
-                    String stateString = csvState();
+        } catch (Exception e) {
+            Log.e(TAG, "handleCheeksMode error", e);
+        }
+    }
 
-                    // 改用曲率
-                    Log.e("FCA_Cheek_Curve", "imgW&H=="+img_w +","+img_h);
-                    dataRecorder.recordLandmarkData(stateString, landmarks01,  img_w,  img_h);
+    // 臉頰模式背景段（cameraExecutor）：結束時放掉 frame 與 landmark
+    private void recordCheeks(LandmarkFrame lm, FrameBitmapPool.Frame frame, long ts) {
+        try {
+            //CheekFlowEngine.FlowResult r = cheekEngine.process(frame.getBitmap(), lm, ts);
 
+            if (!isTrainingCompleted &&
+                    (currentState == AppState.CALIBRATING || currentState == AppState.MAINTAINING)){
+//                r.computedThisFrame) {
+                //補償
+//            org.opencv.core.Point li = r.vectors.get(CheekFlowEngine.Region.LEFT_INNER);
+//            org.opencv.core.Point ri = r.vectors.get(CheekFlowEngine.Region.RIGHT_INNER);
+//            //原始
+//            org.opencv.core.Point liRaw = r.rawVectors.get(CheekFlowEngine.Region.LEFT_INNER);
+//            org.opencv.core.Point riRaw = r.rawVectors.get(CheekFlowEngine.Region.RIGHT_INNER);
+//            // 取得狀態字串（跟你嘴唇/舌頭一致）
+                String stateString = csvState();
 
-                }
-            });
+                // 改用曲率
+                Log.e("FCA_Cheek_Curve", "imgW&H=="+lm.imageWidth() +","+lm.imageHeight());
+                dataRecorder.recordLandmarkData(stateString, lm);
 
-        } catch (Exception e) {
-            Log.e(TAG, "handleCheeksMode error", e);
+
+            }
+        } finally {
+            lm.release();
+            frame.release();
         }
     }
 
@@ -1513,8 +1734,9 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     private void ensureCheekEngine() {
         if (cheekEngine == null) {
             CheekFlowEngine.Params pp = new CheekFlowEngine.Params();
-            pp.targetWidth = 360;              // 0 = 不降採樣；建議先 360
-            pp.flowEvery = 2;                  // 每 2 幀算一次
+            QualityGovernor.Tier tier = qualityTier;
+            pp.targetWidth = tier.cheekTargetWidth;  // 0 = 不降採樣；FULL 為 360
+            pp.flowEvery = tier.cheekFlowEvery;      // FULL 每 2 幀算一次
             pp.landmarksAreNormalized01 = true;
             pp.enableRigidCompensation = true; // 方案A：補償後寫入同欄位
             pp.smoothAlpha = 0.25f;            // 0.2~0.4 建議
@@ -1522,6 +1744,30 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
         }
     }
 
+    // 畫質檔位：onCreate 訂閱溫度 / 電量；檔位變動時套到各段並記進 metadata
+    private void setupQualityGovernor() {
+        qualityGovernor.setListener((from, to, reason) -> {
+            qualityTier = to;
+            applyQualityTier(to);
+            if (dataRecorder != null) dataRecorder.recordQualityTier(to.name(), reason);
+            Log.d(TAG, "🌡️ 畫質檔位 " + from + " → " + to + " (" + reason + ")");
+        });
+        // 起始檔位也記一筆（沒有變動時 metadata 仍看得出整段是哪一檔）；之後的變動由 listener 記
+        qualityTier = qualityGovernor.tier();
+        applyQualityTier(qualityTier);
+        dataRecorder.recordQualityTier(qualityTier.name(), "start");
+        deviceMonitor = new DeviceConditionMonitor(this, qualityGovernor);
+        deviceMonitor.start();
+    }
+
+    // 分析解析度 / MediaPipe 輸入 / YOLO 節奏由各段每幀讀 qualityTier；這裡只推給有狀態的元件
+    private void applyQualityTier(QualityGovernor.Tier tier) {
+        tongueScheduler.setMaxSkip(tier.yoloMaxSkip);
+        // 臉頰光流檔位：cheekEngine 只有 ensureCheekEngine 建過才存在（目前沒呼叫，臉頰用曲率），沒建就不作用
+        CheekFlowEngine engine = cheekEngine;
+        if (engine != null) engine.requestQuality(tier.cheekTargetWidth, tier.cheekFlowEvery);
+    }
+
     //確認時間顯示文字
     // handleFacePosition 偵測到
     private void startCalibrationTimer() {
@@ -2066,23 +2312,8 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
                 return;  // 寫入失敗就不上傳
             }
 
-            // 改用新方法
-            SupabaseUploader.uploadCsvWithMark(this, csv, trainingID, new SupabaseUploader.UploadCallbackWithId() {
-                @Override
-                public void onSuccess(String publicUrl, String trainingID) {
-                    Log.d(TAG, "✅ CSV 上傳成功: " + publicUrl);
-                }
-
-                @Override
-                public void onFailure(String error, String trainingID) {
-                    Log.e(TAG, "❌ CSV 上傳失敗: " + error);
-                }
-            });
-
-
-            com.example.rehabilitationapp.data.FirebaseUploader.uploadTodayUnsynced(this, (success, fail) -> {
-                Log.d(TAG, "自動上傳結果：成功 " + success + " 筆，失敗 " + fail + " 筆");
-            });
+            // Firebase 紀錄 / CSV 排進 outbox，由 SyncDispatchWorker 上傳（失敗自動退避重試）；影片等使用者在結果頁按上傳
+            SyncDispatcher.enqueueSession(this, history);
 
         }).start();
     }
@@ -2501,33 +2732,31 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     }
 
 
-    private boolean isHeadStable(float[][] landmarks01) {
-        float[][] cur = new float[HEAD_STABLE_POINTS_COUNT][2];
+    private boolean isHeadStable(LandmarkFrame lm) {
+        // 只用穩定點的重心（0~1 原始座標）
+        float cx = 0, cy = 0;
         for (int i = 0; i < HEAD_STABLE_POINTS_COUNT; i++) {
             int idx = HEAD_STABLE_INDICES[i];
-            if (idx >= landmarks01.length) return true;
-            cur[i][0] = landmarks01[idx][0];
-            cur[i][1] = landmarks01[idx][1];
+            if (idx >= lm.size()) return true;
+            cx += lm.x(idx); cy += lm.y(idx);
         }
-        if (prevStablePoints == null) {
-            prevStablePoints = cur;
+        cx /= HEAD_STABLE_POINTS_COUNT; cy /= HEAD_STABLE_POINTS_COUNT;
+        if (!hasPrevStable) {
+            prevStableCx = cx; prevStableCy = cy;
+            hasPrevStable = true;
             lastHeadStable = true;
             return true;
         }
-        float cx = 0, cy = 0, px = 0, py = 0;
-        for (int i = 0; i < HEAD_STABLE_POINTS_COUNT; i++) {
-            cx += cur[i][0]; cy += cur[i][1];
-            px += prevStablePoints[i][0]; py += prevStablePoints[i][1];
-        }
-        cx /= HEAD_STABLE_POINTS_COUNT; cy /= HEAD_STABLE_POINTS_COUNT;
-        px /= HEAD_STABLE_POINTS_COUNT; py /= HEAD_STABLE_POINTS_COUNT;
-        float movement = (float) Math.sqrt((cx - px) * (cx - px) + (cy - py) * (cy - py));
-        prevStablePoints = cur;
-        headMotionHistory.addLast(movement);
-        while (headMotionHistory.size() > HEAD_MOTION_WINDOW) headMotionHistory.removeFirst();
+        float movement = (float) Math.sqrt((cx - prevStableCx) * (cx - prevStableCx) + (cy - prevStableCy) * (cy - prevStableCy));
+        prevStableCx = cx; prevStableCy = cy;
+
+        // 環形緩衝：保留最近 HEAD_MOTION_WINDOW 筆，依舊到新加總
+        headMotionRing[(headMotionHead + headMotionCount) % HEAD_MOTION_WINDOW] = movement;
+        if (headMotionCount < HEAD_MOTION_WINDOW) headMotionCount++;
+        else headMotionHead = (headMotionHead + 1) % HEAD_MOTION_WINDOW;
         float avg = 0;
-        for (float v : headMotionHistory) avg += v;
-        avg /= headMotionHistory.size();
+        for (int i = 0; i < headMotionCount; i++) avg += headMotionRing[(headMotionHead + i) % HEAD_MOTION_WINDOW];
+        avg /= headMotionCount;
         lastHeadStable = avg < HEAD_MOTION_THRESHOLD;
         if (!lastHeadStable) {
             headStableCooldown = 30;
@@ -2536,8 +2765,9 @@ public class FaceCircleCheckerActivity extends AppCompatActivity {
     }
 
     private void resetHeadMotion() {
-        // 不清 prevStablePoints，避免下一幀無法比較導致閃爍
-        headMotionHistory.clear();
+        // 不清上一幀重心，避免下一幀無法比較導致閃爍
+        headMotionHead = 0;
+        headMotionCount = 0;
         lastHeadStable = true;
         headStableCooldown = 0;
     }
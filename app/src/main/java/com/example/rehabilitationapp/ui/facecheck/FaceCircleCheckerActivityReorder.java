@@ -146,8 +146,9 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
     private long firstMetricTime = 0;
 
     // 周邊物件
-    private TongueYoloDetector tongueDetector;
-    private TongueYoloDetectorLR tongueDetectorLR;
+    private YoloEngine yoloEngine;                 // 上下前後 / 左右兩個舌頭模型共用，用到才載入
+    private YoloModelSpec yoloSpec;                // 這次訓練動作要用的模型
+    private final MouthRoiTracker mouthRoiTracker = new MouthRoiTracker();
     private volatile boolean isYoloProcessing = false;  // 🔥 新增：YOLO 忙碌旗標
 
     private boolean isYoloEnabled = false;
@@ -362,19 +363,11 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
             cheekEngine = null;
         }
 
-        if (tongueDetector != null) {
+        if (yoloEngine != null) {
             try {
-                tongueDetector.release();
+                yoloEngine.release();
             } catch (Throwable ignore) { }
-            tongueDetector = null;
-            Log.d(TAG, "✅ YOLO 檢測器資源已清理");
-        }
-
-        if (tongueDetectorLR != null) {
-            try {
-                tongueDetectorLR.release();
-            } catch (Throwable ignore) { }
-            tongueDetectorLR = null;
+            yoloEngine = null;
             Log.d(TAG, "✅ YOLO 檢測器資源已清理");
         }
 
@@ -387,6 +380,8 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
 
         // 6) 千萬不要在 onDestroy 清 CSV，否則結果頁會拿到空資料
         // if (dataRecorder != null) { dataRecorder.clearData(); }  // ← 移除這行
+        // 只停背景 CSV 串流：已存檔不受影響，中途離開才刪掉部分檔
+        if (dataRecorder != null) { dataRecorder.close(); }
     }
     //===========01【生命週期】========================
 
@@ -411,12 +406,15 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
     }
     // 初始化舌頭檢測器
     private void initializeTongueDetector() {
+        // 只載入這個動作要用的模型；另一個模型之後真的用到才建，且沿用已確定可用的 delegate
+        yoloSpec = YoloModelSpec.forTrainingLabel(trainingLabel);
+        if (yoloSpec == null) yoloSpec = YoloModelSpec.TONGUE;
         try {
-            tongueDetector = new TongueYoloDetector(this);
+            yoloEngine = new YoloEngine(this);
 
-            isYoloEnabled = tongueDetector.isInitialized();
+            isYoloEnabled = yoloEngine.prepare(yoloSpec);
             if (!isYoloEnabled) {
-                Log.e(TAG, "❌ 舌頭檢測器初始化失敗");
+                Log.e(TAG, "❌ 舌頭檢測器初始化失敗: " + yoloSpec);
                 Toast.makeText(this, "舌頭檢測器初始化失敗，將使用一般模式", Toast.LENGTH_SHORT).show();
             }
         } catch (Exception e) {
@@ -424,20 +422,6 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
             isYoloEnabled = false;
             Toast.makeText(this, "舌頭檢測器載入失敗：" + e.getMessage(), Toast.LENGTH_LONG).show();
         }
-
-        try {
-            tongueDetectorLR = new TongueYoloDetectorLR(this);
-
-            isYoloEnabled = tongueDetectorLR.isInitialized();
-            if (!isYoloEnabled) {
-                Log.e(TAG, "❌ LR舌頭檢測器初始化失敗");
-                Toast.makeText(this, "LR舌頭檢測器初始化失敗，將使用一般模式", Toast.LENGTH_SHORT).show();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "❌ LR舌頭檢測器初始化錯誤: " + e.getMessage());
-            isYoloEnabled = false;
-            Toast.makeText(this, "LR舌頭檢測器載入失敗：" + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
     }
 
     private void initializeUI() {
@@ -751,7 +735,7 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
                             // 更換機型可以調整看看
                             boolean needFaceMesh = (lastOverlayRoi == null) || (frameId % FACE_MESH_EVERY == 0);
                             if (needFaceMesh) {
-                                Rect overlayRoi = TongueYoloDetector.calculateMouthROI(allPoints, overlayWidth, overlayHeight);
+                                Rect overlayRoi = mouthRoiTracker.calculateMouthROI(allPoints, overlayWidth, overlayHeight);
                                 lastOverlayRoi = overlayRoi;
                                 //mirroredBitmap =>圖已轉正+左右顛倒後
                                 // b除以sx=o，求sx就是要算縮放倍率
@@ -778,7 +762,7 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
                             // 更換機型可以調整看看
                             boolean needFaceMesh = (lastOverlayRoi == null) || (frameId % FACE_MESH_EVERY == 0);
                             if (needFaceMesh) {
-                                Rect overlayRoi = TongueYoloDetectorLR.calculateMouthROI(allPoints, overlayWidth, overlayHeight);
+                                Rect overlayRoi = mouthRoiTracker.calculateMouthROI(allPoints, overlayWidth, overlayHeight);
                                 lastOverlayRoi = overlayRoi;
                                 //mirroredBitmap =>圖已轉正+左右顛倒後
                                 // b除以sx=o，求sx就是要算縮放倍率
@@ -847,7 +831,7 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
     /**
      * 舌頭模式：用快取好的 ROI + 節流 YOLO
      * 模式處理只負責到紀錄，稍後由狀態幾呼叫完成進行後續邏輯
-     * 改TongueYoloDetector.DetectionResult result 的物件1或2
+     * 改YoloEngine.DetectionResult result 的物件1或2
      */
     private void handleTongueMode(float[][] allPoints, Bitmap mirroredBitmap, int bitmapWidth, int bitmapHeight,
                                   Rect overlayRoi,   // ← 使用快取 Overlay ROI
@@ -871,9 +855,8 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
 
             yoloExecutor.execute(() -> {
                 long t0 = System.nanoTime();
-                TongueYoloDetector.DetectionResult result =
-                        tongueDetector.detectTongueWithRealPosition(
-                                mirroredBitmap, bitmapROIFinal, overlayWidth, overlayHeight);
+                YoloEngine.DetectionResult result =
+                        yoloEngine.detect(YoloModelSpec.TONGUE, mirroredBitmap, bitmapROIFinal);
                 long t1 = System.nanoTime();
                 float inferMs = (t1 - t0) / 1_000_000f;
 
@@ -1031,9 +1014,8 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
 
             yoloExecutor.execute(() -> {
                 long t0 = System.nanoTime();
-                TongueYoloDetectorLR.DetectionResult result =
-                        tongueDetectorLR.detectTongueWithRealPosition(
-                                mirroredBitmap, bitmapROIFinal, overlayWidth, overlayHeight);
+                YoloEngine.DetectionResult result =
+                        yoloEngine.detect(YoloModelSpec.TONGUE_LR, mirroredBitmap, bitmapROIFinal);
                 Log.d("confirmLR", "into LR handle");
                 long t1 = System.nanoTime();
                 float inferMs = (t1 - t0) / 1_000_000f;
@@ -1901,8 +1883,8 @@ public class FaceCircleCheckerActivityReorder extends AppCompatActivity {
             AppDatabase.getInstance(this).trainingHistoryDao().insert(history);
             Log.d(TAG, "✅ 訓練記錄已寫入資料庫");
 
-            com.example.rehabilitationapp.data.FirebaseUploader.uploadTodayUnsynced(this, (success, fail) -> {
-                Log.d(TAG, "自動上傳結果：成功 " + success + " 筆，失敗 " + fail + " 筆");
+            com.example.rehabilitationapp.data.FirebaseUploader.uploadTodayUnsynced(this, (success, fail, pending) -> {
+                Log.d(TAG, "自動上傳結果：成功 " + success + " 筆，失敗 " + fail + " 筆，未完成 " + pending + " 筆");
             });
 
         }).start();
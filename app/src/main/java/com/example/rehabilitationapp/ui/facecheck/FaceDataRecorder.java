@@ -7,7 +7,12 @@ import android.util.Log;
 import android.widget.Toast;
 
 import com.example.rehabilitationapp.ui.analysis.CSVMotioner;
-import com.example.rehabilitationapp.ui.analysis.CSVPeakAnalyzer;
+import com.example.rehabilitationapp.ui.analysis.CsvColumns;
+import com.example.rehabilitationapp.ui.analysis.NativeMotionAnalyzer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 
 import java.io.File;
@@ -15,10 +20,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 //根據特定動作類型
 public class FaceDataRecorder {
@@ -27,12 +34,37 @@ public class FaceDataRecorder {
     private Context context;
     private String trainingLabel;
     private int trainingType;
-    private List<String> dataLines;
-    //recordLandmarkData是多載(從FACECHECK呼叫的參數決定)，dataLines會儲存CSVHEDAER(第一行)跟數值(第2~N行)。
+    private SessionTable table;
+    //recordLandmarkData是多載(從FACECHECK呼叫的參數決定)，table 存每幀數值（原生陣列），存檔/上傳時才轉成 CSV（第一行 header）。
+    private Layout layout;
+    // 這個動作會寫哪一種列（決定 table 的欄位）
+    private enum Layout { LIP_CLOSURE, LIP_PROT, TONGUE, CHEEKS, JAW, NONE }
+    private SampleRing ring;
+    // 分析執行緒 / YOLO 執行緒寫列不持鎖，先進 ring；持 table 鎖的一方（CSV 串流、讀取、存檔）才倒進 table
+    private static final int RING_ROWS = 1024;
+    private SessionCsvStreamer streamer;
+    // 訓練中背景邊錄邊寫 CSV；存檔時只剩收尾
     private String fileName;
 
     // 🔥 新增：記錄開始時間，用於計算相對時間
-    private long startTime = 0;
+    private volatile long startTime = 0;
+
+    // 存檔時等串流寫完的上限
+    private static final long STREAM_FINISH_TIMEOUT_MS = 3000;
+
+    // 畫質檔位變動（QualityGovernor）：CSV 欄位不動，存檔時另寫 <檔名>_meta.json
+    private static final class QualityEvent {
+        final long wallMs;
+        final String tier;
+        final String reason;
+
+        QualityEvent(long wallMs, String tier, String reason) {
+            this.wallMs = wallMs;
+            this.tier = tier;
+            this.reason = reason;
+        }
+    }
+    private final List<QualityEvent> qualityEvents = new ArrayList<>();
 
     // MediaPipe 臉部關鍵點索引 BAK 錯誤
 //    private static final int[] UPPER_LIP_INDICES = {61, 84, 17, 314, 405, 320, 307, 375, 321, 308, 324, 318};
@@ -47,6 +79,9 @@ public class FaceDataRecorder {
 // 嘴唇所有點（外緣 + 內緣）- 用於存 CSV
     private static final int[] LIP_OUTER_IDXS = {61, 146, 91, 181, 84, 17, 314, 405, 321, 375, 291, 409, 270, 269, 267, 0, 37, 39, 40, 185};
     private static final int[] LIP_INNER_IDXS = {78, 95, 88, 178, 87, 14, 317, 402, 318, 324, 308, 415, 310, 311, 312, 13, 82, 81, 80, 191};
+    // 臉頰 index（臉頰曲率 CSV 用，順序同 CHEEKS_HEADER）
+    private static final int[] LEFT_CHEEK_IDXS = {117,118,101,36,203,212,214,192,147,123,98,97,164,0,37,39,40,186};
+    private static final int[] RIGHT_CHEEK_IDXS = {164,0,267,269,270,410,423,327,326,432,434,416,376,352,346,347,330,266};
 
     //CSV Header
 //    private static final String CHEEKS_HEADER = "time_seconds,state,LI_X,LI_Y,RI_X,RI_Y";
@@ -128,7 +163,8 @@ public class FaceDataRecorder {
                     "browC_x,browC_y,nose_x,nose_y," +
                     "imgW,imgH,frame_id," +
                     "origin_x,origin_y,theta_rad,dio," +
-                    "cx_img,cy_img,x_norm,y_norm";
+                    "cx_img,cy_img,x_norm,y_norm," +
+                    "yolo_measured";
     /**
      * ==== 舌頭補正參數欄位說明 ====
      *
@@ -140,6 +176,8 @@ public class FaceDataRecorder {
      * cx_img, cy_img   舌頭 YOLO 框的中心點（原始像素座標）。
      * x_norm, y_norm
      *   舌頭中心點經過「平移 + 旋轉 + 縮放」補正後的相對座標。      *   在臉部坐標系裡：x_norm → 左右偏移 y_norm → 上下偏移      *   用於判斷舌頭動作方向（UP / DOWN / LEFT / RIGHT）。
+     * yolo_measured : 1 = 這幀真的跑了 YOLO；0 = 略過推理（畫面沒變化 / YOLO 忙 / 不在節奏上），框沿用上一次量測（隨嘴部平移）
+     *   次數分析只用 1 的列（0 的列只是畫面 / 紀錄上補滿每一幀）
      */
 
     // 🔥 Callback 介面
@@ -155,7 +193,6 @@ public class FaceDataRecorder {
         this.context = context;
         this.trainingLabel = trainingLabel;
         this.trainingType = trainingType;
-        this.dataLines = new ArrayList<>();
         // 寫入Log
         Log.d(TAG, "確認參數 trainingLabel=> " + trainingLabel + ", trainingType=>: " + trainingType);
         // 🔥 記錄開始時間
@@ -177,6 +214,9 @@ public class FaceDataRecorder {
 
         // 初始化 CSV 標題
         initializeCSV();
+        // 同一個檔名，第一列進來才建檔
+        File dir = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        streamer = new SessionCsvStreamer(new File(dir, fileName), table, this::flushPending);
         // 寫入Log
         Log.d(TAG, "初始化記錄器 - 檔案: " + fileName + ", 開始時間: " + startTime);
     }
@@ -185,10 +225,12 @@ public class FaceDataRecorder {
         String header = "";
         if ("SIP_LIPS".equals(trainingLabel)) {
             header = Lip_Closure_HEADER; // 改成總面積
+            layout = Layout.LIP_CLOSURE;
         } else if ("POUT_LIPS".equals(trainingLabel)) {
             header = Lip_Prot_HEADER;
             //header = "time_seconds,state,mouth_height,mouth_width,height_width_ratio";
             header = Lip_Prot_HEADER2;
+            layout = Layout.LIP_PROT;
         } else if ("舌頭".equals(trainingLabel) ||
                 "TONGUE_LEFT".equals(trainingLabel) ||
                 "TONGUE_RIGHT".equals(trainingLabel) ||
@@ -197,33 +239,109 @@ public class FaceDataRecorder {
                 "TONGUE_UP".equals(trainingLabel) ||
                 "TONGUE_DOWN".equals(trainingLabel)) {
             header = TONGUE_HEADER;
+            layout = Layout.TONGUE;
         } else if ("PUFF_CHEEK".equals(trainingLabel)||"REDUCE_CHEEK".equals(trainingLabel)) {
             header = CHEEKS_HEADER;
+            layout = Layout.CHEEKS;
         } else {
             header = "time_seconds,state,metric_value"; // 預設格式
+            // 下顎、鼓頰沿用預設 header，但列的欄位照舊版實際寫出的內容
+            if ("JAW_LEFT".equals(trainingLabel) || "JAW_RIGHT".equals(trainingLabel)) layout = Layout.JAW;
+            else if ("鼓頰".equals(trainingLabel)) layout = Layout.CHEEKS;
+            else layout = Layout.NONE;
         }
-        dataLines.add(header);
+        table = new SessionTable(buildSchema(layout, header));
+        ring = new SampleRing(table.getSchema(), RING_ROWS);
         Log.d(TAG, "CSV 標題: " + header);
     }
 
+    // 欄位格式與舊版 String.format 一一對應（小數位數、Locale 都不變）
+    private static SessionTable.Schema buildSchema(Layout layout, String header) {
+        switch (layout) {
+            case LIP_CLOSURE:
+                // upper, lower, total, nosepeak_direction, 40 點 xyz
+                return new SessionTable.Schema.Builder(header, Locale.getDefault())
+                        .fixed(6, 3).character()
+                        .fixed(6, (LIP_OUTER_IDXS.length + LIP_INNER_IDXS.length) * 3)
+                        .build();
+            case LIP_PROT:
+                // outer_mouth_z_avg, nosepeak_direction, 40 點 xyz
+                return new SessionTable.Schema.Builder(header, Locale.getDefault())
+                        .fixed(6).character()
+                        .fixed(6, (LIP_OUTER_IDXS.length + LIP_INNER_IDXS.length) * 3)
+                        .build();
+            case TONGUE:
+                return new SessionTable.Schema.Builder(header, Locale.US)
+                        .integer()                                        // tongue_detected
+                        .integer().integer().integer().integer()          // bbox
+                        .fixed(3, 8)                                      // eyeL/eyeR/browC/nose
+                        .integer().integer().longValue()                  // imgW, imgH, frame_id
+                        .fixed(3).fixed(3).fixed(6).fixed(3)              // origin_x, origin_y, theta_rad, dio
+                        .fixed(3).fixed(3).fixed(5).fixed(5)              // cx_img, cy_img, x_norm, y_norm
+                        .integer()                                        // yolo_measured
+                        .build();
+            case CHEEKS:
+                // 左右臉頰各 18 點 xyz, img_w, img_h, nosePeakDirection
+                return new SessionTable.Schema.Builder(header, Locale.getDefault())
+                        .fixed(6, (LEFT_CHEEK_IDXS.length + RIGHT_CHEEK_IDXS.length) * 3)
+                        .integer().integer().character()
+                        .build();
+            case JAW:
+                // shift, absShift
+                return new SessionTable.Schema.Builder(header, Locale.getDefault())
+                        .fixed(3).fixed(3)
+                        .build();
+            default:
+                return new SessionTable.Schema.Builder(header, Locale.getDefault()).build();
+        }
+    }
+
+    private long elapsedMs() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    // 生產端：不持鎖發佈一列；ring 滿了（CSV 執行緒來不及倒）才自己持鎖倒一次再試
+    private void publish(SampleRing.Row row) {
+        if (ring.offer(row)) return;
+        flushPending();
+        if (!ring.offer(row)) {
+            Log.w(TAG, "⚠️ 紀錄緩衝已滿，丟棄一列");
+        }
+    }
+
+    // 把 ring 裡已發佈的列倒進 table（單一消費者：一律持 table 鎖）
+    private void flushPending() {
+        synchronized (table) {
+            drainPendingLocked();
+        }
+    }
+
+    // 呼叫端已持有 table 鎖
+    private void drainPendingLocked() {
+        ring.drainTo(table);
+    }
+
 
     //recordLandmarkData方法是一個多載Overload方法，用參數數量決定呼叫方法，區別各動作。
     //calculateXxx，每種動作內處理會叫的方法，計算的CSV各cell指標的內容數值。
     //多載: 1.嘴唇
     public void recordLandmarkData(String state, float[][] landmarks, Boolean JawDetected) {
+        // 舊介面：landmarks 已是 Overlay 像素
+        recordLandmarkData(state, LandmarkFrame.fromViewPoints(landmarks), JawDetected);
+    }
+
+    //多載: 1.嘴唇（LandmarkFrame 版，座標取 Overlay 視圖 viewX/viewY，與舊 allPoints 相同）
+    public void recordLandmarkData(String state, LandmarkFrame landmarks, Boolean JawDetected) {
         try {
             // 🔥 COUNTDOWN 不記錄
             if ("COUNTDOWN".equals(state)) {
                 return;
             }
-            // 🔥 改用相對時間，從0開始，以秒為單位
-            long currentTime = System.currentTimeMillis();
-            double relativeTimeSeconds = (currentTime - startTime) / 1000.0;
-            // dataLine存入裡面的值會被記錄到CSV，並ADD到共用變數DataLines後方。
-            // DataLines : 上方已根據動作初始化Header內容
-            String dataLine = "";
-
-            if ("SIP_LIPS".equals(trainingLabel)) {
+            // 🔥 改用相對時間，從0開始（存毫秒，匯出時才換成秒）；先取 row 再取時間（見 SampleRing.row）
+            SampleRing.Row row = ring.row().begin(elapsedMs(), state);
+            // 每幀只寫數字進 ring，CSV 字串留到存檔時才產生
+
+            if (layout == Layout.LIP_CLOSURE) {
                 // 🔥 改用掃描線方法計算上下嘴唇面積
                 float upperLipArea = calculateLipAreaByScanline(landmarks, UPPER_LIP_INDICES);
                 float lowerLipArea = calculateLipAreaByScanline(landmarks, LOWER_LIP_INDICES);
@@ -231,33 +349,22 @@ public class FaceDataRecorder {
                 float totalLipArea = upperLipArea + lowerLipArea;
 
                 // 加入鼻尖方向
-                float noseTipZ = landmarks[1][2];
+                float noseTipZ = landmarks.z(1);
                 float z_avg = calculateMouthDepth(landmarks);
                 //Z=離鏡頭距離，鼻尖近=T，嘟起嘴巴也跟著變小
                 //若=F則反過來鼻尖較遠，嘟起時應該抓大
-                String nosePeakDirection = noseTipZ < z_avg ? "T" : "F";
-
-
-                StringBuilder sb = new StringBuilder();
-                sb.append(String.format(Locale.getDefault(), "%.3f,%s,%.6f,%.6f,%.6f,%s",
-                        relativeTimeSeconds, state, upperLipArea, lowerLipArea, totalLipArea, nosePeakDirection));
+                char nosePeakDirection = noseTipZ < z_avg ? 'T' : 'F';
 
+                row.put(upperLipArea).put(lowerLipArea).put(totalLipArea).put(nosePeakDirection);
                 // 加入 40 個 landmark 座標
-                for (int idx : LIP_OUTER_IDXS) {
-                    sb.append(String.format(Locale.getDefault(), ",%.6f,%.6f,%.6f",
-                            landmarks[idx][0], landmarks[idx][1], landmarks[idx][2]));
-                }
-                for (int idx : LIP_INNER_IDXS) {
-                    sb.append(String.format(Locale.getDefault(), ",%.6f,%.6f,%.6f",
-                            landmarks[idx][0], landmarks[idx][1], landmarks[idx][2]));
-                }
-
-                dataLine = sb.toString();
+                putViewPoints(row, landmarks, LIP_OUTER_IDXS);
+                putViewPoints(row, landmarks, LIP_INNER_IDXS);
+                publish(row);
                 //DEBUG列印輸出
 //                Log.d(TAG, String.format("抿嘴數據 [%.3fs] - 上唇面積: %.3f, 下唇面積: %.3f, 比值: %.3f",
 //                        relativeTimeSeconds, upperLipArea, lowerLipArea, totalLipArea));
 
-            } else if ("POUT_LIPS".equals(trainingLabel)) {
+            } else if (layout == Layout.LIP_PROT) {
                 //版本 1 : 外緣點計算嘴巴高度和寬度
 //                float[] mouthDimensions = calculateMouthDimensionsImproved(landmarks);
 //                float height = mouthDimensions[0];
@@ -271,107 +378,91 @@ public class FaceDataRecorder {
 //                        relativeTimeSeconds, height, width, heightWidthRatio));
 
                 //版本2 : 改用唇外緣Z軸總平均
-                float noseTipZ = landmarks[1][2];
+                float noseTipZ = landmarks.z(1);
                 float z_avg = calculateMouthDepth(landmarks);
                 //Z=離鏡頭距離，鼻尖近=T，嘟起嘴巴也跟著變小
                 //若=F則反過來鼻尖較遠，嘟起時應該抓大
-                String nosePeakDirection = noseTipZ < z_avg ? "T" : "F";
-
-                StringBuilder sb = new StringBuilder();
-                sb.append(String.format(Locale.getDefault(), "%.3f,%s,%.6f,%s",
-                        relativeTimeSeconds, state, z_avg, nosePeakDirection));
+                char nosePeakDirection = noseTipZ < z_avg ? 'T' : 'F';
 
+                row.put(z_avg).put(nosePeakDirection);
                 // 加入 40 個 landmark 座標
-                for (int idx : LIP_OUTER_IDXS) {
-                    sb.append(String.format(Locale.getDefault(), ",%.6f,%.6f,%.6f",
-                            landmarks[idx][0], landmarks[idx][1], landmarks[idx][2]));
-                }
-                for (int idx : LIP_INNER_IDXS) {
-                    sb.append(String.format(Locale.getDefault(), ",%.6f,%.6f,%.6f",
-                            landmarks[idx][0], landmarks[idx][1], landmarks[idx][2]));
-                }
-
-
-
-                dataLine = sb.toString();
-                Log.d(TAG,"嘟嘴CSV內文 = "+dataLine);
+                putViewPoints(row, landmarks, LIP_OUTER_IDXS);
+                putViewPoints(row, landmarks, LIP_INNER_IDXS);
+                publish(row);
+//                Log.d(TAG,"嘟嘴CSV內文 = "+dataLine);
             }
-            else if ("JAW_LEFT".equals(trainingLabel)||"JAW_RIGHT".equals(trainingLabel)) {
+            else if (layout == Layout.JAW) {
                 // 🔥 改用三點平均計算下顎水平位移
                 float[] jawShift = calculateJawMoving(landmarks);
                 float shift = jawShift[0];      // 可正可負
                 float absShift = jawShift[1];   // 絕對值大小
 
-                dataLine = String.format(Locale.getDefault(), "%.3f,%s,%.3f,%.3f",
-                        relativeTimeSeconds, state, shift, absShift);
-
-                Log.d(TAG, String.format("下顎數據 [%.3fs] - 位移: %.3f, 絕對值: %.3f",
-                        relativeTimeSeconds, shift, absShift));
-            }
+                row.put(shift).put(absShift);
+                publish(row);
 
-            if (!dataLine.isEmpty()) {
-                dataLines.add(dataLine);
+//                Log.d(TAG, String.format("下顎數據 [%.3fs] - 位移: %.3f, 絕對值: %.3f",
+//                        relativeTimeSeconds, shift, absShift));
             }
 
         } catch (Exception e) {
+            // 寫到一半的 row 沒發佈，下一次 row() 會重設
             Log.e(TAG, "記錄數據時發生錯誤", e);
         }
     }
 
+    // 依序寫入指定點的 Overlay 視圖 xyz
+    private static void putViewPoints(SampleRing.Row row, LandmarkFrame landmarks, int[] idxs) {
+        for (int idx : idxs) {
+            row.put(landmarks.viewX(idx)).put(landmarks.viewY(idx)).put(landmarks.z(idx));
+        }
+    }
+
     //多載:臉頰曲率
     public void recordLandmarkData(String state, float[][] landmarks, int img_w, int img_h) {
+        // 舊介面：landmarks 為 0~1 正規化
+        recordLandmarkData(state, LandmarkFrame.fromNormalizedPoints(landmarks, img_w, img_h));
+    }
+
+    //多載:臉頰曲率（LandmarkFrame 版，座標取 Bitmap 像素 pixelX/pixelY）
+    public void recordLandmarkData(String state, LandmarkFrame landmarks) {
         try {
+            int img_w = landmarks.imageWidth();
+            int img_h = landmarks.imageHeight();
             // 🔥 COUNTDOWN 不記錄
             if ("COUNTDOWN".equals(state)) {
                 return;
             }
-            // 臉頰 index
-            int[] LEFT_CHEEK_IDXS = {117,118,101,36,203,212,214,192,147,123,98,97,164,0,37,39,40,186};
-            int[] RIGHT_CHEEK_IDXS = {164,0,267,269,270,410,423,327,326,432,434,416,376,352,346,347,330,266};
-
+            if (layout != Layout.CHEEKS) return;
 
-            Log.d(TAG, "臉頰曲率參數 img_w=" + img_w + ",img_h=" + img_h);
-
-            long now = System.currentTimeMillis();
-            double t = (now - startTime) / 1000.0;
-
-            StringBuilder sb = new StringBuilder();
-            sb.append(String.format(Locale.getDefault(), "%.3f,%s", t, state));
+//            Log.d(TAG, "臉頰曲率參數 img_w=" + img_w + ",img_h=" + img_h);
 
+            SampleRing.Row row = ring.row().begin(elapsedMs(), state);
             // 拼接左臉頰 + 計算Z平均
             float leftCheekZSum = 0;
             float rightCheekZSum  = 0;
             for (int idx : LEFT_CHEEK_IDXS) {
-                float x = landmarks[idx][0] * img_w;
-                float y = landmarks[idx][1] * img_h;
-                float z = landmarks[idx][2]; // z 不縮放
+                float z = landmarks.z(idx); // z 不縮放
                 leftCheekZSum += z;
-                sb.append(String.format(Locale.getDefault(), ",%.6f,%.6f,%.6f", x, y, z));
+                row.put(landmarks.pixelX(idx)).put(landmarks.pixelY(idx)).put(z);
             }
             float leftCheekZAvg = leftCheekZSum / LEFT_CHEEK_IDXS.length;
 
             // 拼接右臉頰
             for (int idx : RIGHT_CHEEK_IDXS) {
-                float x = landmarks[idx][0] * img_w;
-                float y = landmarks[idx][1] * img_h;
-                float z = landmarks[idx][2];
+                float z = landmarks.z(idx);
                 rightCheekZSum += z;
-                sb.append(String.format(Locale.getDefault(), ",%.6f,%.6f,%.6f", x, y, z));
+                row.put(landmarks.pixelX(idx)).put(landmarks.pixelY(idx)).put(z);
             }
             float rightCheekZAvg = rightCheekZSum / RIGHT_CHEEK_IDXS.length;
             // 計算鼻尖方向 (用左右臉頰Z平均)
-            float noseTipZ = landmarks[1][2];
+            float noseTipZ = landmarks.z(1);
             float cheekZAvg = (leftCheekZAvg + rightCheekZAvg) / 2;
-            String nosePeakDirection = noseTipZ < cheekZAvg ? "T" : "F";
-
-
-            sb.append(String.format(Locale.getDefault(), ",%d,%d,%s", img_w, img_h,nosePeakDirection));
+            char nosePeakDirection = noseTipZ < cheekZAvg ? 'T' : 'F';
 
-            String line = sb.toString();
+            row.put(img_w).put(img_h).put(nosePeakDirection);
+            publish(row);
 
-            Log.d(TAG, "臉頰曲率_CSV " + line);
-
-            dataLines.add(line);
+//            Log.d(TAG, "臉頰曲率_CSV " + line);
 
         } catch (Exception e) {
             Log.e(TAG, "recordLandmarkData error", e);
@@ -380,45 +471,9 @@ public class FaceDataRecorder {
 
 
     //多載:臉頰_光流_舊版
+    // 已停用：欄位（LI/RI 向量）與目前臉頰曲率 header 不一致，呼叫端也都註解掉了；保留簽名避免舊程式編不過
     public void recordLandmarkData(String state, Float liX, Float liY, Float riX, Float riY, Float liRawX, Float liRawY, Float riRawX, Float riRawY) {
-
-        try {
-            // 🔥 COUNTDOWN 不記錄
-            if ("COUNTDOWN".equals(state)) {
-                return;
-            }
-            if (!("PUFF_CHEEK".equals(trainingLabel)||"REDUCE_CHEEK".equals(trainingLabel))) return; // 僅在臉頰模式有效
-
-            long now = System.currentTimeMillis();
-            double t = (now - startTime) / 1000.0;
-
-            // 防呆
-            float lix = (liX != null) ? liX : 0f;
-            float liy = (liY != null) ? liY : 0f;
-            float rix = (riX != null) ? riX : 0f;
-            float riy = (riY != null) ? riY : 0f;
-
-            float liRx = (liRawX != null) ? liRawX : 0f;
-            float liRy = (liRawY != null) ? liRawY : 0f;
-            float riRx = (riRawX != null) ? riRawX : 0f;
-            float riRy = (riRawY != null) ? riRawY : 0f;
-
-            double relativeTimeSeconds = (now - startTime) / 1000.0;
-
-            // 一行有補償後 + 原始
-            String line = String.format(Locale.getDefault(),
-                    "%.3f,%s,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f",
-                    t, state, lix, liy, rix, riy, liRx, liRy, riRx, riRy);
-
-            Log.d(TAG, String.format(
-                    "臉頰光流 [%.3fs] - LI(%.6f,%.6f), RI(%.6f,%.6f), LI_RAW(%.6f,%.6f), RI_RAW(%.6f,%.6f)",
-                    relativeTimeSeconds, lix, liy, rix, riy, liRx, liRy, riRx, riRy));
-
-            dataLines.add(line);
-
-        } catch (Exception e) {
-            Log.e(TAG, "記錄臉頰光流時發生錯誤", e);
-        }
+        Log.w(TAG, "⚠️ 臉頰光流舊版欄位已停用，這筆不記錄");
     }
     //多載:舌頭
     public void recordLandmarkData(
@@ -434,6 +489,29 @@ public class FaceDataRecorder {
             float dio,
             float cxImg, float cyImg,
             float xNorm, float yNorm
+    ) {
+        // 每幀都跑 YOLO 的舊呼叫端：一律是量測值
+        recordLandmarkData(state, tongueDetected, bboxImgOrNull,
+                eyeLx, eyeLy, eyeRx, eyeRy, browCx, browCy, noseX, noseY,
+                imgW, imgH, frameIdOrTsMillis, originX, originY, thetaRad, dio,
+                cxImg, cyImg, xNorm, yNorm, true);
+    }
+
+    //多載:舌頭（yoloMeasured = false 表示這幀略過推理、框是沿用的）
+    public void recordLandmarkData(
+            String state,
+            boolean tongueDetected,
+            android.graphics.Rect bboxImgOrNull,
+            float eyeLx, float eyeLy, float eyeRx, float eyeRy,
+            float browCx, float browCy, float noseX, float noseY,
+            int imgW, int imgH,
+            long frameIdOrTsMillis,
+            float originX, float originY,
+            float thetaRad,
+            float dio,
+            float cxImg, float cyImg,
+            float xNorm, float yNorm,
+            boolean yoloMeasured
     ) {
         // 🔥 COUNTDOWN 不記錄
         if ("COUNTDOWN".equals(state)) {
@@ -452,7 +530,8 @@ public class FaceDataRecorder {
                 thetaRad,
                 dio,
                 cxImg, cyImg,
-                xNorm, yNorm
+                xNorm, yNorm,
+                yoloMeasured
         );
     }
 
@@ -468,11 +547,12 @@ public class FaceDataRecorder {
             float thetaRad,
             float dio,
             float cxImg, float cyImg,
-            float xNorm, float yNorm
+            float xNorm, float yNorm,
+            boolean yoloMeasured
     ) {
         try {
-            long now = System.currentTimeMillis();
-            double t = (now - startTime) / 1000.0;  // 相對時間 (秒)
+            if (layout != Layout.TONGUE) return;
+            SampleRing.Row row = ring.row().begin(elapsedMs(), state);  // 相對時間（毫秒，匯出時換成秒）
 
             // bbox 預設 -1，若有偵測才填
             int L=-1, T=-1, R=-1, B=-1;
@@ -484,25 +564,16 @@ public class FaceDataRecorder {
                 B = bboxImgOrNull.bottom;
             }
 
-            // 順序必須與 HEADER_TONGUE 完全一致
-            String line = String.format(Locale.US,
-                    "%.3f,%s,%d," +                 // time_seconds, state, tongue_detected
-                            "%d,%d,%d,%d," +                // bbox_left, bbox_top, bbox_right, bbox_bottom
-                            "%.3f,%.3f,%.3f,%.3f," +        // eyeL_x, eyeL_y, eyeR_x, eyeR_y
-                            "%.3f,%.3f,%.3f,%.3f," +        // browC_x, browC_y, nose_x, nose_y
-                            "%d,%d,%d," +                   // imgW, imgH, frame_id
-                            "%.3f,%.3f,%.6f,%.3f," +        // origin_x, origin_y, theta_rad, dio
-                            "%.3f,%.3f,%.5f,%.5f",          // cx_img, cy_img, x_norm, y_norm
-                    t, state, detected,
-                    L, T, R, B,
-                    eyeLx, eyeLy, eyeRx, eyeRy,
-                    browCx, browCy, noseX, noseY,
-                    imgW, imgH, frameIdOrTsMillis,
-                    originX, originY, thetaRad, dio,
-                    cxImg, cyImg, xNorm, yNorm
-            );
-
-            dataLines.add(line); // 寫入緩衝區
+            // 順序必須與 HEADER_TONGUE 完全一致（格式見 buildSchema 的 TONGUE）
+            row.put(detected)                                                    // tongue_detected
+                    .put(L).put(T).put(R).put(B)                                 // bbox_left, bbox_top, bbox_right, bbox_bottom
+                    .put(eyeLx).put(eyeLy).put(eyeRx).put(eyeRy)                 // eyeL_x, eyeL_y, eyeR_x, eyeR_y
+                    .put(browCx).put(browCy).put(noseX).put(noseY)               // browC_x, browC_y, nose_x, nose_y
+                    .put(imgW).put(imgH).putLong(frameIdOrTsMillis)              // imgW, imgH, frame_id
+                    .put(originX).put(originY).put(thetaRad).put(dio)            // origin_x, origin_y, theta_rad, dio
+                    .put(cxImg).put(cyImg).put(xNorm).put(yNorm)                 // cx_img, cy_img, x_norm, y_norm
+                    .put(yoloMeasured ? 1 : 0);                                  // yolo_measured
+            publish(row); // 寫入緩衝區（YOLO 執行緒，不持鎖）
 
         } catch (Exception e) {
             Log.e(TAG, "recordTongueData error", e);
@@ -510,27 +581,38 @@ public class FaceDataRecorder {
     }
 
     // 方法：用掃描線計算嘴唇面積
-    private float calculateLipAreaByScanline(float[][] landmarks, int[] lipIndices) {
+    // 點座標與交點都放原生陣列（每幀不再 new float[] / List<Float> 裝箱）
+    private float[] scanPx = new float[0], scanPy = new float[0], scanHits = new float[0];
+
+    private float calculateLipAreaByScanline(LandmarkFrame landmarks, int[] lipIndices) {
         try {
-            List<float[]> lipPoints = new ArrayList<>();
+            if (scanPx.length < lipIndices.length) {
+                scanPx = new float[lipIndices.length];
+                scanPy = new float[lipIndices.length];
+                scanHits = new float[lipIndices.length];
+            }
+            float[] px = scanPx, py = scanPy, hits = scanHits;
+            int n = 0;
 
             // 收集嘴唇關鍵點
             for (int index : lipIndices) {
-                if (index < landmarks.length) {
-                    lipPoints.add(new float[]{landmarks[index][0], landmarks[index][1]});
+                if (index < landmarks.size()) {
+                    px[n] = landmarks.viewX(index);
+                    py[n] = landmarks.viewY(index);
+                    n++;
                 }
             }
 
-            if (lipPoints.size() < 3) {
+            if (n < 3) {
                 return 0; // 不足以形成多邊形
             }
 
             // 找出Y軸的範圍
             float minY = Float.MAX_VALUE;
             float maxY = Float.MIN_VALUE;
-            for (float[] point : lipPoints) {
-                minY = Math.min(minY, point[1]);
-                maxY = Math.max(maxY, point[1]);
+            for (int i = 0; i < n; i++) {
+                minY = Math.min(minY, py[i]);
+                maxY = Math.max(maxY, py[i]);
             }
 
             // 🔥 掃描線方法：每隔0.5像素掃描一條橫線
@@ -538,36 +620,31 @@ public class FaceDataRecorder {
             float scanStep = 0.5f; // 掃描精度
 
             for (float y = minY; y <= maxY; y += scanStep) {
-                List<Float> intersections = new ArrayList<>();
+                int hitCount = 0;
 
                 // 找出這條水平線與多邊形邊界的交點
-                for (int i = 0; i < lipPoints.size(); i++) {
-                    int j = (i + 1) % lipPoints.size();
-                    float[] p1 = lipPoints.get(i);
-                    float[] p2 = lipPoints.get(j);
+                for (int i = 0; i < n; i++) {
+                    int j = (i + 1) % n;
 
                     // 檢查線段是否與水平掃描線相交
-                    if ((p1[1] <= y && y < p2[1]) || (p2[1] <= y && y < p1[1])) {
+                    if ((py[i] <= y && y < py[j]) || (py[j] <= y && y < py[i])) {
                         // 計算交點的X坐標
-                        float x = p1[0] + (y - p1[1]) * (p2[0] - p1[0]) / (p2[1] - p1[1]);
-                        intersections.add(x);
+                        hits[hitCount++] = px[i] + (y - py[i]) * (px[j] - px[i]) / (py[j] - py[i]);
                     }
                 }
 
                 // 排序交點
-                Collections.sort(intersections);
+                Arrays.sort(hits, 0, hitCount);
 
                 // 計算這條掃描線上的面積（成對的交點之間）
-                for (int i = 0; i < intersections.size() - 1; i += 2) {
-                    if (i + 1 < intersections.size()) {
-                        float lineWidth = Math.abs(intersections.get(i + 1) - intersections.get(i));
-                        totalArea += lineWidth * scanStep;
-                    }
+                for (int i = 0; i + 1 < hitCount; i += 2) {
+                    float lineWidth = Math.abs(hits[i + 1] - hits[i]);
+                    totalArea += lineWidth * scanStep;
                 }
             }
 
-            Log.d(TAG, String.format("掃描線面積計算完成 - 總面積: %.3f, 掃描範圍: %.1f to %.1f",
-                    totalArea, minY, maxY));
+//            Log.d(TAG, String.format("掃描線面積計算完成 - 總面積: %.3f, 掃描範圍: %.1f to %.1f",
+//                    totalArea, minY, maxY));
 
             return totalArea;
 
@@ -657,7 +734,7 @@ public class FaceDataRecorder {
 //        }
 //    }
 // 🔥 嘟嘴：用嘴唇外緣點計Z值加總平均 20251002
-    private float calculateMouthDepth(float[][] landmarks) {
+    private float calculateMouthDepth(LandmarkFrame landmarks) {
         try {
             // 嘴唇外緣（官方順序）
 
@@ -665,8 +742,8 @@ public class FaceDataRecorder {
             int count = 0;
 
             for (int index : LIP_OUTER_IDXS ) {
-                if (index < landmarks.length && landmarks[index].length > 2) {
-                    sumZ += landmarks[index][2];
+                if (index < landmarks.size()) {
+                    sumZ += landmarks.z(index);
                     count++;
                 }
             }
@@ -681,19 +758,19 @@ public class FaceDataRecorder {
 
     // 方法 : 計算下顎位移
     // 方法 : 計算下顎位移 (三點平均, 含正規化)
-    private float[] calculateJawMoving(float[][] landmarks) {
+    private float[] calculateJawMoving(LandmarkFrame landmarks) {
         try {
             // === 基準點 ===
-            float noseX = landmarks[1][0];   // 鼻尖
-            float noseY = landmarks[1][1];
-            float eyeRx = landmarks[33][0];  // 右眼外側
-            float eyeRy = landmarks[33][1];
-            float eyeLx = landmarks[263][0]; // 左眼外側
-            float eyeLy = landmarks[263][1];
+            float noseX = landmarks.viewX(1);   // 鼻尖
+            float noseY = landmarks.viewY(1);
+            float eyeRx = landmarks.viewX(33);  // 右眼外側
+            float eyeRy = landmarks.viewY(33);
+            float eyeLx = landmarks.viewX(263); // 左眼外側
+            float eyeLy = landmarks.viewY(263);
 
             // === 下巴三點 (取平均, 減少抖動) ===
-            float chinX = (landmarks[152][0] + landmarks[377][0] + landmarks[147][0]) / 3f;
-            float chinY = (landmarks[152][1] + landmarks[377][1] + landmarks[147][1]) / 3f;
+            float chinX = (landmarks.viewX(152) + landmarks.viewX(377) + landmarks.viewX(147)) / 3f;
+            float chinY = (landmarks.viewY(152) + landmarks.viewY(377) + landmarks.viewY(147)) / 3f;
 
             // === 計算眼睛距離，作為比例尺 ===
             double dio = Math.sqrt(Math.pow(eyeRx - eyeLx, 2) + Math.pow(eyeRy - eyeLy, 2));
@@ -716,7 +793,7 @@ public class FaceDataRecorder {
             float jaw_x_norm = (float)(rotX / dio);
             float jaw_abs = Math.abs(jaw_x_norm);
 
-            Log.d(TAG, String.format("下顎位移(三點平均) → jaw_x_norm=%.4f, jaw_abs=%.4f", jaw_x_norm, jaw_abs));
+//            Log.d(TAG, String.format("下顎位移(三點平均) → jaw_x_norm=%.4f, jaw_abs=%.4f", jaw_x_norm, jaw_abs));
 
             return new float[]{jaw_x_norm, jaw_abs};
 
@@ -728,8 +805,55 @@ public class FaceDataRecorder {
 
 
 
+    // 🆕 記錄畫質檔位變動（任意執行緒）；時間存牆鐘，寫檔時才換成相對 startTime 的秒數
+    public void recordQualityTier(String tier, String reason) {
+        synchronized (qualityEvents) {
+            qualityEvents.add(new QualityEvent(System.currentTimeMillis(), tier, reason));
+        }
+        Log.d(TAG, "🌡️ 畫質檔位 → " + tier + " (" + reason + ")");
+    }
+
+    // 存檔時寫 sidecar：{"csv":..., "trainingLabel":..., "quality_tiers":[{time_seconds, tier, reason}, ...]}
+    // startTime 之前的變動只留最後一筆（當作 0 秒時的檔位），校正前 / clearData 前的來回不記
+    private void writeMetadata(File dir) {
+        File meta = new File(dir, getMetaFileName());
+        long start = startTime;
+        try {
+            JSONArray tiers = new JSONArray();
+            synchronized (qualityEvents) {
+                int first = 0;
+                for (int i = 0; i < qualityEvents.size(); i++) {
+                    if (qualityEvents.get(i).wallMs <= start) first = i;
+                }
+                for (int i = first; i < qualityEvents.size(); i++) {
+                    QualityEvent e = qualityEvents.get(i);
+                    tiers.put(new JSONObject()
+                            .put("time_seconds", Math.max(0, e.wallMs - start) / 1000.0)
+                            .put("tier", e.tier)
+                            .put("reason", e.reason));
+                }
+            }
+            JSONObject root = new JSONObject()
+                    .put("csv", fileName)
+                    .put("trainingLabel", trainingLabel)
+                    .put("quality_tiers", tiers);
+            try (java.io.Writer w = new FileWriter(meta)) {
+                w.write(root.toString());
+            }
+            Log.d(TAG, "✅ metadata 已寫入: " + meta.getName() + "，檔位變動 " + tiers.length() + " 筆");
+        } catch (IOException | JSONException e) {
+            // metadata 失敗不影響 CSV 存檔
+            Log.w(TAG, "⚠️ metadata 寫入失敗: " + e.getMessage());
+        }
+    }
+
     // 🔥 新增：帶 callback 的儲存方法
+    // 分析直接吃記憶體裡的 table，跟存檔同時跑；兩邊都完成才回呼（onComplete 會拿檔名寫 DB，檔案要先落地）
     public void saveToFileWithCallback(DataSaveCallback callback) {
+        CountDownLatch persisted = new CountDownLatch(1);
+        AtomicBoolean persistOk = new AtomicBoolean(false);
+        performPeakAnalysisWithCallback(callback, persisted, persistOk);
+
         try {
             // 儲存到 Downloads 資料夾，使用者容易找到
             File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
@@ -739,17 +863,24 @@ public class FaceDataRecorder {
 //            File file = new File(downloadsDir, fileName);
 
             File file = new File(dir, fileName);
-            FileWriter writer = new FileWriter(file);
-            for (String line : dataLines) {
-                writer.write(line + "\n");
+            // 訓練中已邊錄邊寫：這裡只等 I/O 執行緒寫完尾巴 + fsync + 關檔
+            // 串流失敗 / 逾時 / 一列都沒有 → 退回整份重寫
+            int rowCount = getDataCount();
+            if (!streamer.finish(STREAM_FINISH_TIMEOUT_MS)) {
+                Log.w(TAG, "⚠️ 串流檔不完整，改整份重寫");
+                try (java.io.Writer writer = new java.io.BufferedWriter(new FileWriter(file), 64 * 1024)) {
+                    synchronized (table) {
+                        drainPendingLocked();
+                        table.writeCsv(writer);
+                        rowCount = table.size();
+                    }
+                }
             }
-            writer.close();
             //writer.close();代表真的寫好
             Log.d(TAG, "✅ 檔案儲存成功: " + file.getAbsolutePath());
-            Log.d(TAG, "📊 總共記錄了 " + (dataLines.size() - 1) + " 筆數據");
-
-            // 🔥 檔案儲存完成()後進行峰值分析，並通過 callback 回傳結果
-            performPeakAnalysisWithCallback(callback);
+            Log.d(TAG, "📊 總共記錄了 " + rowCount + " 筆數據");
+            writeMetadata(dir);
+            persistOk.set(true);
 
             // 使用 Handler 切換到主線程顯示 Toast
             new android.os.Handler(android.os.Looper.getMainLooper()).post(() ->
@@ -759,56 +890,42 @@ public class FaceDataRecorder {
         } catch (IOException e) {
             Log.e(TAG, "❌ 儲存檔案失敗", e);
 
-            // 🔥 錯誤回調
+            // 🔥 錯誤回調（分析那邊看到 persistOk = false 就不再回呼）
             new android.os.Handler(android.os.Looper.getMainLooper()).post(() ->
                     callback.onError("儲存失敗: " + e.getMessage())
             );
+        } finally {
+            persisted.countDown();
         }
     }
 
 
-    // 🔥 新增：帶 callback 的峰值分析方法
-    private void performPeakAnalysisWithCallback(DataSaveCallback callback) {
+    // 🔥 新增：帶 callback 的峰值分析方法（不讀檔，直接分析 table；舊的 CSVPeakAnalyzer 已不再跑）
+    private void performPeakAnalysisWithCallback(DataSaveCallback callback,
+                                                 CountDownLatch persisted, AtomicBoolean persistOk) {
         Log.d(TAG, "🎯 開始進行峰值分析...");
 
         // 在背景線程執行峰值分析
         new Thread(() -> {
             try {
-                // 棄用 :調用 CSV 峰值分析器
-                // 確認是否能不用傳過CSVPeakAnalyzer了，改用PYTHON處理了
-                CSVPeakAnalyzer.AnalysisResult result = CSVPeakAnalyzer.analyzePeaksFromFile(context, fileName);
-
-                // 調用PYTHON
-                Log.d("CSVMotioner  ==>", "call CSVMotioner ");
-                CSVMotioner.PyAnalysisResult res = CSVMotioner.analyzePeaksFromFile(context, fileName);
-                Log.d("RECORDER FACE DATA  ==>", "Py  RES ==> " + res);
+                CSVMotioner.PyAnalysisResult res;
+                if (CSVMotioner.useNativeAnalyzer) {
+                    res = NativeMotionAnalyzer.analyze(tableColumns(), fileName);
+                    // 等檔案寫完；存檔失敗已經回過 onError
+                    persisted.await();
+                    if (!persistOk.get()) return;
+                } else {
+                    // Python 版只能讀檔：先等存檔
+                    persisted.await();
+                    if (!persistOk.get()) return;
+                    res = CSVMotioner.analyzePeaksWithPython(context, fileName);
+                }
                 Log.d("RECORDER FACE DATA  ==>", "動作數: " + res.actionCount);
                 Log.d("RECORDER FACE DATA  ==>", "總動作時間: " + res.totalActionTime);
-//                Log.d("RECORDER FACE DATA  ==>", "第一個斷點: " + (res.breakpoints.size() > 0 ? res.breakpoints.get(0) : -1));
 
-//                Log.d("TEST_CSVMOTION_CALL", "✅ TEST_CSVMOTION_CALL fin...");
-//                if (res.success) {
-//                    Log.d("FACECIRCLE", "動作數: " + res.actionCount);
-//                    Log.d("FACECIRCLE", "總動作時間: " + res.totalActionTime);
-//                    Log.d("FACECIRCLE", "第一個斷點: " + (res.breakpoints.size() > 0 ? res.breakpoints.get(0) : -1));
-//                }
-                //如果成功就跳接GO
-                //dataRecorder 改用res回呼
-//                if (result.success) {
-//                    Log.d(TAG, "✅ 峰值分析完成!");
-//                    Log.d(TAG, String.format("📊 峰值統計 - 校正: %d, 維持: %d, 總計: %d",
-//                            result.calibratingPeaks, result.maintainingPeaks, result.totalPeaks));
-//
-//                    // 成功後，這裡負責回調FaceCircle的onCompelete，若以棄用則回傳CSV路徑就好
-//                    new android.os.Handler(android.os.Looper.getMainLooper()).post(() ->
-//                            callback.onComplete(result)
-//                    );
                 if (res.success) {
-                    Log.d(TAG, "✅ python分析完成!");
-//                    Log.d(TAG, String.format("📊 峰值統計 - 校正: %d, 維持: %d, 總計: %d",
-//                            result.calibratingPeaks, result.maintainingPeaks, result.totalPeaks));
-//
-                    //成功後，這裡負責回調FaceCircle的onCompelete，若以棄用則回傳CSV路徑就好
+                    Log.d(TAG, "✅ 分析完成!");
+                    //成功後，這裡負責回調FaceCircle的onCompelete
                     new android.os.Handler(android.os.Looper.getMainLooper()).post(() ->
                             callback.onComplete(res)
                     );
@@ -831,20 +948,84 @@ public class FaceDataRecorder {
                 );
             }
 
-        }).start();
+        }, "FaceDataAnalysis").start();
+    }
+
+    // table 包成分析器的輸入：數值取 printedColumn（= 寫進 CSV 再讀回來的值），結果跟讀檔版一致
+    // 欄位用到才轉；列數固定在這一刻，之後若被 clearData() 清掉就中止分析
+    private CsvColumns tableColumns() {
+        final int rows;
+        final String header;
+        synchronized (table) {
+            drainPendingLocked();
+            rows = table.size();
+            header = table.getHeader();
+        }
+        final SessionTable t = table;
+        return CsvColumns.of(header.split(",", -1), new CsvColumns.Source() {
+            @Override
+            public int size() {
+                return rows;
+            }
+
+            @Override
+            public double[] numbers(int col) {
+                double[] v;
+                synchronized (t) {
+                    checkRows();
+                    v = t.printedColumn(col);
+                }
+                if (v.length == 0 && rows > 0) {  // state / 字元欄 / header 多出來的欄：讀 CSV 時也是 NaN
+                    v = new double[rows];
+                    Arrays.fill(v, Double.NaN);
+                    return v;
+                }
+                return Arrays.copyOf(v, rows);
+            }
+
+            @Override
+            public String[] strings(int col) {
+                String[] out = new String[rows];
+                synchronized (t) {
+                    checkRows();
+                    if (col == 1) {
+                        for (int i = 0; i < rows; i++) out[i] = t.state(i);
+                        return out;
+                    }
+                    StringBuilder line = new StringBuilder(1024);
+                    for (int i = 0; i < rows; i++) {
+                        line.setLength(0);
+                        t.appendRow(line, i);
+                        String[] cells = line.toString().split(",", -1);
+                        out[i] = (col < cells.length) ? cells[col] : null;
+                    }
+                }
+                return out;
+            }
+
+            private void checkRows() {
+                if (t.size() < rows) throw new IllegalStateException("分析途中資料被清空");
+            }
+        });
     }
 
 
     // 🆕 清空資料，重新開始記錄
     public void clearData() {
-        dataLines.clear();
-        initializeCSV();  // 重新加入 header
-        startTime = System.currentTimeMillis();  // 重設開始時間
+        synchronized (table) {
+            startTime = System.currentTimeMillis();  // 重設開始時間（先於換代，新世代的列一定用新時間）
+            ring.clear();  // 還沒倒進來的舊列作廢
+            table.clear();  // header 跟著 schema，不用重加
+            streamer.requestRestart();  // 已寫出的部分檔截回只剩 header
+        }
         Log.d(TAG, "🔄 資料已清空，重新開始記錄");
     }
 
     public int getDataCount() {
-        return Math.max(0, dataLines.size() - 1); // 扣除標題行
+        synchronized (table) {
+            drainPendingLocked();
+            return table.size(); // 不含標題行
+        }
     }
 
     // 🔥 新增：獲取檔案名稱（供外部使用）
@@ -852,6 +1033,11 @@ public class FaceDataRecorder {
         return fileName;
     }
 
+    // 🆕 同一次訓練的 metadata 檔名（與 CSV 同資料夾）
+    public String getMetaFileName() {
+        return fileName.replaceFirst("\\.csv$", "") + "_meta.json";
+    }
+
     //提供VERCEL分析動作
     public String exportLinesAsJson() {
         StringBuilder sb = new StringBuilder();
@@ -860,12 +1046,20 @@ public class FaceDataRecorder {
                 .append("\",\"lines\":[");
 
 
-        for (int i = 0; i < dataLines.size(); i++) {
-            if (i > 0) sb.append(',');
-            // 轉義雙引號
-            sb.append('\"')
-                    .append(dataLines.get(i).replace("\"","\\\""))
-                    .append('\"');
+        // 第 0 行 header，之後每列現場格式化（與寫檔同一套格式）
+        StringBuilder line = new StringBuilder(1024);
+        synchronized (table) {
+            drainPendingLocked();
+            for (int i = -1; i < table.size(); i++) {
+                line.setLength(0);
+                if (i < 0) line.append(table.getHeader());
+                else table.appendRow(line, i);
+                if (i >= 0) sb.append(',');
+                // 轉義雙引號
+                sb.append('\"')
+                        .append(line.toString().replace("\"","\\\""))
+                        .append('\"');
+            }
         }
         sb.append("]}");
         return sb.toString();
@@ -875,90 +1069,49 @@ public class FaceDataRecorder {
      * 🔹 取得時間軸 (time_seconds)，若找不到欄位則回傳空陣列 （供外部使用）
      */
     public double[] getTimeSecondsArrayForRatio() {
-        try {
-            if (dataLines.size() <= 1) return new double[0]; // 沒有資料
-            String header = dataLines.get(0);
-            String[] cols = header.split(",");
-            int timeIndex = -1;
-            for (int i = 0; i < cols.length; i++) {
-                if ("time_seconds".equals(cols[i].trim())) {
-                    timeIndex = i;
-                    break;
-                }
-            }
-            if (timeIndex == -1) return new double[0];
-
-            List<Double> values = new ArrayList<>();
-            for (int i = 1; i < dataLines.size(); i++) {
-                String[] parts = dataLines.get(i).split(",");
-                if (parts.length > timeIndex) {
-                    try {
-                        values.add(Double.parseDouble(parts[timeIndex]));
-                    } catch (NumberFormatException ignore) {}
-                }
-            }
-            double[] arr = new double[values.size()];
-            for (int i = 0; i < values.size(); i++) arr[i] = values.get(i);
-            return arr;
-        } catch (Exception e) {
-            Log.e(TAG, "getTimeSecondsArrayForRatio error", e);
-            return new double[0];
-        }
+        return printedColumnByHeader("time_seconds", "getTimeSecondsArrayForRatio");
     }
 
     /**
      * 🔹 取得 height_width_ratio (僅 POUT_LIPS 有)，若不存在則回傳空陣列 （供外部使用）
      */
     public double[] getHeightWidthRatioArray() {
+        return printedColumnByHeader("height_width_ratio", "getHeightWidthRatioArray");
+    }
+
+    // 依 header 欄名取整欄（值與 CSV 上印的一致）
+    private double[] printedColumnByHeader(String name, String caller) {
         try {
-            if (dataLines.size() <= 1) return new double[0];
-            String header = dataLines.get(0);
-            String[] cols = header.split(",");
-            int ratioIndex = -1;
-            for (int i = 0; i < cols.length; i++) {
-                if ("height_width_ratio".equals(cols[i].trim())) {
-                    ratioIndex = i;
-                    break;
-                }
-            }
-            if (ratioIndex == -1) return new double[0];
-
-            List<Double> values = new ArrayList<>();
-            for (int i = 1; i < dataLines.size(); i++) {
-                String[] parts = dataLines.get(i).split(",");
-                if (parts.length > ratioIndex) {
-                    try {
-                        values.add(Double.parseDouble(parts[ratioIndex]));
-                    } catch (NumberFormatException ignore) {}
-                }
+            synchronized (table) {
+                drainPendingLocked();
+                if (table.size() == 0) return new double[0]; // 沒有資料
+                int idx = table.headerIndex(name);
+                if (idx == -1) return new double[0];
+                return table.printedColumn(idx);
             }
-            double[] arr = new double[values.size()];
-            for (int i = 0; i < values.size(); i++) arr[i] = values.get(i);
-            return arr;
         } catch (Exception e) {
-            Log.e(TAG, "getHeightWidthRatioArray error", e);
+            Log.e(TAG, caller + " error", e);
             return new double[0];
         }
     }
 
     // ★ 新增：給 closeLip(=抿嘴) 畫圖用的時間軸與總面積
     public double[][] exportLipTimeAndTotal() {
-        List<Double> t = new ArrayList<>();
-        List<Double> v = new ArrayList<>();
-        // 假設你寫 CSV 時有把每一行暫存到 dataLines（和原本寫檔同一套）
-        for (String line : dataLines) {
-            if (line == null || line.isEmpty()) continue;
-            if (line.startsWith("time_seconds")) continue; // 跳過表頭
-            String[] p = line.split(",");
-            if (p.length < 5) continue; // time, state, upper, lower, total
-            try {
-                t.add(Double.parseDouble(p[0])); // time_seconds
-                v.add(Double.parseDouble(p[4])); // total_lip_area
-            } catch (Exception ignore) {}
+        // 第 0 欄 time_seconds、第 4 欄 total_lip_area（抿嘴的欄位位置）
+        synchronized (table) {
+            drainPendingLocked();
+            double[] totals = table.printedColumn(4);
+            if (totals.length == 0) return new double[][]{ new double[0], new double[0] };
+            double[] times = table.printedColumn(0);
+            return new double[][]{ times, totals };
+        }
+    }
+
+    // 🆕 離開畫面時呼叫：沒存檔（中途離開）就停掉串流並刪掉部分檔；已存檔則什麼都不做
+    public void close() {
+        if (streamer.isRunning()) {
+            streamer.discard();
         }
-        double[] times  = t.stream().mapToDouble(Double::doubleValue).toArray();
-        double[] totals = v.stream().mapToDouble(Double::doubleValue).toArray();
-        return new double[][]{ times, totals };
     }
 
     // 🆕 重設開始時間（倒數結束後呼叫）
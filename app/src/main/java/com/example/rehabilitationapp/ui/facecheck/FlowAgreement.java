@@ -0,0 +1,77 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.util.Locale;
+
+/**
+ * FlowAgreement
+ * - 兩組光流向量序列（例：Farneback vs 稀疏 LK）逐幀配對的一致性
+ * - 平均向量差（像素）、u / v 各自的 Pearson 相關係數
+ * - 純 Java，CheekFlowBenchmark 用；JVM 上可單元測試
+ */
+public final class FlowAgreement {
+
+    public final String label;
+    private int n = 0;
+    private double sumDist = 0;
+    // u、v 各自的相關係數累加：Σa、Σb、Σa²、Σb²、Σab
+    private final double[] su = new double[5];
+    private final double[] sv = new double[5];
+
+    public FlowAgreement(String label) {
+        this.label = label;
+    }
+
+    /** 一幀的兩個向量 (au,av) vs (bu,bv)；任一為 NaN 就略過 */
+    public void add(double au, double av, double bu, double bv) {
+        if (Double.isNaN(au) || Double.isNaN(av) || Double.isNaN(bu) || Double.isNaN(bv)) return;
+        n++;
+        sumDist += Math.hypot(au - bu, av - bv);
+        accumulate(su, au, bu);
+        accumulate(sv, av, bv);
+    }
+
+    public int count() {
+        return n;
+    }
+
+    /** 平均向量差（像素）；沒有樣本回 NaN */
+    public double meanDistance() {
+        return n == 0 ? Double.NaN : sumDist / n;
+    }
+
+    /** u 分量的相關係數；樣本不足或其中一組沒有變化回 NaN */
+    public double correlationU() {
+        return correlation(su);
+    }
+
+    public double correlationV() {
+        return correlation(sv);
+    }
+
+    public String summary() {
+        return String.format(Locale.US, "%-6s n=%d |Δ|=%.3f px  r(u)=%.3f  r(v)=%.3f",
+                label, n, meanDistance(), correlationU(), correlationV());
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    private static void accumulate(double[] s, double a, double b) {
+        s[0] += a;
+        s[1] += b;
+        s[2] += a * a;
+        s[3] += b * b;
+        s[4] += a * b;
+    }
+
+    private double correlation(double[] s) {
+        if (n < 2) return Double.NaN;
+        double cov = s[4] - s[0] * s[1] / n;
+        double va = s[2] - s[0] * s[0] / n;
+        double vb = s[3] - s[1] * s[1] / n;
+        if (va <= 1e-12 || vb <= 1e-12) return Double.NaN;
+        return cov / Math.sqrt(va * vb);
+    }
+}
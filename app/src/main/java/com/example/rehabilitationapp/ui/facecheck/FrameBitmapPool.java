@@ -0,0 +1,102 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FrameBitmapPool
+ * - 固定數量的分析幀 Bitmap（已轉正 + 鏡像），整個訓練期間重用，不再每幀 createBitmap
+ * - 以引用計數管理：分析執行緒 acquire()=1，交給 UI / YOLO / 光流前各自 retain()，用完 release()
+ * - 計數歸零即回到池中；沒有空幀時 acquire() 回 null，呼叫端直接丟這一幀（背壓）
+ * - 不需要主執行緒延遲 recycle；close() 後最後一個 release 的人負責回收
+ */
+public class FrameBitmapPool {
+
+    private static final String TAG = "FrameBitmapPool";
+
+    /** 池中的一格 */
+    public static final class Frame {
+        private final FrameBitmapPool owner;
+        private final AtomicInteger refs = new AtomicInteger(0);
+        private Bitmap bitmap;
+
+        private Frame(FrameBitmapPool owner) {
+            this.owner = owner;
+        }
+
+        public Bitmap getBitmap() { return bitmap; }
+        public int getWidth()     { return bitmap.getWidth(); }
+        public int getHeight()    { return bitmap.getHeight(); }
+
+        /** 交給其他執行緒前呼叫 */
+        public Frame retain() {
+            refs.incrementAndGet();
+            return this;
+        }
+
+        /** 用完呼叫；歸零即回池 */
+        public void release() {
+            int left = refs.decrementAndGet();
+            if (left < 0) {
+                refs.set(0);
+                Log.w(TAG, "⚠️ release 次數多於 retain");
+                return;
+            }
+            if (left == 0 && owner.closed) {
+                recycleBitmap();
+            }
+        }
+
+        private void recycleBitmap() {
+            synchronized (this) {
+                if (bitmap != null && !bitmap.isRecycled()) bitmap.recycle();
+                bitmap = null;
+            }
+        }
+    }
+
+    private final Frame[] frames;
+    private volatile boolean closed = false;
+
+    public FrameBitmapPool(int size) {
+        frames = new Frame[size];
+        for (int i = 0; i < size; i++) frames[i] = new Frame(this);
+    }
+
+    /**
+     * 取得一格空幀（refs=1），尺寸不符時重建該格 Bitmap。
+     * @return null 表示全部都還在被用（或池已關閉）
+     */
+    public Frame acquire(int width, int height) {
+        if (closed) return null;
+        for (Frame f : frames) {
+            if (!f.refs.compareAndSet(0, 1)) continue;
+            synchronized (f) {
+                Bitmap b = f.bitmap;
+                if (b == null || b.isRecycled() || b.getWidth() != width || b.getHeight() != height) {
+                    if (b != null && !b.isRecycled()) b.recycle();
+                    f.bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                }
+            }
+            return f;
+        }
+        return null;
+    }
+
+    /** 目前被占用的格數（Debug 用） */
+    public int inUseCount() {
+        int n = 0;
+        for (Frame f : frames) if (f.refs.get() > 0) n++;
+        return n;
+    }
+
+    /** onDestroy 呼叫：空閒格立即回收，使用中的等最後一次 release */
+    public void close() {
+        closed = true;
+        for (Frame f : frames) {
+            if (f.refs.get() == 0) f.recycleBitmap();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FramePipeline
+ * - 臉部偵測迴圈的多段管線：convert → landmark → metric → record/overlay
+ * - 每段一條專屬執行緒 + 有上限的佇列，段與段之間互不阻塞
+ *   （例：landmark 在算第 N 幀時，相機執行緒已經在轉第 N+1 幀）
+ * - 佇列滿時依 DropPolicy 丟幀，被丟掉的項目交給 Recycler（例如 release 池中的 Bitmap）
+ * - 每段統計處理數/丟棄數，summary() 給 PERF log 用
+ */
+public class FramePipeline {
+
+    private static final String TAG = "FramePipeline";
+
+    /** 佇列滿時的丟幀策略 */
+    public enum DropPolicy {
+        DROP_OLDEST,   // 丟最舊的，永遠處理最新幀（即時追蹤用）
+        DROP_NEWEST    // 丟新進來的，已排隊的照順序做完（紀錄用）
+    }
+
+    /** 段處理函式 */
+    public interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    /** 丟棄/關閉時回收項目 */
+    public interface Recycler<T> {
+        void recycle(T item);
+    }
+
+    /** 一段管線：單一執行緒依序消化自己的佇列 */
+    public static final class Stage<T> {
+        private final String name;
+        private final ArrayBlockingQueue<T> queue;
+        private final DropPolicy policy;
+        private final Handler<T> handler;
+        private final Recycler<T> recycler;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile boolean running = false;
+        private Thread thread;
+
+        private Stage(String name, int capacity, DropPolicy policy, Handler<T> handler, Recycler<T> recycler) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.policy = policy;
+            this.handler = handler;
+            this.recycler = recycler;
+        }
+
+        /**
+         * 送進這一段；永不阻塞呼叫端。
+         * 檢查 running 和放進佇列在同一把鎖裡：stop() 之後不會再有項目進佇列（不然沒人回收）
+         * @return false 表示 item 本身被丟棄（已回收）
+         */
+        public boolean offer(T item) {
+            synchronized (queue) {
+                if (!running) {
+                    recycle(item);
+                    return false;
+                }
+                if (policy == DropPolicy.DROP_NEWEST) {
+                    if (queue.offer(item)) return true;
+                    dropped.incrementAndGet();
+                    recycle(item);
+                    return false;
+                }
+                // DROP_OLDEST：擠掉最舊的直到放得進去
+                while (!queue.offer(item)) {
+                    T old = queue.poll();
+                    if (old != null) {
+                        dropped.incrementAndGet();
+                        recycle(old);
+                    }
+                }
+            }
+            return true;
+        }
+
+        public int pending()        { return queue.size(); }
+        public long processedCount(){ return processed.get(); }
+        public long droppedCount()  { return dropped.get(); }
+        public String getName()     { return name; }
+
+        private void start() {
+            running = true;
+            thread = new Thread(this::loop, "pipe-" + name);
+            thread.start();
+        }
+
+        private void loop() {
+            while (running) {
+                T item;
+                try {
+                    item = queue.poll(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (item == null) continue;
+                long t0 = System.nanoTime();
+                try {
+                    handler.handle(item);
+                } catch (Throwable t) {
+                    Log.e(TAG, "❌ stage[" + name + "] 處理失敗", t);
+                } finally {
+                    processed.incrementAndGet();
+                    busyNanos.addAndGet(System.nanoTime() - t0);
+                }
+            }
+        }
+
+        private void stop(long timeoutMs) {
+            synchronized (queue) {
+                running = false;
+            }
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    thread.join(timeoutMs);
+                } catch (InterruptedException ignored) { }
+            }
+            T left;
+            while ((left = queue.poll()) != null) recycle(left);
+        }
+
+        private void recycle(T item) {
+            if (recycler == null || item == null) return;
+            try {
+                recycler.recycle(item);
+            } catch (Throwable t) {
+                Log.w(TAG, "stage[" + name + "] 回收失敗", t);
+            }
+        }
+
+        private String summary() {
+            long n = processed.get();
+            float avgMs = n == 0 ? 0f : busyNanos.get() / 1_000_000f / n;
+            return String.format(Locale.US, "%s: done=%d drop=%d pending=%d avg=%.1fms",
+                    name, n, dropped.get(), queue.size(), avgMs);
+        }
+    }
+
+    private final List<Stage<?>> stages = new ArrayList<>();
+    private boolean started = false;
+
+    /** 依序加入一段（建議在 start() 前全部加好） */
+    public <T> Stage<T> addStage(String name, int capacity, DropPolicy policy,
+                                 Handler<T> handler, Recycler<T> recycler) {
+        Stage<T> s = new Stage<>(name, capacity, policy, handler, recycler);
+        stages.add(s);
+        if (started) s.start();
+        return s;
+    }
+
+    public void start() {
+        if (started) return;
+        started = true;
+        for (Stage<?> s : stages) s.start();
+    }
+
+    /** 由上游往下游依序停止，並回收佇列中剩下的項目 */
+    public void stop(long timeoutMsPerStage) {
+        for (Stage<?> s : stages) s.stop(timeoutMsPerStage);
+        started = false;
+    }
+
+    /** 例：landmark: done=120 drop=8 pending=0 avg=21.3ms | metric: ... */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage<?> s : stages) {
+            if (sb.length() > 0) sb.append(" | ");
+            sb.append(s.summary());
+        }
+        return sb.toString();
+    }
+}
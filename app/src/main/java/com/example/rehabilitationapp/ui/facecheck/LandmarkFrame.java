@@ -0,0 +1,195 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LandmarkFrame
+ * - 一幀 FaceMesh 關鍵點，扁平存成單一 float[]（x0,y0,z0,x1,y1,z1,...），原始 0~1 正規化值
+ * - 取代每幀 new float[478][3] 兩份（landmarks01 + allPoints）與 toBitmapPixels 的 new float[n][2]
+ * - 三種座標「視圖」都是即時換算、不配置記憶體：
+ *     x()/y()/z()               原始 0~1（給臉頰、頭動、光流）
+ *     viewX()/viewY()           Overlay 畫面像素（X 做 4:3 比例補償，給嘴唇/下顎/ROI/繪圖）
+ *     pixelX()/pixelY()         Bitmap 像素 = 0~1 × 影像寬高（臉頰 CSV）
+ *     viewToImageX()/Y()        Overlay 像素依等比縮放+置中反推回 Bitmap 像素（舌頭補正）
+ * - 由 Pool 借出，引用計數歸零自動還回；跨執行緒前 retain()，用完 release()
+ *
+ * 純 Java，不依賴 Android。
+ */
+public class LandmarkFrame {
+
+    /** FaceMesh（含虹膜）最多 478 點 */
+    public static final int MAX_LANDMARKS = 478;
+
+    private final float[] xyz;
+    private int count = 0;
+
+    // Overlay 視圖參數
+    private float scaleX = 1f;
+    private int overlayW = 1, overlayH = 1;
+    // 影像（Bitmap）尺寸
+    private int imgW = 1, imgH = 1;
+    // true：存的就是 Overlay 像素（舊 float[][] 包進來），viewX()/viewY() 直接回原值
+    private boolean identityView = false;
+
+    private final AtomicInteger refs = new AtomicInteger(0);
+    private final Pool owner;
+
+    public LandmarkFrame(int capacity) {
+        this(capacity, null);
+    }
+
+    private LandmarkFrame(int capacity, Pool owner) {
+        this.xyz = new float[capacity * 3];
+        this.owner = owner;
+    }
+
+    // ================= 寫入 =================
+
+    /** 設定點數與兩套座標參數（填點前呼叫） */
+    public void begin(int count, int imgW, int imgH, int overlayW, int overlayH, float scaleX) {
+        if (count * 3 > xyz.length) {
+            throw new IllegalArgumentException("landmark 數量超過容量: " + count);
+        }
+        this.count = count;
+        this.imgW = imgW;
+        this.imgH = imgH;
+        this.overlayW = overlayW;
+        this.overlayH = overlayH;
+        this.scaleX = scaleX;
+        this.identityView = false;
+    }
+
+    public void set(int i, float x, float y, float z) {
+        int k = i * 3;
+        xyz[k] = x;
+        xyz[k + 1] = y;
+        xyz[k + 2] = z;
+    }
+
+    /** 舊介面相容：把「已是 Overlay 像素」的 float[][] 包成 LandmarkFrame（恆等視圖，會配置，只給舊路徑用） */
+    public static LandmarkFrame fromViewPoints(float[][] pts) {
+        LandmarkFrame f = new LandmarkFrame(pts.length);
+        f.begin(pts.length, 1, 1, 1, 1, 1f);
+        f.identityView = true;
+        for (int i = 0; i < pts.length; i++) {
+            f.set(i, pts[i][0], pts[i][1], pts[i].length > 2 ? pts[i][2] : 0f);
+        }
+        return f;
+    }
+
+    /** 舊介面相容：0~1 正規化的 float[][] + 影像寬高（會配置，只給舊路徑用） */
+    public static LandmarkFrame fromNormalizedPoints(float[][] pts, int imgW, int imgH) {
+        LandmarkFrame f = new LandmarkFrame(pts.length);
+        f.begin(pts.length, imgW, imgH, 1, 1, 1f);
+        for (int i = 0; i < pts.length; i++) {
+            f.set(i, pts[i][0], pts[i][1], pts[i].length > 2 ? pts[i][2] : 0f);
+        }
+        return f;
+    }
+
+    // ================= 讀取 =================
+
+    public int size()        { return count; }
+    public int imageWidth()  { return imgW; }
+    public int imageHeight() { return imgH; }
+    public int overlayWidth()  { return overlayW; }
+    public int overlayHeight() { return overlayH; }
+
+    /** 原始 0~1 */
+    public float x(int i) { return xyz[i * 3]; }
+    public float y(int i) { return xyz[i * 3 + 1]; }
+    public float z(int i) { return xyz[i * 3 + 2]; }
+
+    /** Overlay 畫面像素（與舊 allPoints 相同公式） */
+    public float viewX(int i) {
+        if (identityView) return xyz[i * 3];
+        return ((xyz[i * 3] - 0.5f) * scaleX + 0.5f) * overlayW;
+    }
+
+    public float viewY(int i) {
+        if (identityView) return xyz[i * 3 + 1];
+        return xyz[i * 3 + 1] * overlayH;
+    }
+
+    /** Bitmap 像素 */
+    public float pixelX(int i) { return xyz[i * 3] * imgW; }
+    public float pixelY(int i) { return xyz[i * 3 + 1] * imgH; }
+
+    /** Overlay 像素 → Bitmap 像素（view = img*scale + offset 的反解，同舊 toBitmapPixels） */
+    public float viewToImageX(int i) {
+        float s = letterboxScale();
+        return (viewX(i) - (overlayW - imgW * s) / 2f) / s;
+    }
+
+    public float viewToImageY(int i) {
+        float s = letterboxScale();
+        return (viewY(i) - (overlayH - imgH * s) / 2f) / s;
+    }
+
+    private float letterboxScale() {
+        return Math.min((float) overlayW / imgW, (float) overlayH / imgH);
+    }
+
+    /** 複製 Overlay 視圖到既有陣列（給需要 float[][] 的繪圖 API；dst 不足時回新陣列） */
+    public float[][] copyViewPoints(float[][] dst) {
+        if (dst == null || dst.length != count) dst = new float[count][3];
+        for (int i = 0; i < count; i++) {
+            dst[i][0] = viewX(i);
+            dst[i][1] = viewY(i);
+            dst[i][2] = z(i);
+        }
+        return dst;
+    }
+
+    // ================= 引用計數 =================
+
+    public LandmarkFrame retain() {
+        refs.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int left = refs.decrementAndGet();
+        if (left < 0) {
+            refs.set(0);
+            return;
+        }
+        if (left == 0 && owner != null) owner.recycle(this);
+    }
+
+    /** 固定上限的借用池；池空時新建，歸還超過上限就丟給 GC */
+    public static final class Pool {
+        private final ArrayDeque<LandmarkFrame> free = new ArrayDeque<>();
+        private final int capacity;
+        private final int maxPooled;
+
+        public Pool(int capacity, int maxPooled) {
+            this.capacity = capacity;
+            this.maxPooled = maxPooled;
+        }
+
+        /** 借出（refs=1） */
+        public LandmarkFrame acquire() {
+            LandmarkFrame f;
+            synchronized (free) {
+                f = free.pollFirst();
+            }
+            if (f == null) f = new LandmarkFrame(capacity, this);
+            f.refs.set(1);
+            return f;
+        }
+
+        public int pooledCount() {
+            synchronized (free) {
+                return free.size();
+            }
+        }
+
+        private void recycle(LandmarkFrame f) {
+            synchronized (free) {
+                if (free.size() < maxPooled) free.addLast(f);
+            }
+        }
+    }
+}
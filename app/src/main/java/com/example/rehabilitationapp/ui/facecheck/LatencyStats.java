@@ -0,0 +1,79 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * LatencyStats
+ * - 一組推理耗時（ms）的統計：p50 / p95 / 平均 / 最小 / 最大
+ * - 百分位用線性內插（跟 numpy.percentile 預設相同）
+ * - 純 Java，後端校正（YoloBackendCalibrator）用來比較各設定，JVM 上可單元測試
+ */
+public final class LatencyStats {
+
+    public final String label;
+    public final int count;
+    public final double p50, p95, mean, min, max;
+
+    private LatencyStats(String label, int count, double p50, double p95, double mean, double min, double max) {
+        this.label = label;
+        this.count = count;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.mean = mean;
+        this.min = min;
+        this.max = max;
+    }
+
+    /** samplesMs 不會被修改 */
+    public static LatencyStats of(String label, double[] samplesMs) {
+        if (samplesMs == null || samplesMs.length == 0) {
+            throw new IllegalArgumentException("沒有量測樣本: " + label);
+        }
+        double[] s = samplesMs.clone();
+        Arrays.sort(s);
+        double sum = 0;
+        for (double v : s) sum += v;
+        return new LatencyStats(label, s.length, percentile(s, 50), percentile(s, 95),
+                sum / s.length, s[0], s[s.length - 1]);
+    }
+
+    /** sorted 已排序；p 介於 0..100 */
+    static double percentile(double[] sorted, double p) {
+        if (sorted.length == 1) return sorted[0];
+        double pos = (sorted.length - 1) * p / 100.0;
+        int lo = (int) Math.floor(pos);
+        int hi = Math.min(lo + 1, sorted.length - 1);
+        return sorted[lo] + (sorted[hi] - sorted[lo]) * (pos - lo);
+    }
+
+    /**
+     * 最快的一組：p50 最低，p50 相同再比 p95；null（建立失敗的後端）略過
+     * 全部失敗回 -1
+     */
+    public static int indexOfBest(List<LatencyStats> candidates) {
+        int best = -1;
+        for (int i = 0; i < candidates.size(); i++) {
+            LatencyStats c = candidates.get(i);
+            if (c == null) continue;
+            if (best < 0) {
+                best = i;
+                continue;
+            }
+            LatencyStats b = candidates.get(best);
+            if (c.p50 < b.p50 || (c.p50 == b.p50 && c.p95 < b.p95)) best = i;
+        }
+        return best;
+    }
+
+    public String summary() {
+        return String.format(Locale.US, "%-8s n=%d p50=%.1f p95=%.1f mean=%.1f min=%.1f max=%.1f ms",
+                label, count, p50, p95, mean, min, max);
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+}
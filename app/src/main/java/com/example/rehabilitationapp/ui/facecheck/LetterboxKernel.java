@@ -0,0 +1,133 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * LetterboxKernel
+ * - YOLO 輸入前處理一次做完：裁 ROI + 等比雙線性縮放 + 黑邊補齊 + RGB/255 正規化，直接寫進模型輸入的 FloatBuffer
+ * - 取代 Bitmap.createBitmap(ROI) → Canvas.drawBitmap(letterbox) → getPixels → 每像素 3 次 putFloat
+ * - 取樣跟 Canvas 縮放相同：像素中心對齊、邊緣 clamp、每個通道取整到 8 bit 後再 /255
+ * - 一列一列組好再 bulk put；欄位的取樣位置/權重依 (ROI 寬, 縮放後寬) 快取
+ * - 純 Java、不依賴 Android，方便在 JVM 單元測試
+ *
+ * 非執行緒安全：一個推理執行緒持有一個實例即可（內部 scratch 會重用）。
+ */
+public class LetterboxKernel {
+
+    private static final float[] NORM = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) NORM[i] = i / 255.0f;
+    }
+
+    /** 縮放與補邊參數（後處理把框還原回 ROI 座標用） */
+    public static final class Geometry {
+        public final int size;
+        public final float scale;
+        public final int newW, newH;
+        public final int padX, padY;
+
+        Geometry(int size, int srcW, int srcH) {
+            this.size = size;
+            this.scale = Math.min(size * 1f / srcW, size * 1f / srcH);
+            this.newW = Math.round(srcW * scale);
+            this.newH = Math.round(srcH * scale);
+            this.padX = (size - newW) / 2;
+            this.padY = (size - newH) / 2;
+        }
+    }
+
+    private final int size;
+    private final float[] row;     // 一列 size*3 個 float
+
+    // 欄方向取樣表（依 srcW / newW 快取）
+    private int cachedSrcW = -1, cachedNewW = -1;
+    private final int[] x0, x1;
+    private final int[] wx;        // 右鄰權重，0..256
+
+    public LetterboxKernel(int size) {
+        this.size = size;
+        this.row = new float[size * 3];
+        this.x0 = new int[size];
+        this.x1 = new int[size];
+        this.wx = new int[size];
+    }
+
+    public static Geometry geometry(int size, int srcW, int srcH) {
+        return new Geometry(size, srcW, srcH);
+    }
+
+    /**
+     * @param src    ARGB 像素（例 Bitmap.getPixels 的結果）
+     * @param offset ROI 左上角在 src 的索引
+     * @param stride src 每列像素數
+     * @param srcW   ROI 寬
+     * @param srcH   ROI 高
+     * @param out    模型輸入（size*size*3 個 float，HWC、RGB）；從 index 0 開始寫，寫完 position 回到 0
+     */
+    public Geometry run(int[] src, int offset, int stride, int srcW, int srcH, FloatBuffer out) {
+        if (srcW <= 0 || srcH <= 0) throw new IllegalArgumentException("ROI 大小無效: " + srcW + "x" + srcH);
+        Geometry g = new Geometry(size, srcW, srcH);
+        prepareColumns(srcW, g.newW);
+
+        out.rewind();
+        Arrays.fill(row, 0f);
+        // 上方黑邊
+        for (int y = 0; y < g.padY; y++) out.put(row);
+
+        float sy = (float) srcH / g.newH;
+        int xStart = g.padX * 3;
+        for (int dy = 0; dy < g.newH; dy++) {
+            float fy = (dy + 0.5f) * sy - 0.5f;
+            int y0 = (int) Math.floor(fy);
+            int wy = Math.round((fy - y0) * 256f);
+            int y1 = clamp(y0 + 1, srcH - 1);
+            y0 = clamp(y0, srcH - 1);
+            int r0 = offset + y0 * stride, r1 = offset + y1 * stride;
+
+            int o = xStart;
+            for (int dx = 0; dx < g.newW; dx++) {
+                int w = wx[dx];
+                int p00 = src[r0 + x0[dx]], p01 = src[r0 + x1[dx]];
+                int p10 = src[r1 + x0[dx]], p11 = src[r1 + x1[dx]];
+                row[o++] = NORM[lerp2((p00 >> 16) & 0xFF, (p01 >> 16) & 0xFF, (p10 >> 16) & 0xFF, (p11 >> 16) & 0xFF, w, wy)];
+                row[o++] = NORM[lerp2((p00 >> 8) & 0xFF, (p01 >> 8) & 0xFF, (p10 >> 8) & 0xFF, (p11 >> 8) & 0xFF, w, wy)];
+                row[o++] = NORM[lerp2(p00 & 0xFF, p01 & 0xFF, p10 & 0xFF, p11 & 0xFF, w, wy)];
+            }
+            out.put(row);
+        }
+
+        // 下方黑邊（左右黑邊在 row 裡一直是 0）
+        Arrays.fill(row, 0f);
+        for (int y = g.padY + g.newH; y < size; y++) out.put(row);
+        out.rewind();
+        return g;
+    }
+
+    // 欄方向：每個輸出欄對應的左右來源欄與權重
+    private void prepareColumns(int srcW, int newW) {
+        if (srcW == cachedSrcW && newW == cachedNewW) return;
+        float sx = (float) srcW / newW;
+        for (int dx = 0; dx < newW; dx++) {
+            float fx = (dx + 0.5f) * sx - 0.5f;
+            int xi = (int) Math.floor(fx);
+            wx[dx] = Math.round((fx - xi) * 256f);
+            x1[dx] = clamp(xi + 1, srcW - 1);
+            x0[dx] = clamp(xi, srcW - 1);
+        }
+        cachedSrcW = srcW;
+        cachedNewW = newW;
+    }
+
+    // 雙線性（權重 0..256），四捨五入到 0..255
+    private static int lerp2(int a, int b, int c, int d, int wx, int wy) {
+        int top = a * (256 - wx) + b * wx;
+        int bot = c * (256 - wx) + d * wx;
+        return (top * (256 - wy) + bot * wy + (1 << 15)) >> 16;
+    }
+
+    private static int clamp(int v, int max) {
+        return v < 0 ? 0 : (v > max ? max : v);
+    }
+}
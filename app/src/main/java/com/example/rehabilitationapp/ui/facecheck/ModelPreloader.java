@@ -0,0 +1,239 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mediapipe.framework.image.BitmapImageBuilder;
+import com.google.mediapipe.tasks.core.BaseOptions;
+import com.google.mediapipe.tasks.vision.core.RunningMode;
+import com.google.mediapipe.tasks.vision.facelandmarker.FaceLandmarker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ModelPreloader
+ * - 首頁 / 計畫頁選好動作時，就在背景「同時」建 FaceLandmarker 與該動作的舌頭 YOLO，各跑一次假推理熱身
+ * - FaceCircleCheckerActivity 用 take* 把建好的實例拿走（所有權轉移，之後由 Activity 負責 close）
+ * - 沒預載到（直接進訓練頁 / 逾時）時 take* 也是在背景建，不會卡 UI 執行緒
+ * - 預載了卻一直沒被拿走的實例，建好後 EXPIRE_MS 還沒被拿走就由計時器關掉（不用等下一次 preload / take*），
+ *   避免 GPU delegate / 模型記憶體一直掛著
+ * - FaceLandmarker 只預載 IMAGE 模式；LIVE_STREAM 的回呼綁在 Activity 上，由 buildLandmarker 在背景建
+ */
+public final class ModelPreloader {
+
+    private static final String TAG = "ModelPreloader";
+    private static final String FACE_MODEL = "face_landmarker.task";
+    private static final long EXPIRE_MS = 60_000;   // 建好（含熱身）後多久沒被拿走就丟掉
+    private static final int WARMUP_SIZE = 256;     // 假推理用的灰圖邊長
+
+    // 兩條執行緒：FaceLandmarker 與 YOLO 平行建；使用者正要進訓練頁，維持一般優先權
+    private static final AtomicInteger threadNo = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+            r.run();
+        }, "ModelPreloader-" + threadNo.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 逾時清理用的計時器執行緒
+    private static final ScheduledExecutorService expirer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ModelPreloader-expire");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 還沒被拿走的預載結果（與建好的時間；還在建的不在 *At 裡 / landmarkerAt = 0）
+    private static CompletableFuture<FaceLandmarker> landmarker;
+    private static long landmarkerAt;
+    private static final Map<YoloModelSpec, CompletableFuture<YoloEngine>> engines = new HashMap<>();
+    private static final Map<YoloModelSpec, Long> enginesAt = new HashMap<>();
+
+    private ModelPreloader() {}
+
+    /**
+     * 預載 trainingLabel（例 "TONGUE_LEFT"）要用的模型；已經在預載的不重做
+     * 非舌頭動作只預載 FaceLandmarker
+     */
+    public static synchronized void preload(Context context, String trainingLabel) {
+        final Context app = context.getApplicationContext();
+        expireStale();
+
+        if (landmarker == null && !isLiveStream(app)) {
+            CompletableFuture<FaceLandmarker> f =
+                    CompletableFuture.supplyAsync(() -> createImageLandmarker(app, true), executor);
+            landmarker = f;
+            landmarkerAt = 0;
+            f.whenComplete((lm, e) -> onLandmarkerBuilt(f));
+        }
+
+        YoloModelSpec spec = YoloModelSpec.forTrainingLabel(trainingLabel);
+        if (spec != null && !engines.containsKey(spec)) {
+            CompletableFuture<YoloEngine> f = CompletableFuture.supplyAsync(() -> createYoloEngine(app, spec), executor);
+            engines.put(spec, f);
+            f.whenComplete((engine, e) -> onEngineBuilt(spec, f));
+        }
+        Log.d(TAG, "🚚 預載: label=" + trainingLabel + ", yolo=" + (spec == null ? "-" : spec.name));
+    }
+
+    /**
+     * 拿走 IMAGE 模式的 FaceLandmarker：有預載就用預載的，沒有就現在於背景建
+     * 完成值可能是 null（建立失敗）
+     */
+    public static synchronized CompletableFuture<FaceLandmarker> takeLandmarker(Context context) {
+        expireStale();
+        CompletableFuture<FaceLandmarker> f = landmarker;
+        landmarker = null;
+        if (f != null) {
+            Log.d(TAG, "✅ 使用預載的 FaceLandmarker" + (f.isDone() ? "（已就緒）" : "（仍在建立）"));
+            return f;
+        }
+        final Context app = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> createImageLandmarker(app, false), executor);
+    }
+
+    /** 在背景依呼叫端的設定建 FaceLandmarker（LIVE_STREAM 用，不快取）；失敗完成值為 null */
+    public static CompletableFuture<FaceLandmarker> buildLandmarker(Context context,
+                                                                   FaceLandmarker.FaceLandmarkerOptions options) {
+        final Context app = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> {
+            long t0 = SystemClock.elapsedRealtime();
+            try {
+                FaceLandmarker lm = FaceLandmarker.createFromOptions(app, options);
+                Log.d(TAG, "✅ FaceLandmarker 建立完成，耗時 " + (SystemClock.elapsedRealtime() - t0) + " ms");
+                return lm;
+            } catch (Throwable e) {
+                Log.e(TAG, "❌ FaceLandmarker 建立失敗", e);
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * 拿走 spec 的 YoloEngine（已 prepare 並熱身）：有預載就用預載的，沒有就現在於背景建
+     * 完成值一定非 null；模型能不能用看 isInitialized(spec)
+     */
+    public static synchronized CompletableFuture<YoloEngine> takeYoloEngine(Context context, YoloModelSpec spec) {
+        expireStale();
+        CompletableFuture<YoloEngine> f = engines.remove(spec);
+        enginesAt.remove(spec);
+        if (f != null) {
+            Log.d(TAG, "✅ 使用預載的 YOLO: " + spec.name + (f.isDone() ? "（已就緒）" : "（仍在建立）"));
+            return f;
+        }
+        final Context app = context.getApplicationContext();
+        return CompletableFuture.supplyAsync(() -> createYoloEngine(app, spec), executor);
+    }
+
+    // ================= 建立 =================
+
+    private static FaceLandmarker createImageLandmarker(Context app, boolean warm) {
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            FaceLandmarker lm = FaceLandmarker.createFromOptions(app,
+                    FaceLandmarker.FaceLandmarkerOptions.builder()
+                            .setBaseOptions(BaseOptions.builder().setModelAssetPath(FACE_MODEL).build())
+                            .setNumFaces(1)
+                            .setRunningMode(RunningMode.IMAGE)
+                            .build());
+            long built = SystemClock.elapsedRealtime();
+            if (warm) warmUp(lm);
+            Log.d(TAG, "✅ FaceLandmarker 就緒: 建立 " + (built - t0) + " ms" +
+                    (warm ? "，熱身 " + (SystemClock.elapsedRealtime() - built) + " ms" : ""));
+            return lm;
+        } catch (Throwable e) {
+            Log.e(TAG, "❌ FaceLandmarker 建立失敗", e);
+            return null;
+        }
+    }
+
+    // 灰圖跑一次 detect：第一次推理才會真正配置 graph / delegate
+    private static void warmUp(FaceLandmarker lm) {
+        Bitmap gray = Bitmap.createBitmap(WARMUP_SIZE, WARMUP_SIZE, Bitmap.Config.ARGB_8888);
+        try {
+            gray.eraseColor(0xFF808080);
+            lm.detect(new BitmapImageBuilder(gray).build());
+        } catch (Throwable e) {
+            Log.w(TAG, "⚠️ FaceLandmarker 熱身失敗: " + e.getMessage());
+        } finally {
+            gray.recycle();
+        }
+    }
+
+    private static YoloEngine createYoloEngine(Context app, YoloModelSpec spec) {
+        long t0 = SystemClock.elapsedRealtime();
+        YoloEngine engine = new YoloEngine(app);
+        if (engine.prepare(spec)) {
+            engine.warmUp(spec);
+            Log.d(TAG, "✅ YOLO 就緒: " + spec.name + ", backend=" + engine.backendOf(spec) +
+                    "，耗時 " + (SystemClock.elapsedRealtime() - t0) + " ms");
+        } else {
+            Log.e(TAG, "❌ YOLO 載入失敗: " + spec);
+        }
+        return engine;
+    }
+
+    // ================= 逾時清理 =================
+
+    // 建好才開始計時（熱身可能就要好幾秒）；這時已經被拿走的就不管
+    private static synchronized void onLandmarkerBuilt(CompletableFuture<FaceLandmarker> f) {
+        if (landmarker != f) return;
+        landmarkerAt = SystemClock.elapsedRealtime();
+        scheduleExpiry();
+    }
+
+    private static synchronized void onEngineBuilt(YoloModelSpec spec, CompletableFuture<YoloEngine> f) {
+        if (engines.get(spec) != f) return;
+        enginesAt.put(spec, SystemClock.elapsedRealtime());
+        scheduleExpiry();
+    }
+
+    private static void scheduleExpiry() {
+        expirer.schedule(() -> {
+            synchronized (ModelPreloader.class) {
+                expireStale();
+            }
+        }, EXPIRE_MS + 1, TimeUnit.MILLISECONDS);
+    }
+
+    // 呼叫端持有 class 鎖
+    private static void expireStale() {
+        long now = SystemClock.elapsedRealtime();
+        if (landmarker != null && landmarkerAt > 0 && now - landmarkerAt > EXPIRE_MS) {
+            landmarker.thenAccept(ModelPreloader::closeQuietly);
+            landmarker = null;
+            Log.d(TAG, "🧹 預載的 FaceLandmarker 逾時未使用，已關閉");
+        }
+        for (YoloModelSpec spec : YoloModelSpec.all()) {
+            Long at = enginesAt.get(spec);
+            if (at == null || now - at <= EXPIRE_MS) continue;
+            CompletableFuture<YoloEngine> f = engines.remove(spec);
+            enginesAt.remove(spec);
+            if (f != null) f.thenAccept(e -> e.release());
+            Log.d(TAG, "🧹 預載的 YOLO 逾時未使用，已釋放: " + spec.name);
+        }
+    }
+
+    private static void closeQuietly(FaceLandmarker lm) {
+        if (lm == null) return;
+        try {
+            lm.close();
+        } catch (Throwable ignore) { }
+    }
+
+    private static boolean isLiveStream(Context app) {
+        return app.getSharedPreferences("app_settings", Context.MODE_PRIVATE)
+                .getBoolean("landmarker_live_stream", false);
+    }
+}
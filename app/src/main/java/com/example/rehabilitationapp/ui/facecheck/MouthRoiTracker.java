@@ -0,0 +1,140 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+/**
+ * MouthRoiTracker
+ * - 由 MediaPipe 嘴部關鍵點算舌頭 YOLO 的 ROI（對齊 Python：嘴中心 + 正方形 + EMA）
+ * - 原本兩個偵測器各有一份 static EMA 中心，換成每個畫面持有一個實例，不會把上一次訓練的中心帶進來
+ */
+public class MouthRoiTracker {
+
+    private static final String TAG = "MouthRoiTracker";
+
+    // === ROI 對齊 Python 的參數 === 用來對應新版TONGUE模型的ROI
+    private static final float ROI_EMA_ALPHA  = 0.6f;  // 跟 Python 一樣的 EMA 強度
+    private static final float ROI_SIDE_SCALE = 1.6f;  // 正方形邊長 = 嘴角距離 * 1.6
+    private static final float ROI_MARGIN     = 0.12f; // 再外擴 12%
+    private static final int   ROI_SIDE_MIN_PX= 96;    // 最小邊長，避免太小
+
+    // === ROI 的 EMA 狀態（跨呼叫記住中心）===
+    private Float emaCx = null;
+    private Float emaCy = null;
+
+    /** 清掉 EMA 中心（換人 / 重新開始時） */
+    public void reset() {
+        emaCx = null;
+        emaCy = null;
+    }
+
+    /**
+     * 📐 根據 MediaPipe landmarks 計算嘴部 ROI
+     *
+     * @param landmarks 468 個點，每點為 {x_px, y_px}（像素座標！）
+     * @param imageWidth  影像寬
+     * @param imageHeight 影像高
+     * @return Rect(left, top, right, bottom) 皆為整張影像座標
+     */
+    public Rect calculateMouthROI(float[][] landmarks, int imageWidth, int imageHeight) {
+        try {
+            // 檢查點數是否足夠（需要 291、13、14 等）
+            if (landmarks == null || landmarks.length <= 291
+                    || landmarks[61] == null || landmarks[291] == null
+                    || landmarks[13] == null || landmarks[14] == null) {
+                // 回傳預設 ROI（中央 1/4）
+                return defaultRoi(imageWidth, imageHeight);
+            }
+
+            // 1) 取嘴角與上下唇（像素座標；與 Python 一致）
+            return mouthROIFromPoints(
+                    landmarks[61][0], landmarks[61][1],     // 左嘴角
+                    landmarks[291][0], landmarks[291][1],   // 右嘴角
+                    landmarks[13][0], landmarks[13][1],     // 上唇
+                    landmarks[14][0], landmarks[14][1],     // 下唇
+                    imageWidth, imageHeight);
+
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 計算嘴部 ROI 失敗: " + e.getMessage());
+            return defaultRoi(imageWidth, imageHeight);
+        }
+    }
+
+    /**
+     * 📐 同上，直接吃 LandmarkFrame 的 Overlay 視圖（不需先展開成 float[][]）
+     */
+    public Rect calculateMouthROI(LandmarkFrame lm, int imageWidth, int imageHeight) {
+        if (lm == null || lm.size() <= 291) {
+            return defaultRoi(imageWidth, imageHeight);
+        }
+        return mouthROIFromPoints(
+                lm.viewX(61), lm.viewY(61),
+                lm.viewX(291), lm.viewY(291),
+                lm.viewX(13), lm.viewY(13),
+                lm.viewX(14), lm.viewY(14),
+                imageWidth, imageHeight);
+    }
+
+    // 嘴角(l/r)、上下唇(u/d) 像素座標 → 正方形 ROI（含 EMA 中心）
+    private Rect mouthROIFromPoints(float lx, float ly, float rx, float ry,
+                                    float ux, float uy, float dx, float dy,
+                                    int imageWidth, int imageHeight) {
+        try {
+            // 2) 嘴中心（上下唇中點）與嘴角距離（像 Python 的 mouth_center_and_scale）
+            float cx = 0.5f * (ux + dx);
+            float cy = 0.5f * (uy + dy);
+            float mouthW = (float) Math.hypot(rx - lx, ry - ly);
+
+            // 3) EMA 平滑中心（跨呼叫維持）
+            if (emaCx == null || emaCy == null) {
+                emaCx = cx;
+                emaCy = cy;
+            } else {
+                emaCx = ROI_EMA_ALPHA * cx + (1f - ROI_EMA_ALPHA) * emaCx;
+                emaCy = ROI_EMA_ALPHA * cy + (1f - ROI_EMA_ALPHA) * emaCy;
+            }
+
+            // 4) 正方形邊長 = 嘴角距離 * 1.6，再外擴 12%
+            int side = Math.max(ROI_SIDE_MIN_PX, Math.round(mouthW * ROI_SIDE_SCALE));
+            side = Math.round(side * (1f + ROI_MARGIN));
+
+            // 5) 以 EMA 中心生成正方形，並夾回影像邊界
+            int half  = side / 2;
+            int left  = Math.round(emaCx) - half;
+            int top   = Math.round(emaCy) - half;
+            int right = left + side;
+            int bottom= top  + side;
+
+            // 邊界處理：保持正方形盡量完整
+            if (left < 0) { right -= left; left = 0; }
+            if (top  < 0) { bottom -= top; top = 0; }
+            if (right > imageWidth) {
+                int diff = right - imageWidth;
+                right = imageWidth; left = Math.max(0, left - diff);
+            }
+            if (bottom > imageHeight) {
+                int diff = bottom - imageHeight;
+                bottom = imageHeight; top = Math.max(0, top - diff);
+            }
+
+            // 萬一出界導致無效，給預設
+            if (right <= left || bottom <= top) {
+                return defaultRoi(imageWidth, imageHeight);
+            }
+
+            Rect roi = new Rect(left, top, right, bottom);
+            Log.d(TAG, "📐 PY 等價 ROI: " + roi.toShortString());
+            return roi;
+
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 計算嘴部 ROI 失敗: " + e.getMessage());
+            return defaultRoi(imageWidth, imageHeight);
+        }
+    }
+
+    // 預設 ROI：影像中央 1/4
+    private static Rect defaultRoi(int imageWidth, int imageHeight) {
+        return new Rect(imageWidth / 4, imageHeight / 4,
+                imageWidth * 3 / 4, imageHeight * 3 / 4);
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.util.Locale;
+
+/**
+ * QualityGovernor
+ * - 依溫度狀態 / 溫度餘裕預測 / 電量決定臉部分析的畫質檔位（Tier），長時間訓練在熱機上維持穩定幀率，
+ *   而不是等系統降頻後忽快忽慢
+ * - 每個檔位定好：分析解析度（YUV 取樣間隔）、MediaPipe 輸入寬、YOLO 節奏、臉頰光流 targetWidth / flowEvery
+ *   （臉頰光流目前沒接進訓練畫面，後兩項要等 CheekFlowEngine 接回 recordCheeks 才有作用）
+ * - 遲滯：變差立刻降檔；變好要連續 RECOVER_MS 都比目前好才升一檔（一次一檔），避免在門檻附近來回跳
+ *
+ * 純 Java，不依賴 Android（溫度狀態數值同 PowerManager.THERMAL_STATUS_*）。
+ * 訂閱系統事件由 DeviceConditionMonitor 負責，餵進 on* 方法；方法都同步，listener 在鎖外回呼。
+ */
+public final class QualityGovernor {
+
+    // 同 PowerManager.THERMAL_STATUS_*
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+    public static final int THERMAL_EMERGENCY = 5;
+    public static final int THERMAL_SHUTDOWN = 6;
+
+    // 溫度餘裕（getThermalHeadroom，1.0 = 開始降頻）：還沒降頻前先退，避免真的被降頻
+    static final float HEADROOM_BALANCED = 0.80f;
+    static final float HEADROOM_ECO = 0.95f;
+    // 沒在充電時的電量門檻（%）
+    static final int BATTERY_BALANCED = 30;
+    static final int BATTERY_ECO = 15;
+    static final int BATTERY_CRITICAL = 5;
+    // 升檔前需要連續「條件比目前好」的時間
+    static final long RECOVER_MS = 30_000;
+
+    /** 畫質檔位：由好到差 */
+    public enum Tier {
+        //        analysisStep, landmarkerWidth, yoloEvery, yoloMaxSkip, cheekTargetWidth, cheekFlowEvery
+        FULL(1, 0, 1, 6, 360, 2),
+        BALANCED(1, 360, 1, 10, 320, 2),
+        ECO(2, 0, 2, 15, 240, 3),
+        CRITICAL(2, 192, 3, 30, 160, 4);
+
+        /** YUV 轉換取樣間隔：1 = 相機原解析度，2 = 長寬各半 */
+        public final int analysisStep;
+        /** MediaPipe 輸入寬（像素，等比縮）；0 = 直接用分析幀 */
+        public final int landmarkerWidth;
+        /** 每 N 幀才考慮推理一次 YOLO（其餘幀沿用上一次的框） */
+        public final int yoloEvery;
+        /** 靜止時最多連續沿用幾幀（TongueInferenceScheduler） */
+        public final int yoloMaxSkip;
+        /** CheekFlowEngine 光流寬（訓練畫面有建 cheekEngine 才會套用；目前臉頰用曲率，沒有作用） */
+        public final int cheekTargetWidth;
+        /** CheekFlowEngine 每 N 幀算一次（同上） */
+        public final int cheekFlowEvery;
+
+        Tier(int analysisStep, int landmarkerWidth, int yoloEvery, int yoloMaxSkip,
+             int cheekTargetWidth, int cheekFlowEvery) {
+            this.analysisStep = analysisStep;
+            this.landmarkerWidth = landmarkerWidth;
+            this.yoloEvery = yoloEvery;
+            this.yoloMaxSkip = yoloMaxSkip;
+            this.cheekTargetWidth = cheekTargetWidth;
+            this.cheekFlowEvery = cheekFlowEvery;
+        }
+
+        Tier better() {
+            return this == FULL ? FULL : values()[ordinal() - 1];
+        }
+    }
+
+    /** 檔位變動通知（不在鎖內呼叫；執行緒 = 餵事件的那條） */
+    public interface Listener {
+        void onTierChanged(Tier from, Tier to, String reason);
+    }
+
+    private Tier tier = Tier.FULL;
+    private Listener listener;
+
+    // 最新的裝置狀況
+    private int thermalStatus = THERMAL_NONE;
+    private float headroom = Float.NaN;      // NaN = 裝置不支援
+    private int batteryPct = 100;
+    private boolean charging = true;
+    private boolean powerSave = false;
+
+    // 條件開始比目前檔位好的時間（-1 = 沒有）
+    private long betterSince = -1;
+    private long changeCount = 0;
+
+    public synchronized void setListener(Listener l) {
+        this.listener = l;
+    }
+
+    public synchronized Tier tier() {
+        return tier;
+    }
+
+    public synchronized int thermalStatus() {
+        return thermalStatus;
+    }
+
+    public synchronized long changeCount() {
+        return changeCount;
+    }
+
+    // ================= 事件輸入（now = 單調時鐘毫秒） =================
+
+    public void onThermalStatus(int status, long now) {
+        synchronized (this) {
+            thermalStatus = status;
+        }
+        evaluate(now);
+    }
+
+    public void onHeadroom(float forecast, long now) {
+        synchronized (this) {
+            headroom = forecast;
+        }
+        evaluate(now);
+    }
+
+    public void onBattery(int percent, boolean isCharging, long now) {
+        synchronized (this) {
+            batteryPct = percent;
+            charging = isCharging;
+        }
+        evaluate(now);
+    }
+
+    public void onPowerSave(boolean enabled, long now) {
+        synchronized (this) {
+            powerSave = enabled;
+        }
+        evaluate(now);
+    }
+
+    /** 定期呼叫：條件沒變時也要靠它判斷「已經好轉夠久，可以升檔」 */
+    public void tick(long now) {
+        evaluate(now);
+    }
+
+    /** 換一次訓練時回到 FULL 重新判斷（裝置狀況保留） */
+    public void reset(long now) {
+        synchronized (this) {
+            tier = Tier.FULL;
+            betterSince = -1;
+        }
+        evaluate(now);
+    }
+
+    // ================= 判斷 =================
+
+    private void evaluate(long now) {
+        Tier from, to;
+        String reason;
+        Listener l;
+        synchronized (this) {
+            Tier target = target(thermalStatus, headroom, batteryPct, charging, powerSave);
+            from = tier;
+            if (target.ordinal() > tier.ordinal()) {
+                tier = target;                       // 變差：立刻降到位
+                betterSince = -1;
+            } else if (target.ordinal() < tier.ordinal()) {
+                if (betterSince < 0) betterSince = now;
+                if (now - betterSince >= RECOVER_MS) {
+                    tier = tier.better();            // 變好：一次只升一檔，下一檔再等一輪
+                    betterSince = tier == target ? -1 : now;
+                }
+            } else {
+                betterSince = -1;
+            }
+            if (tier == from) return;
+            to = tier;
+            changeCount++;
+            reason = describeLocked();
+            l = listener;
+        }
+        if (l != null) l.onTierChanged(from, to, reason);
+    }
+
+    /** 只看目前狀況該在哪一檔（不含遲滯）；各條件取最差的 */
+    static Tier target(int thermal, float headroom, int batteryPct, boolean charging, boolean powerSave) {
+        Tier t = Tier.FULL;
+        if (thermal >= THERMAL_CRITICAL) t = worst(t, Tier.CRITICAL);
+        else if (thermal == THERMAL_SEVERE) t = worst(t, Tier.ECO);
+        else if (thermal == THERMAL_MODERATE) t = worst(t, Tier.BALANCED);
+
+        if (!Float.isNaN(headroom)) {
+            if (headroom >= HEADROOM_ECO) t = worst(t, Tier.ECO);
+            else if (headroom >= HEADROOM_BALANCED) t = worst(t, Tier.BALANCED);
+        }
+
+        if (!charging) {
+            if (batteryPct <= BATTERY_CRITICAL) t = worst(t, Tier.CRITICAL);
+            else if (batteryPct <= BATTERY_ECO) t = worst(t, Tier.ECO);
+            else if (batteryPct <= BATTERY_BALANCED) t = worst(t, Tier.BALANCED);
+        }
+        if (powerSave) t = worst(t, Tier.BALANCED);
+        return t;
+    }
+
+    private static Tier worst(Tier a, Tier b) {
+        return a.ordinal() >= b.ordinal() ? a : b;
+    }
+
+    private String describeLocked() {
+        return String.format(Locale.US, "thermal=%s headroom=%s battery=%d%%%s%s",
+                thermalName(thermalStatus),
+                Float.isNaN(headroom) ? "N/A" : String.format(Locale.US, "%.2f", headroom),
+                batteryPct, charging ? " charging" : "", powerSave ? " powersave" : "");
+    }
+
+    /** PowerManager.THERMAL_STATUS_* → 名稱（METRICS log / metadata 用） */
+    public static String thermalName(int status) {
+        switch (status) {
+            case THERMAL_NONE:      return "NONE";
+            case THERMAL_LIGHT:     return "LIGHT";
+            case THERMAL_MODERATE:  return "MODERATE";
+            case THERMAL_SEVERE:    return "SEVERE";
+            case THERMAL_CRITICAL:  return "CRITICAL";
+            case THERMAL_EMERGENCY: return "EMERGENCY";
+            case THERMAL_SHUTDOWN:  return "SHUTDOWN";
+            default:                return String.valueOf(status);
+        }
+    }
+}
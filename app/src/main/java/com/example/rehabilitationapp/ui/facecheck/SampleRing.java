@@ -0,0 +1,210 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SampleRing
+ * - FaceDataRecorder 的多生產者 / 單消費者環形緩衝：分析執行緒（嘴唇 / 臉頰）、YOLO 執行緒（舌頭）各自寫列，不再搶 table 鎖
+ * - 生產端：每條執行緒一個重用的 Row，先填好一整列；offer 時 CAS 搶一格、複製進去、設序號發佈（無鎖、不配置）
+ * - 消費端：同一時間只有一個（呼叫端持 table 鎖），依搶格順序取出「連續」已發佈的列，
+ *   批內依時間穩定排序，並保證寫進 SessionTable 的時間單調不減（跨批的少數倒退夾到上一列的時間）
+ * - clear() 換代：上一代還沒寫進 table 的列直接丟掉（startTime 會重設，新舊時間不能混）
+ *
+ * 純 Java，不依賴 Android。搶格 / 發佈同 Vyukov bounded MPMC queue（消費端只有一個）。
+ */
+public final class SampleRing {
+
+    /** 生產端的一列暫存（每條執行緒一個，重用；欄位寫法同 SessionTable.put / putLong） */
+    public final class Row {
+        final float[] f = new float[floatWidth];
+        final long[] l = new long[longWidth];
+        int fc, lc;
+        long elapsedMs;
+        String state;
+        int epoch;
+
+        public Row begin(long elapsedMs, String state) {
+            this.elapsedMs = elapsedMs;
+            this.state = state;
+            return this;
+        }
+
+        public Row put(float v) {
+            f[fc++] = v;
+            return this;
+        }
+
+        public Row putLong(long v) {
+            l[lc++] = v;
+            return this;
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final int floatWidth;
+    private final int longWidth;
+
+    // 每格的發佈序號：== pos 可搶、== pos + 1 已發佈、== pos + capacity 已還給下一輪
+    private final AtomicLongArray seq;
+    private final AtomicLong tail = new AtomicLong();
+    private final long[] times;
+    private final String[] states;
+    private final int[] epochs;
+    private final float[] floats;
+    private final long[] longs;
+
+    private final ThreadLocal<Row> rows = ThreadLocal.withInitial(() -> new Row());
+    private volatile int epoch = 0;
+
+    // ↓ 只在消費端存取
+    private long head = 0;
+    private long lastElapsed = Long.MIN_VALUE;
+    private final int[] order;
+    private long dropped = 0;
+    private long clamped = 0;
+
+    /** capacity 會取到 2 的次方 */
+    public SampleRing(SessionTable.Schema schema, int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.capacity = cap;
+        this.mask = cap - 1;
+        this.floatWidth = schema.floatWidth;
+        this.longWidth = schema.longWidth;
+        this.seq = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) seq.set(i, i);
+        this.times = new long[cap];
+        this.states = new String[cap];
+        this.epochs = new int[cap];
+        this.floats = new float[cap * floatWidth];
+        this.longs = new long[cap * longWidth];
+        this.order = new int[cap];
+    }
+
+    public int capacity() { return capacity; }
+
+    // ================= 生產端（任意執行緒） =================
+
+    /**
+     * 取本執行緒的 Row 並記下目前世代；時間要在這之後才取：
+     * ring.row().begin(elapsedMs(), state) —— 先 row() 再算引數，clear() 前後的列不會配錯世代
+     */
+    public Row row() {
+        Row r = rows.get();
+        r.epoch = epoch;
+        r.fc = 0;
+        r.lc = 0;
+        r.state = null;
+        return r;
+    }
+
+    /**
+     * 發佈一列；緩衝滿了回 false（不等待，由呼叫端決定要不要先 drain）
+     * 欄數對不上丟 IllegalStateException（同 SessionTable.endRow）
+     */
+    public boolean offer(Row r) {
+        if (r.fc != floatWidth || r.lc != longWidth) {
+            throw new IllegalStateException("欄位數不符: float " + r.fc + "/" + floatWidth
+                    + ", long " + r.lc + "/" + longWidth);
+        }
+        long pos = tail.get();
+        int idx;
+        while (true) {
+            idx = (int) (pos & mask);
+            long dif = seq.get(idx) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;   // 消費端還沒還這格：滿了
+            } else {
+                pos = tail.get();   // 被別人搶走，重讀
+            }
+        }
+        times[idx] = r.elapsedMs;
+        states[idx] = r.state;
+        epochs[idx] = r.epoch;
+        if (floatWidth > 0) System.arraycopy(r.f, 0, floats, idx * floatWidth, floatWidth);
+        if (longWidth > 0) System.arraycopy(r.l, 0, longs, idx * longWidth, longWidth);
+        seq.set(idx, pos + 1);   // volatile 寫：上面的資料對消費端可見
+        return true;
+    }
+
+    // ================= 消費端（同一時間只有一個；FaceDataRecorder 持 table 鎖呼叫） =================
+
+    /**
+     * 把已發佈的列依時間順序寫進 table，回傳寫入列數
+     * 碰到還沒發佈完的格子（生產端複製到一半）就停，之後的列留到下一次
+     */
+    public int drainTo(SessionTable table) {
+        int n = 0;
+        while (n < capacity) {
+            long pos = head + n;
+            int idx = (int) (pos & mask);
+            if (seq.get(idx) != pos + 1) break;
+            order[n++] = idx;
+        }
+        if (n == 0) return 0;
+
+        // 批內依時間穩定排序（各生產端本身有序，整批幾乎有序，插入排序接近 O(n)）
+        for (int i = 1; i < n; i++) {
+            int x = order[i];
+            long tx = times[x];
+            int j = i - 1;
+            while (j >= 0 && times[order[j]] > tx) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = x;
+        }
+
+        int cur = epoch;
+        int appended = 0;
+        for (int i = 0; i < n; i++) {
+            int s = order[i];
+            if (epochs[s] != cur) {
+                dropped++;
+                continue;
+            }
+            long t = times[s];
+            if (t < lastElapsed) {
+                t = lastElapsed;
+                clamped++;
+            }
+            lastElapsed = t;
+            table.beginRow(t, states[s]);
+            for (int k = 0, base = s * floatWidth; k < floatWidth; k++) table.put(floats[base + k]);
+            for (int k = 0, base = s * longWidth; k < longWidth; k++) table.putLong(longs[base + k]);
+            table.endRow();
+            appended++;
+        }
+
+        // 全部寫完才依搶格順序還格子
+        for (int i = 0; i < n; i++) {
+            long pos = head + i;
+            int idx = (int) (pos & mask);
+            states[idx] = null;
+            seq.set(idx, pos + capacity);
+        }
+        head += n;
+        return appended;
+    }
+
+    /** 換代：之後 drain 到的舊世代列全部丟掉，時間單調從頭算（消費端呼叫） */
+    public void clear() {
+        epoch++;
+        lastElapsed = Long.MIN_VALUE;
+    }
+
+    /** 已搶格但還沒寫進 table 的列數（概略值） */
+    public long pending() {
+        return tail.get() - head;
+    }
+
+    /** clear() 後被丟掉的舊世代列數 */
+    public long droppedCount() { return dropped; }
+
+    /** 時間倒退被夾平的列數 */
+    public long clampedCount() { return clamped; }
+}
@@ -0,0 +1,218 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SessionCsvStreamer
+ * - 訓練中由專屬 I/O 執行緒把 SessionTable 的新列陸續寫進 CSV（邊錄邊寫），不再等結束才一次寫完
+ * - 每 FLUSH_INTERVAL_MS 醒來一次：先呼叫 pump 把錄製端暫存的列倒進 table，再持 table 鎖只格式化「一列」，批次滿了或列寫完才經固定大小的 ByteBuffer 寫入 FileChannel
+ * - 每 FSYNC_INTERVAL_MS 做一次 force()（checkpoint）：中途閃退也留下可用的部分檔案
+ * - 第一列出現才建檔（沒開始錄就離開不會留下空檔）
+ * - finish()：寫完剩下的列 + fsync + 關檔，訓練結束只剩收尾
+ */
+public class SessionCsvStreamer {
+
+    private static final String TAG = "SessionCsvStreamer";
+
+    private static final long FLUSH_INTERVAL_MS = 500;
+    private static final long FSYNC_INTERVAL_MS = 5000;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // 一批最多格式化這麼多字元就先寫出去（UTF-8 後不會超過 BUFFER_BYTES 太多，超過也會分段寫）
+    private static final int BATCH_CHARS = BUFFER_BYTES / 2;
+
+    private final File file;
+    private final SessionTable table;
+    private final Runnable pump;   // 每輪寫出前呼叫（例 FaceDataRecorder 把 SampleRing 倒進 table）；可為 null
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile boolean discard = false;
+    // table.clear() 後設為 true（在 table 鎖內），I/O 執行緒把檔案截回只剩 header
+    private volatile boolean resetRequested = false;
+    private volatile IOException failure = null;
+
+    // ↓ 只在 I/O 執行緒存取
+    private int written = 0;
+    private FileChannel channel;
+    private boolean dirty = false;
+    private long lastFsyncMs = 0;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder batch = new StringBuilder(BATCH_CHARS + 2048);
+
+    public SessionCsvStreamer(File file, SessionTable table, Runnable pump) {
+        this.file = file;
+        this.table = table;
+        this.pump = pump;
+        this.thread = new Thread(this::loop, "csv-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public File getFile() { return file; }
+
+    /** 呼叫端已持有 table 鎖、剛 clear() 完：之後從第 0 列重寫 */
+    public void requestRestart() {
+        resetRequested = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * 訓練結束：寫完剩下的列、fsync、關檔。
+     * @return true 表示檔案已完整（與 table 內容一致）；false 時呼叫端應改用整份重寫
+     */
+    public boolean finish(long timeoutMs) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            Log.w(TAG, "⚠️ CSV 寫入執行緒 " + timeoutMs + "ms 內沒結束");
+            return false;
+        }
+        if (failure != null || discard) return false;
+        synchronized (table) {
+            // 一列都沒有時檔案根本沒建，交給呼叫端寫只有 header 的檔
+            return !resetRequested && channel != null && written == table.size();
+        }
+    }
+
+    /** 沒存檔就離開：停掉執行緒並刪除部分檔案 */
+    public void discard() {
+        discard = true;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    // ================= I/O 執行緒 =================
+
+    private void loop() {
+        while (true) {
+            boolean last = !running;
+            if (discard) break;
+            try {
+                if (resetRequested) restart();
+                drain();
+                long now = SystemClock.uptimeMillis();
+                if (dirty && (last || now - lastFsyncMs >= FSYNC_INTERVAL_MS)) {
+                    channel.force(false);
+                    dirty = false;
+                    lastFsyncMs = now;
+                }
+            } catch (IOException e) {
+                failure = e;
+                Log.e(TAG, "❌ CSV 串流寫入失敗，結束時改整份重寫", e);
+                break;
+            }
+            if (last) break;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+        }
+        closeChannel();
+        if (discard && file.exists() && file.delete()) {
+            Log.d(TAG, "🗑️ 已刪除未完成的 CSV: " + file.getName());
+        }
+    }
+
+    // 把 written 之後的列寫出去；每列單獨持鎖，錄製端最多等一列的格式化
+    private void drain() throws IOException {
+        if (pump != null) pump.run();
+        while (true) {
+            batch.setLength(0);
+            int n = 0;
+            while (batch.length() < BATCH_CHARS) {
+                synchronized (table) {
+                    if (resetRequested || written >= table.size()) break;
+                    table.appendRow(batch, written);
+                }
+                batch.append('\n');
+                written++;
+                n++;
+            }
+            if (n == 0) return;
+            ensureOpen();
+            writeChars(batch);
+        }
+    }
+
+    private void restart() throws IOException {
+        synchronized (table) {
+            resetRequested = false;
+            written = 0;
+        }
+        if (channel != null) {
+            channel.truncate(0);
+            channel.position(0);
+            writeChars(table.getHeader() + "\n");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) return;
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("無法建立資料夾: " + dir);
+        }
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeChars(table.getHeader() + "\n");
+        lastFsyncMs = SystemClock.uptimeMillis();
+        Log.d(TAG, "📝 開始串流寫入: " + file.getAbsolutePath());
+    }
+
+    // UTF-8 編碼進固定 ByteBuffer，滿了就寫進 channel
+    private void writeChars(CharSequence chars) throws IOException {
+        CharBuffer in = CharBuffer.wrap(chars);
+        encoder.reset();
+        while (true) {
+            CoderResult r = encoder.encode(in, out, true);
+            if (r.isError()) r.throwException();
+            flushOut();
+            if (r.isUnderflow()) break;
+        }
+        encoder.flush(out);
+        flushOut();
+        dirty = true;
+    }
+
+    private void flushOut() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            if (dirty) channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "關閉 CSV 失敗", e);
+        }
+        if (!discard) Log.d(TAG, "✅ CSV 串流結束: " + written + " 列");
+    }
+}
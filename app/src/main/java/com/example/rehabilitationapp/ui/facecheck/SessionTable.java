@@ -0,0 +1,306 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SessionTable
+ * - 一次訓練的逐幀紀錄，改存原生陣列：每列固定寬度（float 區 + long 區），分塊配置、整段訓練重用
+ * - 取代 List<String> dataLines：錄製時只寫數字，不做 String.format、不裝箱
+ * - 每列 = 相對時間(ms) + state 代碼 + Schema 定義的欄位
+ * - 需要人看得懂的 CSV（存檔 / 上傳 JSON）時才依 Schema 格式化（與舊版 String.format 輸出逐字相同）
+ *
+ * 純 Java，不依賴 Android。非執行緒安全：多執行緒寫入時由呼叫端同步。
+ */
+public class SessionTable {
+
+    /** 每塊列數；第一塊建構時就配好，之後每滿一塊再配一塊（不搬移舊資料） */
+    private static final int CHUNK_ROWS = 256;
+
+    /** 欄位型別 */
+    public enum Kind {
+        FIXED,  // float，%.Nf
+        INT,    // float 存整數（< 2^24 無誤差），%d
+        CHAR,   // float 存字元碼（例 'T' / 'F'），%c
+        LONG    // long 區，%d（例 毫秒時間戳）
+    }
+
+    /**
+     * 欄位定義。第 0、1 欄固定為 time_seconds(%.3f)、state，不列在這裡。
+     * header 字串照舊版原樣給（有些動作的 header 與欄數本來就不一致，保持相容）。
+     */
+    public static final class Schema {
+        final String header;
+        final Locale locale;
+        final Kind[] kinds;
+        final String[] formats;
+        final int floatWidth;
+        final int longWidth;
+
+        private Schema(String header, Locale locale, List<Kind> kinds, List<String> formats) {
+            this.header = header;
+            this.locale = locale;
+            this.kinds = kinds.toArray(new Kind[0]);
+            this.formats = formats.toArray(new String[0]);
+            int f = 0, l = 0;
+            for (Kind k : this.kinds) {
+                if (k == Kind.LONG) l++; else f++;
+            }
+            this.floatWidth = f;
+            this.longWidth = l;
+        }
+
+        public String getHeader() { return header; }
+        public int columnCount()  { return kinds.length; }
+
+        public static final class Builder {
+            private final String header;
+            private final Locale locale;
+            private final List<Kind> kinds = new ArrayList<>();
+            private final List<String> formats = new ArrayList<>();
+
+            public Builder(String header, Locale locale) {
+                this.header = header;
+                this.locale = locale;
+            }
+
+            /** float 欄位，小數 decimals 位 */
+            public Builder fixed(int decimals) {
+                return add(Kind.FIXED, ",%." + decimals + "f");
+            }
+
+            /** 連續 n 個相同小數位的 float 欄位（例 40 點 × xyz） */
+            public Builder fixed(int decimals, int n) {
+                for (int i = 0; i < n; i++) fixed(decimals);
+                return this;
+            }
+
+            public Builder integer() { return add(Kind.INT, ",%d"); }
+            public Builder character() { return add(Kind.CHAR, ",%c"); }
+            public Builder longValue() { return add(Kind.LONG, ",%d"); }
+
+            private Builder add(Kind k, String fmt) {
+                kinds.add(k);
+                formats.add(fmt);
+                return this;
+            }
+
+            public Schema build() {
+                return new Schema(header, locale, kinds, formats);
+            }
+        }
+    }
+
+    private final Schema schema;
+
+    // 分塊儲存（row-major）
+    private final List<long[]>  timeChunks  = new ArrayList<>();
+    private final List<short[]> stateChunks = new ArrayList<>();
+    private final List<float[]> floatChunks = new ArrayList<>();
+    private final List<long[]>  longChunks  = new ArrayList<>();
+    private int rows = 0;
+
+    // state 字串只存一次，列裡放代碼
+    private final List<String> stateNames = new ArrayList<>();
+
+    // 目前正在寫的列
+    private boolean writing = false;
+    private int floatCursor, longCursor;
+
+    public SessionTable(Schema schema) {
+        this.schema = schema;
+        addChunk();
+    }
+
+    public Schema getSchema() { return schema; }
+    public String getHeader() { return schema.header; }
+    public int size()         { return rows; }
+
+    // ================= 寫入（不配置，除非剛好跨到新的一塊） =================
+
+    /** 開始一列：elapsedMs = 距離開始時間的毫秒數 */
+    public void beginRow(long elapsedMs, String state) {
+        if (writing) throw new IllegalStateException("上一列還沒 endRow()");
+        if (rows == timeChunks.size() * CHUNK_ROWS) addChunk();
+        int c = rows / CHUNK_ROWS, r = rows % CHUNK_ROWS;
+        timeChunks.get(c)[r] = elapsedMs;
+        stateChunks.get(c)[r] = stateCode(state);
+        floatCursor = 0;
+        longCursor = 0;
+        writing = true;
+    }
+
+    /** 依欄位順序寫下一個 FIXED / INT / CHAR 欄 */
+    public SessionTable put(float v) {
+        int c = rows / CHUNK_ROWS, r = rows % CHUNK_ROWS;
+        floatChunks.get(c)[r * schema.floatWidth + floatCursor++] = v;
+        return this;
+    }
+
+    /** 依欄位順序寫下一個 LONG 欄 */
+    public SessionTable putLong(long v) {
+        int c = rows / CHUNK_ROWS, r = rows % CHUNK_ROWS;
+        longChunks.get(c)[r * schema.longWidth + longCursor++] = v;
+        return this;
+    }
+
+    /** 欄數對得上才算一列 */
+    public void endRow() {
+        if (!writing) return;
+        writing = false;
+        if (floatCursor != schema.floatWidth || longCursor != schema.longWidth) {
+            throw new IllegalStateException("欄位數不符: float " + floatCursor + "/" + schema.floatWidth
+                    + ", long " + longCursor + "/" + schema.longWidth);
+        }
+        rows++;
+    }
+
+    /** 寫到一半出錯時丟掉這一列 */
+    public void abortRow() {
+        writing = false;
+    }
+
+    /** 清空資料但保留第一塊記憶體 */
+    public void clear() {
+        rows = 0;
+        writing = false;
+        while (timeChunks.size() > 1) {
+            int last = timeChunks.size() - 1;
+            timeChunks.remove(last);
+            stateChunks.remove(last);
+            floatChunks.remove(last);
+            longChunks.remove(last);
+        }
+    }
+
+    // ================= 讀取 / 匯出 =================
+
+    public long elapsedMs(int row) {
+        return timeChunks.get(row / CHUNK_ROWS)[row % CHUNK_ROWS];
+    }
+
+    public String state(int row) {
+        return stateNames.get(stateChunks.get(row / CHUNK_ROWS)[row % CHUNK_ROWS]);
+    }
+
+    /** 把第 row 列照 CSV 格式接到 sb 後面（不含換行） */
+    public void appendRow(StringBuilder sb, int row) {
+        Formatter f = new Formatter(sb, schema.locale);
+        appendRow(f, row);
+    }
+
+    /** 整份 CSV（header + 每列，各以 \n 結尾） */
+    public void writeCsv(Appendable out) throws IOException {
+        StringBuilder sb = new StringBuilder(1024);
+        Formatter f = new Formatter(sb, schema.locale);
+        out.append(schema.header).append('\n');
+        for (int i = 0; i < rows; i++) {
+            sb.setLength(0);
+            appendRow(f, i);
+            sb.append('\n');
+            out.append(sb);
+        }
+    }
+
+    /** 依 header 名稱找欄位位置（與舊版 header.split(",") 的索引一致），找不到回 -1 */
+    public int headerIndex(String name) {
+        String[] cols = schema.header.split(",");
+        for (int i = 0; i < cols.length; i++) {
+            if (name.equals(cols[i].trim())) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 取第 csvIndex 欄（0=time_seconds、1=state、2 起為 Schema 欄）「印在 CSV 上的值」，
+     * 與舊版讀回 CSV 字串再 parseDouble 的結果相同（解析不了的給 NaN）；非數值欄或超出範圍回空陣列。
+     */
+    public double[] printedColumn(int csvIndex) {
+        if (csvIndex == 1 || csvIndex < 0 || csvIndex >= schema.kinds.length + 2) return new double[0];
+        double[] out = new double[rows];
+        if (csvIndex == 0) {
+            for (int i = 0; i < rows; i++) out[i] = parsePrinted("%.3f", elapsedMs(i) / 1000.0);
+            return out;
+        }
+        int col = csvIndex - 2;
+        Kind k = schema.kinds[col];
+        if (k == Kind.CHAR) return new double[0];
+        int slot = slotOf(col);
+        for (int i = 0; i < rows; i++) {
+            int c = i / CHUNK_ROWS, r = i % CHUNK_ROWS;
+            if (k == Kind.LONG) {
+                out[i] = longChunks.get(c)[r * schema.longWidth + slot];
+            } else {
+                float v = floatChunks.get(c)[r * schema.floatWidth + slot];
+                out[i] = (k == Kind.INT) ? (int) v : parsePrinted(schema.formats[col].substring(1), v);
+            }
+        }
+        return out;
+    }
+
+    // ================= 內部 =================
+
+    private void appendRow(Formatter f, int row) {
+        int c = row / CHUNK_ROWS, r = row % CHUNK_ROWS;
+        float[] fl = floatChunks.get(c);
+        long[] lg = longChunks.get(c);
+        int fBase = r * schema.floatWidth, lBase = r * schema.longWidth;
+        int fi = 0, li = 0;
+
+        f.format("%.3f,%s", timeChunks.get(c)[r] / 1000.0, stateNames.get(stateChunks.get(c)[r]));
+        for (int col = 0; col < schema.kinds.length; col++) {
+            switch (schema.kinds[col]) {
+                case LONG:
+                    f.format(schema.formats[col], lg[lBase + li++]);
+                    break;
+                case INT:
+                    f.format(schema.formats[col], (int) fl[fBase + fi++]);
+                    break;
+                case CHAR:
+                    f.format(schema.formats[col], (char) fl[fBase + fi++]);
+                    break;
+                default:
+                    f.format(schema.formats[col], fl[fBase + fi++]);
+                    break;
+            }
+        }
+    }
+
+    // 第 col 個 Schema 欄在 float 區或 long 區的位置
+    private int slotOf(int col) {
+        boolean isLong = schema.kinds[col] == Kind.LONG;
+        int slot = 0;
+        for (int i = 0; i < col; i++) {
+            if ((schema.kinds[i] == Kind.LONG) == isLong) slot++;
+        }
+        return slot;
+    }
+
+    private double parsePrinted(String fmt, Object v) {
+        try {
+            return Double.parseDouble(String.format(schema.locale, fmt, v));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private short stateCode(String state) {
+        String s = state == null ? "null" : state;
+        int idx = stateNames.indexOf(s);
+        if (idx < 0) {
+            stateNames.add(s);
+            idx = stateNames.size() - 1;
+        }
+        return (short) idx;
+    }
+
+    private void addChunk() {
+        timeChunks.add(new long[CHUNK_ROWS]);
+        stateChunks.add(new short[CHUNK_ROWS]);
+        floatChunks.add(new float[CHUNK_ROWS * schema.floatWidth]);
+        longChunks.add(new long[CHUNK_ROWS * schema.longWidth]);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+/**
+ * TongueInferenceScheduler
+ * - 舌頭 YOLO 的動態排程：嘴部關鍵點位移 + 嘴部 ROI 外觀（8×8 灰階）都沒變時不推理，沿用上一次量到的框
+ * - 沿用的框隨嘴部中心平移（頭在動、舌頭沒動時框跟著走）
+ * - 偵測到動作（點位移大、外觀變化大、或量到的框在移動 / 出現 / 消失）就維持推理 ACTIVE_HOLD 次
+ *   （只在真的送出推理時扣；YOLO 忙、畫質檔位不在節奏上的幀不會把這段吃掉）
+ * - 靜止時也至少每 MAX_SKIP 幀推理一次，避免沿用太久
+ *
+ * 純 Java，不依賴 Android。方法都同步：decide / onInferenceStarted / interpolate 在主執行緒（UI）、
+ * onMeasured 在 YOLO 執行緒呼叫。
+ */
+public final class TongueInferenceScheduler {
+
+    /** ROI 外觀取樣格數（每邊） */
+    public static final int GRID = 8;
+
+    // 門檻：位移以兩眼距為單位、外觀以 0~255 灰階平均差
+    static final float STEP_ACTIVE = 0.03f;     // 相鄰兩幀嘴部點平均位移 > 3% 兩眼距 → 動作中
+    static final float DRIFT_STILL = 0.015f;    // 與上次推理時相比位移 < 1.5% 才算沒變
+    static final float APPEAR_ACTIVE = 12f;     // 與上次推理時 ROI 灰階差 > 12 → 動作中
+    static final float APPEAR_STILL = 5f;       // < 5 才算沒變
+    static final float BOX_MOVE_ACTIVE = 0.05f; // 兩次量測的框中心移動 > 5% 兩眼距 → 動作中
+    static final int ACTIVE_HOLD = 10;          // 動作中維持推理的次數（每幀都能推理時約 0.33 s @30fps）
+    static final int MAX_SKIP = 6;              // 靜止時最多連續沿用幾幀（預設；QualityGovernor 降檔時調大）
+
+    public enum Decision { INFER, INTERPOLATE }
+
+    // 上一幀 / 上次推理時的嘴部點（x0,y0,x1,y1,...）與 ROI 灰階
+    private float[] prevPts = new float[0];
+    private float[] refPts = new float[0];
+    private final float[] refLuma = new float[GRID * GRID];
+    private final float[] luma = new float[GRID * GRID];
+    private boolean hasRef = false;
+    private int sinceInfer = 0;
+    private int activeHold = 0;
+    private float scale = 1f;
+    private int maxSkip = MAX_SKIP;
+
+    // 推理中那一幀的嘴部中心（量測結果回來時當作框的參考點）
+    private float pendingCx, pendingCy;
+
+    // 最後一次量測（Bitmap 像素）
+    private boolean hasMeasure = false;
+    private boolean lastDetected = false;
+    private float lastConf = 0f;
+    private final int[] lastBox = new int[4];
+    private float measureCx, measureCy;
+
+    // 統計
+    private long inferCount = 0;
+    private long interpolateCount = 0;
+
+    /**
+     * 這一幀要不要推理
+     * @param mouthPts 嘴部關鍵點（Bitmap 像素，x0,y0,x1,y1,...）
+     * @param scale    正規化長度（兩眼距，像素）
+     * @param argbGrid ROI 內 GRID×GRID 取樣的 ARGB
+     */
+    public synchronized Decision decide(float[] mouthPts, float scale, int[] argbGrid) {
+        this.scale = scale > 1e-3f ? scale : 1f;
+        toLuma(argbGrid, luma);
+        if (!hasRef || prevPts.length != mouthPts.length) {
+            prevPts = mouthPts.clone();
+            return Decision.INFER;
+        }
+        float step = meanDisplacement(mouthPts, prevPts) / this.scale;
+        System.arraycopy(mouthPts, 0, prevPts, 0, mouthPts.length);
+        float drift = meanDisplacement(mouthPts, refPts) / this.scale;
+        float appear = meanAbsDiff(luma, refLuma);
+        sinceInfer++;
+
+        if (step > STEP_ACTIVE || appear > APPEAR_ACTIVE) activeHold = ACTIVE_HOLD;
+        if (activeHold > 0) return Decision.INFER;        // 真的送出才在 onInferenceStarted 扣
+        if (drift > DRIFT_STILL || appear > APPEAR_STILL) return Decision.INFER;
+        if (sinceInfer >= maxSkip) return Decision.INFER;
+        return Decision.INTERPOLATE;
+    }
+
+    /** 真的送出推理時呼叫（YOLO 忙 / 不在節奏上而沒送出就不要呼叫，下一幀會再要求推理） */
+    public synchronized void onInferenceStarted(float[] mouthPts) {
+        if (activeHold > 0) activeHold--;
+        refPts = mouthPts.clone();
+        System.arraycopy(luma, 0, refLuma, 0, luma.length);
+        hasRef = true;
+        sinceInfer = 0;
+        pendingCx = centerX(mouthPts);
+        pendingCy = centerY(mouthPts);
+        inferCount++;
+    }
+
+    /** 推理結果（Bitmap 像素框；沒偵測到 box 傳 null） */
+    public synchronized void onMeasured(boolean detected, float conf, int[] box) {
+        boolean hasBox = detected && box != null;
+        if (hasMeasure) {
+            boolean toggled = hasBox != lastDetected;
+            boolean moved = false;
+            if (hasBox && lastDetected) {
+                // 框中心扣掉嘴部本身的平移，只看舌頭相對嘴的移動
+                float dx = (box[0] + box[2]) * 0.5f - pendingCx - ((lastBox[0] + lastBox[2]) * 0.5f - measureCx);
+                float dy = (box[1] + box[3]) * 0.5f - pendingCy - ((lastBox[1] + lastBox[3]) * 0.5f - measureCy);
+                moved = Math.hypot(dx, dy) / scale > BOX_MOVE_ACTIVE;
+            }
+            if (toggled || moved) activeHold = ACTIVE_HOLD;
+        }
+        hasMeasure = true;
+        lastDetected = hasBox;
+        lastConf = conf;
+        if (hasBox) System.arraycopy(box, 0, lastBox, 0, 4);
+        measureCx = pendingCx;
+        measureCy = pendingCy;
+    }
+
+    /**
+     * 沿用上一次量測：框隨嘴部中心平移後寫進 outBox，回傳是否有舌頭
+     * 還沒有任何量測時回 false
+     */
+    public synchronized boolean interpolate(float[] mouthPts, int[] outBox) {
+        interpolateCount++;
+        if (!hasMeasure || !lastDetected) return false;
+        int dx = Math.round(centerX(mouthPts) - measureCx);
+        int dy = Math.round(centerY(mouthPts) - measureCy);
+        outBox[0] = lastBox[0] + dx;
+        outBox[1] = lastBox[1] + dy;
+        outBox[2] = lastBox[2] + dx;
+        outBox[3] = lastBox[3] + dy;
+        return true;
+    }
+
+    /** 靜止時最多連續沿用幾幀（畫質檔位調整用；動作中仍每幀推理） */
+    public synchronized void setMaxSkip(int frames) {
+        maxSkip = Math.max(1, frames);
+    }
+
+    public synchronized float lastConfidence() {
+        return lastConf;
+    }
+
+    public synchronized long inferCount() {
+        return inferCount;
+    }
+
+    public synchronized long interpolateCount() {
+        return interpolateCount;
+    }
+
+    /** 換動作 / 重新校正時清空 */
+    public synchronized void reset() {
+        prevPts = new float[0];
+        refPts = new float[0];
+        hasRef = false;
+        hasMeasure = false;
+        lastDetected = false;
+        lastConf = 0f;
+        sinceInfer = 0;
+        activeHold = 0;
+        inferCount = 0;
+        interpolateCount = 0;
+    }
+
+    // ================= 內部 =================
+
+    private static float meanDisplacement(float[] a, float[] b) {
+        int n = a.length / 2;
+        if (n == 0) return 0f;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += Math.hypot(a[2 * i] - b[2 * i], a[2 * i + 1] - b[2 * i + 1]);
+        }
+        return (float) (sum / n);
+    }
+
+    private static float meanAbsDiff(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) sum += Math.abs(a[i] - b[i]);
+        return sum / a.length;
+    }
+
+    // BT.601 灰階
+    private static void toLuma(int[] argb, float[] out) {
+        for (int i = 0; i < out.length; i++) {
+            int p = argb[i];
+            out[i] = 0.299f * ((p >> 16) & 0xFF) + 0.587f * ((p >> 8) & 0xFF) + 0.114f * (p & 0xFF);
+        }
+    }
+
+    private static float centerX(float[] pts) {
+        float s = 0f;
+        for (int i = 0; i < pts.length; i += 2) s += pts[i];
+        return pts.length == 0 ? 0f : s / (pts.length / 2);
+    }
+
+    private static float centerY(float[] pts) {
+        float s = 0f;
+        for (int i = 1; i < pts.length; i += 2) s += pts[i];
+        return pts.length == 0 ? 0f : s / (pts.length / 2);
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * YoloBackendCalibrator
+ * - 每台裝置、每個模型檔第一次啟動時，把各後端（GPU / NNAPI / CPU×1,2,4 執行緒）都實際跑幾次推理
+ * - 先熱身幾次（GPU shader / NNAPI 編譯不算進去），再量 p50 / p95；p50 最低的存起來
+ * - YoloEngine 載入模型時直接用存下來的設定，不再只靠「建立有沒有丟例外」決定後端
+ * - 結果存在 SharedPreferences（key = 裝置型號 + 模型檔），摘要也存一份給 debug 頁看
+ * - 訓練中不量：相機 / MediaPipe 同時在跑時量到的數字不準，也會拖慢訓練；
+ *   訓練頁開著就不排，量到一半訓練開始就中止、不存，下次開 APP 再量
+ */
+public final class YoloBackendCalibrator {
+
+    private static final String TAG = "YOLO-BENCH";
+    private static final String PREFS = "yolo_backend";
+    private static final int VERSION = 1;          // 量法改了就 +1，讓舊結果失效
+
+    static final int WARMUP_RUNS = 3;
+    static final int MEASURE_RUNS = 15;
+    private static final int[] CPU_THREADS = {1, 2, 4};
+
+    /** 一組後端設定 */
+    public static final class Choice {
+        public final String backend;   // GPU / NNAPI / CPU
+        public final int threads;
+
+        public Choice(String backend, int threads) {
+            this.backend = backend;
+            this.threads = threads;
+        }
+
+        String encode() {
+            return backend + ":" + threads;
+        }
+
+        static Choice parse(String s) {
+            if (s == null) return null;
+            int i = s.indexOf(':');
+            if (i <= 0) return null;
+            try {
+                return new Choice(s.substring(0, i), Integer.parseInt(s.substring(i + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return backend + "×" + threads;
+        }
+    }
+
+    /** 一次校正的結果 */
+    public static final class Report {
+        public final YoloModelSpec spec;
+        public final List<Choice> candidates = new ArrayList<>();
+        public final List<LatencyStats> stats = new ArrayList<>();   // 與 candidates 對齊；建立失敗為 null
+        public Choice winner;
+        public boolean aborted;   // 中途遇到訓練，結果沒存
+
+        Report(YoloModelSpec spec) {
+            this.spec = spec;
+        }
+
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("📊 ").append(spec.name).append(" @ ").append(deviceName()).append('\n');
+            for (int i = 0; i < candidates.size(); i++) {
+                LatencyStats st = stats.get(i);
+                sb.append(st == null ? String.format("%-8s 無法建立", candidates.get(i)) : st.summary()).append('\n');
+            }
+            if (aborted) sb.append("⏸️ 訓練中，校正中止");
+            else sb.append("🏆 ").append(winner == null ? "無可用後端" : winner.toString());
+            return sb.toString();
+        }
+    }
+
+    // 單一背景執行緒：不跟 UI / 相機搶 CPU，也避免兩個校正互相干擾計時
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "YoloCalibrator");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // 開著的訓練頁數量；sessionEpoch 每開一次 +1，校正前後比對就知道中間有沒有訓練過
+    private static final AtomicInteger activeSessions = new AtomicInteger();
+    private static final AtomicInteger sessionEpoch = new AtomicInteger();
+
+    private YoloBackendCalibrator() {}
+
+    /** 這台裝置量過的最快設定；沒量過回 null */
+    public static Choice storedChoice(Context context, YoloModelSpec spec) {
+        return Choice.parse(prefs(context).getString(key(spec) + "|choice", null));
+    }
+
+    /** 上次校正的摘要；沒量過回 null */
+    public static String storedSummary(Context context, YoloModelSpec spec) {
+        return prefs(context).getString(key(spec) + "|summary", null);
+    }
+
+    /** 訓練頁 onCreate 呼叫（和 sessionEnded 成對） */
+    public static void sessionStarted() {
+        sessionEpoch.incrementAndGet();
+        activeSessions.incrementAndGet();
+    }
+
+    /** 訓練頁 onDestroy 呼叫 */
+    public static void sessionEnded() {
+        activeSessions.decrementAndGet();
+    }
+
+    // 目前在訓練，或從 epoch 之後開過訓練頁
+    static boolean sessionSince(int epoch) {
+        return activeSessions.get() > 0 || sessionEpoch.get() != epoch;
+    }
+
+    /** 開 APP 時呼叫：還沒量過的模型排到背景執行緒校正（訓練中不排） */
+    public static void calibrateIfNeeded(Context context) {
+        if (activeSessions.get() > 0) {
+            Log.d(TAG, "⏸️ 訓練中，先不校正");
+            return;
+        }
+        final Context app = context.getApplicationContext();
+        for (YoloModelSpec spec : YoloModelSpec.all()) {
+            if (storedChoice(app, spec) != null) continue;
+            enqueue(app, spec, null);
+        }
+    }
+
+    /** 強制重新校正（debug 頁）；listener 在背景執行緒回呼 */
+    public static void recalibrate(Context context, YoloModelSpec spec, Consumer<Report> listener) {
+        enqueue(context.getApplicationContext(), spec, listener);
+    }
+
+    private static void enqueue(Context app, YoloModelSpec spec, Consumer<Report> listener) {
+        if (!pending.add(spec.name) && listener == null) return;   // 已排隊
+        executor.execute(() -> {
+            Report r = null;
+            try {
+                r = calibrate(app, spec);
+            } catch (Throwable e) {
+                Log.e(TAG, "❌ 校正失敗: " + spec, e);
+            } finally {
+                pending.remove(spec.name);
+            }
+            if (listener != null) listener.accept(r);
+        });
+    }
+
+    /**
+     * 同步跑完一個模型的校正並存結果（在呼叫端執行緒；會跑數十次推理，不要在主執行緒呼叫）
+     * 模型檔讀不到時丟 IOException；遇到訓練就中止（report.aborted，不存）
+     */
+    public static Report calibrate(Context context, YoloModelSpec spec) throws java.io.IOException {
+        int epoch = sessionEpoch.get();
+        Report report = new Report(spec);
+        if (sessionSince(epoch)) return aborted(report);
+        MappedByteBuffer model = YoloEngine.loadModelFile(context, spec.modelFile);
+
+        // 假輸入：灰色方圖（不影響計時，只要形狀對）
+        ByteBuffer input = ByteBuffer.allocateDirect(4 * spec.inputSize * spec.inputSize * 3)
+                .order(ByteOrder.nativeOrder());
+        FloatBuffer f = input.asFloatBuffer();
+        while (f.hasRemaining()) f.put(0.5f);
+
+        for (Choice c : candidates()) {
+            if (sessionSince(epoch)) return aborted(report);
+            report.candidates.add(c);
+            report.stats.add(measure(model, c, input));
+        }
+        if (sessionSince(epoch)) return aborted(report);   // 最後一組量的時候訓練開始了
+
+        int best = LatencyStats.indexOfBest(report.stats);
+        if (best >= 0) {
+            report.winner = report.candidates.get(best);
+            prefs(context).edit()
+                    .putString(key(spec) + "|choice", report.winner.encode())
+                    .putString(key(spec) + "|summary", report.summary())
+                    .apply();
+        }
+        for (String line : report.summary().split("\n")) Log.i(TAG, line);
+        return report;
+    }
+
+    private static Report aborted(Report report) {
+        report.aborted = true;
+        Log.w(TAG, "⏸️ " + report.spec.name + " 校正遇到訓練，中止不存");
+        return report;
+    }
+
+    // 要比較的設定：GPU、NNAPI 各一組（執行緒只影響退回 CPU 的 op），CPU 依核心數取 1 / 2 / 4
+    static List<Choice> candidates() {
+        List<Choice> list = new ArrayList<>();
+        list.add(new Choice("GPU", YoloEngine.NUM_THREADS));
+        list.add(new Choice("NNAPI", YoloEngine.NUM_THREADS));
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int t : CPU_THREADS) {
+            if (t <= cores) list.add(new Choice("CPU", t));
+        }
+        return list;
+    }
+
+    // 建不起來回 null
+    private static LatencyStats measure(MappedByteBuffer model, Choice c, ByteBuffer input) {
+        YoloEngine.Backend b;
+        try {
+            b = YoloEngine.Backend.open(model, c.backend, c.threads);
+        } catch (Throwable e) {
+            Log.w(TAG, "⚠️ " + c + " 無法建立: " + e.getMessage());
+            return null;
+        }
+        try {
+            int[] shape = b.tflite.getOutputTensor(0).shape();
+            int n = 1;
+            for (int d : shape) n *= d;
+            ByteBuffer output = ByteBuffer.allocateDirect(4 * n).order(ByteOrder.nativeOrder());
+
+            for (int i = 0; i < WARMUP_RUNS; i++) run(b, input, output);
+            double[] ms = new double[MEASURE_RUNS];
+            for (int i = 0; i < MEASURE_RUNS; i++) {
+                long t0 = System.nanoTime();
+                run(b, input, output);
+                ms[i] = (System.nanoTime() - t0) / 1_000_000.0;
+            }
+            return LatencyStats.of(c.toString(), ms);
+        } catch (Throwable e) {
+            Log.w(TAG, "⚠️ " + c + " 推理失敗: " + e.getMessage());
+            return null;
+        } finally {
+            b.close();
+        }
+    }
+
+    private static void run(YoloEngine.Backend b, ByteBuffer input, ByteBuffer output) {
+        input.rewind();
+        output.rewind();
+        b.tflite.run(input, output);
+    }
+
+    private static String key(YoloModelSpec spec) {
+        return deviceName() + "|" + spec.modelFile + "|v" + VERSION;
+    }
+
+    static String deviceName() {
+        return Build.MANUFACTURER + " " + Build.MODEL;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,432 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.util.Log;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.gpu.GpuDelegate;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 🎯 YoloEngine - 舌頭 YOLO 偵測引擎（取代 TongueYoloDetector / TongueYoloDetectorLR 兩份複製品）
+ *
+ * - 模型由 YoloModelSpec 描述（檔名、輸入邊長、類別通道、門檻），用到才建 Interpreter（lazy），建好就快取
+ * - 後端優先用 YoloBackendCalibrator 在這台裝置量到最快的設定（後端 + 執行緒數）
+ * - 沒量過就 GPU → NNAPI → CPU：第一個模型確定能用的後端，之後的模型直接從它開始，不再重試失敗的
+ * - 輸入緩衝 / letterbox kernel / ROI 像素陣列所有模型共用；每個模型只多一份小的輸出緩衝
+ * - 後處理交給 YoloPostprocessor
+ *
+ * detect / prepare / release 都同步在 this 上：初始化可在主執行緒，推理在 YOLO 執行緒
+ */
+public class YoloEngine {
+
+    private static final String TAG = "YoloEngine";
+    private static final int CHANNEL_SIZE = 3;
+    static final int NUM_THREADS = 4;
+    static final String[] BACKENDS = {"GPU", "NNAPI", "CPU"};
+
+    // 🔥 檢測結果
+    public static class DetectionResult {
+        public boolean detected;
+        public float confidence;
+        public Rect boundingBox;  // 真實位置的邊界框（整張 Bitmap 座標）
+
+        public DetectionResult(boolean detected) {
+            this.detected = detected;
+            this.confidence = 0;
+            this.boundingBox = null;
+        }
+
+        public DetectionResult(boolean detected, float confidence, Rect box) {
+            this.detected = detected;
+            this.confidence = confidence;
+            this.boundingBox = box;
+        }
+    }
+
+    /**
+     * 一個 Interpreter 加上它的 delegate（校正器也用這個建立各後端）
+     */
+    static final class Backend {
+        final String name;       // GPU / NNAPI / CPU
+        final int threads;
+        Interpreter tflite;
+        GpuDelegate gpuDelegate;
+        NnApiDelegate nnApiDelegate;
+
+        private Backend(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        /** 建立失敗會先關掉已建的 delegate 再丟出 */
+        static Backend open(MappedByteBuffer modelBuffer, String name, int threads) {
+            Backend b = new Backend(name, threads);
+            Interpreter.Options opts = new Interpreter.Options();
+            opts.setNumThreads(threads);
+            try {
+                if ("GPU".equals(name)) {
+                    b.gpuDelegate = new GpuDelegate();
+                    opts.addDelegate(b.gpuDelegate);
+                } else if ("NNAPI".equals(name)) {
+                    b.nnApiDelegate = new NnApiDelegate();
+                    opts.addDelegate(b.nnApiDelegate);
+                }
+                b.tflite = new Interpreter(modelBuffer, opts);
+                return b;
+            } catch (RuntimeException | Error e) {
+                b.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            if (tflite != null) {
+                try { tflite.close(); } catch (Throwable ignore) {}
+                tflite = null;
+            }
+            if (gpuDelegate != null) {
+                try { gpuDelegate.close(); } catch (Throwable ignore) {}
+                gpuDelegate = null;
+            }
+            if (nnApiDelegate != null) {
+                try { nnApiDelegate.close(); } catch (Throwable ignore) {}
+                nnApiDelegate = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + "×" + threads;
+        }
+    }
+
+    // 一個已載入的模型
+    private static final class Slot {
+        final YoloModelSpec spec;
+        Backend backend;           // null = 載入失敗
+        YoloPostprocessor post;
+        ByteBuffer outputBuffer;   // 模型輸出 [1][C][N]，direct buffer 直接給 tflite 寫
+        FloatBuffer outputFloats;
+        int tongueClass;
+
+        Slot(YoloModelSpec spec) {
+            this.spec = spec;
+        }
+
+        Interpreter tflite() {
+            return backend == null ? null : backend.tflite;
+        }
+
+        void close() {
+            if (backend != null) {
+                backend.close();
+                backend = null;
+            }
+        }
+    }
+
+    private final Context appContext;
+    private final Map<YoloModelSpec, Slot> slots = new HashMap<>();
+    private String preferredBackend = null;   // 第一個成功建立的後端
+
+    // 共用前處理緩衝（依目前模型輸入邊長；邊長相同的模型不重配）
+    private ByteBuffer inputBuffer;
+    private FloatBuffer inputFloats;
+    private LetterboxKernel letterbox;
+    private int[] roiPixels = new int[0];
+
+    public YoloEngine(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    /**
+     * 🏗️ 確保模型已載入（還沒就現在建），回傳是否可用
+     * 載入失敗會記住，不會每幀重試
+     */
+    public synchronized boolean prepare(YoloModelSpec spec) {
+        Slot s = slot(spec);
+        return s.tflite() != null;
+    }
+
+    /** 模型已載入且可用（不會觸發載入） */
+    public synchronized boolean isInitialized(YoloModelSpec spec) {
+        Slot s = slots.get(spec);
+        return s != null && s.tflite() != null;
+    }
+
+    /** 模型實際跑的後端（例 "GPU×4"、"CPU×2"）；還沒載入回 null */
+    public synchronized String backendOf(YoloModelSpec spec) {
+        Slot s = slots.get(spec);
+        return (s == null || s.backend == null) ? null : s.backend.toString();
+    }
+
+    /**
+     * 🔥 用灰色假輸入跑一次推理（GPU shader 編譯 / NNAPI 首次執行的成本在這裡付掉）
+     * 回傳耗時毫秒；模型不可用回 -1
+     */
+    public synchronized float warmUp(YoloModelSpec spec) {
+        Slot s = slot(spec);
+        if (s.tflite() == null) return -1;
+        try {
+            ensureInput(spec.inputSize);
+            for (int i = 0; i < inputFloats.capacity(); i++) inputFloats.put(i, 0.5f);
+            long t0 = System.nanoTime();
+            s.outputBuffer.rewind();
+            s.backend.tflite.run(inputBuffer, s.outputBuffer);
+            float ms = (System.nanoTime() - t0) / 1_000_000f;
+            Log.d(TAG, String.format(java.util.Locale.US, "🔥 熱身推理完成: %s, backend=%s, 耗時 %.1f ms",
+                    spec.name, s.backend, ms));
+            return ms;
+        } catch (Exception e) {
+            Log.w(TAG, "⚠️ 熱身推理失敗: " + spec + " " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 🎯 在 roi（整張 Bitmap 座標）內找舌頭，框映回整張 Bitmap 座標
+     */
+    public synchronized DetectionResult detect(YoloModelSpec spec, Bitmap fullBitmap, Rect roi) {
+        if (fullBitmap == null || roi == null) {
+            Log.w(TAG, "⚠️ 檢測輸入為空");
+            return new DetectionResult(false);
+        }
+        Slot s = slot(spec);
+        if (s.tflite() == null) {
+            return new DetectionResult(false);
+        }
+
+        try {
+            // 裁切 ROI
+            int left = Math.max(0, roi.left);
+            int top = Math.max(0, roi.top);
+            int right = Math.min(fullBitmap.getWidth(), roi.right);
+            int bottom = Math.min(fullBitmap.getHeight(), roi.bottom);
+
+            if (right <= left || bottom <= top) {
+                Log.w(TAG, "⚠️ ROI 區域無效");
+                return new DetectionResult(false);
+            }
+
+            Log.d(TAG, String.format("🔪 ROI 裁切: (%d,%d) → (%d,%d), 大小: %dx%d",
+                    left, top, right, bottom, right - left, bottom - top));
+
+            // letterbox 前處理（直接寫 inputBuffer），同時拿到縮放 / 補邊參數
+            LetterboxKernel.Geometry g = preprocessLetterbox(fullBitmap, left, top, right - left, bottom - top);
+
+            long t0 = System.nanoTime();
+            s.outputBuffer.rewind();
+            s.backend.tflite.run(inputBuffer, s.outputBuffer);
+            long t1 = System.nanoTime();
+            float inferMs = (t1 - t0) / 1_000_000f;
+
+            // 後處理要用 geometry 去除 padding / 縮放，回到 Bitmap 座標
+            DetectionResult result = postprocessWithRealCoordinates(s, roi, g);
+
+            Log.d("YOLO-METRICS",
+                    "infer=" + String.format(java.util.Locale.US, "%.1f", inferMs) +
+                            " ms, prob=" + String.format(java.util.Locale.US, "%.3f", result.confidence) +
+                            ", backend=" + s.backend + ", model=" + spec.name);
+            return result;
+
+        } catch (Exception e) {
+            Log.e(TAG, "❌ 真實座標檢測失敗: " + e.getMessage());
+            return new DetectionResult(false);
+        }
+    }
+
+    /** 🧹 卸載單一模型（下次用到會再建） */
+    public synchronized void evict(YoloModelSpec spec) {
+        Slot s = slots.remove(spec);
+        if (s != null) {
+            s.close();
+            Log.d(TAG, "🧹 已卸載模型: " + spec);
+        }
+    }
+
+    /** 🧹 清理所有模型與共用緩衝 */
+    public synchronized void release() {
+        for (Slot s : slots.values()) s.close();
+        slots.clear();
+        inputBuffer = null;
+        inputFloats = null;
+        letterbox = null;
+        roiPixels = new int[0];
+        Log.d(TAG, "✅ YOLO 資源已清理");
+    }
+
+    // ================= 載入 =================
+
+    private Slot slot(YoloModelSpec spec) {
+        Slot s = slots.get(spec);
+        if (s == null) {
+            s = load(spec);
+            slots.put(spec, s);
+        }
+        return s;
+    }
+
+    private Slot load(YoloModelSpec spec) {
+        Slot s = new Slot(spec);
+        long t0 = System.nanoTime();
+        try {
+            MappedByteBuffer modelBuffer = loadModelFile(appContext, spec.modelFile);
+
+            // 1) 這台裝置量測過的最快設定（YoloBackendCalibrator 存的）
+            YoloBackendCalibrator.Choice best = YoloBackendCalibrator.storedChoice(appContext, spec);
+            if (best != null) {
+                s.backend = tryOpen(spec, modelBuffer, best.backend, best.threads);
+            }
+            // 2) 沒量過或失敗：GPU → NNAPI → CPU，從上一個模型確定可用的後端開始試，前面失敗過的不再試
+            if (s.backend == null) {
+                int start = preferredBackend == null ? 0 : Arrays.asList(BACKENDS).indexOf(preferredBackend);
+                for (int i = Math.max(0, start); i < BACKENDS.length && s.backend == null; i++) {
+                    s.backend = tryOpen(spec, modelBuffer, BACKENDS[i], NUM_THREADS);
+                }
+            }
+            if (s.backend == null) {
+                Log.e(TAG, "❌ YOLO 模型初始化失敗: " + spec);
+                return s;
+            }
+            if (preferredBackend == null) preferredBackend = s.backend.name;
+
+            // 依模型實際輸出 shape 配置輸出緩衝區；版面只在這裡決定一次
+            int[] outShape = s.backend.tflite.getOutputTensor(0).shape(); // [1, 8, N]
+            s.post = new YoloPostprocessor(outShape);
+            s.tongueClass = spec.classOf(YoloModelSpec.CLASS_TONGUE);
+            s.outputBuffer = ByteBuffer
+                    .allocateDirect(4 * s.post.outputFloats())
+                    .order(ByteOrder.nativeOrder());
+            s.outputFloats = s.outputBuffer.asFloatBuffer();
+            ensureInput(spec.inputSize);
+
+            Log.d(TAG, "✅ 模型載入完成: " + spec + ", backend=" + s.backend +
+                    (best != null ? "（校正結果）" : "") +
+                    ", OUT shape=" + Arrays.toString(outShape) +
+                    " → numClasses=" + s.post.numClasses() + ", numDet=" + s.post.numDet() +
+                    String.format(java.util.Locale.US, ", 耗時 %.1f ms", (System.nanoTime() - t0) / 1_000_000f));
+        } catch (Exception e) {
+            Log.e(TAG, "❌ YOLO 模型初始化失敗: " + spec + " " + e.getMessage());
+            s.close();
+        }
+        return s;
+    }
+
+    private static Backend tryOpen(YoloModelSpec spec, MappedByteBuffer modelBuffer, String backend, int threads) {
+        try {
+            Backend b = Backend.open(modelBuffer, backend, threads);
+            Log.d(TAG, "✅ TFLite Interpreter 建立成功（" + b + "）: " + spec.name);
+            return b;
+        } catch (Throwable e) {
+            Log.w(TAG, "⚠️ " + backend + " 建立失敗，改試下一個後端。原因: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 📂 從 assets 載入模型文件
+     */
+    static MappedByteBuffer loadModelFile(Context context, String modelFile) throws IOException {
+        AssetFileDescriptor fileDescriptor = context.getAssets().openFd(modelFile);
+        try (FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
+            FileChannel fileChannel = inputStream.getChannel();
+            long startOffset = fileDescriptor.getStartOffset();
+            long declaredLength = fileDescriptor.getDeclaredLength();
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+        }
+    }
+
+    // 共用輸入緩衝：邊長不同才重配
+    private void ensureInput(int size) {
+        if (letterbox != null && inputFloats != null && inputFloats.capacity() == size * size * CHANNEL_SIZE) return;
+        inputBuffer = ByteBuffer
+                .allocateDirect(4 * size * size * CHANNEL_SIZE)
+                .order(ByteOrder.nativeOrder());
+        inputFloats = inputBuffer.asFloatBuffer();
+        letterbox = new LetterboxKernel(size);
+    }
+
+    // ================= 前 / 後處理 =================
+
+    // 等比縮放 + 黑邊補齊：ROI 像素一次 getPixels 到重用陣列，LetterboxKernel 直接寫 inputBuffer
+    private LetterboxKernel.Geometry preprocessLetterbox(Bitmap fullBitmap, int left, int top, int roiW, int roiH) {
+        long t0 = System.nanoTime();
+        int need = roiW * roiH;
+        if (roiPixels.length < need) roiPixels = new int[need];
+        fullBitmap.getPixels(roiPixels, 0, roiW, left, top, roiW, roiH);
+
+        LetterboxKernel.Geometry g = letterbox.run(roiPixels, 0, roiW, roiW, roiH, inputFloats);
+
+        float preprocessMs = (System.nanoTime() - t0) / 1_000_000f;
+        Log.d("YOLO-PRE", String.format("preprocessLetterbox() %.3f ms", preprocessMs));
+        return g;
+    }
+
+    private DetectionResult postprocessWithRealCoordinates(Slot s, Rect originalROI, LetterboxKernel.Geometry g) {
+        final YoloModelSpec spec = s.spec;
+        // ---- 整段輸出一次讀進平面陣列（logits / 機率只在第一幀判斷）----
+        s.post.load(s.outputFloats);
+        // 每類最高機率：只比原始值，最後做一次 sigmoid
+        Log.d("YOLO-CH-score", spec.name + " per-class max: " + Arrays.toString(s.post.classMaxScores()));
+
+        // ---- 單一類別 argmax 快速路徑：舌頭機率最高、寬高 > minBoxSize 的框 ----
+        YoloPostprocessor.Box best = s.post.best(s.tongueClass, spec.confidenceThreshold, spec.minBoxSize);
+        if (best == null) {
+            Log.d(spec.logTag, "No box passed threshold; th=" + spec.confidenceThreshold);
+            return new DetectionResult(false);
+        }
+
+        // ---- 取出框座標（可能是 0..1，也可能已是像素；自動判斷）----
+        float cxN = best.cx;
+        float cyN = best.cy;
+        float wN  = best.w;
+        float hN  = best.h;
+
+        boolean coordsArePixels = (wN > 2f || hN > 2f || cxN > 2f || cyN > 2f);
+        float cxS = coordsArePixels ? cxN : cxN * g.size; // 映回「輸入正方形」座標
+        float cyS = coordsArePixels ? cyN : cyN * g.size;
+        float wS  = coordsArePixels ? wN  : wN  * g.size;
+        float hS  = coordsArePixels ? hN  : hN  * g.size;
+
+        // ---- 去掉 letterbox padding → 回 ROI 內像素座標 ----
+        float cxRoi = (cxS - g.padX) / g.scale;
+        float cyRoi = (cyS - g.padY) / g.scale;
+        float wRoi  = wS / g.scale;
+        float hRoi  = hS / g.scale;
+
+        // ---- 投回整張位圖座標（ROI 偏移）----
+        int left   = Math.round(originalROI.left + (cxRoi - wRoi / 2f));
+        int top    = Math.round(originalROI.top  + (cyRoi - hRoi / 2f));
+        int right  = Math.round(left + wRoi);
+        int bottom = Math.round(top  + hRoi);
+
+        // ---- 夾在 ROI 界內，避免越界 ----
+        left   = Math.max(originalROI.left,   Math.min(left,   originalROI.right));
+        top    = Math.max(originalROI.top,    Math.min(top,    originalROI.bottom));
+        right  = Math.max(originalROI.left,   Math.min(right,  originalROI.right));
+        bottom = Math.max(originalROI.top,    Math.min(bottom, originalROI.bottom));
+        if (right <= left || bottom <= top) return new DetectionResult(false);
+
+        Rect realBox = new Rect(left, top, right, bottom);
+        Log.d(spec.logTag,
+                "Detected! prob=" + best.score +
+                        " box=(" + left + "," + top + "," + right + "," + bottom + ")" +
+                        " ROI=" + originalROI.toShortString());
+        return new DetectionResult(true, best.score, realBox);
+    }
+}
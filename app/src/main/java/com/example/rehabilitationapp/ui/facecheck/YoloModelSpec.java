@@ -0,0 +1,87 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * YoloModelSpec
+ * - 描述一個 YOLO 模型：assets 檔名、輸入邊長、類別通道對照、門檻
+ * - YoloEngine 以此為 key 快取 Interpreter；新增模型只要多一個描述，不用再複製一份偵測器
+ */
+public final class YoloModelSpec {
+
+    public static final String CLASS_TONGUE = "tongue";
+
+    /** 上 / 下 / 前 / 後伸舌用的模型：4 框 + 4 類，舌頭在第 4 類（通道 7） */
+    public static final YoloModelSpec TONGUE = new YoloModelSpec(
+            "tongue", "tongue_yolo_fp16_320.tflite", 320,
+            classes(CLASS_TONGUE, 3), 0.85f, 0.01f, "TonguePostprocess");
+
+    /** 左右伸舌用的模型：4 框 + 類別，舌頭在第 1 類（通道 4） */
+    public static final YoloModelSpec TONGUE_LR = new YoloModelSpec(
+            "tongueLR", "tongueLR_yolo_fp16_320.tflite", 320,
+            classes(CLASS_TONGUE, 0), 0.6f, 0.01f, "TonguePostprocessLR");
+
+    public final String name;
+    public final String modelFile;
+    public final int inputSize;
+    public final Map<String, Integer> classIndex;   // 類別名稱 → 類別索引（通道 = 4 + 索引）
+    public final float confidenceThreshold;
+    public final float minBoxSize;                  // 框寬高下限（模型原始單位）
+    public final String logTag;
+
+    public YoloModelSpec(String name, String modelFile, int inputSize, Map<String, Integer> classIndex,
+                         float confidenceThreshold, float minBoxSize, String logTag) {
+        this.name = name;
+        this.modelFile = modelFile;
+        this.inputSize = inputSize;
+        this.classIndex = Collections.unmodifiableMap(new LinkedHashMap<>(classIndex));
+        this.confidenceThreshold = confidenceThreshold;
+        this.minBoxSize = minBoxSize;
+        this.logTag = logTag;
+    }
+
+    /** 類別名稱 → 類別索引；模型沒有這個類別時丟 IllegalArgumentException */
+    public int classOf(String label) {
+        Integer idx = classIndex.get(label);
+        if (idx == null) throw new IllegalArgumentException(name + " 沒有類別: " + label);
+        return idx;
+    }
+
+    /** 所有內建模型（後端校正用） */
+    public static List<YoloModelSpec> all() {
+        return Arrays.asList(TONGUE, TONGUE_LR);
+    }
+
+    /** 訓練動作 → 要用的模型；非舌頭動作回 null */
+    public static YoloModelSpec forTrainingLabel(String trainingLabel) {
+        if (trainingLabel == null) return null;
+        switch (trainingLabel) {
+            case "TONGUE_LEFT":
+            case "TONGUE_RIGHT":
+                return TONGUE_LR;
+            case "舌頭":
+            case "TONGUE_FOWARD":
+            case "TONGUE_BACK":
+            case "TONGUE_UP":
+            case "TONGUE_DOWN":
+                return TONGUE;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + modelFile + ", " + inputSize + ")";
+    }
+
+    private static Map<String, Integer> classes(String label, int index) {
+        Map<String, Integer> m = new LinkedHashMap<>();
+        m.put(label, index);
+        return m;
+    }
+}
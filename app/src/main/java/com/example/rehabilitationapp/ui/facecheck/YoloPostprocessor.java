@@ -0,0 +1,314 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * YoloPostprocessor
+ * - YOLO 輸出後處理引擎，YoloEngine 的每個模型各持有一個
+ * - 模型輸出直接寫進 direct FloatBuffer（不再用 float[1][C][N] 巢狀陣列），一次 bulk get 到平面陣列後處理
+ * - 版面（4 個框通道 + N 個類別通道、[1,C,N] 或 [1,N,C]）在建構時依 output shape 決定一次
+ * - 類別分數是機率還是 logits 只在第一幀判斷一次；logits 時把閾值換成 logit 空間比較，只對留下的候選做 sigmoid
+ * - best()：單一類別 argmax 快速路徑（每幀偵測用）
+ * - detect()：每個 anchor 取最高類別 → 信心預篩 → 部分 top-K → 類別內 NMS，回傳多個候選框
+ *
+ * 非執行緒安全：一個推理執行緒持有一個實例即可（內部 scratch 會重用）。
+ */
+public class YoloPostprocessor {
+
+    public static final int BOX_CHANNELS = 4;
+    private static final int LOGIT_SAMPLE = 32;   // 判斷 logits 時每個類別通道抽看的 anchor 數
+
+    /** 一個候選框；cx/cy/w/h 是模型原始值（0..1 或輸入像素，照模型） */
+    public static final class Box {
+        public final int index;     // anchor 索引
+        public final int cls;       // 類別（0 起算，對應通道 4 + cls）
+        public final float score;   // 機率 0..1
+        public final float cx, cy, w, h;
+
+        Box(int index, int cls, float score, float cx, float cy, float w, float h) {
+            this.index = index;
+            this.cls = cls;
+            this.score = score;
+            this.cx = cx;
+            this.cy = cy;
+            this.w = w;
+            this.h = h;
+        }
+    }
+
+    private final int channels;
+    private final int numClasses;
+    private final int numDet;
+    private final boolean channelsFirst;   // [1,C,N]（YOLOv8 預設匯出）或 [1,N,C]
+    private final float[] flat;
+
+    private Boolean scoresAreLogits;       // null = 還沒看到第一幀
+
+    // detect() 的 scratch
+    private final float[] bestRaw;
+    private final int[] bestCls;
+    private final int[] cand;
+    private int[] heap;
+
+    /**
+     * @param outShape tflite.getOutputTensor(0).shape()，例 [1, 8, 2100]
+     */
+    public YoloPostprocessor(int[] outShape) {
+        if (outShape == null || outShape.length < 2) {
+            throw new IllegalArgumentException("YOLO 輸出 shape 無效: " + Arrays.toString(outShape));
+        }
+        int a = outShape[outShape.length - 2];
+        int b = outShape[outShape.length - 1];
+        // 框數一定遠大於通道數：比較小的那一維是通道
+        this.channelsFirst = a <= b;
+        this.channels = channelsFirst ? a : b;
+        this.numDet = channelsFirst ? b : a;
+        this.numClasses = channels - BOX_CHANNELS;
+        if (numClasses <= 0) {
+            throw new IllegalArgumentException("YOLO 輸出沒有類別通道: " + Arrays.toString(outShape));
+        }
+        this.flat = new float[channels * numDet];
+        this.bestRaw = new float[numDet];
+        this.bestCls = new int[numDet];
+        this.cand = new int[numDet];
+    }
+
+    public int numClasses() {
+        return numClasses;
+    }
+
+    public int numDet() {
+        return numDet;
+    }
+
+    /** 輸出 tensor 的 float 個數（配置 ByteBuffer 用：4 * outputFloats() bytes） */
+    public int outputFloats() {
+        return channels * numDet;
+    }
+
+    /** 指定模型分數是否為 logits（不指定則第一幀自動判斷） */
+    public void setScoresAreLogits(boolean logits) {
+        scoresAreLogits = logits;
+    }
+
+    /** 第一幀判斷後的結果；還沒判斷回 null */
+    public Boolean scoresAreLogits() {
+        return scoresAreLogits;
+    }
+
+    /**
+     * 讀入一幀輸出（從 index 0 整段 bulk get，讀完 position 回到 0）
+     * 第一次呼叫時順便判斷分數是否為 logits
+     */
+    public void load(FloatBuffer out) {
+        out.rewind();
+        out.get(flat);
+        out.rewind();
+        if (scoresAreLogits == null) {
+            scoresAreLogits = sniffLogits();
+        }
+    }
+
+    /** 同上，直接吃平面陣列（測試 / 非 tflite 來源） */
+    public void load(float[] out) {
+        System.arraycopy(out, 0, flat, 0, flat.length);
+        if (scoresAreLogits == null) {
+            scoresAreLogits = sniffLogits();
+        }
+    }
+
+    /**
+     * 快速路徑：單一類別機率最高、且 w/h 都大於 minWH 的框；沒有超過 threshold 的回 null
+     */
+    public Box best(int cls, float threshold, float minWH) {
+        checkClass(cls);
+        final float rawTh = rawThreshold(threshold);
+        final int ch = BOX_CHANNELS + cls;
+        int bestIdx = -1;
+        float bestV = rawTh;
+        if (channelsFirst) {
+            // 類別通道連續存放：順著掃，只有超過目前最佳值才去讀 w/h
+            final int base = ch * numDet, wBase = 2 * numDet, hBase = 3 * numDet;
+            for (int i = 0; i < numDet; i++) {
+                float v = flat[base + i];
+                if (v > bestV && flat[wBase + i] > minWH && flat[hBase + i] > minWH) {
+                    bestV = v;
+                    bestIdx = i;
+                }
+            }
+        } else {
+            for (int i = 0, o = 0; i < numDet; i++, o += channels) {
+                float v = flat[o + ch];
+                if (v > bestV && flat[o + 2] > minWH && flat[o + 3] > minWH) {
+                    bestV = v;
+                    bestIdx = i;
+                }
+            }
+        }
+        return bestIdx < 0 ? null : box(bestIdx, cls, toProb(bestV));
+    }
+
+    /**
+     * 多框路徑：每個 anchor 取最高類別 → 機率 > threshold 且 w/h > minWH → 取分數前 topK → 同類別 IoU > iouThreshold 互相抑制
+     * 回傳依分數由高到低排序的框
+     */
+    public List<Box> detect(float threshold, float minWH, int topK, float iouThreshold) {
+        final float rawTh = rawThreshold(threshold);
+
+        // 1) 每個 anchor 的最高類別（channels-first 時逐通道連續掃）
+        Arrays.fill(bestRaw, Float.NEGATIVE_INFINITY);
+        for (int c = 0; c < numClasses; c++) {
+            final int ch = BOX_CHANNELS + c;
+            for (int i = 0; i < numDet; i++) {
+                float v = at(ch, i);
+                if (v > bestRaw[i]) {
+                    bestRaw[i] = v;
+                    bestCls[i] = c;
+                }
+            }
+        }
+
+        // 2) 信心 + 大小預篩
+        int n = 0;
+        for (int i = 0; i < numDet; i++) {
+            if (bestRaw[i] > rawTh && at(2, i) > minWH && at(3, i) > minWH) {
+                cand[n++] = i;
+            }
+        }
+        if (n == 0) return new ArrayList<>();
+
+        // 3) 部分 top-K：大小 K 的最小堆，只保留分數最高的 K 個
+        int k = Math.min(topK <= 0 ? n : topK, n);
+        if (heap == null || heap.length < k) heap = new int[k];
+        int size = 0;
+        for (int j = 0; j < n; j++) {
+            int idx = cand[j];
+            if (size < k) {
+                heap[size] = idx;
+                siftUp(size++);
+            } else if (bestRaw[idx] > bestRaw[heap[0]]) {
+                heap[0] = idx;
+                siftDown(0, size);
+            }
+        }
+        // 堆排序：依序把最小的放到尾端 → heap[0..k) 變成由高到低
+        for (int end = size - 1; end > 0; end--) {
+            int tmp = heap[0];
+            heap[0] = heap[end];
+            heap[end] = tmp;
+            siftDown(0, end);
+        }
+
+        // 4) 類別內 NMS（貪婪）
+        List<Box> kept = new ArrayList<>();
+        for (int j = 0; j < size; j++) {
+            int idx = heap[j];
+            Box b = box(idx, bestCls[idx], toProb(bestRaw[idx]));
+            boolean suppressed = false;
+            for (Box o : kept) {
+                if (o.cls == b.cls && iou(o, b) > iouThreshold) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) kept.add(b);
+        }
+        return kept;
+    }
+
+    /**
+     * 每個類別在這一幀的最高機率（debug log 用）
+     * 只比原始值找最大，最後才做一次 sigmoid（單調，結果相同）
+     */
+    public float[] classMaxScores() {
+        float[] max = new float[numClasses];
+        for (int c = 0; c < numClasses; c++) {
+            final int ch = BOX_CHANNELS + c;
+            float m = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < numDet; i++) {
+                float v = at(ch, i);
+                if (v > m) m = v;
+            }
+            max[c] = toProb(m);
+        }
+        return max;
+    }
+
+    /** 兩框 IoU（中心點 + 寬高格式） */
+    static float iou(Box a, Box b) {
+        float ix = Math.min(a.cx + a.w / 2f, b.cx + b.w / 2f) - Math.max(a.cx - a.w / 2f, b.cx - b.w / 2f);
+        float iy = Math.min(a.cy + a.h / 2f, b.cy + b.h / 2f) - Math.max(a.cy - a.h / 2f, b.cy - b.h / 2f);
+        if (ix <= 0f || iy <= 0f) return 0f;
+        float inter = ix * iy;
+        return inter / (a.w * a.h + b.w * b.h - inter);
+    }
+
+    // ================= helpers =================
+
+    private float at(int ch, int i) {
+        return channelsFirst ? flat[ch * numDet + i] : flat[i * channels + ch];
+    }
+
+    private Box box(int i, int cls, float score) {
+        return new Box(i, cls, score, at(0, i), at(1, i), at(2, i), at(3, i));
+    }
+
+    // 抽看每個類別通道前幾個 anchor：有值不在 0..1 就視為 logits（跟舊版判斷一樣，但只做一次）
+    private boolean sniffLogits() {
+        int sample = Math.min(LOGIT_SAMPLE, numDet);
+        for (int c = 0; c < numClasses; c++) {
+            for (int i = 0; i < sample; i++) {
+                float v = at(BOX_CHANNELS + c, i);
+                if (v < 0f || v > 1f) return true;
+            }
+        }
+        return false;
+    }
+
+    // 機率閾值 → 原始值空間的閾值（sigmoid 單調，比較結果不變）
+    private float rawThreshold(float threshold) {
+        if (!Boolean.TRUE.equals(scoresAreLogits)) return threshold;
+        if (threshold <= 0f) return Float.NEGATIVE_INFINITY;
+        if (threshold >= 1f) return Float.POSITIVE_INFINITY;
+        return (float) Math.log(threshold / (1.0 - threshold));
+    }
+
+    // clamp 再 sigmoid，避免 exp 溢位（與舊版相同寫法）
+    private float toProb(float raw) {
+        if (!Boolean.TRUE.equals(scoresAreLogits)) return raw;
+        return (float) (1.0 / (1.0 + Math.exp(-Math.max(-20.0, Math.min(20.0, raw)))));
+    }
+
+    private void checkClass(int cls) {
+        if (cls < 0 || cls >= numClasses) {
+            throw new IllegalArgumentException("類別超出範圍: " + cls + " / " + numClasses);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int p = (i - 1) >> 1;
+            if (bestRaw[heap[i]] >= bestRaw[heap[p]]) break;
+            int t = heap[i];
+            heap[i] = heap[p];
+            heap[p] = t;
+            i = p;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, m = i;
+            if (l < size && bestRaw[heap[l]] < bestRaw[heap[m]]) m = l;
+            if (r < size && bestRaw[heap[r]] < bestRaw[heap[m]]) m = r;
+            if (m == i) return;
+            int t = heap[i];
+            heap[i] = heap[m];
+            heap[m] = t;
+            i = m;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YuvToRgbConverter
+ * - 直接把 YUV_420_888 三個平面轉成 ARGB int[]（可直接 Bitmap.setPixels）
+ * - 取代舊的 NV21 → JPEG(100) → BitmapFactory 來回編解碼
+ * - 支援 rowStride / pixelStride（NV21、NV12、I420 排列都吃）
+ * - 色彩公式：BT.601 full range（與 YuvImage.compressToJpeg 的 JFIF 一致）
+ * - 可在同一趟寫入時完成旋轉 + 左右鏡像（取代 rotateBitmap / mirrorBitmap 兩次 createBitmap）
+ * - 可同時 2× 降採樣（2×2 區塊平均亮度、共用該區塊的 chroma），降檔時少轉 3/4 的像素
+ * - 純 Java、不依賴 Android，方便在 JVM 單元測試
+ *
+ * 非執行緒安全：一個分析執行緒持有一個實例即可（內部 scratch 會重用）。
+ */
+public class YuvToRgbConverter {
+
+    // 定點數係數（<<16）
+    private static final int SHIFT = 16;
+    private static final int HALF  = 1 << (SHIFT - 1);
+    private static final int K_RV = 91881;   // 1.402
+    private static final int K_GU = 22554;   // 0.344136
+    private static final int K_GV = 46802;   // 0.714136
+    private static final int K_BU = 116130;  // 1.772
+
+    // 重用的平面拷貝（ByteBuffer → byte[]，一次 bulk get）
+    private byte[] yScratch = new byte[0];
+    private byte[] uScratch = new byte[0];
+    private byte[] vScratch = new byte[0];
+
+    // 重用的輸出
+    private int[] argb = new int[0];
+
+    /** 取得（必要時擴充）輸出緩衝區，長度 >= width*height */
+    public int[] obtainOutput(int width, int height) {
+        int need = width * height;
+        if (argb.length < need) argb = new int[need];
+        return argb;
+    }
+
+    /**
+     * 從 ByteBuffer 平面轉換（相機 ImageProxy 用）。
+     * 不會改動各 buffer 的 position。
+     * @return 重用的 ARGB 陣列（前 width*height 個有效）
+     */
+    public int[] convert(ByteBuffer yBuf, int yRowStride, int yPixelStride,
+                         ByteBuffer uBuf, ByteBuffer vBuf, int uvRowStride, int uvPixelStride,
+                         int width, int height) {
+        return convert(yBuf, yRowStride, yPixelStride, uBuf, vBuf, uvRowStride, uvPixelStride,
+                width, height, 0, false);
+    }
+
+    /**
+     * 同上，但輸出已旋轉 rotationDegrees（順時針，0/90/180/270）並可左右鏡像。
+     * 90/270 時輸出寬高對調：寬 = height、高 = width。
+     */
+    public int[] convert(ByteBuffer yBuf, int yRowStride, int yPixelStride,
+                         ByteBuffer uBuf, ByteBuffer vBuf, int uvRowStride, int uvPixelStride,
+                         int width, int height, int rotationDegrees, boolean mirror) {
+        return convert(yBuf, yRowStride, yPixelStride, uBuf, vBuf, uvRowStride, uvPixelStride,
+                width, height, rotationDegrees, mirror, 1);
+    }
+
+    /**
+     * 同上，另外每 step 個像素取一個（step = 1 原尺寸、2 長寬各半）。
+     * 輸出寬高用 outputWidth / outputHeight(width, height, rotationDegrees, step) 取得。
+     */
+    public int[] convert(ByteBuffer yBuf, int yRowStride, int yPixelStride,
+                         ByteBuffer uBuf, ByteBuffer vBuf, int uvRowStride, int uvPixelStride,
+                         int width, int height, int rotationDegrees, boolean mirror, int step) {
+        yScratch = copyPlane(yBuf, yScratch);
+        uScratch = copyPlane(uBuf, uScratch);
+        vScratch = copyPlane(vBuf, vScratch);
+        if (step == 2) {
+            int[] out = obtainOutput(width / 2, height / 2);
+            convertHalf(yScratch, yRowStride, yPixelStride,
+                    uScratch, vScratch, uvRowStride, uvPixelStride,
+                    width, height, rotationDegrees, mirror, out);
+            return out;
+        }
+        if (step != 1) throw new IllegalArgumentException("只支援 step 1 / 2: " + step);
+        int[] out = obtainOutput(width, height);
+        convert(yScratch, yRowStride, yPixelStride,
+                uScratch, vScratch, uvRowStride, uvPixelStride,
+                width, height, rotationDegrees, mirror, out);
+        return out;
+    }
+
+    /**
+     * 核心轉換：byte[] 平面 → ARGB。
+     * U/V 為 2x2 子取樣；index = (row/2)*uvRowStride + (col/2)*uvPixelStride。
+     */
+    public static void convert(byte[] y, int yRowStride, int yPixelStride,
+                               byte[] u, byte[] v, int uvRowStride, int uvPixelStride,
+                               int width, int height, int[] out) {
+        convert(y, yRowStride, yPixelStride, u, v, uvRowStride, uvPixelStride,
+                width, height, 0, false, out);
+    }
+
+    /**
+     * 核心轉換 + 旋轉/鏡像融合：來源 (col,row) 直接寫到目標 index。
+     * 目標 index 對 col、row 都是線性的：dst = base + col*stepCol + row*stepRow。
+     */
+    public static void convert(byte[] y, int yRowStride, int yPixelStride,
+                               byte[] u, byte[] v, int uvRowStride, int uvPixelStride,
+                               int width, int height, int rotationDegrees, boolean mirror,
+                               int[] out) {
+        if (out.length < width * height) {
+            throw new IllegalArgumentException("輸出緩衝區太小: " + out.length + " < " + (width * height));
+        }
+        int base    = dstIndex(0, 0, width, height, rotationDegrees, mirror);
+        int stepCol = dstIndex(1, 0, width, height, rotationDegrees, mirror) - base;
+        int stepRow = dstIndex(0, 1, width, height, rotationDegrees, mirror) - base;
+
+        for (int row = 0; row < height; row++) {
+            int yRow  = row * yRowStride;
+            int uvRow = (row >> 1) * uvRowStride;
+            int o = base + row * stepRow;
+            for (int col = 0; col < width; col += 2) {
+                int uvIdx = uvRow + (col >> 1) * uvPixelStride;
+                int cb = (u[uvIdx] & 0xFF) - 128;
+                int cr = (v[uvIdx] & 0xFF) - 128;
+
+                // 兩個水平相鄰像素共用同一組 chroma
+                int dr = K_RV * cr + HALF;
+                int dg = -K_GU * cb - K_GV * cr + HALF;
+                int db = K_BU * cb + HALF;
+
+                int yy = (y[yRow + col * yPixelStride] & 0xFF) << SHIFT;
+                out[o] = pack(yy + dr, yy + dg, yy + db);
+                o += stepCol;
+
+                if (col + 1 < width) {
+                    yy = (y[yRow + (col + 1) * yPixelStride] & 0xFF) << SHIFT;
+                    out[o] = pack(yy + dr, yy + dg, yy + db);
+                    o += stepCol;
+                }
+            }
+        }
+    }
+
+    /**
+     * 2× 降採樣 + 旋轉/鏡像：輸出 (width/2)×(height/2)（轉 90/270 時對調）。
+     * 每個 2×2 區塊平均 4 個 Y，chroma 剛好是該區塊那一組 U/V（4:2:0 對齊，不用內插）。
+     */
+    public static void convertHalf(byte[] y, int yRowStride, int yPixelStride,
+                                   byte[] u, byte[] v, int uvRowStride, int uvPixelStride,
+                                   int width, int height, int rotationDegrees, boolean mirror,
+                                   int[] out) {
+        int w = width / 2;
+        int h = height / 2;
+        if (out.length < w * h) {
+            throw new IllegalArgumentException("輸出緩衝區太小: " + out.length + " < " + (w * h));
+        }
+        int base    = dstIndex(0, 0, w, h, rotationDegrees, mirror);
+        int stepCol = dstIndex(1, 0, w, h, rotationDegrees, mirror) - base;
+        int stepRow = dstIndex(0, 1, w, h, rotationDegrees, mirror) - base;
+        int dx = yPixelStride;
+
+        for (int row = 0; row < h; row++) {
+            int y0 = (row << 1) * yRowStride;
+            int y1 = y0 + yRowStride;
+            int uvRow = row * uvRowStride;
+            int o = base + row * stepRow;
+            for (int col = 0; col < w; col++) {
+                int uvIdx = uvRow + col * uvPixelStride;
+                int cb = (u[uvIdx] & 0xFF) - 128;
+                int cr = (v[uvIdx] & 0xFF) - 128;
+
+                int x0 = (col << 1) * dx;
+                int luma = ((y[y0 + x0] & 0xFF) + (y[y0 + x0 + dx] & 0xFF)
+                        + (y[y1 + x0] & 0xFF) + (y[y1 + x0 + dx] & 0xFF) + 2) >> 2;
+                int yy = luma << SHIFT;
+                out[o] = pack(yy + K_RV * cr + HALF,
+                        yy - K_GU * cb - K_GV * cr + HALF,
+                        yy + K_BU * cb + HALF);
+                o += stepCol;
+            }
+        }
+    }
+
+    /** 降採樣後的輸出寬（step = 1 / 2） */
+    public static int outputWidth(int width, int height, int rotationDegrees, int step) {
+        return outputWidth(width / step, height / step, rotationDegrees);
+    }
+
+    /** 降採樣後的輸出高（step = 1 / 2） */
+    public static int outputHeight(int width, int height, int rotationDegrees, int step) {
+        return outputHeight(width / step, height / step, rotationDegrees);
+    }
+
+    /** 輸出寬（90/270 時為來源高） */
+    public static int outputWidth(int width, int height, int rotationDegrees) {
+        return (normalizeRotation(rotationDegrees) % 180 == 0) ? width : height;
+    }
+
+    /** 輸出高（90/270 時為來源寬） */
+    public static int outputHeight(int width, int height, int rotationDegrees) {
+        return (normalizeRotation(rotationDegrees) % 180 == 0) ? height : width;
+    }
+
+    // 來源 (col,row) → 先順時針旋轉、再水平鏡像後的目標 index
+    private static int dstIndex(int col, int row, int width, int height, int rotationDegrees, boolean mirror) {
+        int rot = normalizeRotation(rotationDegrees);
+        int dstW = outputWidth(width, height, rot);
+        int x, yy;
+        switch (rot) {
+            case 90:  x = height - 1 - row; yy = col;              break;
+            case 180: x = width - 1 - col;  yy = height - 1 - row; break;
+            case 270: x = row;              yy = width - 1 - col;  break;
+            default:  x = col;              yy = row;              break;
+        }
+        if (mirror) x = dstW - 1 - x;
+        return yy * dstW + x;
+    }
+
+    private static int normalizeRotation(int degrees) {
+        int r = ((degrees % 360) + 360) % 360;
+        if (r % 90 != 0) throw new IllegalArgumentException("只支援 90 度倍數旋轉: " + degrees);
+        return r;
+    }
+
+    private static int pack(int r, int g, int b) {
+        r = clamp(r >> SHIFT);
+        g = clamp(g >> SHIFT);
+        b = clamp(b >> SHIFT);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int c) {
+        return c < 0 ? 0 : (c > 255 ? 255 : c);
+    }
+
+    private static byte[] copyPlane(ByteBuffer buf, byte[] scratch) {
+        int pos = buf.position();
+        int len = buf.remaining();
+        if (scratch.length < len) scratch = new byte[len];
+        buf.get(scratch, 0, len);
+        buf.position(pos);
+        return scratch;
+    }
+}
@@ -33,7 +33,9 @@ import android.view.View.OnClickListener;
 import android.widget.Toast;
 import android.widget.GridLayout;
 import android.content.Intent;
+import com.example.rehabilitationapp.ui.analysis.AnalysisWarmup;
 import com.example.rehabilitationapp.ui.facecheck.FaceCircleCheckerActivity;
+import com.example.rehabilitationapp.ui.facecheck.ModelPreloader;
 
 import java.util.HashMap;
 import java.util.List;
@@ -424,6 +426,12 @@ public class HomeFragment extends Fragment {
 
         // 啟用開始按鈕
         binding.startButton.setEnabled(true);
+
+        // 選好動作就先在背景預熱這個動作的分析器，並預載訓練頁要用的 FaceLandmarker / 舌頭 YOLO
+        if (items != null && trainingType < items.size()) {
+            AnalysisWarmup.warmUp(requireContext(), items.get(trainingType).analysisType);
+            ModelPreloader.preload(requireContext(), items.get(trainingType).analysisType);
+        }
     }
 
     private void buildCards(List<TrainingItem> items) {
@@ -21,6 +21,7 @@ import com.example.rehabilitationapp.data.model.TrainingItem;
 import com.example.rehabilitationapp.data.model.TrainingPlan;
 import com.example.rehabilitationapp.ui.facecheck.FaceCircleCheckerActivity;
 import com.example.rehabilitationapp.ui.facecheck.MotionGuideBottomSheet;
+import com.example.rehabilitationapp.ui.facecheck.ModelPreloader;
 import com.google.android.material.button.MaterialButton;
 
 import java.util.ArrayList;
@@ -305,6 +306,9 @@ public class TrainingDetailActivity extends AppCompatActivity {
                 : inferAnalysisTypeFromTitle(item.title);
         String titleZh = item.title;
 
+        // 先在背景預載模型，訓練頁開起來時多半已經建好
+        ModelPreloader.preload(this, analysisType);
+
         // ★ 直接開始訓練，不跳教學說明
         launchTraining(analysisType, titleZh);
     }
@@ -80,8 +80,8 @@ fun 訓練結果頁() {
     var isSyncing by remember { mutableStateOf(false) }
     var syncProgressFb by remember { mutableStateOf(Pair(0, 0)) }
     var syncProgressCsv by remember { mutableStateOf(Pair(0, 0)) }
-    var syncResultFb by remember { mutableStateOf(Pair(0, 0)) }
-    var syncResultCsv by remember { mutableStateOf(Pair(0, 0)) }
+    var syncResultFb by remember { mutableStateOf(Triple(0, 0, 0)) }   // 成功 / 放棄 / 未完成
+    var syncResultCsv by remember { mutableStateOf(Triple(0, 0, 0)) }
     var fbDone by remember { mutableStateOf(false) }
     var csvDone by remember { mutableStateOf(false) }
 
@@ -264,8 +264,8 @@ fun 訓練結果頁() {
                         .clickable {
                             syncProgressFb = Pair(0, 0)
                             syncProgressCsv = Pair(0, 0)
-                            syncResultFb = Pair(0, 0)
-                            syncResultCsv = Pair(0, 0)
+                            syncResultFb = Triple(0, 0, 0)
+                            syncResultCsv = Triple(0, 0, 0)
                             fbDone = false
                             csvDone = false
                             isSyncing = true
@@ -275,8 +275,8 @@ fun 訓練結果頁() {
                                 override fun onProgress(current: Int, total: Int) {
                                     syncProgressFb = Pair(current, total)
                                 }
-                                override fun onComplete(successCount: Int, failCount: Int) {
-                                    syncResultFb = Pair(successCount, failCount)
+                                override fun onComplete(successCount: Int, failCount: Int, pendingCount: Int) {
+                                    syncResultFb = Triple(successCount, failCount, pendingCount)
                                     fbDone = true
                                     if (fbDone && csvDone) isSyncing = false
                                 }
@@ -286,8 +286,8 @@ fun 訓練結果頁() {
                                 override fun onProgress(current: Int, total: Int) {
                                     syncProgressCsv = Pair(current, total)
                                 }
-                                override fun onComplete(successCount: Int, failCount: Int) {
-                                    syncResultCsv = Pair(successCount, failCount)
+                                override fun onComplete(successCount: Int, failCount: Int, pendingCount: Int) {
+                                    syncResultCsv = Triple(successCount, failCount, pendingCount)
                                     csvDone = true
                                     if (fbDone && csvDone) isSyncing = false
                                 }
@@ -394,7 +394,8 @@ fun 訓練結果頁() {
                             Text(
                                 text = when {
                                     !fbDone -> "⏳"
-                                    syncResultFb.second > 0 -> "⚠️"
+                                    syncResultFb.second > 0 -> "❌"
+                                    syncResultFb.third > 0 -> "⚠️"
                                     else -> "✅"
                                 },
                                 fontSize = 18.sp
@@ -404,14 +405,21 @@ fun 訓練結果頁() {
                                 Text("Firebase 紀錄", fontWeight = FontWeight.Medium)
                                 Text(
                                     text = when {
-                                        !fbDone && syncProgressFb.second > 0 -> "${syncProgressFb.first} / ${syncProgressFb.second} 筆"
+                                        !fbDone && syncProgressFb.second > 0 -> "已處理 ${syncProgressFb.first} / ${syncProgressFb.second} 筆"
                                         !fbDone -> "檢查中..."
-                                        syncResultFb.first == 0 && syncResultFb.second == 0 -> "無資料需同步"
-                                        syncResultFb.second > 0 -> "成功 ${syncResultFb.first} 筆，失敗 ${syncResultFb.second} 筆"
+                                        syncResultFb.first == 0 && syncResultFb.second == 0 && syncResultFb.third == 0 -> "無資料需同步"
+                                        syncResultFb.second > 0 && syncResultFb.third > 0 -> "成功 ${syncResultFb.first} 筆，失敗 ${syncResultFb.second} 筆（請再按一次同步），未完成 ${syncResultFb.third} 筆（稍後自動重試）"
+                                        syncResultFb.second > 0 -> "成功 ${syncResultFb.first} 筆，失敗 ${syncResultFb.second} 筆（請再按一次同步）"
+                                        syncResultFb.third > 0 -> "成功 ${syncResultFb.first} 筆，未完成 ${syncResultFb.third} 筆（稍後自動重試）"
                                         else -> "完成 ${syncResultFb.first} 筆"
                                     },
                                     fontSize = 12.sp,
-                                    color = if (fbDone && syncResultFb.second > 0) Color(0xFFFF9800) else Color.Gray
+                                    color = when {
+                                        !fbDone -> Color.Gray
+                                        syncResultFb.second > 0 -> Color.Red
+                                        syncResultFb.third > 0 -> Color(0xFFFF9800)
+                                        else -> Color.Gray
+                                    }
                                 )
                             }
                         }
@@ -420,7 +428,8 @@ fun 訓練結果頁() {
                             Text(
                                 text = when {
                                     !csvDone -> "⏳"
-                                    syncResultCsv.second > 0 -> "⚠️"
+                                    syncResultCsv.second > 0 -> "❌"
+                                    syncResultCsv.third > 0 -> "⚠️"
                                     else -> "✅"
                                 },
                                 fontSize = 18.sp
@@ -430,14 +439,21 @@ fun 訓練結果頁() {
                                 Text("CSV 資料", fontWeight = FontWeight.Medium)
                                 Text(
                                     text = when {
-                                        !csvDone && syncProgressCsv.second > 0 -> "${syncProgressCsv.first} / ${syncProgressCsv.second} 筆"
+                                        !csvDone && syncProgressCsv.second > 0 -> "已處理 ${syncProgressCsv.first} / ${syncProgressCsv.second} 筆"
                                         !csvDone -> "檢查中..."
-                                        syncResultCsv.first == 0 && syncResultCsv.second == 0 -> "無資料需同步"
-                                        syncResultCsv.second > 0 -> "成功 ${syncResultCsv.first} 筆，失敗 ${syncResultCsv.second} 筆"
+                                        syncResultCsv.first == 0 && syncResultCsv.second == 0 && syncResultCsv.third == 0 -> "無資料需同步"
+                                        syncResultCsv.second > 0 && syncResultCsv.third > 0 -> "成功 ${syncResultCsv.first} 筆，失敗 ${syncResultCsv.second} 筆（請再按一次同步），未完成 ${syncResultCsv.third} 筆（稍後自動重試）"
+                                        syncResultCsv.second > 0 -> "成功 ${syncResultCsv.first} 筆，失敗 ${syncResultCsv.second} 筆（請再按一次同步）"
+                                        syncResultCsv.third > 0 -> "成功 ${syncResultCsv.first} 筆，未完成 ${syncResultCsv.third} 筆（稍後自動重試）"
                                         else -> "完成 ${syncResultCsv.first} 筆"
                                     },
                                     fontSize = 12.sp,
-                                    color = if (csvDone && syncResultCsv.second > 0) Color(0xFFFF9800) else Color.Gray
+                                    color = when {
+                                        !csvDone -> Color.Gray
+                                        syncResultCsv.second > 0 -> Color.Red
+                                        syncResultCsv.third > 0 -> Color(0xFFFF9800)
+                                        else -> Color.Gray
+                                    }
                                 )
                             }
                         }
@@ -637,9 +653,9 @@ fun 訓練結果頁() {
                                 if (canUpload) {
                                     isVideoUploading = true
                                     val selectedVideos = unuploadedVideos.filter { selectedVideoIds.contains(it.trainingID) }
-                                    val files = selectedVideos.mapNotNull { video ->
+                                    val existing = selectedVideos.mapNotNull { video ->
                                         val file = java.io.File(context.getExternalFilesDir(null), video.videoFileName)
-                                        if (file.exists()) file else null
+                                        if (file.exists()) video to file else null
                                     }
 
                                     // ★ 先排 Worker（保險）
@@ -650,7 +666,8 @@ fun 訓練結果頁() {
                                     // ★ 再即時上傳
                                     SftpUploader.uploadMultipleAsync(
                                         context,
-                                        files,
+                                        existing.map { it.first.trainingID },
+                                        existing.map { it.second },
                                         object : SftpUploader.BatchUploadCallback {
                                             override fun onFileStart(index: Int, total: Int, fileName: String) {
                                                 videoUploadProgress = "上傳中 [${index + 1}/$total]\n$fileName"
@@ -836,6 +853,7 @@ fun TrainingResultCard(data: TrainingHistory, onUpdate: () -> Unit = {}) {
 
                             SftpUploader.uploadVideoAsync(
                                 context,
+                                data.trainingID,
                                 videoFile,
                                 object : SftpUploader.UploadCallback {
                                     override fun onProgress(percent: Int) {
@@ -16,6 +16,7 @@ import com.example.rehabilitationapp.data.AppDatabase;
 import com.example.rehabilitationapp.data.BackupUploader;
 import com.example.rehabilitationapp.data.dao.UserDao;
 import com.example.rehabilitationapp.data.model.User;
+import com.example.rehabilitationapp.ui.debug.BenchmarkActivity;
 import android.content.Context;
 import android.content.SharedPreferences;
 import androidx.appcompat.widget.SwitchCompat;
@@ -73,6 +74,12 @@ public class SettingFragment extends Fragment {
         switchVideoRecording.setOnCheckedChangeListener((buttonView, isChecked) -> {
             appPrefs.edit().putBoolean("video_recording_enabled", isChecked).apply();
         });
+        // 🔧 DEBUG：長按「關於」卡片開效能測試（舌頭 YOLO 後端、臉頰光流）
+        view.findViewById(R.id.aboutCard).setOnLongClickListener(v -> {
+            startActivity(new Intent(requireContext(), BenchmarkActivity.class));
+            return true;
+        });
+
         // ---- DB ----
         userDao = AppDatabase.getInstance(requireContext()).userDao();
 
@@ -30,6 +30,10 @@ def analyze_tongue_csv(
         if "state" in df.columns:
             df = df[df["state"] == "MAINTAINING"].copy()
 
+        # 只留真的跑了 YOLO 的列（yolo_measured = 0 是沿用上一次的框）
+        if "yolo_measured" in df.columns:
+            df = df[df["yolo_measured"] != 0].copy()
+
         # ---- 欄位檢查 ----
         base_need = ["time_seconds", "eyeL_x", "eyeL_y", "eyeR_x", "eyeR_y"]
         d = direction.strip().lower()
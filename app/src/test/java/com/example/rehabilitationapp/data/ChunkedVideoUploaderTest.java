@@ -0,0 +1,232 @@
+package com.example.rehabilitationapp.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.rehabilitationapp.data.dao.VideoUploadProgressDao;
+import com.example.rehabilitationapp.data.model.VideoUploadProgress;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.server.FileHandle;
+import org.apache.sshd.sftp.server.SftpEventListener;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 影片分段續傳對本機 Apache MINA SSHD：從 Room 記的 offset 接著傳、壞掉的最後一段退回重傳、驗過才改名、
+ * 沒有 exec 也不整檔讀回來、已傳完的再呼叫不重新下載
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class ChunkedVideoUploaderTest {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final String DIR = "/Rh_Videos/u1";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private SshServer server;
+    private File remoteRoot;
+    private SftpPool pool;
+    private AppDatabase db;
+    private VideoUploadProgressDao dao;
+    private final AtomicInteger execs = new AtomicInteger();
+    private final AtomicLong readBytes = new AtomicLong();                     // 從伺服器讀回來的 bytes
+    private volatile boolean execEnabled = true;
+
+    private File local;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        remoteRoot = tmp.newFolder("remote");
+        server = SshServer.setUpDefaultServer();
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(tmp.getRoot().toPath().resolve("hostkey.ser")));
+        server.setPasswordAuthenticator((user, password, session) -> true);
+        SftpSubsystemFactory sftp = new SftpSubsystemFactory();
+        sftp.addSftpEventListener(new SftpEventListener() {
+            @Override
+            public void read(ServerSession session, String remoteHandle, FileHandle localHandle, long offset,
+                             byte[] data, int dataOffset, int dataLen, int readLen, Throwable thrown) {
+                if (readLen > 0) readBytes.addAndGet(readLen);
+            }
+        });
+        server.setSubsystemFactories(Collections.singletonList(sftp));
+        server.setFileSystemFactory(new VirtualFileSystemFactory(remoteRoot.toPath()));
+        server.setCommandFactory((channel, command) -> new Sha256Command(command));
+        server.start();
+        pool = new SftpPool("127.0.0.1", server.getPort(), "lab", "pw", 1);
+
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        dao = db.videoUploadProgressDao();
+
+        data = new byte[5 * CHUNK + 1234];
+        new Random(1).nextBytes(data);
+        local = new File(tmp.getRoot(), "t1_PUFF_CHEEK.mp4");
+        Files.write(local.toPath(), data);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        pool.close();
+        server.stop(true);
+        db.close();
+    }
+
+    private File remote(String name) {
+        return new File(remoteRoot, DIR.substring(1) + "/" + name);
+    }
+
+    private boolean upload(String trainingID, List<Integer> progress) throws Exception {
+        return ChunkedVideoUploader.upload(pool, dao, trainingID, local, DIR, CHUNK,
+                progress == null ? null : progress::add);
+    }
+
+    @Test
+    public void freshUpload_verifiesAndRenames() throws Exception {
+        assertTrue(upload("t1", null));
+        assertArrayEquals(data, Files.readAllBytes(remote(local.getName()).toPath()));
+        assertFalse(remote(local.getName() + ChunkedVideoUploader.PART_SUFFIX).exists());
+        assertTrue(dao.get("t1").completedAt > 0);                              // 驗證完記成已完成
+    }
+
+    @Test
+    public void withoutExec_verifiesByChunkChain_notWholeReadBack() throws Exception {
+        execEnabled = false;
+        assertTrue(upload("t1", null));
+        assertArrayEquals(data, Files.readAllBytes(remote(local.getName()).toPath()));
+        assertTrue("讀回 " + readBytes.get() + " bytes", readBytes.get() <= CHUNK);   // 只讀回最後一段
+    }
+
+    @Test
+    public void resume_continuesFromConfirmedChunk_andRollsBackCorruptOne() throws Exception {
+        // 上次斷線：Room 記到第 3 段，遠端 .part 多寫了半段，而且第 3 段裡有一個位元組壞了
+        byte[] partial = Arrays.copyOf(data, 3 * CHUNK + 500);
+        partial[2 * CHUNK + 10] ^= 1;
+        File part = remote(local.getName() + ChunkedVideoUploader.PART_SUFFIX);
+        assertTrue(part.getParentFile().mkdirs());
+        Files.write(part.toPath(), partial);
+
+        VideoUploadProgress p = new VideoUploadProgress();
+        p.trainingID = "t1";
+        p.fileName = local.getName();
+        p.fileSize = local.length();
+        p.fileModifiedAt = local.lastModified();
+        p.chunkSize = CHUNK;
+        p.confirmedOffset = 3L * CHUNK;
+        dao.upsert(p);
+
+        List<Integer> progress = new ArrayList<>();
+        assertTrue(upload("t1", progress));
+        // 第 3 段驗不過退回去：第一次回報的是傳完第 3 段（不是從 0 開始）
+        assertEquals((int) (3L * CHUNK * 100 / data.length), (int) progress.get(0));
+        assertArrayEquals(data, Files.readAllBytes(remote(local.getName()).toPath()));
+        assertFalse(part.exists());
+    }
+
+    @Test
+    public void alreadyUploaded_checksLastChunkOnly() throws Exception {
+        assertTrue(upload("t1", null));
+        execs.set(0);
+        readBytes.set(0);
+
+        List<Integer> progress = new ArrayList<>();
+        assertTrue(upload("t1", progress));
+        assertEquals(Collections.singletonList(100), progress);
+        assertEquals(0, execs.get());                                           // 進度記著已完成：不用 sha256sum
+        assertTrue("讀回 " + readBytes.get() + " bytes", readBytes.get() <= CHUNK);
+        assertEquals(1, pool.sessionsOpened());
+    }
+
+    @Test
+    public void legacyFileOnServer_skipsWithRemoteHash() throws Exception {
+        File target = remote(local.getName());                                   // 舊的整檔上傳傳過，沒有進度
+        assertTrue(target.getParentFile().mkdirs());
+        Files.write(target.toPath(), data);
+
+        List<Integer> progress = new ArrayList<>();
+        assertTrue(upload("t1", progress));
+        assertEquals(Collections.singletonList(100), progress);
+        assertEquals(1, execs.get());                                           // 只跑了 sha256sum，沒有重傳
+        assertTrue(dao.get("t1").completedAt > 0);
+    }
+
+    @Test
+    public void partLargerThanLocal_isDiscarded() throws Exception {
+        File part = remote(local.getName() + ChunkedVideoUploader.PART_SUFFIX);
+        assertTrue(part.getParentFile().mkdirs());
+        Files.write(part.toPath(), new byte[data.length + 10]);
+
+        assertTrue(upload("t1", null));
+        assertArrayEquals(data, Files.readAllBytes(remote(local.getName()).toPath()));
+    }
+
+    /** 模擬伺服器上的 sha256sum '<path>' */
+    private class Sha256Command implements Command {
+        private final String command;
+        private OutputStream out;
+        private ExitCallback exit;
+
+        Sha256Command(String command) {
+            this.command = command;
+        }
+
+        @Override public void setInputStream(InputStream in) {}
+        @Override public void setOutputStream(OutputStream out) { this.out = out; }
+        @Override public void setErrorStream(OutputStream err) {}
+        @Override public void setExitCallback(ExitCallback callback) { this.exit = callback; }
+        @Override public void destroy(ChannelSession channel) {}
+
+        @Override
+        public void start(ChannelSession channel, Environment env) throws IOException {
+            execs.incrementAndGet();
+            String path = command.substring(command.indexOf('\'') + 1, command.lastIndexOf('\''));
+            File f = new File(remoteRoot, path);
+            if (!execEnabled || !command.startsWith("sha256sum") || !f.exists()) {
+                exit.onExit(1);
+                return;
+            }
+            out.write((ChunkedVideoUploader.sha256(f) + "  " + path + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            exit.onExit(0);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.rehabilitationapp.data;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DayRange：本地日的半開區間 [start, end)，含夏令時間切換日
+ */
+public class DayRangeTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void taipeiDay_isHalfOpen24h() {
+        TimeZone tz = TimeZone.getTimeZone("Asia/Taipei");
+        Calendar cal = Calendar.getInstance(tz);
+        cal.clear();
+        cal.set(2025, Calendar.NOVEMBER, 23, 23, 59, 59);
+        DayRange day = DayRange.of(cal.getTimeInMillis(), tz);
+
+        cal.set(2025, Calendar.NOVEMBER, 23, 0, 0, 0);
+        assertEquals(cal.getTimeInMillis(), day.startMs);
+        assertEquals(24 * HOUR, day.endMs - day.startMs);
+        assertTrue(day.contains(day.startMs));
+        assertTrue(day.contains(day.endMs - 1));
+        assertFalse(day.contains(day.endMs));          // 隔天 00:00 不算今天
+        assertEquals(day.endMs, DayRange.of(day.endMs, tz).startMs);
+    }
+
+    @Test
+    public void dstSwitchDays_are23And25Hours() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
+        Calendar cal = Calendar.getInstance(tz);
+        cal.clear();
+        cal.set(2025, Calendar.MARCH, 30, 12, 0, 0);
+        DayRange spring = DayRange.of(cal.getTimeInMillis(), tz);
+        assertEquals(23 * HOUR, spring.endMs - spring.startMs);
+
+        cal.set(2025, Calendar.OCTOBER, 26, 12, 0, 0);
+        DayRange autumn = DayRange.of(cal.getTimeInMillis(), tz);
+        assertEquals(25 * HOUR, autumn.endMs - autumn.startMs);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.rehabilitationapp.data;
+
+import com.example.rehabilitationapp.data.model.SyncOp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OutboxPolicy：指數退避（含上限與固定抖動）、放棄次數、各目的地併發數與批次大小
+ */
+public class OutboxPolicyTest {
+
+    @Test
+    public void backoff_doublesWithinJitter_andCaps() {
+        long prev = 0;
+        for (int n = 1; n <= 8; n++) {
+            long base = OutboxPolicy.BASE_BACKOFF_MS << (n - 1);
+            long d = OutboxPolicy.backoffMs(n, "CSV:abc");
+            assertTrue(n + ": " + d, d >= base && d <= base * 1.2);
+            assertTrue(d > prev);
+            prev = d;
+        }
+        long capped = OutboxPolicy.backoffMs(40, "CSV:abc");
+        assertTrue(capped >= OutboxPolicy.MAX_BACKOFF_MS && capped <= OutboxPolicy.MAX_BACKOFF_MS * 1.2);
+    }
+
+    @Test
+    public void backoff_isDeterministicPerKey() {
+        assertEquals(OutboxPolicy.backoffMs(3, "VIDEO:x"), OutboxPolicy.backoffMs(3, "VIDEO:x"));
+        assertEquals(OutboxPolicy.BASE_BACKOFF_MS, OutboxPolicy.backoffMs(0, null), OutboxPolicy.BASE_BACKOFF_MS * 0.2);
+    }
+
+    @Test
+    public void retryLimit_concurrencyAndBatch() {
+        assertTrue(OutboxPolicy.shouldRetry(OutboxPolicy.MAX_ATTEMPTS - 1));
+        assertFalse(OutboxPolicy.shouldRetry(OutboxPolicy.MAX_ATTEMPTS));
+        assertEquals(1, OutboxPolicy.concurrency(SyncOp.DEST_VIDEO));
+        assertEquals(500, OutboxPolicy.batchSize(SyncOp.DEST_FIRESTORE));
+        assertEquals(1, OutboxPolicy.batchSize(SyncOp.DEST_CSV));
+        assertEquals(1, OutboxPolicy.batchSize(SyncOp.DEST_VIDEO));
+    }
+}
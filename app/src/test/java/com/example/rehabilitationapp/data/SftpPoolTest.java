@@ -0,0 +1,184 @@
+package com.example.rehabilitationapp.data;
+
+import org.apache.sshd.common.channel.Channel;
+import org.apache.sshd.common.channel.ChannelListener;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SftpPool 對本機 Apache MINA SSHD：Session 重用、平行通道上限、資料夾快取、RESUME 續傳（結尾比對過才跳過 / 續傳）
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class SftpPoolTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private SshServer server;
+    private File remoteRoot;
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicInteger openChannels = new AtomicInteger();
+    private final AtomicInteger maxOpenChannels = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        remoteRoot = tmp.newFolder("remote");
+        server = SshServer.setUpDefaultServer();
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(tmp.getRoot().toPath().resolve("hostkey.ser")));
+        server.setPasswordAuthenticator((user, password, session) -> {
+            logins.incrementAndGet();
+            return "lab".equals(user) && "pw".equals(password);
+        });
+        server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+        server.setFileSystemFactory(new VirtualFileSystemFactory(remoteRoot.toPath()));
+        server.addChannelListener(new ChannelListener() {
+            @Override
+            public void channelOpenSuccess(Channel channel) {
+                int open = openChannels.incrementAndGet();
+                maxOpenChannels.accumulateAndGet(open, Math::max);
+            }
+
+            @Override
+            public void channelClosed(Channel channel, Throwable reason) {
+                openChannels.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(true);
+    }
+
+    private SftpPool pool(int maxChannels) {
+        return new SftpPool("127.0.0.1", server.getPort(), "lab", "pw", maxChannels);
+    }
+
+    private File localFile(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(name.hashCode()).nextBytes(data);
+        File f = new File(tmp.getRoot(), name);
+        Files.write(f.toPath(), data);
+        return f;
+    }
+
+    private File remote(String path) {
+        return new File(remoteRoot, path);
+    }
+
+    @Test
+    public void uploadAll_reusesOneSession_andCapsParallelChannels() throws IOException {
+        SftpPool pool = pool(2);
+        List<SftpPool.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            jobs.add(new SftpPool.Job(localFile("v" + i + ".mp4", 200_000), "/Rh_Videos/u1"));
+        }
+
+        List<SftpPool.Result> results = pool.uploadAll(jobs, 4, null);
+        for (SftpPool.Result r : results) assertTrue(r.error, r.ok());
+        for (SftpPool.Job job : jobs) {
+            assertArrayEquals(Files.readAllBytes(job.file.toPath()),
+                    Files.readAllBytes(remote("Rh_Videos/u1/" + job.remoteName).toPath()));
+        }
+
+        // 第二批（另一個「Worker」）也用同一條 Session
+        pool.upload(new SftpPool.Job(localFile("backup.db", 1000), "/Rh_Videos/u1/backup"), null);
+        assertTrue(remote("Rh_Videos/u1/backup/backup.db").exists());
+
+        assertEquals(1, pool.sessionsOpened());
+        assertEquals(1, logins.get());
+        assertTrue("同時開了 " + maxOpenChannels.get() + " 個通道", maxOpenChannels.get() <= 2);
+        pool.close();
+    }
+
+    @Test
+    public void upload_resumesPartialRemote_andSkipsComplete() throws IOException {
+        SftpPool pool = pool(1);
+        File local = localFile("PUFF_CHEEK.mp4", 300_000);
+        byte[] data = Files.readAllBytes(local.toPath());
+        File dir = remote("Rh_Videos/u1");
+        assertTrue(dir.mkdirs());
+        Files.write(new File(dir, local.getName()).toPath(), Arrays.copyOf(data, 120_000));   // 上次斷在一半
+
+        SftpPool.Result resumed = pool.upload(new SftpPool.Job(local, "/Rh_Videos/u1"), null);
+        assertTrue(resumed.error, resumed.ok());
+        assertEquals(180_000, resumed.sentBytes);
+        assertArrayEquals(data, Files.readAllBytes(new File(dir, local.getName()).toPath()));
+
+        SftpPool.Result again = pool.upload(new SftpPool.Job(local, "/Rh_Videos/u1"), null);
+        assertTrue(again.skipped);
+        assertEquals(0, again.sentBytes);
+        pool.close();
+    }
+
+    @Test
+    public void upload_overwritesRemoteWithDifferentContent_evenIfSizeFits() throws IOException {
+        SftpPool pool = pool(1);
+        File local = localFile("TONGUE_LEFT.mp4", 300_000);
+        byte[] data = Files.readAllBytes(local.toPath());
+        File dir = remote("Rh_Videos/u1");
+        assertTrue(dir.mkdirs());
+        File target = new File(dir, local.getName());
+
+        // 同名同大小、內容不同（另一次錄影）：不能當成已完整
+        Files.write(target.toPath(), new byte[300_000]);
+        SftpPool.Result sameSize = pool.upload(new SftpPool.Job(local, "/Rh_Videos/u1"), null);
+        assertTrue(sameSize.error, sameSize.ok());
+        assertFalse(sameSize.skipped);
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+
+        // 比較短、前段不是這一份：不能續傳，要整個覆蓋
+        Files.write(target.toPath(), new byte[120_000]);
+        SftpPool.Result shorter = pool.upload(new SftpPool.Job(local, "/Rh_Videos/u1"), null);
+        assertTrue(shorter.error, shorter.ok());
+        assertEquals(300_000, shorter.sentBytes);
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        pool.close();
+    }
+
+    @Test
+    public void upload_overwritesLargerRemote_andReportsMissingLocal() throws IOException {
+        SftpPool pool = pool(1);
+        File local = localFile("a.csv", 1000);
+        File dir = remote("Rh_Videos/u1");
+        assertTrue(dir.mkdirs());
+        Files.write(new File(dir, "a.csv").toPath(), new byte[5000]);                      // 不是同一份
+
+        SftpPool.Result r = pool.upload(new SftpPool.Job(local, "/Rh_Videos/u1"), null);
+        assertTrue(r.error, r.ok());
+        assertFalse(r.skipped);
+        assertArrayEquals(Files.readAllBytes(local.toPath()), Files.readAllBytes(new File(dir, "a.csv").toPath()));
+
+        SftpPool.Result missing = pool.upload(new SftpPool.Job(new File(tmp.getRoot(), "nope.mp4"), "/Rh_Videos/u1"), null);
+        assertFalse(missing.ok());
+        pool.close();
+    }
+}
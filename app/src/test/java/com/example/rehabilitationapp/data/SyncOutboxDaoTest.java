@@ -0,0 +1,204 @@
+package com.example.rehabilitationapp.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.rehabilitationapp.data.dao.SyncOutboxDao;
+import com.example.rehabilitationapp.data.dao.TrainingHistoryDao;
+import com.example.rehabilitationapp.data.model.SyncOp;
+import com.example.rehabilitationapp.data.model.TrainingHistory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * syncOutbox：重複排入不多一筆、同一筆只搶得到一次、先決完成前不放行、退避到期才撈、Firestore 整批標記
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class SyncOutboxDaoTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private AppDatabase db;
+    private SyncOutboxDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        dao = db.syncOutboxDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void insert_isIdempotentPerOpKey() {
+        assertTrue(dao.insert(SyncOp.create(SyncOp.DEST_CSV, "t1", "a.csv", null, NOW)) > 0);
+        assertEquals(-1, dao.insert(SyncOp.create(SyncOp.DEST_CSV, "t1", "a.csv", null, NOW + 5)));
+        assertEquals(1, dao.countOpen());
+    }
+
+    @Test
+    public void claim_onlyOnceUntilReleased() {
+        long id = dao.insert(SyncOp.create(SyncOp.DEST_VIDEO, "t1", "a.mp4", null, NOW));
+        assertEquals(1, dao.claim(id, NOW + OutboxPolicy.LEASE_MS, NOW));
+        assertEquals(0, dao.claim(id, NOW + OutboxPolicy.LEASE_MS, NOW));     // 第二條 lane 搶不到
+        assertTrue(dao.getReady(SyncOp.DEST_VIDEO, NOW, 10).isEmpty());
+
+        // 程序被殺：租約過期後還原，可以再被搶（attempts 累計）
+        assertEquals(0, dao.releaseExpired(NOW + 1));
+        assertEquals(1, dao.releaseExpired(NOW + OutboxPolicy.LEASE_MS + 1));
+        assertEquals(1, dao.claim(id, NOW + 2 * OutboxPolicy.LEASE_MS, NOW + OutboxPolicy.LEASE_MS + 2));
+        assertEquals(2, dao.getByKey("VIDEO:t1").attempts);
+    }
+
+    @Test
+    public void dependency_blocksUntilDoneOrFailed() {
+        SyncOp csv = SyncOp.create(SyncOp.DEST_CSV, "t1", "a.csv", null, NOW);
+        SyncOp video = SyncOp.create(SyncOp.DEST_VIDEO, "t1", "a.mp4", csv.opKey, NOW);
+        dao.insertAll(Arrays.asList(csv, video));
+        long csvId = dao.getByKey(csv.opKey).id;
+
+        assertTrue(dao.getReady(SyncOp.DEST_VIDEO, NOW, 10).isEmpty());
+        dao.claim(csvId, NOW + 1000, NOW);
+        assertTrue(dao.getReady(SyncOp.DEST_VIDEO, NOW, 10).isEmpty());      // CSV 上傳中也要等
+
+        dao.markFailed(csvId, "檔案不存在", NOW);
+        List<SyncOp> ready = dao.getReady(SyncOp.DEST_VIDEO, NOW, 10);
+        assertEquals(1, ready.size());                                         // CSV 放棄了，影片照樣傳
+        assertEquals("VIDEO:t1", ready.get(0).opKey);
+    }
+
+    @Test
+    public void retry_waitsForBackoff_andWakeUpIgnoresBlocked() {
+        long id = dao.insert(SyncOp.create(SyncOp.DEST_FIRESTORE, "t1", null, null, NOW));
+        dao.insert(SyncOp.create(SyncOp.DEST_VIDEO, "t1", "a.mp4", "FIRESTORE:t1", NOW));
+        dao.claim(id, NOW + 1000, NOW);
+        long due = NOW + OutboxPolicy.backoffMs(1, "FIRESTORE:t1");
+        dao.markRetry(id, due, "timeout", NOW);
+
+        assertTrue(dao.getReady(SyncOp.DEST_FIRESTORE, NOW, 10).isEmpty());
+        assertEquals(1, dao.getReady(SyncOp.DEST_FIRESTORE, due, 10).size());
+        // 影片已到期但在等 Firestore：叫醒時間看的是 Firestore 的退避，不是影片的 NOW
+        assertEquals(Long.valueOf(due), dao.nextDueAt(NOW));
+
+        dao.claim(id, due + 1000, due);
+        dao.markDone(id, due);
+        dao.deletePending("VIDEO:t1");
+        assertNull(dao.nextDueAt(due));
+        assertEquals(0, dao.countOpen());
+    }
+
+    @Test
+    public void requeueFailed_resetsAttempts() {
+        long id = dao.insert(SyncOp.create(SyncOp.DEST_CSV, "t1", "a.csv", null, NOW));
+        dao.claim(id, NOW + 1000, NOW);
+        dao.markFailed(id, "HTTP 500", NOW);
+        assertEquals(1, dao.countFailed());
+
+        assertEquals(1, dao.requeueFailed("CSV:t1", NOW + 10));
+        SyncOp op = dao.getByKey("CSV:t1");
+        assertEquals(SyncOp.STATE_PENDING, op.state);
+        assertEquals(0, op.attempts);
+        assertEquals(0, dao.requeueFailed("CSV:t1", NOW + 20));                // 不是 FAILED 就不動
+    }
+
+    @Test
+    public void bumpPending_pullsBackoffForwardOnly() {
+        long id = dao.insert(SyncOp.create(SyncOp.DEST_CSV, "t1", "a.csv", null, NOW));
+        dao.claim(id, NOW + 1000, NOW);
+        dao.markRetry(id, NOW + 60_000, "timeout", NOW);
+
+        assertEquals(1, dao.bumpPending("CSV:t1", NOW + 10, NOW + 10));        // 使用者按同步 → 提前
+        SyncOp op = dao.getByKey("CSV:t1");
+        assertEquals(NOW + 10, op.nextAttemptAt);
+        assertEquals(1, op.attempts);                                           // 次數照舊
+        assertEquals(1, dao.getReady(SyncOp.DEST_CSV, NOW + 10, 10).size());
+        assertEquals(0, dao.bumpPending("CSV:t1", NOW + 600_000, NOW + 20));   // 不往後延
+
+        dao.claim(id, NOW + 1000, NOW + 20);
+        assertEquals(0, dao.bumpPending("CSV:t1", NOW + 30, NOW + 30));        // RUNNING 不動
+    }
+
+    @Test
+    public void firestoreBatch_pagesByKeyset_andMarksAllInOneTransaction() {
+        TrainingHistoryDao history = db.trainingHistoryDao();
+        insertHistories(5);
+        dao.insert(SyncOp.create(SyncOp.DEST_FIRESTORE, "gone", null, null, NOW));   // 紀錄已刪掉
+
+        List<TrainingHistory> first = history.getUnsyncedPage(Long.MIN_VALUE, "", 3);
+        TrainingHistory last = first.get(2);
+        List<TrainingHistory> second = history.getUnsyncedPage(last.createAt, last.trainingID, 3);
+        assertEquals(3, first.size());
+        assertEquals(2, second.size());
+        assertEquals("t3", second.get(0).trainingID);
+
+        List<TrainingHistory> uploaded = new ArrayList<>();
+        SyncDispatcher.executeBatch(ApplicationProvider.getApplicationContext(), db, claimFirestore(6),
+                (context, records) -> {
+                    uploaded.addAll(records);
+                    return true;
+                });
+
+        assertEquals(5, uploaded.size());                                      // 只送找得到的，一批一次
+        assertTrue(history.getUnsyncedPage(Long.MIN_VALUE, "", 10).isEmpty());
+        assertEquals(SyncOp.STATE_DONE, dao.getByKey("FIRESTORE:t0").state);
+        assertEquals(SyncOp.STATE_FAILED, dao.getByKey("FIRESTORE:gone").state);
+        assertEquals(0, dao.countOpen());
+    }
+
+    @Test
+    public void firestoreBatch_failure_backsOffWholeBatch() {
+        insertHistories(3);
+        SyncDispatcher.executeBatch(ApplicationProvider.getApplicationContext(), db, claimFirestore(3),
+                (context, records) -> false);
+
+        assertEquals(3, db.trainingHistoryDao().getUnsyncedPage(Long.MIN_VALUE, "", 10).size());
+        for (int i = 0; i < 3; i++) {
+            SyncOp op = dao.getByKey("FIRESTORE:t" + i);
+            assertEquals(SyncOp.STATE_PENDING, op.state);
+            assertEquals(1, op.attempts);
+            assertTrue(op.nextAttemptAt > NOW);
+        }
+        assertEquals(3, dao.countOpen());
+    }
+
+    private void insertHistories(int n) {
+        List<SyncOp> ops = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            TrainingHistory h = new TrainingHistory();
+            h.trainingID = "t" + i;
+            h.trainingLabel = "PUFF_CHEEK";
+            h.createAt = NOW + (i / 2);                                         // createAt 重複：靠 trainingID 分頁
+            db.trainingHistoryDao().insert(h);
+            ops.add(SyncOp.create(SyncOp.DEST_FIRESTORE, h.trainingID, null, null, NOW));
+        }
+        dao.insertAll(ops);
+    }
+
+    // 和 SyncDispatchWorker 一樣：撈出到期的，一筆一筆搶（op.attempts 是搶之前的值）
+    private List<SyncOp> claimFirestore(int expected) {
+        List<SyncOp> ready = dao.getReady(SyncOp.DEST_FIRESTORE, NOW, OutboxPolicy.batchSize(SyncOp.DEST_FIRESTORE));
+        assertEquals(expected, ready.size());
+        for (SyncOp op : ready) assertEquals(1, dao.claim(op.id, NOW + OutboxPolicy.LEASE_MS, NOW));
+        return ready;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.rehabilitationapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.rehabilitationapp.data.dao.TrainingHistoryDao;
+import com.example.rehabilitationapp.data.model.TrainingHistory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * trainingHistory 索引（v12）
+ * - 11 → 12 → 13 migration 建出的索引 / outbox 表要通過 Room 的 schema 驗證
+ * - 日期 / 未上傳查詢的 query plan 要走索引（不是整表 SCAN）
+ * - 大量歷史（4 萬筆）下單日查詢仍只回當天的資料（耗時靠上面的 query plan 保證，不量 wall-clock）
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class TrainingHistoryIndexTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int ROWS_PER_DAY = 50;
+    private static final String[] INDEXES = {
+            "index_trainingHistory_createAt",
+            "index_trainingHistory_synced_createAt",
+            "index_trainingHistory_csvUploaded_createAt",
+            "index_trainingHistory_videoUploaded_createAt"
+    };
+
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) db.close();
+    }
+
+    @Test
+    public void migration11to13_createsIndexesRoomAccepts() {
+        String name = "migration_test.db";
+        File file = context.getDatabasePath(name);
+        context.deleteDatabase(name);
+
+        // 1. 先讓 Room 建出 v12，再手動拿掉索引、退回 user_version 11（= 舊版 schema）
+        AppDatabase fresh = Room.databaseBuilder(context, AppDatabase.class, name)
+                .allowMainThreadQueries().build();
+        fresh.trainingHistoryDao().insert(row(0, 1_000L, 0));
+        fresh.close();
+        SQLiteDatabase raw = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        for (String idx : INDEXES) raw.execSQL("DROP INDEX IF EXISTS `" + idx + "`");
+        raw.execSQL("DROP TABLE IF EXISTS `syncOutbox`");   // v13 才有
+        raw.execSQL("DROP TABLE IF EXISTS `videoUploadProgress`");   // v14 才有
+        raw.setVersion(11);
+        raw.close();
+
+        // 2. 帶 11→12→13→14→15 重開：索引名稱 / 欄位跟 @Entity 不一致的話，Room 這裡就會丟 IllegalStateException
+        db = Room.databaseBuilder(context, AppDatabase.class, name)
+                .addMigrations(AppDatabase.MIGRATION_11_12, AppDatabase.MIGRATION_12_13,
+                        AppDatabase.MIGRATION_13_14, AppDatabase.MIGRATION_14_15)
+                .allowMainThreadQueries().build();
+        assertEquals(1, db.trainingHistoryDao().getAllHistory().size());
+        // 12→13 把還沒傳的那筆補進 outbox：Firestore + CSV；影片要使用者同意才傳，不自動補
+        assertEquals(2, db.syncOutboxDao().countOpen());
+        assertNull(db.syncOutboxDao().getByKey("VIDEO:id-0"));
+
+        Set<String> found = new HashSet<>();
+        try (Cursor c = db.getOpenHelper().getReadableDatabase().query("PRAGMA index_list(`trainingHistory`)")) {
+            int col = c.getColumnIndexOrThrow("name");
+            while (c.moveToNext()) found.add(c.getString(col));
+        }
+        assertTrue(found.toString(), found.containsAll(Arrays.asList(INDEXES)));
+    }
+
+    @Test
+    public void dayAndPendingQueries_useIndexes() {
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        fill(db, 1_000);
+
+        assertUsesIndex("index_trainingHistory_createAt",
+                "SELECT * FROM TrainingHistory WHERE createAt >= ? AND createAt < ? ORDER BY createAt DESC", 0L, DAY);
+        assertUsesIndex("index_trainingHistory_synced_createAt",
+                "SELECT * FROM TrainingHistory WHERE synced = 0 ORDER BY createAt ASC LIMIT 100");
+        assertUsesIndex("index_trainingHistory_csvUploaded_createAt",
+                "SELECT * FROM TrainingHistory WHERE csvUploaded = 0 AND csvFileName != '' ORDER BY createAt ASC");
+        assertUsesIndex("index_trainingHistory_videoUploaded_createAt",
+                "SELECT * FROM TrainingHistory WHERE videoUploaded = 0 AND videoFileName != '' ORDER BY createAt ASC");
+    }
+
+    @Test
+    public void dayQuery_onLargeHistory_returnsOnlyThatDay() {
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        int days = fill(db, 40_000);
+        TrainingHistoryDao dao = db.trainingHistoryDao();
+        for (int i = 0; i < 20; i++) {
+            int day = (i * 37) % days;
+            List<TrainingHistory> list = dao.getRecordsByDate(dayStart(day) + DAY / 2);
+            assertEquals(ROWS_PER_DAY, list.size());
+            for (TrainingHistory h : list) {
+                assertTrue(h.createAt >= dayStart(day) && h.createAt < dayStart(day) + DAY);
+            }
+        }
+    }
+
+    // ---------- helpers ----------
+
+    // 每天 ROWS_PER_DAY 筆，約 5% 還沒同步 / 上傳；回傳天數
+    private static int fill(AppDatabase d, int rows) {
+        TrainingHistoryDao dao = d.trainingHistoryDao();
+        int days = rows / ROWS_PER_DAY;
+        d.runInTransaction(() -> {
+            for (int day = 0; day < days; day++) {
+                for (int k = 0; k < ROWS_PER_DAY; k++) {
+                    int n = day * ROWS_PER_DAY + k;
+                    long createAt = dayStart(day) + 6 * 60 * 60 * 1000L + k * 60_000L;
+                    dao.insert(row(n, createAt, n % 20 == 0 ? 0 : 1));
+                }
+            }
+        });
+        return days;
+    }
+
+    // 本地時區第 day 天的 00:00（從 2024-01-01 起算）
+    private static long dayStart(int day) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2024, Calendar.JANUARY, 1);
+        cal.add(Calendar.DAY_OF_MONTH, day);
+        return cal.getTimeInMillis();
+    }
+
+    private static TrainingHistory row(int n, long createAt, int done) {
+        TrainingHistory h = new TrainingHistory("id-" + n, "PUFF_CHEEK", createAt, createAt + 30_000,
+                10, 8, 30, null, "u_" + n + ".csv", "u_" + n + ".mp4");
+        h.synced = done;
+        h.csvUploaded = done;
+        h.videoUploaded = done;
+        return h;
+    }
+
+    private void assertUsesIndex(String index, String sql, Object... args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor c = db.getOpenHelper().getReadableDatabase().query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int col = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) plan.append(c.getString(col)).append('\n');
+        }
+        String p = plan.toString();
+        assertTrue(p, p.contains(index));
+        assertFalse(p, p.contains("SCAN"));                 // 要是 SEARCH（索引定位），不是整表 / 整索引掃
+        assertFalse(p, p.contains("TEMP B-TREE"));
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用設計好的合成訓練紀錄（已知動作次數）驗證各 count_*.py 移植版的計數
+ */
+public class NativeMotionAnalyzerTest {
+
+    private static final double FS = 30.0;
+    // CALIBRATING 0~3s、DEMO 3~6s（做一次示範）、MAINTAINING 6~30s（每 4 秒一次，共 6 次）
+    private static final double DEMO_START = 3.0, MAIN_START = 6.0, END = 30.0;
+    private static final int EXPECTED_ACTIONS = 6;
+
+    private static String stateAt(double t) {
+        if (t < DEMO_START) return "CALIBRATING";
+        if (t < MAIN_START) return "DEMO";
+        return "MAINTAINING";
+    }
+
+    /** 半弦波動作：DEMO 在 3.5~5.5s，MAINTAINING 在 7+4k ~ 9+4k s */
+    private static double bump(double t) {
+        double start;
+        if (t >= DEMO_START && t < MAIN_START) {
+            start = 3.5;
+        } else if (t >= MAIN_START + 1) {
+            start = MAIN_START + 1 + 4 * Math.floor((t - MAIN_START - 1) / 4);
+        } else {
+            return 0;
+        }
+        double u = (t - start) / 2.0;
+        return (u >= 0 && u <= 1) ? Math.sin(Math.PI * u) : 0;
+    }
+
+    /** 固定的小擾動，避免訊號完全平坦 */
+    private static double jitter(int i) {
+        return 0.01 * Math.sin(i * 2.3) + 0.005 * Math.cos(i * 0.7);
+    }
+
+    private static CsvColumns lipCsv(double amplitude) throws Exception {
+        StringBuilder sb = new StringBuilder("time_seconds,state,total_lip_area\n");
+        for (int i = 0; i < END * FS; i++) {
+            double t = i / FS;
+            sb.append(String.format(Locale.US, "%.3f,%s,%.6f\n", t, stateAt(t), 100 + amplitude * bump(t) + jitter(i)));
+        }
+        return CsvColumns.read(new StringReader(sb.toString()));
+    }
+
+    @Test
+    public void poutLips_countsEachPout() throws Exception {
+        CSVMotioner.PyAnalysisResult r = NativeMotionAnalyzer.analyze(lipCsv(5.0), "20251018_POUT_LIPS.csv");
+        assertTrue(r.success);
+        assertEquals(EXPECTED_ACTIONS, r.actionCount);
+        assertEquals(r.actionCount, r.segments.size());
+        assertEquals(r.actionCount, r.breakpoints.size());
+        assertEquals(30.0, r.debug.fsHz, 0);
+    }
+
+    @Test
+    public void inMemorySource_sameResultAsCsvText() throws Exception {
+        CsvColumns text = lipCsv(5.0);
+        // 模擬錄製端直接交出的欄（FaceDataRecorder 的 table），不經過檔案
+        String[] names = {"time_seconds", "state", "total_lip_area"};
+        CsvColumns memory = CsvColumns.of(names, new CsvColumns.Source() {
+            @Override
+            public int size() {
+                return text.size();
+            }
+
+            @Override
+            public double[] numbers(int col) {
+                return text.numbers(names[col]).clone();
+            }
+
+            @Override
+            public String[] strings(int col) {
+                return text.strings(names[col]);
+            }
+        });
+
+        CSVMotioner.PyAnalysisResult a = NativeMotionAnalyzer.analyze(text, "POUT_LIPS.csv");
+        CSVMotioner.PyAnalysisResult b = NativeMotionAnalyzer.analyze(memory, "POUT_LIPS.csv");
+        assertEquals(a.actionCount, b.actionCount);
+        assertEquals(a.totalActionTime, b.totalActionTime, 0);
+        assertEquals(a.breakpoints, b.breakpoints);
+    }
+
+    @Test
+    public void sipLips_countsInwardMotion() throws Exception {
+        CSVMotioner.PyAnalysisResult r = NativeMotionAnalyzer.analyze(lipCsv(-5.0), "20251018_SIP_LIPS.csv");
+        assertTrue(r.success);
+        assertEquals(EXPECTED_ACTIONS, r.actionCount);
+        for (CSVMotioner.PyAnalysisResult.Segment seg : r.segments) {
+            assertTrue(seg.startTime >= MAIN_START);
+        }
+    }
+
+    @Test
+    public void cheek_countsCurvaturePulses() throws Exception {
+        TreeSet<Integer> idxs = new TreeSet<>();
+        for (int k : CheekMotionAnalyzer.LEFT_CHEEK_IDXS) idxs.add(k);
+        for (int k : CheekMotionAnalyzer.RIGHT_CHEEK_IDXS) idxs.add(k);
+
+        StringBuilder sb = new StringBuilder("time_seconds,state");
+        for (int k : idxs) sb.append(",point").append(k).append("_x,point").append(k).append("_y,point").append(k).append("_z");
+        sb.append('\n');
+        for (int i = 0; i < END * FS; i++) {
+            double t = i / FS;
+            // 臉頰曲面 z = c(t)·(x² + y²)，鼓起時曲率變大
+            double c = 0.2 + 0.1 * bump(t) + 0.001 * jitter(i);
+            sb.append(String.format(Locale.US, "%.3f,%s", t, stateAt(t)));
+            for (int k : idxs) {
+                double x = 0.3 * Math.cos(k * 0.37), y = 0.3 * Math.sin(k * 0.61);
+                sb.append(String.format(Locale.US, ",%.6f,%.6f,%.8f", x, y, c * (x * x + y * y)));
+            }
+            sb.append('\n');
+        }
+        CsvColumns csv = CsvColumns.read(new StringReader(sb.toString()));
+
+        CSVMotioner.PyAnalysisResult r = NativeMotionAnalyzer.analyze(csv, "20251018_PUFF_CHEEK.csv");
+        assertTrue(r.success);
+        assertEquals(EXPECTED_ACTIONS, r.actionCount);
+    }
+
+    @Test
+    public void tongue_countsProtrusionsAndBridgesDetectionGaps() throws Exception {
+        StringBuilder sb = new StringBuilder("time_seconds,state,eyeL_x,eyeL_y,eyeR_x,eyeR_y,bbox_bottom,tongue_detected\n");
+        for (int i = 0; i < (END - MAIN_START) * FS; i++) {
+            double t = i / FS;
+            // 每 4 秒伸舌 1.5 秒：舌頭下緣離眼睛 100 → 140
+            boolean out = (t % 4.0) >= 1.0 && (t % 4.0) < 2.5;
+            int bottom = out ? 340 : 300;
+            int det = 1;
+            if (out && (t % 4.0) >= 1.5 && (t % 4.0) < 1.7) {  // 伸出中途偵測掉 6 幀 → 插值補回
+                bottom = -1;
+                det = 0;
+            }
+            sb.append(String.format(Locale.US, "%.3f,MAINTAINING,180,200,260,200,%d,%d\n", t, bottom, det));
+        }
+        CsvColumns csv = CsvColumns.read(new StringReader(sb.toString()));
+
+        CSVMotioner.PyAnalysisResult r = NativeMotionAnalyzer.analyze(csv, "20251018_TONGUE_DOWN.csv");
+        assertTrue(r.success);
+        assertEquals(6, r.actionCount);
+        assertEquals(15, r.debug.minInterval);
+        for (CSVMotioner.PyAnalysisResult.Segment seg : r.segments) {
+            assertEquals(1.5, seg.duration, 0.2);
+        }
+    }
+
+    @Test
+    public void tongue_ignoresInterpolatedRows() throws Exception {
+        StringBuilder sb = new StringBuilder(
+                "time_seconds,state,eyeL_x,eyeL_y,eyeR_x,eyeR_y,bbox_bottom,tongue_detected,yolo_measured\n");
+        for (int i = 0; i < (END - MAIN_START) * FS; i++) {
+            double t = i / FS;
+            boolean out = (t % 4.0) >= 1.0 && (t % 4.0) < 2.5;
+            int bottom = out ? 340 : 300;
+            int measured = 1;
+            if ((t % 4.0) >= 3.0 && (t % 4.0) < 3.6) {  // 沿用的框（沒推理）跑掉 0.6 秒：不能算成一次動作
+                bottom = 340;
+                measured = 0;
+            }
+            sb.append(String.format(Locale.US, "%.3f,MAINTAINING,180,200,260,200,%d,1,%d\n", t, bottom, measured));
+        }
+        CsvColumns csv = CsvColumns.read(new StringReader(sb.toString()));
+
+        CSVMotioner.PyAnalysisResult r = NativeMotionAnalyzer.analyze(csv, "20251018_TONGUE_DOWN.csv");
+        assertTrue(r.success);
+        assertEquals(6, r.actionCount);
+    }
+
+    @Test
+    public void interpolateLimited_matchesPandasBothDirections() {
+        double nan = Double.NaN;
+        double[] s = {nan, 1, nan, nan, 4, nan, nan, nan, nan, nan, nan, 11, nan, nan, nan};
+        TongueMotionAnalyzer.interpolateLimited(s, 2);
+        // 長缺口超過 limit 的中間留 NaN；頭尾只用最近的有效值補 limit 格
+        assertArrayEquals(new double[]{1, 1, 2, 3, 4, 5, 6, nan, nan, 9, 10, 11, 11, 11, nan}, s, 1e-12);
+    }
+
+    @Test
+    public void missingColumnsOrUnknownFile_fail() throws Exception {
+        CsvColumns csv = CsvColumns.read(new StringReader("time_seconds,state\n0.0,MAINTAINING\n"));
+        assertFalse(NativeMotionAnalyzer.analyze(csv, "x_POUT_LIPS.csv").success);
+        assertFalse(NativeMotionAnalyzer.analyze(csv, "x_TONGUE_LEFT.csv").success);
+        assertFalse(NativeMotionAnalyzer.analyze(csv, "x_UNKNOWN.csv").success);
+    }
+}
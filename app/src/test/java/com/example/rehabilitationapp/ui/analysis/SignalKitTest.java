@@ -0,0 +1,89 @@
+package com.example.rehabilitationapp.ui.analysis;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SignalKitTest {
+
+    @Test
+    public void butterLowpass_matchesScipyCoefficients() {
+        // scipy.signal.butter(4, 0.2) / butter(4, 0.4)
+        double[][] ba = SignalKit.butterLowpass(4, 0.2);
+        assertArrayEquals(new double[]{0.0048243434, 0.0192973734, 0.0289460601, 0.0192973734, 0.0048243434}, ba[0], 1e-9);
+        assertArrayEquals(new double[]{1.0, -2.3695130072, 2.3139884144, -1.0546654059, 0.1873794924}, ba[1], 1e-9);
+
+        ba = SignalKit.butterLowpass(4, 0.4);
+        assertArrayEquals(new double[]{0.0465829066, 0.1863316265, 0.2794974398, 0.1863316265, 0.0465829066}, ba[0], 1e-9);
+        assertArrayEquals(new double[]{1.0, -0.782095198, 0.6799785269, -0.1826756978, 0.030118875}, ba[1], 1e-9);
+    }
+
+    @Test
+    public void filtfilt_keepsConstantAndPassband() {
+        double[][] ba = SignalKit.butterLowpass(4, 0.2);
+        double[] flat = new double[60];
+        double[] slow = new double[200];
+        Arrays.fill(flat, 3.5);
+        for (int i = 0; i < slow.length; i++) slow[i] = Math.sin(2 * Math.PI * i / 100.0);
+        assertArrayEquals(flat, SignalKit.filtfilt(ba[0], ba[1], flat), 1e-9);
+        // 通帶內的慢正弦：雙向濾波零相位，中段幾乎原樣
+        double[] y = SignalKit.filtfilt(ba[0], ba[1], slow);
+        for (int i = 50; i < 150; i++) assertEquals(slow[i], y[i], 1e-3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void filtfilt_rejectsShortInput() {
+        double[][] ba = SignalKit.butterLowpass(4, 0.2);
+        SignalKit.filtfilt(ba[0], ba[1], new double[15]);  // padlen = 15，scipy 同樣丟 ValueError
+    }
+
+    @Test
+    public void findPeaks_plateauMidpointAndProminence() {
+        double[] x = {0, 1, 3, 3, 3, 1, 2, 1.9, 2.5, 0};
+        // 平台 2..4 取中點 3（prominence 3）；6 的 prominence 0.1；8 的 prominence 1.5
+        assertArrayEquals(new int[]{3, 6, 8}, SignalKit.findPeaks(x, 0, x.length, 0.0));
+        assertArrayEquals(new int[]{3, 8}, SignalKit.findPeaks(x, 0, x.length, 0.5));
+        // 切片索引相對 from
+        assertArrayEquals(new int[]{1, 3}, SignalKit.findPeaks(x, 5, x.length, 0.05));
+    }
+
+    @Test
+    public void smoothing_edgeHandling() {
+        double[] x = {1, 2, 3, 4, 5};
+        // uniform_filter1d(size=3, mode='reflect')：邊界鏡射 (1,1,2...) / (...,5,5)
+        assertArrayEquals(new double[]{4 / 3.0, 2, 3, 4, 14 / 3.0}, SignalKit.uniformFilter1d(x, 3), 1e-12);
+        // edge padding + convolve same
+        assertArrayEquals(new double[]{4 / 3.0, 2, 3, 4, 14 / 3.0}, SignalKit.movingAverage(x, 3), 1e-12);
+        assertArrayEquals(new double[]{1.0, 1.5, 2.5, 3.5, 4.5}, SignalKit.movingAverage(x, 2), 1e-12);
+    }
+
+    @Test
+    public void leastSquares_recoversQuadratic() {
+        double[][] a = new double[12][];
+        double[] z = new double[12];
+        for (int i = 0; i < 12; i++) {
+            double px = Math.cos(i * 0.9) * 3, py = Math.sin(i * 1.3) * 2;
+            a[i] = new double[]{px * px, px * py, py * py, px, py, 1};
+            z[i] = 0.5 * px * px - 0.25 * px * py + 2 * py * py + px - 3 * py + 7;
+        }
+        assertArrayEquals(new double[]{0.5, -0.25, 2, 1, -3, 7}, SignalKit.leastSquares(a, z), 1e-9);
+    }
+
+    @Test
+    public void statsAndRounding_followNumpyAndPython() {
+        assertEquals(2.5, SignalKit.median(new double[]{4, 1, 3, 2}), 0);
+        assertEquals(2.0, SignalKit.nanMedian(new double[]{Double.NaN, 3, 1, 2}), 0);
+        assertEquals(Math.sqrt(1.25), SignalKit.std(new double[]{1, 2, 3, 4}), 1e-15);
+        assertEquals(Math.sqrt(2 / 3.0), SignalKit.nanStd(new double[]{1, Double.NaN, 2, 3}), 1e-15);
+        assertEquals(4.0, SignalKit.trapz(new double[]{1, 3}, new double[]{0, 2}), 0);
+
+        // Python round 看實際十進位值：2.675 其實是 2.67499999...
+        assertEquals(2.67, SignalKit.roundPy(2.675, 2), 0);
+        assertEquals(0.0, SignalKit.roundPy(0.5, 0), 0);
+        assertEquals(2.0, SignalKit.roundNp(2.5, 0), 0);
+        assertEquals(1.234, SignalKit.roundNp(1.2345, 3), 1e-15);   // 1234.5 → rint 取偶
+    }
+}
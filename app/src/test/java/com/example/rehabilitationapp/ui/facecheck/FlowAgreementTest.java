@@ -0,0 +1,53 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FlowAgreement：向量差平均與 u / v 相關係數
+ */
+public class FlowAgreementTest {
+
+    @Test
+    public void identicalSeries_zeroDistancePerfectCorrelation() {
+        FlowAgreement a = new FlowAgreement("LI");
+        for (int i = 0; i < 20; i++) {
+            double u = Math.sin(i * 0.3), v = Math.cos(i * 0.2);
+            a.add(u, v, u, v);
+        }
+        assertEquals(20, a.count());
+        assertEquals(0.0, a.meanDistance(), 1e-12);
+        assertEquals(1.0, a.correlationU(), 1e-9);
+        assertEquals(1.0, a.correlationV(), 1e-9);
+    }
+
+    @Test
+    public void scaledAndOffset_stillCorrelated_distanceIsOffset() {
+        FlowAgreement a = new FlowAgreement("RI");
+        for (int i = 0; i < 10; i++) {
+            // b = a + (3, 4)：差距固定 5 px，相關係數仍為 1
+            a.add(i, -i, i + 3, -i + 4);
+        }
+        assertEquals(5.0, a.meanDistance(), 1e-9);
+        assertEquals(1.0, a.correlationU(), 1e-9);
+        assertEquals(1.0, a.correlationV(), 1e-9);
+
+        FlowAgreement inv = new FlowAgreement("inv");
+        for (int i = 0; i < 10; i++) inv.add(i, i, -i, i);
+        assertEquals(-1.0, inv.correlationU(), 1e-9);
+    }
+
+    @Test
+    public void nanSkipped_constantSeriesHasNoCorrelation() {
+        FlowAgreement a = new FlowAgreement("LI");
+        a.add(Double.NaN, 0, 1, 1);
+        assertEquals(0, a.count());
+        assertTrue(Double.isNaN(a.meanDistance()));
+
+        for (int i = 0; i < 5; i++) a.add(1, i, 1, i);
+        assertTrue(Double.isNaN(a.correlationU()));   // u 沒有變化
+        assertEquals(1.0, a.correlationV(), 1e-9);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * FramePipeline：stop() 和別的執行緒的 offer() 同時發生時，每個送進來的項目不是被處理就是被回收，不會卡在佇列裡
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class FramePipelineTest {
+
+    @Test
+    public void offerRacingStop_everyItemHandledOrRecycled() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            FramePipeline.DropPolicy policy = round % 2 == 0
+                    ? FramePipeline.DropPolicy.DROP_OLDEST : FramePipeline.DropPolicy.DROP_NEWEST;
+            AtomicInteger offered = new AtomicInteger();
+            AtomicInteger handled = new AtomicInteger();
+            AtomicInteger recycled = new AtomicInteger();
+            FramePipeline pipeline = new FramePipeline();
+            FramePipeline.Stage<Integer> stage = pipeline.addStage("race", 2, policy,
+                    item -> handled.incrementAndGet(), item -> recycled.incrementAndGet());
+            pipeline.start();
+
+            Thread[] producers = new Thread[3];
+            for (int t = 0; t < producers.length; t++) {
+                producers[t] = new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        offered.incrementAndGet();
+                        stage.offer(i);
+                    }
+                });
+                producers[t].start();
+            }
+            Thread.sleep(round % 3);
+            pipeline.stop(500);
+            for (Thread t : producers) t.join();
+
+            assertEquals("round " + round, offered.get(), handled.get() + recycled.get());
+            assertEquals(0, stage.pending());
+        }
+    }
+
+    @Test
+    public void offerAfterStop_recyclesImmediately() {
+        AtomicInteger recycled = new AtomicInteger();
+        FramePipeline pipeline = new FramePipeline();
+        FramePipeline.Stage<Integer> stage = pipeline.addStage("late", 2, FramePipeline.DropPolicy.DROP_NEWEST,
+                item -> { }, item -> recycled.incrementAndGet());
+        pipeline.start();
+        pipeline.stop(500);
+
+        assertFalse(stage.offer(1));
+        assertEquals(1, recycled.get());
+        assertEquals(0, stage.pending());
+    }
+}
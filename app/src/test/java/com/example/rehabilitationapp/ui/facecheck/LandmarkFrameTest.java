@@ -0,0 +1,73 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LandmarkFrameTest {
+
+    private static final float EPS = 1e-4f;
+
+    @Test
+    public void viewCoordinates_matchLegacyAllPointsFormula() {
+        int overlayW = 1080, overlayH = 2200;
+        float scaleX = (480f / 640f) / (overlayW / (float) overlayH);
+        LandmarkFrame lm = new LandmarkFrame(3);
+        lm.begin(3, 480, 640, overlayW, overlayH, scaleX);
+        float[][] raw = {{0.1f, 0.2f, -0.03f}, {0.5f, 0.5f, 0f}, {0.93f, 0.71f, 0.02f}};
+        for (int i = 0; i < raw.length; i++) lm.set(i, raw[i][0], raw[i][1], raw[i][2]);
+
+        for (int i = 0; i < raw.length; i++) {
+            float legacyX = ((raw[i][0] - 0.5f) * scaleX + 0.5f) * overlayW;
+            float legacyY = raw[i][1] * overlayH;
+            assertEquals(legacyX, lm.viewX(i), EPS);
+            assertEquals(legacyY, lm.viewY(i), EPS);
+            assertEquals(raw[i][0] * 480, lm.pixelX(i), EPS);
+            assertEquals(raw[i][1] * 640, lm.pixelY(i), EPS);
+            assertEquals(raw[i][2], lm.z(i), 0f);
+        }
+    }
+
+    @Test
+    public void viewToImage_matchesLegacyLetterboxInverse() {
+        int overlayW = 1080, overlayH = 2200, imgW = 480, imgH = 640;
+        LandmarkFrame lm = new LandmarkFrame(1);
+        lm.begin(1, imgW, imgH, overlayW, overlayH, 0.9f);
+        lm.set(0, 0.37f, 0.61f, 0f);
+
+        float scale = Math.min((float) overlayW / imgW, (float) overlayH / imgH);
+        float offX = (overlayW - imgW * scale) / 2f;
+        float offY = (overlayH - imgH * scale) / 2f;
+        assertEquals((lm.viewX(0) - offX) / scale, lm.viewToImageX(0), EPS);
+        assertEquals((lm.viewY(0) - offY) / scale, lm.viewToImageY(0), EPS);
+    }
+
+    @Test
+    public void fromViewPoints_isIdentityView() {
+        float[][] pts = {{12.5f, 300.25f, 0.1f}, {7f, 8f}};
+        LandmarkFrame lm = LandmarkFrame.fromViewPoints(pts);
+        assertEquals(12.5f, lm.viewX(0), 0f);
+        assertEquals(300.25f, lm.viewY(0), 0f);
+        assertEquals(0f, lm.z(1), 0f);
+
+        float[][] copy = lm.copyViewPoints(null);
+        assertEquals(8f, copy[1][1], 0f);
+        assertSame(copy, lm.copyViewPoints(copy));
+    }
+
+    @Test
+    public void pool_reusesReleasedFrames() {
+        LandmarkFrame.Pool pool = new LandmarkFrame.Pool(LandmarkFrame.MAX_LANDMARKS, 2);
+        LandmarkFrame a = pool.acquire();
+        a.retain();
+        a.release();
+        assertEquals(0, pool.pooledCount());
+        a.release();
+        assertEquals(1, pool.pooledCount());
+
+        assertSame(a, pool.acquire());
+        assertNotSame(a, pool.acquire());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyStats：百分位對齊 numpy.percentile（線性內插），以及後端校正的勝出規則
+ */
+public class LatencyStatsTest {
+
+    @Test
+    public void percentiles_matchNumpyLinear() {
+        // np.percentile([1..10], 50) = 5.5、95 = 9.55
+        double[] ms = {7, 3, 10, 1, 5, 9, 2, 8, 4, 6};
+        LatencyStats s = LatencyStats.of("CPU×4", ms);
+        assertEquals(5.5, s.p50, 1e-12);
+        assertEquals(9.55, s.p95, 1e-12);
+        assertEquals(5.5, s.mean, 1e-12);
+        assertEquals(1, s.min, 0);
+        assertEquals(10, s.max, 0);
+        assertEquals(10, s.count);
+        // 不改動呼叫端的陣列
+        assertEquals(7, ms[0], 0);
+    }
+
+    @Test
+    public void singleSample_isEveryPercentile() {
+        LatencyStats s = LatencyStats.of("GPU×4", new double[]{12.5});
+        assertEquals(12.5, s.p50, 0);
+        assertEquals(12.5, s.p95, 0);
+    }
+
+    @Test
+    public void oddCount_medianIsMiddle() {
+        LatencyStats s = LatencyStats.of("x", new double[]{30, 10, 20});
+        assertEquals(20, s.p50, 0);
+        assertEquals(29, s.p95, 1e-12);   // 20 + 0.9 * 10
+    }
+
+    @Test
+    public void best_lowestMedianThenTail_skipsFailedBackends() {
+        LatencyStats gpu = LatencyStats.of("GPU×4", new double[]{8, 8, 8, 30});       // p50 8, p95 高
+        LatencyStats cpu2 = LatencyStats.of("CPU×2", new double[]{8, 8, 8, 9});       // p50 8, p95 低 → 勝
+        LatencyStats cpu1 = LatencyStats.of("CPU×1", new double[]{20, 21, 22, 23});
+        assertEquals(2, LatencyStats.indexOfBest(Arrays.asList(gpu, null, cpu2, cpu1)));
+        assertEquals(0, LatencyStats.indexOfBest(Arrays.asList(cpu1, null)));
+        assertEquals(-1, LatencyStats.indexOfBest(Arrays.asList(null, null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noSamples_rejected() {
+        LatencyStats.of("NNAPI×4", new double[0]);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LetterboxKernel：與舊流程（Canvas 雙線性縮放貼到黑底 → getPixels → 每像素 putFloat）的參考實作比對，
+ * 涵蓋直/橫 ROI、ROI 在大圖中的 offset/stride，以及黑邊與純色區塊。
+ */
+public class LetterboxKernelTest {
+
+    private static final int SIZE = 64;
+    private static final float TOL = 1f / 255f + 1e-6f;   // 參考實作用浮點權重，最多差 1 個 8-bit 階
+
+    @Test
+    public void tallRoi_matchesLegacyLetterbox() {
+        check(97, 140, 23, 11, 150);
+    }
+
+    @Test
+    public void wideRoi_insideLargerFrame_matchesLegacyLetterbox() {
+        check(120, 45, 5, 30, 200);
+    }
+
+    @Test
+    public void upscaleAndExactSize_matchLegacyLetterbox() {
+        check(20, 17, 0, 0, 20);       // 放大
+        check(SIZE, SIZE, 3, 2, 80);   // 剛好 1:1，不補邊
+    }
+
+    @Test
+    public void solidColor_isExactAndPaddingIsBlack() {
+        int w = 50, h = 100;
+        int[] src = new int[w * h];
+        Arrays.fill(src, 0xFF336699);
+        FloatBuffer out = newInput();
+        LetterboxKernel.Geometry g = new LetterboxKernel(SIZE).run(src, 0, w, w, h, out);
+
+        assertEquals(32, g.newW);
+        assertEquals(64, g.newH);
+        assertEquals(16, g.padX);
+        assertEquals(0, g.padY);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int i = (y * SIZE + x) * 3;
+                boolean inside = x >= g.padX && x < g.padX + g.newW;
+                assertEquals(inside ? 0x33 / 255f : 0f, out.get(i), 0f);
+                assertEquals(inside ? 0x66 / 255f : 0f, out.get(i + 1), 0f);
+                assertEquals(inside ? 0x99 / 255f : 0f, out.get(i + 2), 0f);
+            }
+        }
+        assertEquals(0, out.position());
+    }
+
+    @Test
+    public void reusedKernel_overwritesPreviousFrame() {
+        LetterboxKernel k = new LetterboxKernel(SIZE);
+        FloatBuffer out = newInput();
+        int[] big = randomPixels(80 * 80, 1);
+        k.run(big, 0, 80, 80, 80, out);
+        // 換成較扁的 ROI：上下黑邊必須被清成 0
+        int[] white = new int[80 * 20];
+        Arrays.fill(white, 0xFFFFFFFF);
+        LetterboxKernel.Geometry g = k.run(white, 0, 80, 80, 20, out);
+        assertEquals(0f, out.get(0), 0f);
+        assertEquals(0f, out.get((SIZE * SIZE - 1) * 3), 0f);
+        assertEquals(1f, out.get(((g.padY + 1) * SIZE + 10) * 3), 0f);
+    }
+
+    // ================= helpers =================
+
+    private static void check(int roiW, int roiH, int left, int top, int frameW) {
+        int frameH = top + roiH + 7;
+        int[] frame = randomPixels(frameW * frameH, roiW * 31 + roiH);
+        int offset = top * frameW + left;
+
+        FloatBuffer fused = newInput();
+        LetterboxKernel.Geometry g = new LetterboxKernel(SIZE).run(frame, offset, frameW, roiW, roiH, fused);
+
+        ByteBuffer legacy = legacyLetterbox(frame, offset, frameW, roiW, roiH);
+        legacy.rewind();
+        FloatBuffer expected = legacy.asFloatBuffer();
+
+        assertEquals(Math.min(SIZE * 1f / roiW, SIZE * 1f / roiH), g.scale, 0f);
+        for (int i = 0; i < SIZE * SIZE * 3; i++) {
+            float e = expected.get(i), a = fused.get(i);
+            if (Math.abs(e - a) > TOL) fail("idx " + i + ": legacy " + e + " vs fused " + a);
+        }
+    }
+
+    private static FloatBuffer newInput() {
+        return ByteBuffer.allocateDirect(4 * SIZE * SIZE * 3).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static int[] randomPixels(int n, long seed) {
+        // 平滑一點的圖（避免每格都是雜訊，雙線性差異才看得出來）
+        Random rnd = new Random(seed);
+        int[] px = new int[n];
+        for (int i = 0; i < n; i++) {
+            int r = (int) (127 + 120 * Math.sin(i * 0.013)) + rnd.nextInt(8);
+            int g = (int) (127 + 120 * Math.cos(i * 0.007)) + rnd.nextInt(8);
+            int b = rnd.nextInt(256);
+            px[i] = 0xFF000000 | (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | b;
+        }
+        return px;
+    }
+
+    /**
+     * 舊流程參考：黑底 letterbox，Canvas 濾波縮放（像素中心對齊、邊緣 clamp、8-bit 結果），
+     * 再照舊版 convertBitmapToByteBuffer 每像素 3 次 putFloat
+     */
+    private static ByteBuffer legacyLetterbox(int[] src, int offset, int stride, int rw, int rh) {
+        float scale = Math.min(SIZE * 1f / rw, SIZE * 1f / rh);
+        int nw = Math.round(rw * scale), nh = Math.round(rh * scale);
+        int padX = (SIZE - nw) / 2, padY = (SIZE - nh) / 2;
+
+        int[] canvas = new int[SIZE * SIZE];
+        Arrays.fill(canvas, 0xFF000000);
+        for (int dy = 0; dy < nh; dy++) {
+            double fy = (dy + 0.5) * rh / nh - 0.5;
+            for (int dx = 0; dx < nw; dx++) {
+                double fx = (dx + 0.5) * rw / nw - 0.5;
+                int argb = 0xFF000000;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    argb |= sample(src, offset, stride, rw, rh, fx, fy, shift) << shift;
+                }
+                canvas[(padY + dy) * SIZE + padX + dx] = argb;
+            }
+        }
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(4 * SIZE * SIZE * 3).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int pixel = canvas[i * SIZE + j];
+                buf.putFloat(((pixel >> 16) & 0xFF) / 255.0f);
+                buf.putFloat(((pixel >> 8) & 0xFF) / 255.0f);
+                buf.putFloat((pixel & 0xFF) / 255.0f);
+            }
+        }
+        return buf;
+    }
+
+    private static int sample(int[] src, int offset, int stride, int w, int h, double fx, double fy, int shift) {
+        int x0 = (int) Math.floor(fx), y0 = (int) Math.floor(fy);
+        double ax = fx - x0, ay = fy - y0;
+        int xa = Math.max(0, Math.min(w - 1, x0)), xb = Math.max(0, Math.min(w - 1, x0 + 1));
+        int ya = Math.max(0, Math.min(h - 1, y0)), yb = Math.max(0, Math.min(h - 1, y0 + 1));
+        double c00 = (src[offset + ya * stride + xa] >> shift) & 0xFF;
+        double c01 = (src[offset + ya * stride + xb] >> shift) & 0xFF;
+        double c10 = (src[offset + yb * stride + xa] >> shift) & 0xFF;
+        double c11 = (src[offset + yb * stride + xb] >> shift) & 0xFF;
+        double v = (c00 * (1 - ax) + c01 * ax) * (1 - ay) + (c10 * (1 - ax) + c11 * ax) * ay;
+        return (int) Math.round(v);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import com.example.rehabilitationapp.ui.facecheck.QualityGovernor.Tier;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QualityGovernor：各條件取最差檔位；變差立刻降、變好要穩定 RECOVER_MS 才一次升一檔
+ */
+public class QualityGovernorTest {
+
+    @Test
+    public void target_takesWorstCondition() {
+        assertEquals(Tier.FULL, QualityGovernor.target(QualityGovernor.THERMAL_LIGHT, Float.NaN, 80, false, false));
+        assertEquals(Tier.BALANCED, QualityGovernor.target(QualityGovernor.THERMAL_MODERATE, 0.5f, 80, false, false));
+        assertEquals(Tier.ECO, QualityGovernor.target(QualityGovernor.THERMAL_NONE, 0.97f, 80, false, false));
+        assertEquals(Tier.CRITICAL, QualityGovernor.target(QualityGovernor.THERMAL_EMERGENCY, 0.2f, 80, true, false));
+        // 低電量只在沒充電時算
+        assertEquals(Tier.ECO, QualityGovernor.target(QualityGovernor.THERMAL_NONE, Float.NaN, 12, false, false));
+        assertEquals(Tier.FULL, QualityGovernor.target(QualityGovernor.THERMAL_NONE, Float.NaN, 12, true, false));
+        assertEquals(Tier.BALANCED, QualityGovernor.target(QualityGovernor.THERMAL_NONE, Float.NaN, 90, true, true));
+        // 溫度 SEVERE + 電量 3% → 取較差的 CRITICAL
+        assertEquals(Tier.CRITICAL, QualityGovernor.target(QualityGovernor.THERMAL_SEVERE, Float.NaN, 3, false, false));
+    }
+
+    @Test
+    public void degradesImmediately_recoversOneTierPerWindow() {
+        QualityGovernor g = new QualityGovernor();
+        List<String> changes = new ArrayList<>();
+        g.setListener((from, to, reason) -> changes.add(from + ">" + to));
+
+        g.onThermalStatus(QualityGovernor.THERMAL_CRITICAL, 0);
+        assertEquals(Tier.CRITICAL, g.tier());               // 直接跳到 CRITICAL，不經過中間檔
+
+        g.onThermalStatus(QualityGovernor.THERMAL_NONE, 1_000);
+        g.tick(1_000 + QualityGovernor.RECOVER_MS - 1);
+        assertEquals(Tier.CRITICAL, g.tier());               // 好轉還不夠久
+        g.tick(1_000 + QualityGovernor.RECOVER_MS);
+        assertEquals(Tier.ECO, g.tier());                    // 只升一檔
+        g.tick(1_000 + QualityGovernor.RECOVER_MS + 5_000);
+        assertEquals(Tier.ECO, g.tier());                    // 下一檔要再等一輪
+        g.tick(1_000 + 2 * QualityGovernor.RECOVER_MS);
+        assertEquals(Tier.BALANCED, g.tier());
+        g.tick(1_000 + 3 * QualityGovernor.RECOVER_MS);
+        assertEquals(Tier.FULL, g.tier());
+
+        assertEquals(4, g.changeCount());
+        assertEquals("FULL>CRITICAL", changes.get(0));
+        assertEquals("BALANCED>FULL", changes.get(3));
+    }
+
+    @Test
+    public void flappingNearThreshold_doesNotRecover() {
+        QualityGovernor g = new QualityGovernor();
+        g.onThermalStatus(QualityGovernor.THERMAL_MODERATE, 0);
+        assertEquals(Tier.BALANCED, g.tier());
+        // 每 20 秒在 LIGHT / MODERATE 之間來回：從沒連續好轉滿 RECOVER_MS
+        long t = 0;
+        for (int i = 0; i < 10; i++) {
+            t += 20_000;
+            g.onThermalStatus(i % 2 == 0 ? QualityGovernor.THERMAL_LIGHT : QualityGovernor.THERMAL_MODERATE, t);
+            g.tick(t + 10_000);
+        }
+        assertEquals(Tier.BALANCED, g.tier());
+        assertEquals(1, g.changeCount());
+    }
+
+    @Test
+    public void reason_describesConditions() {
+        QualityGovernor g = new QualityGovernor();
+        String[] last = new String[1];
+        g.setListener((from, to, reason) -> last[0] = reason);
+        g.onBattery(10, false, 0);
+        assertEquals(Tier.ECO, g.tier());
+        assertTrue(last[0], last[0].contains("battery=10%"));
+        assertTrue(last[0], last[0].contains("thermal=NONE"));
+
+        g.onHeadroom(0.99f, 100);
+        assertEquals(Tier.ECO, g.tier());                    // 同一檔不重複通知
+        assertEquals(1, g.changeCount());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SampleRing：多執行緒寫入不掉列、不亂序；消費端寫進 table 的時間單調不減
+ */
+public class SampleRingTest {
+
+    // 與舌頭列同型：float 欄 + 一個 long 欄（frame_id）
+    private static SessionTable.Schema schema() {
+        return new SessionTable.Schema.Builder("time_seconds,state,producer,seq,frame_id", Locale.US)
+                .integer().integer().longValue()
+                .build();
+    }
+
+    @Test
+    public void singleProducer_rowsArriveIntact() {
+        SessionTable table = new SessionTable(schema());
+        SampleRing ring = new SampleRing(table.getSchema(), 8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ring.offer(ring.row().begin(i * 33L, "MAINTAINING").put(0).put(i).putLong(1000 + i)));
+        }
+        assertEquals(5, ring.drainTo(table));
+        assertEquals(5, table.size());
+        StringBuilder sb = new StringBuilder();
+        table.appendRow(sb, 4);
+        assertEquals("0.132,MAINTAINING,0,4,1004", sb.toString());
+        assertEquals(0, ring.drainTo(table));
+    }
+
+    @Test
+    public void full_offerFailsUntilDrained() {
+        SessionTable table = new SessionTable(schema());
+        SampleRing ring = new SampleRing(table.getSchema(), 4);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(ring.offer(ring.row().begin(i, "S").put(0).put(i).putLong(i)));
+        assertFalse(ring.offer(ring.row().begin(4, "S").put(0).put(4).putLong(4)));
+        assertEquals(4, ring.drainTo(table));
+        assertTrue(ring.offer(ring.row().begin(4, "S").put(0).put(4).putLong(4)));
+        assertEquals(1, ring.drainTo(table));
+        assertEquals(5, table.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wrongColumnCount_rejected() {
+        SampleRing ring = new SampleRing(schema(), 4);
+        ring.offer(ring.row().begin(0, "S").put(1));
+    }
+
+    @Test
+    public void batch_sortedByTime_andNeverGoesBack() {
+        SessionTable table = new SessionTable(schema());
+        SampleRing ring = new SampleRing(table.getSchema(), 16);
+        // 兩個生產端交錯搶格：搶格順序 ≠ 時間順序
+        long[] ts = {10, 5, 20, 15};
+        for (int i = 0; i < ts.length; i++) ring.offer(ring.row().begin(ts[i], "S").put(i % 2).put(i).putLong(i));
+        ring.drainTo(table);
+        assertEquals(5, table.elapsedMs(0));
+        assertEquals(10, table.elapsedMs(1));
+        assertEquals(15, table.elapsedMs(2));
+        assertEquals(20, table.elapsedMs(3));
+
+        // 下一批有比已寫出還早的列：夾到上一列的時間
+        ring.offer(ring.row().begin(18, "S").put(0).put(9).putLong(9));
+        ring.drainTo(table);
+        assertEquals(20, table.elapsedMs(4));
+        assertEquals(1, ring.clampedCount());
+    }
+
+    @Test
+    public void clear_dropsRowsFromPreviousEpoch() {
+        SessionTable table = new SessionTable(schema());
+        SampleRing ring = new SampleRing(table.getSchema(), 8);
+        ring.offer(ring.row().begin(5000, "OLD").put(0).put(0).putLong(0));
+        SampleRing.Row stale = ring.row().begin(5033, "OLD").put(0).put(1).putLong(1);   // clear 前取的 row
+        ring.clear();
+        table.clear();
+        ring.offer(stale);
+        ring.offer(ring.row().begin(0, "NEW").put(0).put(2).putLong(2));
+        assertEquals(1, ring.drainTo(table));
+        assertEquals(1, table.size());
+        assertEquals("NEW", table.state(0));
+        assertEquals(0, table.elapsedMs(0));
+        assertEquals(2, ring.droppedCount());
+    }
+
+    @Test
+    public void multiProducer_noLostRows_perProducerOrderKept() throws Exception {
+        final int producers = 4, perProducer = 20_000;
+        SessionTable table = new SessionTable(schema());
+        SampleRing ring = new SampleRing(table.getSchema(), 64);   // 小緩衝：逼生產端常常碰到滿
+        AtomicLong clock = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        SampleRing.Row r = ring.row().begin(clock.incrementAndGet(), "S").put(id).put(i).putLong(i);
+                        while (!ring.offer(r)) Thread.yield();
+                    }
+                } catch (InterruptedException ignore) {
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        // 單一消費者（同 FaceDataRecorder：CSV 執行緒持 table 鎖倒）
+        while (done.getCount() > 0 || ring.pending() > 0) {
+            ring.drainTo(table);
+        }
+        ring.drainTo(table);
+
+        assertEquals(producers * perProducer, table.size());
+        double[] who = table.printedColumn(2);
+        double[] seq = table.printedColumn(3);
+        int[] next = new int[producers];
+        long prev = Long.MIN_VALUE;
+        for (int i = 0; i < table.size(); i++) {
+            int p = (int) who[i];
+            assertEquals("producer " + p + " 亂序", next[p], (int) seq[i]);
+            next[p]++;
+            assertTrue(table.elapsedMs(i) >= prev);
+            prev = table.elapsedMs(i);
+        }
+        for (int p = 0; p < producers; p++) assertEquals(perProducer, next[p]);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SessionTableTest {
+
+    private static SessionTable.Schema lipLikeSchema() {
+        return new SessionTable.Schema.Builder("time_seconds,state,a,b,dir,x,y,z", Locale.US)
+                .fixed(6).fixed(6).character().fixed(6, 3)
+                .build();
+    }
+
+    @Test
+    public void csv_matchesLegacyStringFormat() throws Exception {
+        SessionTable table = new SessionTable(lipLikeSchema());
+        StringBuilder expected = new StringBuilder("time_seconds,state,a,b,dir,x,y,z\n");
+        for (int i = 0; i < 600; i++) {   // 跨過好幾個 chunk
+            long ms = i * 33L + 7;
+            float a = i * 0.123457f, b = -i / 7f, x = 1e-7f * i, y = 512.3333f + i, z = -0.0425f;
+            char dir = (i % 2 == 0) ? 'T' : 'F';
+            String state = (i < 300) ? "CALIBRATING" : "MAINTAINING";
+
+            table.beginRow(ms, state);
+            table.put(a).put(b).put(dir).put(x).put(y).put(z);
+            table.endRow();
+
+            expected.append(String.format(Locale.US, "%.3f,%s,%.6f,%.6f,%s", ms / 1000.0, state, a, b, String.valueOf(dir)))
+                    .append(String.format(Locale.US, ",%.6f,%.6f,%.6f", x, y, z))
+                    .append('\n');
+        }
+
+        StringBuilder actual = new StringBuilder();
+        table.writeCsv(actual);
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(600, table.size());
+    }
+
+    @Test
+    public void intAndLongColumns_printLikeLegacyTongueRow() throws Exception {
+        SessionTable.Schema schema = new SessionTable.Schema.Builder("time_seconds,state,det,imgW,frame_id,x_norm", Locale.US)
+                .integer().integer().longValue().fixed(5)
+                .build();
+        SessionTable table = new SessionTable(schema);
+        long ts = 1760000000123L;
+        table.beginRow(1500, "MAINTAINING");
+        table.put(1).put(480).putLong(ts).put(Float.NaN);
+        table.endRow();
+
+        StringBuilder row = new StringBuilder();
+        table.appendRow(row, 0);
+        assertEquals(String.format(Locale.US, "%.3f,%s,%d,%d,%d,%.5f", 1.5, "MAINTAINING", 1, 480, ts, Float.NaN),
+                row.toString());
+    }
+
+    @Test
+    public void printedColumn_equalsParsedCsvValues() {
+        SessionTable table = new SessionTable(lipLikeSchema());
+        float[] as = {0.1234567f, 3.9999996f, 12f};
+        for (int i = 0; i < as.length; i++) {
+            table.beginRow(1001L * i, "MAINTAINING");
+            table.put(as[i]).put(0f).put('T').put(0f).put(0f).put(0f);
+            table.endRow();
+        }
+        double[] expectedA = new double[as.length];
+        double[] expectedT = new double[as.length];
+        for (int i = 0; i < as.length; i++) {
+            expectedA[i] = Double.parseDouble(String.format(Locale.US, "%.6f", as[i]));
+            expectedT[i] = Double.parseDouble(String.format(Locale.US, "%.3f", 1001L * i / 1000.0));
+        }
+        assertArrayEquals(expectedA, table.printedColumn(table.headerIndex("a")), 0.0);
+        assertArrayEquals(expectedT, table.printedColumn(table.headerIndex("time_seconds")), 0.0);
+        assertEquals(0, table.printedColumn(table.headerIndex("dir")).length);
+        assertEquals(-1, table.headerIndex("height_width_ratio"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endRow_rejectsWrongColumnCount() {
+        SessionTable table = new SessionTable(lipLikeSchema());
+        table.beginRow(0, "MAINTAINING");
+        table.put(1f);
+        table.endRow();
+    }
+
+    @Test
+    public void clear_resetsRows() throws Exception {
+        SessionTable table = new SessionTable(lipLikeSchema());
+        for (int i = 0; i < 300; i++) {
+            table.beginRow(i, "CALIBRATING");
+            table.put(1f).put(2f).put('F').put(3f).put(4f).put(5f);
+            table.endRow();
+        }
+        table.clear();
+        assertEquals(0, table.size());
+        StringBuilder csv = new StringBuilder();
+        table.writeCsv(csv);
+        assertEquals("time_seconds,state,a,b,dir,x,y,z\n", csv.toString());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import com.example.rehabilitationapp.ui.facecheck.TongueInferenceScheduler.Decision;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TongueInferenceScheduler：靜止時略過推理、動作時每幀推理、沿用的框跟著嘴部平移
+ */
+public class TongueInferenceSchedulerTest {
+
+    private static final float DIO = 100f;   // 兩眼距 100 px
+
+    private static float[] mouth(float dx, float dy) {
+        return new float[]{200 + dx, 300 + dy, 260 + dx, 300 + dy, 230 + dx, 290 + dy, 230 + dx, 315 + dy};
+    }
+
+    private static int[] grid(int gray) {
+        int[] g = new int[TongueInferenceScheduler.GRID * TongueInferenceScheduler.GRID];
+        Arrays.fill(g, 0xFF000000 | (gray << 16) | (gray << 8) | gray);
+        return g;
+    }
+
+    // 模擬一幀：要推理就「送出」並立刻回結果
+    private static Decision step(TongueInferenceScheduler s, float[] pts, int[] g, int[] box) {
+        Decision d = s.decide(pts, DIO, g);
+        if (d == Decision.INFER) {
+            s.onInferenceStarted(pts);
+            s.onMeasured(box != null, 0.9f, box);
+        }
+        return d;
+    }
+
+    @Test
+    public void stillScene_skipsButRefreshesEveryMaxSkip() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        int[] box = {220, 305, 240, 330};
+        assertEquals(Decision.INFER, step(s, mouth(0, 0), grid(120), box));   // 第一幀一定推理
+
+        int infer = 0;
+        int frames = 60;
+        for (int i = 0; i < frames; i++) {
+            if (step(s, mouth(0.2f, 0), grid(121), box) == Decision.INFER) infer++;
+        }
+        // 每 MAX_SKIP 幀才推理一次
+        assertEquals(frames / TongueInferenceScheduler.MAX_SKIP, infer);
+    }
+
+    @Test
+    public void mouthMoving_infersEveryFrame() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        int[] box = {220, 305, 240, 330};
+        step(s, mouth(0, 0), grid(120), box);
+        for (int i = 1; i <= 20; i++) {
+            assertEquals(Decision.INFER, step(s, mouth(i * 5f, 0), grid(120), box));   // 每幀 5% 兩眼距
+        }
+    }
+
+    @Test
+    public void appearanceChange_triggersInference() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        int[] box = {220, 305, 240, 330};
+        step(s, mouth(0, 0), grid(120), box);
+        assertEquals(Decision.INTERPOLATE, step(s, mouth(0, 0), grid(120), box));
+        // 嘴沒動、ROI 變亮（舌頭伸出）
+        assertEquals(Decision.INFER, step(s, mouth(0, 0), grid(160), box));
+    }
+
+    @Test
+    public void measuredBoxMoving_holdsActiveRate() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        step(s, mouth(0, 0), grid(120), null);                           // 沒舌頭
+        assertEquals(Decision.INTERPOLATE, step(s, mouth(0, 0), grid(120), null));
+        // 定期推理時量到舌頭出現 → 之後 ACTIVE_HOLD 幀都推理
+        for (int i = 2; i < TongueInferenceScheduler.MAX_SKIP; i++) step(s, mouth(0, 0), grid(120), null);
+        assertEquals(Decision.INFER, step(s, mouth(0, 0), grid(120), new int[]{220, 305, 240, 330}));
+        for (int i = 0; i < TongueInferenceScheduler.ACTIVE_HOLD; i++) {
+            assertEquals(Decision.INFER, step(s, mouth(0, 0), grid(120), new int[]{220, 305, 240, 330}));
+        }
+        assertEquals(Decision.INTERPOLATE, step(s, mouth(0, 0), grid(120), new int[]{220, 305, 240, 330}));
+    }
+
+    @Test
+    public void framesNotInferred_doNotUseUpActiveHold() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        int[] box = null;                                                       // 沒舌頭，只看嘴動觸發的那段
+        step(s, mouth(0, 0), grid(120), box);
+        assertEquals(Decision.INFER, step(s, mouth(10, 0), grid(120), box));     // 嘴動 → 進入動作中
+        // YOLO 忙 / 不在節奏上：decide 照樣被呼叫但沒送出推理
+        for (int i = 0; i < 3 * TongueInferenceScheduler.ACTIVE_HOLD; i++) {
+            assertEquals(Decision.INFER, s.decide(mouth(10, 0), DIO, grid(120)));
+        }
+        // 動作後真的推理的次數仍是 ACTIVE_HOLD（剛才那一次已扣 1）
+        for (int i = 1; i < TongueInferenceScheduler.ACTIVE_HOLD; i++) {
+            assertEquals(Decision.INFER, step(s, mouth(10, 0), grid(120), box));
+        }
+        assertEquals(Decision.INTERPOLATE, step(s, mouth(10, 0), grid(120), box));
+    }
+
+    @Test
+    public void interpolate_followsMouthTranslation() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        int[] out = new int[4];
+        assertFalse(s.interpolate(mouth(0, 0), out));                     // 還沒量過
+
+        step(s, mouth(0, 0), grid(120), new int[]{220, 305, 240, 330});
+        assertTrue(s.interpolate(mouth(1, -1), out));
+        assertArrayEquals(new int[]{221, 304, 241, 329}, out);
+        assertEquals(0.9f, s.lastConfidence(), 0f);
+
+        step(s, mouth(0, 0), grid(200), null);                            // 外觀變了、量到沒舌頭
+        assertFalse(s.interpolate(mouth(0, 0), out));
+    }
+
+    @Test
+    public void counts() {
+        TongueInferenceScheduler s = new TongueInferenceScheduler();
+        int[] out = new int[4];
+        for (int i = 0; i < 12; i++) {
+            if (step(s, mouth(0, 0), grid(120), null) == Decision.INTERPOLATE) s.interpolate(mouth(0, 0), out);
+        }
+        assertEquals(12, s.inferCount() + s.interpolateCount());
+        assertTrue(s.interpolateCount() > s.inferCount());
+    }
+}
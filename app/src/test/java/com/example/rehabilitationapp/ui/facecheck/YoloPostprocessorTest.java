@@ -0,0 +1,206 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * YoloPostprocessor：與舊版巢狀陣列掃描（每幀 sniff logits + 逐 anchor sigmoid）比對，
+ * 並驗證 [1,N,C] 版面、top-K 與類別內 NMS。
+ */
+public class YoloPostprocessorTest {
+
+    private static final int C = 8, N = 2100;
+
+    @Test
+    public void best_matchesLegacyScan_probabilities() {
+        float[][][] out = randomOutput(7, false);
+        YoloPostprocessor post = load(out);
+        assertEquals(Boolean.FALSE, post.scoresAreLogits());
+        for (int ch = 4; ch < C; ch++) {
+            assertSame(legacyBest(out, ch, 0.6f, 0.01f), post.best(ch - 4, 0.6f, 0.01f));
+        }
+    }
+
+    @Test
+    public void best_matchesLegacyScan_logits() {
+        float[][][] out = randomOutput(11, true);
+        YoloPostprocessor post = load(out);
+        assertEquals(Boolean.TRUE, post.scoresAreLogits());
+        for (int ch = 4; ch < C; ch++) {
+            assertSame(legacyBest(out, ch, 0.85f, 0.01f), post.best(ch - 4, 0.85f, 0.01f));
+        }
+    }
+
+    @Test
+    public void best_nothingAboveThreshold_returnsNull() {
+        float[][][] out = randomOutput(3, false);
+        YoloPostprocessor post = load(out);
+        assertNull(post.best(3, 1.0f, 0.01f));
+    }
+
+    @Test
+    public void logitsDecision_isMadeOnceOnFirstFrame() {
+        YoloPostprocessor post = load(randomOutput(5, true));
+        assertEquals(Boolean.TRUE, post.scoresAreLogits());
+        // 之後的幀就算剛好都落在 0..1，也維持第一幀的判斷
+        float[][][] second = randomOutput(6, false);
+        post.load(flatten(second, true));
+        assertEquals(Boolean.TRUE, post.scoresAreLogits());
+    }
+
+    @Test
+    public void channelsLastLayout_sameAsChannelsFirst() {
+        float[][][] out = randomOutput(9, true);
+        YoloPostprocessor first = load(out);
+        YoloPostprocessor last = new YoloPostprocessor(new int[]{1, N, C});
+        last.load(flatten(out, false));
+        assertEquals(N, last.numDet());
+        assertEquals(C - 4, last.numClasses());
+
+        YoloPostprocessor.Box a = first.best(3, 0.7f, 0.01f), b = last.best(3, 0.7f, 0.01f);
+        assertEquals(a.index, b.index);
+        assertEquals(a.score, b.score, 0f);
+        assertEquals(first.detect(0.5f, 0.01f, 50, 0.45f).size(), last.detect(0.5f, 0.01f, 50, 0.45f).size());
+    }
+
+    @Test
+    public void detect_classAwareNmsAndTopK() {
+        float[][][] out = new float[1][6][20];
+        // 類別 0：兩個高度重疊的框 + 一個遠的框；類別 1：跟類別 0 最高框重疊
+        put(out, 0, 0.50f, 0.50f, 0.20f, 0.20f, 0, 0.95f);
+        put(out, 1, 0.51f, 0.50f, 0.20f, 0.20f, 0, 0.90f);   // 被 #0 抑制
+        put(out, 2, 0.10f, 0.10f, 0.10f, 0.10f, 0, 0.80f);
+        put(out, 3, 0.50f, 0.50f, 0.20f, 0.20f, 1, 0.85f);   // 不同類別，不抑制
+        put(out, 4, 0.90f, 0.90f, 0.005f, 0.10f, 0, 0.99f);  // 太小，預篩掉
+        put(out, 5, 0.30f, 0.80f, 0.10f, 0.10f, 1, 0.40f);   // 低於閾值
+        YoloPostprocessor post = new YoloPostprocessor(new int[]{1, 6, 20});
+        post.load(flatten(out, true));
+
+        List<YoloPostprocessor.Box> boxes = post.detect(0.5f, 0.01f, 10, 0.5f);
+        assertEquals(3, boxes.size());
+        assertEquals(0, boxes.get(0).index);
+        assertEquals(3, boxes.get(1).index);
+        assertEquals(1, boxes.get(1).cls);
+        assertEquals(2, boxes.get(2).index);
+
+        // top-K = 2：只留分數前兩名（#0、#1）再做 NMS → #1 被抑制
+        boxes = post.detect(0.5f, 0.01f, 2, 0.5f);
+        assertEquals(1, boxes.size());
+        assertEquals(0, boxes.get(0).index);
+    }
+
+    @Test
+    public void detect_topKOrderMatchesFullSort() {
+        YoloPostprocessor post = load(randomOutput(21, true));
+        List<YoloPostprocessor.Box> all = post.detect(0.3f, 0.01f, 0, 1.01f);   // IoU 門檻 > 1：不抑制
+        List<YoloPostprocessor.Box> top = post.detect(0.3f, 0.01f, 25, 1.01f);
+        assertEquals(25, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(all.get(i).score, top.get(i).score, 0f);
+            if (i > 0) assertTrue(top.get(i - 1).score >= top.get(i).score);
+        }
+    }
+
+    @Test
+    public void classMaxScores_matchLegacy() {
+        float[][][] out = randomOutput(13, true);
+        float[] max = load(out).classMaxScores();
+        for (int ch = 4; ch < C; ch++) {
+            float m = -1e9f;
+            for (int i = 0; i < N; i++) m = Math.max(m, sigmoid(out[0][ch][i]));
+            assertEquals(m, max[ch - 4], 0f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shapeWithoutClassChannels_rejected() {
+        new YoloPostprocessor(new int[]{1, 4, 100});
+    }
+
+    // ================= helpers =================
+
+    private static void assertSame(int legacyIdx, YoloPostprocessor.Box box) {
+        if (legacyIdx < 0) {
+            assertNull(box);
+        } else {
+            assertNotNull(box);
+            assertEquals(legacyIdx, box.index);
+        }
+    }
+
+    /** 舊版 postprocessWithRealCoordinates 的掃描 */
+    private static int legacyBest(float[][][] out, int ch, float th, float minWH) {
+        float minV = Float.POSITIVE_INFINITY, maxV = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < Math.min(32, N); i++) {
+            minV = Math.min(minV, out[0][ch][i]);
+            maxV = Math.max(maxV, out[0][ch][i]);
+        }
+        boolean needSigmoid = minV < 0f || maxV > 1f;
+        int bestIdx = -1;
+        float bestProb = 0f;
+        for (int i = 0; i < N; i++) {
+            float prob = needSigmoid ? sigmoid(out[0][ch][i]) : out[0][ch][i];
+            if (prob > th && out[0][2][i] > minWH && out[0][3][i] > minWH && prob > bestProb) {
+                bestProb = prob;
+                bestIdx = i;
+            }
+        }
+        return bestIdx;
+    }
+
+    private static float sigmoid(float raw) {
+        return (float) (1.0 / (1.0 + Math.exp(-Math.max(-20.0, Math.min(20.0, raw)))));
+    }
+
+    private static float[][][] randomOutput(long seed, boolean logits) {
+        Random rnd = new Random(seed);
+        float[][][] out = new float[1][C][N];
+        for (int i = 0; i < N; i++) {
+            out[0][0][i] = rnd.nextFloat();
+            out[0][1][i] = rnd.nextFloat();
+            out[0][2][i] = rnd.nextFloat() * 0.3f;
+            out[0][3][i] = rnd.nextFloat() * 0.3f;
+            for (int ch = 4; ch < C; ch++) {
+                out[0][ch][i] = logits ? (float) (rnd.nextGaussian() * 3 - 2) : rnd.nextFloat();
+            }
+        }
+        return out;
+    }
+
+    private static void put(float[][][] out, int i, float cx, float cy, float w, float h, int cls, float p) {
+        out[0][0][i] = cx;
+        out[0][1][i] = cy;
+        out[0][2][i] = w;
+        out[0][3][i] = h;
+        out[0][4 + cls][i] = p;
+    }
+
+    private static float[] flatten(float[][][] out, boolean channelsFirst) {
+        int c = out[0].length, n = out[0][0].length;
+        float[] flat = new float[c * n];
+        for (int ch = 0; ch < c; ch++) {
+            for (int i = 0; i < n; i++) {
+                flat[channelsFirst ? ch * n + i : i * c + ch] = out[0][ch][i];
+            }
+        }
+        return flat;
+    }
+
+    /** 走跟偵測器一樣的路徑：direct ByteBuffer → FloatBuffer → load */
+    private static YoloPostprocessor load(float[][][] out) {
+        YoloPostprocessor post = new YoloPostprocessor(new int[]{1, C, N});
+        ByteBuffer bb = ByteBuffer.allocateDirect(4 * post.outputFloats()).order(ByteOrder.nativeOrder());
+        FloatBuffer fb = bb.asFloatBuffer();
+        fb.put(flatten(out, true));
+        post.load(fb);
+        assertEquals(0, fb.position());
+        return post;
+    }
+}
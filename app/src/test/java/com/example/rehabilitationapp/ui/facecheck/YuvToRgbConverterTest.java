@@ -0,0 +1,213 @@
+package com.example.rehabilitationapp.ui.facecheck;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * YuvToRgbConverter：與浮點 BT.601 full range 公式比對，涵蓋 I420 / NV21 排列與 row padding，
+ * 以及融合旋轉/鏡像的像素位置（小張不對稱灰階圖，預期結果手算）。
+ */
+public class YuvToRgbConverterTest {
+
+    private static final int W = 37;   // 奇數寬，測最後一欄
+    private static final int H = 21;
+
+    @Test
+    public void i420_matchesReference() {
+        checkLayout(W + 11, 1, (W + 1) / 2 + 5, 1);
+    }
+
+    @Test
+    public void nv21_interleaved_matchesReference() {
+        checkLayout(W + 3, 1, W + 9, 2);
+    }
+
+    @Test
+    public void grayPixel_staysGray() {
+        byte[] y = {(byte) 200, (byte) 200, (byte) 200, (byte) 200};
+        byte[] u = {(byte) 128};
+        byte[] v = {(byte) 128};
+        int[] out = new int[4];
+        YuvToRgbConverter.convert(y, 2, 1, u, v, 1, 1, 2, 2, out);
+        for (int px : out) assertEquals(0xFFC8C8C8, px);
+    }
+
+    @Test
+    public void byteBufferPath_keepsPositionAndReusesOutput() {
+        Random rnd = new Random(7);
+        byte[] y = new byte[W * H];
+        byte[] uv = new byte[((W + 1) / 2) * ((H + 1) / 2)];
+        rnd.nextBytes(y);
+        rnd.nextBytes(uv);
+        ByteBuffer yb = ByteBuffer.allocateDirect(y.length);
+        yb.put(y).flip();
+        ByteBuffer ub = ByteBuffer.wrap(uv);
+        ByteBuffer vb = ByteBuffer.wrap(uv.clone());
+
+        YuvToRgbConverter c = new YuvToRgbConverter();
+        int[] first = c.convert(yb, W, 1, ub, vb, (W + 1) / 2, 1, W, H);
+        assertEquals(0, yb.position());
+        assertEquals(0, ub.position());
+        int[] second = c.convert(yb, W, 1, ub, vb, (W + 1) / 2, 1, W, H);
+        assertSame(first, second);
+    }
+
+    // 3×2 灰階（U=V=128，輸出 = Y）：
+    //   a b c
+    //   d e f
+    private static final int A = 10, B = 20, C = 30, D = 40, E = 50, F = 60;
+
+    // 順時針旋轉、再左右鏡像（前鏡頭）後的樣子，一列一列寫
+    private static final int[][] ROT0       = {{A, B, C}, {D, E, F}};
+    private static final int[][] ROT0_MIR   = {{C, B, A}, {F, E, D}};
+    private static final int[][] ROT90      = {{D, A}, {E, B}, {F, C}};
+    private static final int[][] ROT90_MIR  = {{A, D}, {B, E}, {C, F}};
+    private static final int[][] ROT180     = {{F, E, D}, {C, B, A}};
+    private static final int[][] ROT180_MIR = {{D, E, F}, {A, B, C}};
+    private static final int[][] ROT270     = {{C, F}, {B, E}, {A, D}};
+    private static final int[][] ROT270_MIR = {{F, C}, {E, B}, {D, A}};
+
+    @Test
+    public void fusedRotateMirror_placesPixelsAsExpected() {
+        byte[] y = {(byte) A, (byte) B, (byte) C, (byte) D, (byte) E, (byte) F};
+        byte[] u = {(byte) 128, (byte) 128};
+        byte[] v = {(byte) 128, (byte) 128};
+
+        int[] out = new int[6];
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 0, false, out);
+        assertGrid(ROT0, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 0, true, out);
+        assertGrid(ROT0_MIR, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 90, false, out);
+        assertGrid(ROT90, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 90, true, out);
+        assertGrid(ROT90_MIR, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 180, false, out);
+        assertGrid(ROT180, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 180, true, out);
+        assertGrid(ROT180_MIR, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 270, false, out);
+        assertGrid(ROT270, out);
+        YuvToRgbConverter.convert(y, 3, 1, u, v, 2, 1, 3, 2, 270, true, out);
+        assertGrid(ROT270_MIR, out);
+
+        assertEquals(2, YuvToRgbConverter.outputWidth(3, 2, 270));
+        assertEquals(3, YuvToRgbConverter.outputHeight(3, 2, 90));
+    }
+
+    @Test
+    public void halfStep_averagesBlocks() {
+        // NV21 排列（uvPixelStride=2）＋ row padding；奇數寬高的最後一欄 / 列捨去
+        Random rnd = new Random(11);
+        int yRowStride = W + 5, uvRowStride = W + 7;
+        byte[] y = new byte[yRowStride * H];
+        byte[] u = new byte[uvRowStride * ((H + 1) / 2)];
+        byte[] v = new byte[u.length];
+        rnd.nextBytes(y);
+        rnd.nextBytes(u);
+        rnd.nextBytes(v);
+
+        int w = W / 2, h = H / 2;
+        int[] upright = new int[w * h];
+        YuvToRgbConverter.convertHalf(y, yRowStride, 1, u, v, uvRowStride, 2, W, H, 0, false, upright);
+        for (int r = 0; r < h; r++) {
+            for (int c = 0; c < w; c++) {
+                int i0 = 2 * r * yRowStride + 2 * c;
+                int mean = ((y[i0] & 0xFF) + (y[i0 + 1] & 0xFF)
+                        + (y[i0 + yRowStride] & 0xFF) + (y[i0 + yRowStride + 1] & 0xFF) + 2) >> 2;
+                int uvIdx = r * uvRowStride + c * 2;
+                int expected = reference(mean, u[uvIdx] & 0xFF, v[uvIdx] & 0xFF);
+                int actual = upright[r * w + c];
+                assertChannelClose(expected >> 16 & 0xFF, actual >> 16 & 0xFF);
+                assertChannelClose(expected >> 8 & 0xFF, actual >> 8 & 0xFF);
+                assertChannelClose(expected & 0xFF, actual & 0xFF);
+            }
+        }
+
+        assertEquals(h, YuvToRgbConverter.outputWidth(W, H, 90, 2));
+        assertEquals(w, YuvToRgbConverter.outputHeight(W, H, 270, 2));
+    }
+
+    @Test
+    public void halfStep_rotateMirror_placesBlocksAsExpected() {
+        // 6×4 灰階，每個 2×2 區塊同一個值 → 降採樣後就是上面那張 3×2
+        byte[] y = new byte[6 * 4];
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 6; c++) y[r * 6 + c] = (byte) ROT0[r / 2][c / 2];
+        }
+        byte[] u = new byte[3 * 2];
+        Arrays.fill(u, (byte) 128);
+        byte[] v = u.clone();
+
+        int[] out = new int[6];
+        YuvToRgbConverter.convertHalf(y, 6, 1, u, v, 3, 1, 6, 4, 90, true, out);
+        assertGrid(ROT90_MIR, out);
+        YuvToRgbConverter.convertHalf(y, 6, 1, u, v, 3, 1, 6, 4, 180, true, out);
+        assertGrid(ROT180_MIR, out);
+        YuvToRgbConverter.convertHalf(y, 6, 1, u, v, 3, 1, 6, 4, 270, true, out);
+        assertGrid(ROT270_MIR, out);
+        YuvToRgbConverter.convertHalf(y, 6, 1, u, v, 3, 1, 6, 4, 270, false, out);
+        assertGrid(ROT270, out);
+    }
+
+    private static void assertGrid(int[][] expected, int[] actual) {
+        int dstW = expected[0].length;
+        for (int r = 0; r < expected.length; r++) {
+            for (int c = 0; c < dstW; c++) {
+                int g = expected[r][c];
+                assertEquals("(" + c + "," + r + ")", 0xFF000000 | (g << 16) | (g << 8) | g, actual[r * dstW + c]);
+            }
+        }
+    }
+
+    private void checkLayout(int yRowStride, int yPixelStride, int uvRowStride, int uvPixelStride) {
+        Random rnd = new Random(42);
+        int chromaH = (H + 1) / 2;
+        int chromaW = (W + 1) / 2;
+        byte[] y = new byte[yRowStride * H];
+        int uvLen = uvRowStride * chromaH;
+        byte[] u = new byte[uvLen];
+        byte[] v = new byte[uvLen];
+        rnd.nextBytes(y);
+        rnd.nextBytes(u);
+        rnd.nextBytes(v);
+
+        int[] out = new int[W * H];
+        YuvToRgbConverter.convert(y, yRowStride, yPixelStride, u, v, uvRowStride, uvPixelStride, W, H, out);
+
+        for (int row = 0; row < H; row++) {
+            for (int col = 0; col < W; col++) {
+                int uvIdx = (row / 2) * uvRowStride + (col / 2) * uvPixelStride;
+                assertTrue(col / 2 < chromaW);
+                int expected = reference(y[row * yRowStride + col * yPixelStride] & 0xFF,
+                        u[uvIdx] & 0xFF, v[uvIdx] & 0xFF);
+                int actual = out[row * W + col];
+                assertEquals("alpha", 0xFF, actual >>> 24);
+                assertChannelClose(expected >> 16 & 0xFF, actual >> 16 & 0xFF);
+                assertChannelClose(expected >> 8 & 0xFF, actual >> 8 & 0xFF);
+                assertChannelClose(expected & 0xFF, actual & 0xFF);
+            }
+        }
+    }
+
+    private static int reference(int yy, int uu, int vv) {
+        double cb = uu - 128, cr = vv - 128;
+        int r = clamp(Math.round(yy + 1.402 * cr));
+        int g = clamp(Math.round(yy - 0.344136 * cb - 0.714136 * cr));
+        int b = clamp(Math.round(yy + 1.772 * cb));
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(long c) {
+        return (int) Math.max(0, Math.min(255, c));
+    }
+
+    private static void assertChannelClose(int expected, int actual) {
+        assertTrue("expected " + expected + " got " + actual, Math.abs(expected - actual) <= 1);
+    }
+}